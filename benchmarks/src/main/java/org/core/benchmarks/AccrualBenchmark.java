@@ -0,0 +1,73 @@
+package org.core.benchmarks;
+
+import org.core.ConnectionProvider;
+import org.core.RentAccrual;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Portfolio-wide rent accrual: {@code months} months charged to {@code buildingCount} buildings of
+ * {@code tenantCount} tenants each, all buildings at once. Every invocation moves the watermarks
+ * back first, so this is measured as single-shot time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AccrualBenchmark {
+    @Param({"8"})
+    public int buildingCount;
+
+    @Param({"2000"})
+    public int tenantCount;
+
+    @Param({"3"})
+    public int months;
+
+    private Path dataDir;
+    private final List<String> buildings = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        for (int i = 0; i < buildingCount; i++) {
+            String dbName = "bench_accrual_" + i;
+            BenchmarkData.seed(dbName, tenantCount);
+            // Leases running today, so every month in the window is charged.
+            execute(dbName, "UPDATE tenants SET lease_start = DATE '2015-01-01', lease_expired = NULL");
+            buildings.add(dbName);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void rewind() throws Exception {
+        for (String dbName : buildings) {
+            execute(dbName, "UPDATE tenants SET accrued_through = DATEADD(MONTH, -" + (months + 1) + ", DATE_TRUNC(MONTH, CURRENT_DATE))");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+    }
+
+    @Benchmark
+    public RentAccrual.Report accrue() {
+        return new RentAccrual().run(buildings).join();
+    }
+
+    private static void execute(String dbName, String sql) throws Exception {
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.core.benchmarks;
+
+import org.core.Tenant;
+import org.core.TenantColumns;
+import org.core.TenantLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/** The same reports over a {@code List<Tenant>} and over a {@link TenantColumns} snapshot. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyticsBenchmark {
+    private static final String DB = "bench_analytics";
+    private static final YearMonth FROM = YearMonth.of(2016, 1);
+    private static final int MONTHS = 120;
+
+    @Param({"1000", "10000", "100000"})
+    public int tenantCount;
+
+    private Path dataDir;
+    private List<Tenant> tenants;
+    private TenantColumns columns;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        BenchmarkData.seed(DB, tenantCount);
+        tenants = TenantLoader.loadAll(DB);
+        columns = TenantColumns.load(DB);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+    }
+
+    @Benchmark
+    public double arrearsList() {
+        return tenants.stream().mapToDouble(Tenant::getBalance).filter(b -> b > 0).sum();
+    }
+
+    @Benchmark
+    public double arrearsColumns() {
+        return columns.arrears();
+    }
+
+    @Benchmark
+    public List<Tenant> topBalancesList() {
+        return tenants.stream().sorted(Comparator.comparingDouble(Tenant::getBalance).reversed()).limit(10)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public int[] topBalancesColumns() {
+        return columns.topByBalance(10);
+    }
+
+    @Benchmark
+    public int[] expiryHistogramList() {
+        int[] counts = new int[MONTHS];
+        LocalDate start = FROM.atDay(1);
+        for (Tenant tenant : tenants) {
+            LocalDate expiry = tenant.getLeaseExpired();
+            if (expiry == null || expiry.isBefore(start)) continue;
+            int month = (int) ChronoUnit.MONTHS.between(FROM, YearMonth.from(expiry));
+            if (month < MONTHS) counts[month]++;
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public int[] expiryHistogramColumns() {
+        return columns.countByLeaseExpiryMonth(FROM, MONTHS);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public TenantColumns loadColumns() throws Exception {
+        return TenantColumns.load(DB);
+    }
+}
@@ -0,0 +1,65 @@
+package org.core.benchmarks;
+
+import org.core.BatchJob;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batch of {@code commandsPerBuilding} payments and rent changes for each of {@code buildingCount}
+ * buildings, all buildings at once, parsed once and committed on every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BatchBenchmark {
+    private static final int TENANTS = 2000;
+
+    @Param({"8"})
+    public int buildingCount;
+
+    @Param({"2000"})
+    public int commandsPerBuilding;
+
+    private Path dataDir;
+    private List<BatchJob.Command> commands;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        List<String> buildings = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        for (int b = 0; b < buildingCount; b++) {
+            String dbName = "bench_batch_" + b;
+            BenchmarkData.seed(dbName, TENANTS);
+            buildings.add(dbName);
+            for (int i = 0; i < commandsPerBuilding; i++) {
+                int tenantId = 1 + i % TENANTS;
+                lines.add(i % 2 == 0
+                        ? dbName + ",payment," + tenantId + ",2024-01,100.00"
+                        : dbName + ",rent," + tenantId + "," + (1000 + i % 500));
+            }
+        }
+        Path file = dataDir.resolve("commands.txt");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        commands = BatchJob.parse(file, buildings);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+    }
+
+    @Benchmark
+    public BatchJob.Report run() {
+        return new BatchJob(commands, false, false).run().join();
+    }
+}
@@ -0,0 +1,99 @@
+package org.core.benchmarks;
+
+import org.core.ConnectionProvider;
+import org.core.DatabaseManager;
+import org.core.Tenant;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Seeds throwaway building databases for the benchmarks. Every benchmark gets its own
+ * temporary directory (via {@code pm.data.dir}), so nothing touches the real property files.
+ */
+final class BenchmarkData {
+    private static final String[] FIRST = {"Ana", "Ben", "Carla", "David", "Elena", "Frank", "Grace", "Hugo", "Irene", "Jorge"};
+    private static final String[] LAST = {"Rivera", "Smith", "Nguyen", "Garcia", "Johnson", "Lee", "Brown", "Lopez", "Walker", "Young"};
+
+    private BenchmarkData() {
+    }
+
+    /** Creates a fresh data directory and points the connection provider at it. */
+    static Path newDataDir() throws IOException {
+        Path dir = Files.createTempDirectory("pm-bench");
+        System.setProperty("pm.data.dir", dir.toString());
+        return dir;
+    }
+
+    static void deleteDataDir(Path dir) throws IOException {
+        ConnectionProvider.closeAll();
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /** Creates the schema and inserts {@code count} tenants with ids 1..count. */
+    static void seed(String dbName, int count) throws SQLException {
+        DatabaseManager.initializeDatabase(dbName);
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "INSERT INTO tenants (id, name, apt_number, lease_start, lease_expired, security, rent, balance) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            conn.setAutoCommit(false);
+            for (Tenant tenant : tenants(count)) {
+                pstmt.setInt(1, tenant.getId());
+                pstmt.setString(2, tenant.getName());
+                pstmt.setString(3, tenant.getAptNumber());
+                pstmt.setDate(4, Date.valueOf(tenant.getLeaseStart()));
+                pstmt.setDate(5, Date.valueOf(tenant.getLeaseExpired()));
+                pstmt.setDouble(6, tenant.getSecurity());
+                pstmt.setDouble(7, tenant.getRent());
+                pstmt.setDouble(8, tenant.getBalance());
+                pstmt.addBatch();
+                if (tenant.getId() % 1000 == 0) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    static void truncate(String dbName) throws SQLException {
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM payments");
+            stmt.execute("DELETE FROM tenants");
+        }
+    }
+
+    /** The same pseudo-random tenants on every call, so runs are comparable. */
+    static List<Tenant> tenants(int count) {
+        Random random = new Random(42);
+        List<Tenant> tenants = new ArrayList<>(count);
+        LocalDate base = LocalDate.of(2015, 1, 1);
+        for (int id = 1; id <= count; id++) {
+            String name = FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)] + " " + id;
+            String apt = (char) ('A' + random.nextInt(6)) + "-" + (100 + random.nextInt(900));
+            LocalDate start = base.plusDays(random.nextInt(3650));
+            double rent = 800 + random.nextInt(2400);
+            double balance = random.nextInt(4) == 0 ? rent * random.nextInt(3) : 0;
+            tenants.add(new Tenant(id, name, apt, start, start.plusYears(1), rent, rent, balance));
+        }
+        return tenants;
+    }
+}
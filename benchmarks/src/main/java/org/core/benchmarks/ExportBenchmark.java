@@ -0,0 +1,67 @@
+package org.core.benchmarks;
+
+import org.core.CsvExporter;
+import org.core.Tenant;
+import org.core.TenantLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * exportToCSV: the original printf-per-row writer over the loaded tenant list, against
+ * {@link CsvExporter} streaming from the database, plain and gzipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExportBenchmark {
+    private static final String DB = "bench_export";
+
+    @Param({"1000", "10000", "100000"})
+    public int tenantCount;
+
+    private Path dataDir;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        BenchmarkData.seed(DB, tenantCount);
+        target = dataDir.resolve("export.csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+    }
+
+    @Benchmark
+    public long printfWriter() throws Exception {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(target.toFile()))) {
+            writer.println(CsvExporter.HEADER);
+            for (Tenant t : TenantLoader.loadAll(DB)) {
+                writer.printf("%d,%s,%s,%s,%s,%.2f,%.2f,%.2f\n",
+                        t.getId(), t.getName(), t.getAptNumber(), t.getLeaseStart(), t.getLeaseExpired(),
+                        t.getSecurity(), t.getRent(), t.getBalance());
+            }
+        }
+        return Files.size(target);
+    }
+
+    @Benchmark
+    public CsvExporter.ExportResult channelWriter() throws Exception {
+        return new CsvExporter().export(DB, target);
+    }
+
+    @Benchmark
+    public CsvExporter.ExportResult channelWriterGzip() throws Exception {
+        return new CsvExporter().gzip(true).export(DB, target);
+    }
+}
@@ -0,0 +1,57 @@
+package org.core.benchmarks;
+
+import org.core.CsvExporter;
+import org.core.CsvImporter;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * importFromCSV: a CSV with {@code tenantCount} rows imported into an empty building. Each
+ * invocation starts from an empty table, so this is measured as single-shot time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+    private static final String DB = "bench_import";
+
+    @Param({"1000", "10000", "100000"})
+    public int tenantCount;
+
+    @Param({"1000"})
+    public int batchSize;
+
+    private Path dataDir;
+    private Path csv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        BenchmarkData.seed(DB, tenantCount);
+        csv = dataDir.resolve("tenants.csv");
+        new CsvExporter().export(DB, csv);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyBuilding() throws Exception {
+        BenchmarkData.truncate(DB);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+    }
+
+    @Benchmark
+    public CsvImporter.ImportResult importCsv() throws Exception {
+        return new CsvImporter(DB)
+                .batchSize(batchSize)
+                .logFile(dataDir.resolve("import_log.txt"))
+                .importFile(csv);
+    }
+}
@@ -0,0 +1,60 @@
+package org.core.benchmarks;
+
+import org.core.LeaseDates;
+import org.core.Tenant;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date handling done per tenant by the add/edit paths: formatting a lease date for the edit
+ * form, converting it back to the stored format, and counting unpaid months.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LeaseDatesBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tenantCount;
+
+    private String[] inputDates;
+    private String[] storedDates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Tenant> tenants = BenchmarkData.tenants(tenantCount);
+        inputDates = new String[tenants.size()];
+        storedDates = new String[tenants.size()];
+        for (int i = 0; i < tenants.size(); i++) {
+            inputDates[i] = LeaseDates.formatForInput(tenants.get(i).getLeaseStart());
+            storedDates[i] = tenants.get(i).getLeaseStart().toString();
+        }
+    }
+
+    @Benchmark
+    public void convertDateFormat(Blackhole bh) {
+        for (String date : inputDates) {
+            bh.consume(LeaseDates.convertDateFormat(date));
+        }
+    }
+
+    @Benchmark
+    public void getUnpaidMonths(Blackhole bh) {
+        for (String date : storedDates) {
+            bh.consume(LeaseDates.getUnpaidMonths(date));
+        }
+    }
+
+    @Benchmark
+    public void formatForInput(Blackhole bh) {
+        for (String date : storedDates) {
+            bh.consume(LeaseDates.formatForInput(java.time.LocalDate.parse(date)));
+        }
+    }
+}
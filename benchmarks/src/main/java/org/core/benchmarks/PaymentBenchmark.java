@@ -0,0 +1,47 @@
+package org.core.benchmarks;
+
+import org.core.ConnectionProvider;
+import org.core.PaymentLedger;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.YearMonth;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** recordPayment: borrow a connection, post one payment to a random tenant, commit. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentBenchmark {
+    private static final String DB = "bench_payment";
+    private static final YearMonth PERIOD = YearMonth.of(2024, 1);
+
+    @Param({"1000", "10000", "100000"})
+    public int tenantCount;
+
+    private Path dataDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        BenchmarkData.seed(DB, tenantCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+    }
+
+    @Benchmark
+    public double recordPayment() throws Exception {
+        int tenantId = 1 + ThreadLocalRandom.current().nextInt(tenantCount);
+        try (Connection conn = ConnectionProvider.getConnection(DB)) {
+            return PaymentLedger.post(conn, tenantId, PERIOD, 100.0);
+        }
+    }
+}
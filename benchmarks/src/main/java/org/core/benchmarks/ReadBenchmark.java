@@ -0,0 +1,47 @@
+package org.core.benchmarks;
+
+import org.core.Tenant;
+import org.core.TenantLoader;
+import org.core.TenantPager;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** refreshTenants-style reads: the whole building, and the first page the table shows. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+    private static final String DB = "bench_read";
+
+    @Param({"1000", "10000", "100000"})
+    public int tenantCount;
+
+    private Path dataDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        BenchmarkData.seed(DB, tenantCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+    }
+
+    @Benchmark
+    public List<Tenant> loadAll() throws Exception {
+        return TenantLoader.loadAll(DB);
+    }
+
+    @Benchmark
+    public TenantPager.TenantPage firstPageByName() throws Exception {
+        return new TenantPager(DB, TenantPager.SortKey.NAME, true, "").first(200);
+    }
+}
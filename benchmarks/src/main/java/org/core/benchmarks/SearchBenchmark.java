@@ -0,0 +1,64 @@
+package org.core.benchmarks;
+
+import org.core.Tenant;
+import org.core.TenantLoader;
+import org.core.TenantSearchIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The tenant search: the original lower-case-and-contains predicate over every loaded tenant,
+ * against {@link TenantSearchIndex}. Short queries go through the prefix map, longer ones
+ * through trigrams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    private static final String DB = "bench_search";
+
+    @Param({"1000", "10000", "100000"})
+    public int tenantCount;
+
+    @Param({"ri", "rivera", "c-4"})
+    public String query;
+
+    private Path dataDir;
+    private List<Tenant> tenants;
+    private TenantSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        BenchmarkData.seed(DB, tenantCount);
+        tenants = TenantLoader.loadAll(DB);
+        index = TenantSearchIndex.forBuilding(DB).ready().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+    }
+
+    @Benchmark
+    public void predicateScan(Blackhole bh) {
+        String lower = query.toLowerCase();
+        for (Tenant tenant : tenants) {
+            bh.consume(tenant.getName().toLowerCase().contains(lower)
+                    || tenant.getAptNumber().toLowerCase().contains(lower));
+        }
+    }
+
+    @Benchmark
+    public Set<Integer> index() {
+        return index.search(query);
+    }
+}
@@ -0,0 +1,95 @@
+package org.core.benchmarks;
+
+import org.core.DatabaseServer;
+import org.core.Tenant;
+import org.core.TenantConflictException;
+import org.core.TenantRepository;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several clients working on one building at once, each benchmark thread being one client: edits
+ * read a tenant and save it with the version check, retrying on a conflict, and payments post to
+ * the ledger. {@code embedded} opens the file in this process as the application does by default;
+ * {@code server} goes through a {@link DatabaseServer} on a localhost port, the way separate CLI
+ * and GUI processes share a building. {@code hotTenants} limits edits to the first tenants, so a
+ * small value makes clients collide; the {@code conflicts} counter reports how often they did.
+ * Run with {@code -t} to change the number of clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SharedServerBenchmark {
+    private static final String DB = "bench_shared";
+    private static final int TENANTS = 10_000;
+    private static final YearMonth PERIOD = YearMonth.of(2024, 1);
+
+    @Param({"embedded", "server"})
+    public String mode;
+
+    @Param({"10", "10000"})
+    public int hotTenants;
+
+    private Path dataDir;
+    private Server server;
+    private TenantRepository repository;
+
+    /** Conflicts one client ran into, reported next to the throughput. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Conflicts {
+        public long conflicts;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        // Enough connections for every client, and no journal, so only the transport differs.
+        System.setProperty("pm.pool.maxSize", "64");
+        System.setProperty("pm.journal.enabled", "false");
+        if (mode.equals("server")) {
+            server = DatabaseServer.start(0);
+            System.setProperty("pm.server", "localhost:" + server.getPort());
+        }
+        BenchmarkData.seed(DB, TENANTS);
+        repository = TenantRepository.forBuilding(DB);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+        if (server != null) {
+            server.stop();
+        }
+        System.clearProperty("pm.server");
+    }
+
+    @Benchmark
+    public Tenant editRent(Conflicts counters) throws Exception {
+        int tenantId = 1 + ThreadLocalRandom.current().nextInt(hotTenants);
+        Tenant tenant = repository.findById(tenantId);
+        while (true) {
+            try {
+                return repository.updateField(tenantId, tenant.getVersion(), "rent", tenant.getRent() + 1);
+            } catch (TenantConflictException e) {
+                counters.conflicts++;
+                tenant = e.getCurrent();
+            }
+        }
+    }
+
+    @Benchmark
+    public Tenant recordPayment() throws Exception {
+        int tenantId = 1 + ThreadLocalRandom.current().nextInt(TENANTS);
+        return repository.recordPayment(tenantId, PERIOD, 100.0);
+    }
+}
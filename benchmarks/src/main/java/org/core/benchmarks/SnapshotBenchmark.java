@@ -0,0 +1,121 @@
+package org.core.benchmarks;
+
+import org.core.BuildingSnapshot;
+import org.core.ConnectionProvider;
+import org.core.CsvExporter;
+import org.core.CsvImporter;
+import org.core.DatabaseManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backing up and restoring a building: {@link BuildingSnapshot} against the CSV export and import.
+ * Restores go into a second building, emptied first where the whole building is loaded. Setup
+ * checks that both snapshots restore every column unchanged before anything is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+    private static final String DB = "bench_snapshot";
+    private static final String COPY = "bench_snapshot_copy";
+    private static final String COLUMNS = "id, name, apt_number, lease_start, lease_expired, security, rent, balance, accrued_through";
+
+    @Param({"1000", "10000", "100000"})
+    public int tenantCount;
+
+    private Path dataDir;
+    private Path csv;
+    private Path snapshot;
+    private Path compressed;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        BenchmarkData.seed(DB, tenantCount);
+        DatabaseManager.initializeDatabase(COPY);
+        csv = dataDir.resolve("tenants.csv");
+        snapshot = dataDir.resolve("tenants" + BuildingSnapshot.EXTENSION);
+        compressed = dataDir.resolve("compressed" + BuildingSnapshot.EXTENSION);
+        target = dataDir.resolve("target");
+        new CsvExporter().export(DB, csv);
+        new BuildingSnapshot().write(DB, snapshot);
+        new BuildingSnapshot().compress(true).write(DB, compressed);
+
+        for (Path file : new Path[]{snapshot, compressed}) {
+            new BuildingSnapshot().restore(COPY, file);
+            if (!dump(DB).equals(dump(COPY))) {
+                throw new IllegalStateException(file.getFileName() + " did not restore " + DB + " unchanged");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+    }
+
+    @Benchmark
+    public CsvExporter.ExportResult csvExport() throws Exception {
+        return new CsvExporter().export(DB, target);
+    }
+
+    @Benchmark
+    public BuildingSnapshot.SnapshotResult snapshotWrite() throws Exception {
+        return new BuildingSnapshot().write(DB, target);
+    }
+
+    @Benchmark
+    public BuildingSnapshot.SnapshotResult snapshotWriteCompressed() throws Exception {
+        return new BuildingSnapshot().compress(true).write(DB, target);
+    }
+
+    /** CSV can only be loaded into an empty building. */
+    @Benchmark
+    public CsvImporter.ImportResult csvRestore() throws Exception {
+        BenchmarkData.truncate(COPY);
+        return new CsvImporter(COPY).logFile(dataDir.resolve("import_log.txt")).importFile(csv);
+    }
+
+    /** The same work as {@link #csvRestore}: every row is inserted into an empty building. */
+    @Benchmark
+    public BuildingSnapshot.SnapshotResult snapshotRestoreEmpty() throws Exception {
+        BenchmarkData.truncate(COPY);
+        return new BuildingSnapshot().restore(COPY, snapshot);
+    }
+
+    /** Rolling back a day of edits: one tenant in a hundred changed since the snapshot. */
+    @Benchmark
+    public BuildingSnapshot.SnapshotResult snapshotRestoreEdited() throws Exception {
+        try (Connection conn = ConnectionProvider.getConnection(COPY);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE tenants SET rent = rent + 1 WHERE MOD(id, 100) = 0");
+        }
+        return new BuildingSnapshot().restore(COPY, compressed);
+    }
+
+    private static String dump(String dbName) throws Exception {
+        StringBuilder rows = new StringBuilder();
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT " + COLUMNS + " FROM tenants ORDER BY id")) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    rows.append(rs.getObject(i)).append('|');
+                }
+                rows.append('\n');
+            }
+        }
+        return rows.toString();
+    }
+}
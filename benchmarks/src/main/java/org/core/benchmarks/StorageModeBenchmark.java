@@ -0,0 +1,72 @@
+package org.core.benchmarks;
+
+import org.core.ConnectionProvider;
+import org.core.PaymentLedger;
+import org.core.Tenant;
+import org.core.TenantLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same reads and writes against a building file ({@code files}) and against its in-memory copy
+ * with write-behind to the file ({@code memory}). Memory-mode writes include the log fsync.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageModeBenchmark {
+    private static final String DB = "bench_storage";
+    private static final YearMonth PERIOD = YearMonth.of(2024, 1);
+
+    @Param({"files", "memory"})
+    public String storage;
+
+    @Param({"1000", "10000", "100000"})
+    public int tenantCount;
+
+    private Path dataDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkData.newDataDir();
+        System.setProperty("pm.storage", storage);
+        BenchmarkData.seed(DB, tenantCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkData.deleteDataDir(dataDir);
+        System.clearProperty("pm.storage");
+    }
+
+    @Benchmark
+    public Tenant findById() throws Exception {
+        int tenantId = 1 + ThreadLocalRandom.current().nextInt(tenantCount);
+        try (Connection conn = ConnectionProvider.getConnection(DB)) {
+            return TenantLoader.findById(conn, tenantId);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Tenant> loadAll() throws Exception {
+        return TenantLoader.loadAll(DB);
+    }
+
+    @Benchmark
+    public double recordPayment() throws Exception {
+        int tenantId = 1 + ThreadLocalRandom.current().nextInt(tenantCount);
+        try (Connection conn = ConnectionProvider.getConnection(DB)) {
+            return PaymentLedger.post(conn, tenantId, PERIOD, 100.0);
+        }
+    }
+}
@@ -1,29 +1,185 @@
 // BuildingSelector.java
 package gui;
 
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.geometry.Insets;
 import javafx.scene.Parent;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import java.util.stream.IntStream;
+import javafx.stage.DirectoryChooser;
+import org.core.BackgroundExecutor;
+import org.core.BuildingRegistry;
+import org.core.BuildingSnapshot;
+import org.core.CsvExporter;
+import org.core.LeaseExpirations;
+import org.core.PropertyManager;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
 
 public class BuildingSelector {
+    private final ObservableList<String> buildings = FXCollections.observableArrayList();
+
     public Parent getView() {
         VBox root = new VBox(15);
         root.setPadding(new Insets(30));
 
-        IntStream.rangeClosed(1, 5).forEach(i -> {
-            String dbName = "property_" + i;
-            Button button = new Button("Test Property " + i);
-            button.setPrefWidth(250);
-            button.setOnAction(e -> {
-                TenantManager manager = new TenantManager(dbName);
-                SceneSwitcher.switchTo(manager.getView(), "Property " + i);
-            });
-            root.getChildren().add(button);
+        TextField filterField = new TextField();
+        filterField.setPromptText("Filter buildings");
+        FilteredList<String> filtered = new FilteredList<>(buildings);
+        filterField.textProperty().addListener((obs, oldText, text) -> {
+            String query = text.trim().toLowerCase(Locale.ROOT);
+            filtered.setPredicate(query.isEmpty() ? null : name -> name.toLowerCase(Locale.ROOT).contains(query));
+        });
+
+        // Only the visible rows get cells, so hundreds of buildings cost no more than five.
+        ListView<String> buildingList = new ListView<>(filtered);
+        buildingList.setPrefSize(250, 180);
+        buildingList.setOnMouseClicked(e -> {
+            if (e.getClickCount() == 2) openBuilding(buildingList.getSelectionModel().getSelectedItem());
         });
+        buildingList.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) openBuilding(buildingList.getSelectionModel().getSelectedItem());
+        });
+
+        Button openBtn = new Button("Open Building");
+        openBtn.disableProperty().bind(Bindings.isNull(buildingList.getSelectionModel().selectedItemProperty()));
+        openBtn.setOnAction(e -> openBuilding(buildingList.getSelectionModel().getSelectedItem()));
+
+        Button addBtn = new Button("Add Building...");
+        addBtn.setOnAction(e -> addBuilding());
+
+        root.getChildren().addAll(filterField, buildingList, new HBox(10, openBtn, addBtn));
+        loadBuildings();
+
+        Button dashboardBtn = new Button("Portfolio Dashboard");
+        dashboardBtn.setPrefWidth(250);
+        dashboardBtn.setOnAction(e -> SceneSwitcher.switchTo(new PortfolioDashboard().getView(), "Portfolio Dashboard"));
+        root.getChildren().add(dashboardBtn);
+
+        Button reconcileBtn = new Button("Reconcile Bank Payments");
+        reconcileBtn.setPrefWidth(250);
+        reconcileBtn.setOnAction(e -> SceneSwitcher.switchTo(new ReconciliationView().getView(), "Bank Payment Reconciliation"));
+        root.getChildren().add(reconcileBtn);
+
+        Button expiringBtn = new Button("Upcoming Lease Expirations");
+        expiringBtn.setPrefWidth(250);
+        expiringBtn.setOnAction(e -> showExpirations());
+        root.getChildren().add(expiringBtn);
+
+        Button exportAllBtn = new Button("Export All Buildings to CSV");
+        exportAllBtn.setPrefWidth(250);
+        exportAllBtn.setOnAction(e -> exportAll());
+        root.getChildren().add(exportAllBtn);
+
+        Button backupAllBtn = new Button("Back Up All Buildings");
+        backupAllBtn.setPrefWidth(250);
+        backupAllBtn.setOnAction(e -> backUpAll());
+        root.getChildren().add(backupAllBtn);
 
         return root;
     }
-}
 
+    private void loadBuildings() {
+        BackgroundExecutor.supply(PropertyManager::getBuildings)
+                .thenAccept(names -> Platform.runLater(() -> buildings.setAll(names)));
+    }
+
+    private void openBuilding(String dbName) {
+        if (dbName == null) return;
+        TenantManager manager = new TenantManager(dbName);
+        SceneSwitcher.switchTo(manager.getView(), BuildingRegistry.displayName(dbName));
+    }
+
+    private void addBuilding() {
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Add Building");
+        dialog.setHeaderText("Letters, digits and '_', starting with a letter");
+        dialog.showAndWait().map(String::trim).filter(name -> !name.isEmpty()).ifPresent(name ->
+                BackgroundExecutor.run(() -> {
+                    try {
+                        BuildingRegistry.add(name);
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                }).whenComplete((ignored, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        new Alert(Alert.AlertType.ERROR, "Could not add building: " + cause.getMessage()).showAndWait();
+                        return;
+                    }
+                    loadBuildings();
+                })));
+    }
+
+    private void showExpirations() {
+        LeaseExpirations.load(PropertyManager.getBuildings())
+                .whenComplete((ignored, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        new Alert(Alert.AlertType.ERROR, "Could not load lease expirations: " + cause.getMessage()).showAndWait();
+                        return;
+                    }
+                    List<LeaseExpirations.Expiration> expirations = LeaseExpirations.expiringWithin(LeaseExpirations.NOTICE_DAYS);
+                    StringBuilder text = new StringBuilder();
+                    for (LeaseExpirations.Expiration expiration : expirations) {
+                        text.append(expiration).append('\n');
+                    }
+                    Alert alert = new Alert(Alert.AlertType.INFORMATION,
+                            expirations.isEmpty() ? "No leases expire soon." : text.toString());
+                    alert.setHeaderText(expirations.size() + " lease(s) expire within " + LeaseExpirations.NOTICE_DAYS + " days");
+                    alert.showAndWait();
+                }));
+    }
+
+    private void exportAll() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Export All Buildings");
+        File directory = chooser.showDialog(null);
+        if (directory == null) return;
+
+        new CsvExporter().exportAll(PropertyManager.getBuildings(), directory.toPath())
+                .whenComplete((results, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        new Alert(Alert.AlertType.ERROR, "Failed to export: " + cause.getMessage()).showAndWait();
+                    } else {
+                        StringBuilder summary = new StringBuilder("Export successful:\n");
+                        results.values().forEach(r -> summary.append(r).append('\n'));
+                        new Alert(Alert.AlertType.INFORMATION, summary.toString()).showAndWait();
+                    }
+                }));
+    }
+
+    private void backUpAll() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Back Up All Buildings");
+        File directory = chooser.showDialog(null);
+        if (directory == null) return;
+
+        new BuildingSnapshot().compress(true).writeAll(PropertyManager.getBuildings(), directory.toPath())
+                .whenComplete((results, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        new Alert(Alert.AlertType.ERROR, "Failed to back up: " + cause.getMessage()).showAndWait();
+                    } else {
+                        StringBuilder summary = new StringBuilder("Backup successful:\n");
+                        results.values().forEach(r -> summary.append(r).append('\n'));
+                        new Alert(Alert.AlertType.INFORMATION, summary.toString()).showAndWait();
+                    }
+                }));
+    }
+}
@@ -1,8 +1,15 @@
 package gui;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.core.BuildingRegistry;
+import org.core.ConnectionProvider;
+import org.core.LeaseExpirations;
+import org.core.PropertyManager;
+import org.core.RentAccrual;
 
 public class MainApp extends Application {
     @Override
@@ -15,6 +22,28 @@ public class MainApp extends Application {
         primaryStage.setTitle("Property Manager Sample");
         primaryStage.setScene(scene);
         primaryStage.show();
+
+        LeaseExpirations.addListener(expirations -> Platform.runLater(() -> {
+            StringBuilder text = new StringBuilder();
+            for (LeaseExpirations.Expiration expiration : expirations) {
+                text.append(expiration).append('\n');
+            }
+            Alert alert = new Alert(Alert.AlertType.INFORMATION, text.toString());
+            alert.setHeaderText(expirations.size() + " lease(s) expire within " + LeaseExpirations.NOTICE_DAYS + " days");
+            alert.show();
+        }));
+
+        // Buildings open on first use; only those with an old schema are upgraded ahead of time.
+        BuildingRegistry.upgradeOutdated().whenComplete((upgraded, error) -> {
+            if (error != null) error.printStackTrace();
+        });
+        RentAccrual.schedule(PropertyManager::getBuildings);
+        LeaseExpirations.scheduleDailyCheck(PropertyManager::getBuildings);
+    }
+
+    @Override
+    public void stop() {
+        ConnectionProvider.closeAll();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,78 @@
+// PortfolioDashboard.java
+package gui;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.Parent;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import org.core.PortfolioAggregator;
+import org.core.PortfolioAggregator.BuildingStats;
+import org.core.PropertyManager;
+
+import java.util.function.Function;
+
+public class PortfolioDashboard {
+    private final TableView<BuildingStats> statsTable = new TableView<>();
+    private final ObservableList<BuildingStats> statsData = FXCollections.observableArrayList();
+    private final Label status = new Label();
+
+    public Parent getView() {
+        VBox root = new VBox(10);
+        root.setPadding(new Insets(20));
+
+        Label title = new Label("Portfolio Dashboard");
+
+        statsTable.getColumns().add(column("Building", BuildingStats::getName));
+        statsTable.getColumns().add(column("Tenants", BuildingStats::getTenantCount));
+        statsTable.getColumns().add(column("Rent Roll", s -> money(s.getRentRoll())));
+        statsTable.getColumns().add(column("Arrears", s -> money(s.getArrears())));
+        statsTable.getColumns().add(column("In Arrears", BuildingStats::getTenantsInArrears));
+        statsTable.getColumns().add(column("Negative Balances", BuildingStats::getNegativeBalanceCount));
+        statsTable.getColumns().add(column("Expired Leases", BuildingStats::getExpiredLeaseCount));
+        statsTable.setItems(statsData);
+        statsTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+
+        Button refreshBtn = new Button("Refresh");
+        refreshBtn.setOnAction(e -> refresh());
+
+        Button backBtn = new Button("Back");
+        backBtn.setOnAction(e -> {
+            BuildingSelector selector = new BuildingSelector();
+            SceneSwitcher.switchTo(selector.getView(), "Property Manager");
+        });
+
+        root.getChildren().addAll(title, statsTable, status, new HBox(10, refreshBtn, backBtn));
+        refresh();
+        return root;
+    }
+
+    private void refresh() {
+        status.setText("Loading...");
+        PortfolioAggregator.summarize(PropertyManager.getBuildings()).whenComplete((summary, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                status.setText("Failed to load portfolio: " + cause.getMessage());
+                return;
+            }
+            statsData.setAll(summary.getBuildings());
+            statsData.add(summary.getTotal());
+            status.setText(String.format("Loaded %d buildings in %.1f ms", summary.getBuildings().size(),
+                    summary.getTotal().getElapsedNanos() / 1e6));
+        }));
+    }
+
+    private static <T> TableColumn<BuildingStats, T> column(String title, Function<BuildingStats, T> value) {
+        TableColumn<BuildingStats, T> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(cell.getValue())));
+        return column;
+    }
+
+    private static String money(double value) {
+        return String.format("$%,.2f", value);
+    }
+}
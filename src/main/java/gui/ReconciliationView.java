@@ -0,0 +1,162 @@
+// ReconciliationView.java
+package gui;
+
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.Parent;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import org.core.BackgroundExecutor;
+import org.core.PaymentReconciler;
+import org.core.PaymentReconciler.Candidate;
+import org.core.PaymentReconciler.ReviewItem;
+import org.core.PaymentReviewQueue;
+import org.core.PropertyManager;
+import org.core.Tenant;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+public class ReconciliationView {
+    private final TableView<ReviewItem> reviewTable = new TableView<>();
+    private final ObservableList<ReviewItem> reviewData = FXCollections.observableArrayList();
+    private final ListView<Candidate> candidateList = new ListView<>();
+    private final Label status = new Label();
+
+    public Parent getView() {
+        VBox root = new VBox(10);
+        root.setPadding(new Insets(20));
+
+        Label title = new Label("Bank Payment Reconciliation");
+
+        reviewTable.getColumns().add(column("Line", item -> item.getPayment().getLine()));
+        reviewTable.getColumns().add(column("Date", item -> item.getPayment().getDate()));
+        reviewTable.getColumns().add(column("Amount", item -> String.format("$%,.2f", item.getPayment().getAmount())));
+        reviewTable.getColumns().add(column("Payer", item -> item.getPayment().getPayer()));
+        reviewTable.getColumns().add(column("Memo", item -> item.getPayment().getMemo()));
+        reviewTable.getColumns().add(column("Reason", ReviewItem::getReason));
+        reviewTable.setItems(reviewData);
+        reviewTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        reviewTable.getSelectionModel().selectedItemProperty().addListener((obs, oldItem, item) ->
+                candidateList.getItems().setAll(item == null ? FXCollections.emptyObservableList() : item.getCandidates()));
+        candidateList.setPrefHeight(120);
+
+        Button loadBtn = new Button("Load Bank Statement...");
+        loadBtn.setOnAction(e -> loadStatement());
+
+        Button postBtn = new Button("Post to Selected Tenant");
+        postBtn.disableProperty().bind(Bindings.isNull(candidateList.getSelectionModel().selectedItemProperty()));
+        postBtn.setOnAction(e -> postSelected());
+
+        Button dismissBtn = new Button("Dismiss");
+        dismissBtn.disableProperty().bind(Bindings.isNull(reviewTable.getSelectionModel().selectedItemProperty()));
+        dismissBtn.setOnAction(e -> {
+            ReviewItem item = reviewTable.getSelectionModel().getSelectedItem();
+            try {
+                PaymentReviewQueue.dismiss(item);
+                reviewData.remove(item);
+                updateStatus();
+            } catch (SQLException ex) {
+                new Alert(Alert.AlertType.ERROR, "Could not dismiss payment: " + ex.getMessage()).show();
+            }
+        });
+
+        Button backBtn = new Button("Back");
+        backBtn.setOnAction(e -> {
+            BuildingSelector selector = new BuildingSelector();
+            SceneSwitcher.switchTo(selector.getView(), "Property Manager");
+        });
+
+        root.getChildren().addAll(title, new HBox(10, loadBtn, status), reviewTable, new Label("Possible tenants:"),
+                candidateList, new HBox(10, postBtn, dismissBtn, backBtn));
+        reloadQueue();
+        return root;
+    }
+
+    /** Reads the queue off the FX thread; it is shared with other runs of the application. */
+    private void reloadQueue() {
+        status.setText("Loading review queue...");
+        BackgroundExecutor.supply(() -> {
+            try {
+                return PaymentReviewQueue.items();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((items, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                status.setText("");
+                new Alert(Alert.AlertType.ERROR, "Could not load the review queue: " + cause.getMessage()).show();
+                return;
+            }
+            reviewData.setAll(items);
+            updateStatus();
+        }));
+    }
+
+    private void loadStatement() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Open Bank Statement");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV Files", "*.csv", "*.txt"),
+                new FileChooser.ExtensionFilter("All Files", "*.*"));
+        File file = fileChooser.showOpenDialog(null);
+        if (file == null) return;
+
+        status.setText("Reconciling " + file.getName() + "...");
+        new PaymentReconciler(PropertyManager.getBuildings(), false).reconcile(file.toPath())
+                .whenComplete((result, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        status.setText("");
+                        new Alert(Alert.AlertType.ERROR, "Reconciliation failed: " + cause.getMessage()).showAndWait();
+                        return;
+                    }
+                    reloadQueue();
+                    new Alert(Alert.AlertType.INFORMATION, result.toString()).showAndWait();
+                }));
+    }
+
+    private void postSelected() {
+        ReviewItem item = reviewTable.getSelectionModel().getSelectedItem();
+        Candidate tenant = candidateList.getSelectionModel().getSelectedItem();
+        if (item == null || tenant == null) return;
+
+        // Off the FX thread like the other writes; the row goes away now and comes back if posting fails.
+        int index = reviewData.indexOf(item);
+        reviewData.remove(item);
+        updateStatus();
+        BackgroundExecutor.supply(() -> {
+            try {
+                return PaymentReviewQueue.post(item, tenant);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((Tenant updated, Throwable error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                reviewData.add(Math.min(index, reviewData.size()), item);
+                updateStatus();
+                new Alert(Alert.AlertType.ERROR, "Could not post payment: " + cause.getMessage()).show();
+            }
+        }));
+    }
+
+    private void updateStatus() {
+        status.setText(reviewData.size() + " payment(s) waiting for review");
+    }
+
+    private static <T> TableColumn<ReviewItem, T> column(String title, Function<ReviewItem, T> value) {
+        TableColumn<ReviewItem, T> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(cell.getValue())));
+        return column;
+    }
+}
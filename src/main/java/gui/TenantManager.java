@@ -1,12 +1,28 @@
 // TenantManager.java
 package gui;
 
+import org.core.BuildingRegistry;
+import org.core.BuildingSnapshot;
+import org.core.CsvExporter;
+import org.core.CsvImporter;
+import org.core.LeaseDates;
 import org.core.Tenant;
+import org.core.TenantSearchIndex;
+import org.core.TenantConflictException;
+import org.core.TenantDelta;
+import org.core.TenantDiff;
+import org.core.TenantPager;
+import org.core.TenantPager.SortKey;
+import org.core.TenantPager.TenantPage;
+import org.core.TenantWriteQueue;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -15,56 +31,86 @@ import javafx.scene.input.Dragboard;
 import javafx.scene.input.TransferMode;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
+import javafx.util.Duration;
 
 import java.io.*;
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class TenantManager {
+    private static final int PAGE_SIZE = 200;
+    private static final Duration SEARCH_DEBOUNCE = Duration.millis(150);
+
     private final String dbName;
     private final TableView<Tenant> tenantTable = new TableView<>();
     private final ObservableList<Tenant> tenantData = FXCollections.observableArrayList();
-    private final FilteredList<Tenant> filteredData = new FilteredList<>(tenantData, p -> true);
+    private final ProgressBar importProgress = new ProgressBar(0);
+    private final Label importStatus = new Label();
+    private final HBox importPane = new HBox(10);
+    private CsvImporter activeImport;
+    private long refreshGeneration;
+    private long searchGeneration;
+    private TenantPager pager;
+    private TenantPage lastPage;
+    private boolean pageLoading;
+    /** {@link TenantDelta} watermark the rows shown are current as of; -1 until the first load. */
+    private long watermark = -1;
+    private final TenantWriteQueue writes;
+    /** Last version of each tenant known to be saved, kept while edits of it are still being written. */
+    private final Map<Integer, Tenant> confirmed = new HashMap<>();
+    /** Newest row shown for each tenant with edits still being written. */
+    private final Map<Integer, Tenant> latest = new HashMap<>();
+    private final Map<Tenant, CompletableFuture<Tenant>> pendingInserts = new IdentityHashMap<>();
 
     public TenantManager(String dbName) {
         this.dbName = dbName;
+        this.pager = new TenantPager(dbName, SortKey.BALANCE, true, "");
+        this.writes = TenantWriteQueue.forBuilding(dbName);
     }
 
     public Parent getView() {
         VBox root = new VBox(10);
         root.setPadding(new Insets(20));
 
-        Label title = new Label("Managing: Property " + dbName.replaceAll("[^0-9]", ""));
+        Label title = new Label("Managing: " + BuildingRegistry.displayName(dbName));
 
         TextField searchField = new TextField();
         searchField.setPromptText("Search by name or apartment...");
-        searchField.textProperty().addListener((obs, oldVal, newVal) -> {
-            filteredData.setPredicate(tenant -> {
-                if (newVal == null || newVal.isEmpty()) return true;
-                String lower = newVal.toLowerCase();
-                return tenant.getName().toLowerCase().contains(lower) ||
-                        tenant.getAptNumber().toLowerCase().contains(lower);
-            });
-        });
+        PauseTransition searchDebounce = new PauseTransition(SEARCH_DEBOUNCE);
+        searchDebounce.setOnFinished(e -> applySearch(searchField.getText()));
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> searchDebounce.playFromStart());
 
         TableColumn<Tenant, String> nameCol = new TableColumn<>("Name");
         nameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
+        nameCol.setUserData(SortKey.NAME);
 
         TableColumn<Tenant, String> aptCol = new TableColumn<>("Apt#");
         aptCol.setCellValueFactory(new PropertyValueFactory<>("aptNumber"));
+        aptCol.setUserData(SortKey.APT_NUMBER);
 
         TableColumn<Tenant, LocalDate> leaseStartCol = new TableColumn<>("Lease Start");
         leaseStartCol.setCellValueFactory(new PropertyValueFactory<>("leaseStart"));
+        leaseStartCol.setUserData(SortKey.LEASE_START);
 
         TableColumn<Tenant, LocalDate> leaseEndCol = new TableColumn<>("Lease Expired");
         leaseEndCol.setCellValueFactory(new PropertyValueFactory<>("leaseExpired"));
+        leaseEndCol.setUserData(SortKey.LEASE_EXPIRED);
 
         TableColumn<Tenant, Double> rentCol = new TableColumn<>("Rent");
         rentCol.setCellValueFactory(new PropertyValueFactory<>("rent"));
+        rentCol.setUserData(SortKey.RENT);
 
         TableColumn<Tenant, Double> balanceCol = new TableColumn<>("Balance");
         balanceCol.setCellValueFactory(new PropertyValueFactory<>("balance"));
+        balanceCol.setUserData(SortKey.BALANCE);
         balanceCol.setCellFactory(column -> new TableCell<Tenant, Double>() {
             @Override
             protected void updateItem(Double value, boolean empty) {
@@ -81,9 +127,14 @@ public class TenantManager {
             }
         });
 
-        tenantTable.getColumns().addAll(nameCol, aptCol, leaseStartCol, leaseEndCol, rentCol, balanceCol);
-        tenantTable.setItems(filteredData);
+        tenantTable.getColumns().addAll(List.of(nameCol, aptCol, leaseStartCol, leaseEndCol, rentCol, balanceCol));
+        tenantTable.setItems(tenantData);
         tenantTable.getSortOrder().add(balanceCol);
+        tenantTable.setSortPolicy(table -> {
+            applySortOrder();
+            return true;
+        });
+        installLazyLoading();
 
         Button refreshBtn = new Button("Refresh");
         refreshBtn.setOnAction(e -> refreshTenants());
@@ -102,6 +153,12 @@ public class TenantManager {
         Button exportBtn = new Button("Export to CSV");
         exportBtn.setOnAction(e -> exportToCSV());
 
+        Button backupBtn = new Button("Back Up Snapshot");
+        backupBtn.setOnAction(e -> backUpSnapshot());
+
+        Button restoreBtn = new Button("Restore Snapshot...");
+        restoreBtn.setOnAction(e -> restoreSnapshot());
+
         Label importLabel = new Label("Drag & Drop CSV File Here to Import Tenants");
         importLabel.setStyle("-fx-border-color: gray; -fx-border-style: dashed; -fx-padding: 10; -fx-alignment: center;");
         importLabel.setMaxWidth(Double.MAX_VALUE);
@@ -129,66 +186,221 @@ public class TenantManager {
             SceneSwitcher.switchTo(selector.getView(), "Property Manager");
         });
 
-        HBox controls = new HBox(10, refreshBtn, addBtn, editBtn, deleteBtn, exportBtn, backBtn);
-        root.getChildren().addAll(title, searchField, tenantTable, controls, importLabel);
+        Button cancelImportBtn = new Button("Cancel Import");
+        cancelImportBtn.setOnAction(e -> {
+            if (activeImport != null) {
+                activeImport.cancel();
+            }
+        });
+        importProgress.setPrefWidth(200);
+        importPane.getChildren().setAll(importProgress, importStatus, cancelImportBtn);
+        importPane.setVisible(false);
+        importPane.setManaged(false);
+
+        HBox controls = new HBox(10, refreshBtn, addBtn, editBtn, deleteBtn, exportBtn, backupBtn, restoreBtn, backBtn);
+        root.getChildren().addAll(title, searchField, tenantTable, controls, importLabel, importPane);
 
         refreshBtn.fire();
         return root;
     }
 
     private void importFromCSV(File file) {
-        try (BufferedReader br = new BufferedReader(new FileReader(file));
-             Connection conn = DriverManager.getConnection("jdbc:h2:./" + dbName, "sa", "");
-             PreparedStatement pstmt = conn.prepareStatement("INSERT INTO tenants (id, name, apt_number, lease_start, lease_expired, security, rent, balance) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
-             PrintWriter log = new PrintWriter(new FileWriter("import_log.txt", true))) {
-
-            String line = br.readLine();
-            while ((line = br.readLine()) != null) {
-                String[] tokens = line.split(",");
-                if (tokens.length >= 8) {
-                    pstmt.setInt(1, Integer.parseInt(tokens[0]));
-                    pstmt.setString(2, tokens[1]);
-                    pstmt.setString(3, tokens[2]);
-                    pstmt.setDate(4, Date.valueOf(tokens[3]));
-                    pstmt.setDate(5, Date.valueOf(tokens[4]));
-                    pstmt.setDouble(6, Double.parseDouble(tokens[5]));
-                    pstmt.setDouble(7, Double.parseDouble(tokens[6]));
-                    pstmt.setDouble(8, Double.parseDouble(tokens[7]));
-                    pstmt.executeUpdate();
-                    log.println("Imported tenant: " + String.join(", ", tokens));
+        if (activeImport != null) {
+            new Alert(Alert.AlertType.WARNING, "An import is already running.").showAndWait();
+            return;
+        }
+
+        CsvImporter importer = new CsvImporter(dbName)
+                .onProgress((rows, bytesRead, totalBytes) -> Platform.runLater(() -> {
+                    importProgress.setProgress(totalBytes == 0 ? 1 : (double) bytesRead / totalBytes);
+                    importStatus.setText("Imported " + rows + " tenants...");
+                }));
+        activeImport = importer;
+        importProgress.setProgress(0);
+        importStatus.setText("Importing " + file.getName() + "...");
+        importPane.setVisible(true);
+        importPane.setManaged(true);
+
+        importer.startAsync(file.toPath()).whenComplete((result, error) -> Platform.runLater(() -> {
+            activeImport = null;
+            importPane.setVisible(false);
+            importPane.setManaged(false);
+            refreshTenants();
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                new Alert(Alert.AlertType.ERROR, "CSV import failed: " + cause.getMessage()).showAndWait();
+            } else if (result.isCancelled()) {
+                new Alert(Alert.AlertType.INFORMATION, "CSV import cancelled. " + result).showAndWait();
+            } else {
+                new Alert(Alert.AlertType.INFORMATION, "CSV import completed: " + result).showAndWait();
+            }
+        }));
+    }
+
+    /**
+     * Asks the database only for the tenants changed since the last refresh. Nothing changed costs
+     * an index probe; deletions and edits that keep a row's place are applied to the table as they
+     * are, anything else re-reads the rows currently loaded.
+     */
+    private void refreshTenants() {
+        long generation = ++refreshGeneration;
+        if (watermark < 0) {
+            reloadLoadedRows(generation, TenantDelta.currentWatermarkAsync(dbName));
+            return;
+        }
+        TenantDelta.sinceAsync(dbName, watermark).whenComplete((delta, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            Platform.runLater(() -> {
+                if (generation != refreshGeneration) return; // a newer load is on its way
+                if (delta.isEmpty() || applyInPlace(delta)) {
+                    watermark = delta.getWatermark();
+                } else {
+                    reloadLoadedRows(generation, CompletableFuture.completedFuture(delta.getWatermark()));
                 }
+            });
+        });
+    }
+
+    /**
+     * Re-reads the rows currently loaded off the FX thread and applies only the differences to
+     * the table, so selection and scroll position survive a refresh.
+     */
+    private void reloadLoadedRows(long generation, CompletableFuture<Long> newWatermark) {
+        TenantPager current = pager;
+        int rows = Math.max(PAGE_SIZE, tenantData.size());
+        newWatermark.thenCompose(mark -> current.firstAsync(rows).thenAccept(page -> Platform.runLater(() -> {
+            if (generation != refreshGeneration) return;
+            Tenant selected = tenantTable.getSelectionModel().getSelectedItem();
+            TenantDiff.between(tenantData, page.getTenants()).applyTo(tenantData, tenantData::setAll);
+            reselect(selected);
+            lastPage = page;
+            pageLoading = false;
+            watermark = mark;
+        }))).exceptionally(error -> {
+            error.printStackTrace();
+            return null;
+        });
+    }
+
+    /**
+     * Applies a delta directly when no row has to appear or move: with no filter active, every
+     * changed tenant is already shown and keeps its sort position. Rows with an edit of our own
+     * still being saved are left to that edit.
+     */
+    private boolean applyInPlace(TenantDelta delta) {
+        if (!pager.getFilter().isEmpty()) return false;
+        Map<Integer, Integer> shown = new HashMap<>();
+        for (int i = 0; i < tenantData.size(); i++) {
+            shown.put(tenantData.get(i).getId(), i);
+        }
+        for (Tenant tenant : delta.getChanged()) {
+            Integer index = shown.get(tenant.getId());
+            if (index == null || !pager.keepsPosition(tenantData.get(index), tenant)) return false;
+        }
+
+        for (Tenant tenant : delta.getChanged()) {
+            int index = shown.get(tenant.getId());
+            if (!latest.containsKey(tenant.getId()) && !tenantData.get(index).hasSameValues(tenant)) {
+                tenantData.set(index, tenant);
             }
-            log.println("--- Import finished: " + java.time.LocalDateTime.now() + " ---\n");
-            refreshTenants();
-            new Alert(Alert.AlertType.INFORMATION, "CSV import completed successfully.").showAndWait();
-        } catch (Exception e) {
-            new Alert(Alert.AlertType.ERROR, "CSV import failed: " + e.getMessage()).showAndWait();
         }
+        if (!delta.getDeleted().isEmpty()) {
+            tenantData.removeIf(tenant -> delta.getDeleted().contains(tenant.getId()) && !pendingInserts.containsKey(tenant));
+        }
+        return true;
     }
 
-    private void refreshTenants() {
-        tenantData.clear();
-        try (Connection conn = DriverManager.getConnection("jdbc:h2:./" + dbName, "sa", "");
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT * FROM tenants")) {
-            while (rs.next()) {
-                Tenant tenant = new Tenant(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("apt_number"),
-                        rs.getDate("lease_start").toLocalDate(),
-                        rs.getDate("lease_expired").toLocalDate(),
-                        rs.getDouble("security"),
-                        rs.getDouble("rent"),
-                        rs.getDouble("balance")
-                );
-                tenantData.add(tenant);
+    /** Answers the search from the building's index and pages through the matching tenants. */
+    private void applySearch(String query) {
+        long generation = ++searchGeneration;
+        if (query == null || query.isBlank()) {
+            reloadWith(new TenantPager(dbName, pager.getSortKey(), pager.isAscending(), ""));
+            return;
+        }
+        TenantSearchIndex.forBuilding(dbName).ready().whenComplete((index, error) -> {
+            Set<Integer> matches = error == null ? index.search(query) : null;
+            if (error != null) {
+                error.printStackTrace();
+            }
+            Platform.runLater(() -> {
+                if (generation != searchGeneration) return; // the user kept typing
+                reloadWith(new TenantPager(dbName, pager.getSortKey(), pager.isAscending(), query, matches));
+            });
+        });
+    }
+
+    /** Starts over from the first page, e.g. after the sort order or the filter changed. */
+    private void reloadWith(TenantPager newPager) {
+        long generation = ++refreshGeneration;
+        pager = newPager;
+        pageLoading = true;
+        newPager.firstAsync(PAGE_SIZE).whenComplete((page, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+                return;
             }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
+            Platform.runLater(() -> {
+                if (generation != refreshGeneration) return;
+                tenantData.setAll(page.getTenants());
+                tenantTable.scrollTo(0);
+                lastPage = page;
+                pageLoading = false;
+            });
+        });
+    }
+
+    private void loadNextPage() {
+        if (pageLoading || lastPage == null || !lastPage.hasMore()) return;
+        long generation = refreshGeneration;
+        pageLoading = true;
+        pager.afterAsync(lastPage, PAGE_SIZE).whenComplete((page, error) -> Platform.runLater(() -> {
+            if (generation != refreshGeneration) return;
+            pageLoading = false;
+            if (error != null) {
+                error.printStackTrace();
+                return;
+            }
+            tenantData.addAll(page.getTenants());
+            lastPage = page;
+        }));
+    }
+
+    /** Pushes the table's sort order down into the pager instead of sorting in memory. */
+    private void applySortOrder() {
+        SortKey key = SortKey.ID;
+        boolean ascending = true;
+        if (!tenantTable.getSortOrder().isEmpty()) {
+            TableColumn<Tenant, ?> column = tenantTable.getSortOrder().get(0);
+            if (column.getUserData() instanceof SortKey) {
+                key = (SortKey) column.getUserData();
+                ascending = column.getSortType() == TableColumn.SortType.ASCENDING;
+            }
+        }
+        if (key != pager.getSortKey() || ascending != pager.isAscending()) {
+            pager = new TenantPager(dbName, key, ascending, pager.getFilter());
+            applySearch(pager.getFilter());
         }
     }
 
+    /** Fetches the next page once the user scrolls close to the end of what is loaded. */
+    private void installLazyLoading() {
+        tenantTable.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+            for (Node node : tenantTable.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                    ScrollBar bar = (ScrollBar) node;
+                    bar.valueProperty().addListener((o, oldValue, value) -> {
+                        if (value.doubleValue() >= bar.getMax() * 0.9) {
+                            loadNextPage();
+                        }
+                    });
+                }
+            }
+        });
+    }
+
     private void deleteSelectedTenant() {
         Tenant selected = tenantTable.getSelectionModel().getSelectedItem();
         if (selected == null) return;
@@ -200,41 +412,182 @@ public class TenantManager {
 
         Optional<ButtonType> result = alert.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            try (Connection conn = DriverManager.getConnection("jdbc:h2:./" + dbName, "sa", "");
-                 PreparedStatement stmt = conn.prepareStatement("DELETE FROM tenants WHERE id = ?")) {
-                stmt.setInt(1, selected.getId());
-                stmt.executeUpdate();
-                refreshTenants();
-            } catch (SQLException e) {
-                e.printStackTrace();
+            if (stillInserting(selected)) return;
+            int id = selected.getId();
+            // A refresh while the dialog was open may have replaced or removed the row.
+            int index = indexOfId(id);
+            if (index < 0) return;
+            Tenant restore = confirmed.getOrDefault(id, tenantData.get(index));
+            tenantData.remove(index);
+            latest.put(id, null);
+            writes.delete(id).whenComplete((ignored, error) -> Platform.runLater(() -> {
+                if (latest.get(id) == null) {
+                    latest.remove(id);
+                    confirmed.remove(id);
+                }
+                if (error != null) {
+                    tenantData.add(Math.min(index, tenantData.size()), restore);
+                    showWriteError("delete " + restore.getName(), error);
+                }
+            }));
+        }
+    }
+
+    /** Adds the new tenant to the table at once and swaps in the stored row, with its id, once saved. */
+    private void insertTenant(Tenant tenant) {
+        tenantData.add(0, tenant);
+        CompletableFuture<Tenant> saved = writes.insert(tenant);
+        pendingInserts.put(tenant, saved);
+        saved.whenComplete((stored, error) -> Platform.runLater(() -> {
+            pendingInserts.remove(tenant);
+            int index = indexOf(tenant);
+            if (error != null) {
+                if (index >= 0) tenantData.remove(index);
+                showWriteError("add " + tenant.getName(), error);
+            } else if (index >= 0) {
+                tenantData.set(index, stored);
             }
+        }));
+    }
+
+    /**
+     * Shows the edit at once and queues the write. If it fails, the row goes back to the last saved
+     * version; edits made in the meantime are superseded by the newest one.
+     */
+    private void updateTenant(Tenant previous, Tenant edited) {
+        int id = edited.getId();
+        confirmed.putIfAbsent(id, previous);
+        latest.put(id, edited);
+        replace(previous, edited);
+        writes.update(edited).whenComplete((stored, error) -> Platform.runLater(() -> {
+            if (latest.get(id) != edited) {
+                // A newer edit or a delete is on its way; it settles the row.
+                if (error == null && stored != null && confirmed.containsKey(id)) confirmed.put(id, stored);
+                return;
+            }
+            latest.remove(id);
+            Tenant restore = confirmed.remove(id);
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof TenantConflictException) {
+                // Someone else saved first: show their version rather than ours or the old one.
+                replace(edited, ((TenantConflictException) cause).getCurrent());
+                new Alert(Alert.AlertType.WARNING, cause.getMessage() + ". The table shows the current values; "
+                        + "edit the tenant again to apply your change.").show();
+            } else if (error != null) {
+                replace(edited, restore);
+                showWriteError("save " + edited.getName(), error);
+            } else if (stored != null) {
+                replace(edited, stored);
+            }
+        }));
+    }
+
+    private boolean stillInserting(Tenant tenant) {
+        if (!pendingInserts.containsKey(tenant)) return false;
+        new Alert(Alert.AlertType.INFORMATION, tenant.getName() + " is still being saved. Try again in a moment.").showAndWait();
+        return true;
+    }
+
+    private int indexOf(Tenant tenant) {
+        for (int i = 0; i < tenantData.size(); i++) {
+            if (tenantData.get(i) == tenant) return i;
         }
+        return -1;
+    }
+
+    /** Selects the row of the tenant that was selected before its row was replaced or moved. */
+    private void reselect(Tenant selected) {
+        if (selected == null) return;
+        int index = indexOfId(selected.getId());
+        if (index >= 0 && tenantTable.getSelectionModel().getSelectedIndex() != index) {
+            tenantTable.getSelectionModel().clearAndSelect(index);
+        }
+    }
+
+    private int indexOfId(int id) {
+        for (int i = 0; i < tenantData.size(); i++) {
+            if (tenantData.get(i).getId() == id) return i;
+        }
+        return -1;
+    }
+
+    private void replace(Tenant oldRow, Tenant newRow) {
+        int index = indexOf(oldRow);
+        if (index >= 0 && newRow != null) {
+            tenantData.set(index, newRow);
+        }
+    }
+
+    private void showWriteError(String action, Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        cause.printStackTrace();
+        new Alert(Alert.AlertType.ERROR, "Could not " + action + ": " + cause.getMessage()).show();
     }
 
     private void exportToCSV() {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Export Tenants to CSV");
         fileChooser.setInitialFileName(dbName + "_tenants.csv");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+                new FileChooser.ExtensionFilter("Compressed CSV Files", "*.csv.gz"));
         File file = fileChooser.showSaveDialog(null);
 
         if (file != null) {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
-                writer.println("ID,Name,Apt#,LeaseStart,LeaseExpired,Security,Rent,Balance");
-                for (Tenant t : tenantData) {
-                    writer.printf("%d,%s,%s,%s,%s,%.2f,%.2f,%.2f\n",
-                            t.getId(), t.getName(), t.getAptNumber(),
-                            t.getLeaseStart(), t.getLeaseExpired(),
-                            t.getSecurity(), t.getRent(), t.getBalance());
+            boolean gzip = file.getName().endsWith(".gz");
+            new CsvExporter().gzip(gzip).exportAsync(dbName, file.toPath()).whenComplete((result, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    new Alert(Alert.AlertType.ERROR, "Failed to export CSV: " + cause.getMessage()).showAndWait();
+                } else {
+                    new Alert(Alert.AlertType.INFORMATION, "Export successful: " + result).showAndWait();
                 }
-                new Alert(Alert.AlertType.INFORMATION, "Export successful: " + file.getAbsolutePath()).showAndWait();
-            } catch (Exception e) {
-                new Alert(Alert.AlertType.ERROR, "Failed to export CSV: " + e.getMessage()).showAndWait();
-            }
+            }));
         }
     }
 
+    private void backUpSnapshot() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Back Up Building");
+        fileChooser.setInitialFileName(dbName + BuildingSnapshot.EXTENSION);
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Building Snapshots", "*" + BuildingSnapshot.EXTENSION));
+        File file = fileChooser.showSaveDialog(null);
+        if (file == null) return;
+
+        new BuildingSnapshot().compress(true).writeAsync(dbName, file.toPath()).whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                new Alert(Alert.AlertType.ERROR, "Failed to back up: " + cause.getMessage()).showAndWait();
+            } else {
+                new Alert(Alert.AlertType.INFORMATION, "Backup successful: " + result).showAndWait();
+            }
+        }));
+    }
+
+    private void restoreSnapshot() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Restore Building");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Building Snapshots", "*" + BuildingSnapshot.EXTENSION));
+        File file = fileChooser.showOpenDialog(null);
+        if (file == null) return;
+
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                "Replace every tenant and payment of " + dbName + " with the contents of " + file.getName() + "?");
+        if (confirm.showAndWait().filter(ButtonType.OK::equals).isEmpty()) return;
+
+        new BuildingSnapshot().restoreAsync(dbName, file.toPath()).whenComplete((result, error) -> Platform.runLater(() -> {
+            refreshTenants();
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                new Alert(Alert.AlertType.ERROR, "Restore failed: " + cause.getMessage()).showAndWait();
+            } else {
+                new Alert(Alert.AlertType.INFORMATION, "Restore successful: " + result).showAndWait();
+            }
+        }));
+    }
+
     private void showTenantFormDialog(Tenant tenant) {
+        if (tenant != null && stillInserting(tenant)) return;
         Dialog<ButtonType> dialog = new Dialog<>();
         dialog.setTitle(tenant == null ? "Add Tenant" : "Edit Tenant");
 
@@ -253,8 +606,8 @@ public class TenantManager {
         if (tenant != null) {
             nameField.setText(tenant.getName());
             aptField.setText(tenant.getAptNumber());
-            leaseStart.setText(formatDateForInput(tenant.getLeaseStart()));
-            leaseEnd.setText(formatDateForInput(tenant.getLeaseExpired()));
+            leaseStart.setText(LeaseDates.formatForInput(tenant.getLeaseStart()));
+            leaseEnd.setText(LeaseDates.formatForInput(tenant.getLeaseExpired()));
             securityField.setText(String.valueOf(tenant.getSecurity()));
             rentField.setText(String.valueOf(tenant.getRent()));
         }
@@ -271,32 +624,24 @@ public class TenantManager {
 
         dialog.setResultConverter(dialogButton -> {
             if (dialogButton == ButtonType.OK) {
-                try (Connection conn = DriverManager.getConnection("jdbc:h2:./" + dbName, "sa", "");
-                     PreparedStatement pstmt = tenant == null ?
-                             conn.prepareStatement("INSERT INTO tenants (name, apt_number, lease_start, lease_expired, security, rent, balance) VALUES (?, ?, ?, ?, ?, ?, ?)") :
-                             conn.prepareStatement("UPDATE tenants SET name=?, apt_number=?, lease_start=?, lease_expired=?, security=?, rent=? WHERE id=?")
-                ) {
-                    String formattedStart = formatDate(leaseStart.getText());
-                    String formattedEnd = formatDate(leaseEnd.getText());
+                try {
+                    String formattedStart = LeaseDates.convertDateFormat(leaseStart.getText());
+                    String formattedEnd = LeaseDates.convertDateFormat(leaseEnd.getText());
                     double rent = Double.parseDouble(rentField.getText());
+                    double balance = tenant == null
+                            ? rent * LeaseDates.getUnpaidMonths(formattedStart)
+                            : tenant.getBalance();
 
-                    pstmt.setString(1, nameField.getText());
-                    pstmt.setString(2, aptField.getText());
-                    pstmt.setDate(3, Date.valueOf(formattedStart));
-                    pstmt.setDate(4, Date.valueOf(formattedEnd));
-                    pstmt.setDouble(5, Double.parseDouble(securityField.getText()));
-                    pstmt.setDouble(6, rent);
-
+                    Tenant edited = new Tenant(tenant == null ? 0 : tenant.getId(), nameField.getText(), aptField.getText(),
+                            Date.valueOf(formattedStart).toLocalDate(), Date.valueOf(formattedEnd).toLocalDate(),
+                            Double.parseDouble(securityField.getText()), rent, balance);
                     if (tenant == null) {
-                        int months = getUnpaidMonths(formattedStart);
-                        double balance = rent * months;
-                        pstmt.setDouble(7, balance);
+                        insertTenant(edited);
                     } else {
-                        pstmt.setInt(7, tenant.getId());
+                        // Saved only if nobody else changed the tenant since it was loaded.
+                        edited.setVersion(tenant.getVersion());
+                        updateTenant(tenant, edited);
                     }
-
-                    pstmt.executeUpdate();
-                    refreshTenants();
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
@@ -306,23 +651,4 @@ public class TenantManager {
 
         dialog.showAndWait();
     }
-
-    private String formatDate(String mmddyyyy) {
-        String[] parts = mmddyyyy.split("-");
-        return parts[2] + "-" + parts[0] + "-" + parts[1];
-    }
-
-    private String formatDateForInput(LocalDate date) {
-        return String.format("%02d-%02d-%d", date.getMonthValue(), date.getDayOfMonth(), date.getYear());
-    }
-
-    private int getUnpaidMonths(String startDate) {
-        String[] parts = startDate.split("-");
-        int year = Integer.parseInt(parts[0]);
-        int month = Integer.parseInt(parts[1]);
-        LocalDate today = LocalDate.now();
-        return Math.max(0, (today.getYear() - year) * 12 + (today.getMonthValue() - month));
-    }
 }
-
-
@@ -0,0 +1,91 @@
+package org.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Shared pool of daemon threads for database work that must not run on the caller's
+ * thread, such as the JavaFX Application Thread.
+ */
+public final class BackgroundExecutor {
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Integer.getInteger("pm.background.threads", Math.max(8, Runtime.getRuntime().availableProcessors())),
+            new DaemonThreadFactory("pm-background"));
+
+    private BackgroundExecutor() {
+    }
+
+    public static ExecutorService executor() {
+        return EXECUTOR;
+    }
+
+    /** Work done against one building by {@link #forEachBuilding}. */
+    public interface BuildingTask<T> {
+        T run(String dbName) throws Exception;
+    }
+
+    /**
+     * Runs {@code task} for every building at the same time and collects the results in building
+     * order. The returned future fails if any building fails, once all of them have finished.
+     */
+    public static <T> CompletableFuture<Map<String, T>> forEachBuilding(List<String> buildings, BuildingTask<T> task) {
+        return forEachBuilding(buildings, task, EXECUTOR);
+    }
+
+    /** {@link #forEachBuilding(List, BuildingTask)} on threads of {@code executor} instead of the shared pool. */
+    public static <T> CompletableFuture<Map<String, T>> forEachBuilding(List<String> buildings, BuildingTask<T> task, Executor executor) {
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (String dbName : buildings) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.run(dbName);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<String, T> results = new LinkedHashMap<>();
+            for (int i = 0; i < buildings.size(); i++) {
+                results.put(buildings.get(i), futures.get(i).join());
+            }
+            return results;
+        });
+    }
+
+    public static <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, EXECUTOR);
+    }
+
+    public static CompletableFuture<Void> run(Runnable task) {
+        return CompletableFuture.runAsync(task, EXECUTOR);
+    }
+
+    static final class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
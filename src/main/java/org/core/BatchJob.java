@@ -0,0 +1,461 @@
+package org.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Runs a file of tenant commands without prompting:
+ * <pre>
+ * java -cp ... org.core.BatchJob commands.txt [--dry-run] [--continue-on-error]
+ * </pre>
+ * One command per line, comma separated; blank lines and lines starting with {@code #} are
+ * skipped. Dates are {@code YYYY-MM-DD} and periods {@code YYYY-MM}:
+ * <pre>
+ * property_1,payment,12,2026-09,1500.00
+ * property_1,rent,12,1650
+ * property_2,set,7,name,Jane Doe
+ * property_2,set,7,lease_expired,2027-12-31
+ * property_3,delete,9
+ * </pre>
+ * The whole file is checked before anything is written. Each building's commands then run in
+ * file order inside one transaction, and all buildings run at the same time on the
+ * {@link BackgroundExecutor}. By default the first failing command rolls its building back;
+ * with {@code --continue-on-error} only that command is undone and the rest are committed.
+ */
+public class BatchJob {
+
+    public enum Kind {
+        PAYMENT, RENT, SET, DELETE;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    /** One parsed line of a command file. */
+    public static final class Command {
+        private final int line;
+        private final String dbName;
+        private final Kind kind;
+        private final int tenantId;
+        private final YearMonth period;
+        private final double amount;
+        private final String column;
+        private final Object value;
+
+        private Command(int line, String dbName, Kind kind, int tenantId, YearMonth period, double amount,
+                        String column, Object value) {
+            this.line = line;
+            this.dbName = dbName;
+            this.kind = kind;
+            this.tenantId = tenantId;
+            this.period = period;
+            this.amount = amount;
+            this.column = column;
+            this.value = value;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getDbName() {
+            return dbName;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getTenantId() {
+            return tenantId;
+        }
+    }
+
+    private final List<Command> commands;
+    private final boolean dryRun;
+    private final boolean continueOnError;
+
+    public BatchJob(List<Command> commands, boolean dryRun, boolean continueOnError) {
+        this.commands = new ArrayList<>(commands);
+        this.dryRun = dryRun;
+        this.continueOnError = continueOnError;
+    }
+
+    public static void main(String[] args) {
+        Path file = null;
+        boolean dryRun = false, continueOnError = false;
+        for (String arg : args) {
+            if (arg.equals("--dry-run")) {
+                dryRun = true;
+            } else if (arg.equals("--continue-on-error")) {
+                continueOnError = true;
+            } else {
+                file = Paths.get(arg);
+            }
+        }
+        if (file == null) {
+            System.out.println("Usage: org.core.BatchJob <command file> [--dry-run] [--continue-on-error]");
+            System.exit(2);
+        }
+
+        boolean ok = false;
+        try {
+            List<String> buildings = PropertyManager.getBuildings();
+            List<Command> commands = parse(file, buildings);
+            Report report = new BatchJob(commands, dryRun, continueOnError).run().join();
+            System.out.println(report);
+            ok = report.getFailed() == 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Batch not run: " + e.getMessage());
+        } catch (CompletionException e) {
+            System.out.println("Batch failed: " + e.getCause().getMessage());
+            e.printStackTrace();
+        } finally {
+            ConnectionProvider.closeAll();
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Reads and checks a command file. Throws {@link IllegalArgumentException} naming the first bad
+     * line, so a broken file writes nothing.
+     */
+    public static List<Command> parse(Path file, List<String> buildings) throws IOException {
+        List<Command> commands = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String text;
+            int line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                text = text.trim();
+                if (text.isEmpty() || text.startsWith("#")) continue;
+                try {
+                    commands.add(parseLine(line, text, buildings));
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    throw new IllegalArgumentException("Line " + line + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return commands;
+    }
+
+    static Command parseLine(int line, String text, List<String> buildings) {
+        String[] head = text.split(",", 4);
+        if (head.length < 3) {
+            throw new IllegalArgumentException("expected building,command,tenant id,...");
+        }
+        String dbName = head[0].trim();
+        if (!buildings.contains(dbName)) {
+            throw new IllegalArgumentException("unknown building " + dbName);
+        }
+        Kind kind;
+        try {
+            kind = Kind.valueOf(head[1].trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown command " + head[1].trim());
+        }
+        int tenantId = Integer.parseInt(head[2].trim());
+        String rest = head.length > 3 ? head[3] : "";
+
+        switch (kind) {
+            case PAYMENT: {
+                String[] args = arguments(rest, 2, "period,amount");
+                return new Command(line, dbName, kind, tenantId, YearMonth.parse(args[0].trim()),
+                        Double.parseDouble(args[1].trim()), null, null);
+            }
+            case RENT: {
+                String[] args = arguments(rest, 1, "rent");
+                return new Command(line, dbName, kind, tenantId, null, Double.parseDouble(args[0].trim()), null, null);
+            }
+            case SET: {
+                String[] args = arguments(rest, 2, "column,value");
+                String column = args[0].trim();
+                if (!TenantRepository.EDITABLE_COLUMNS.contains(column)) {
+                    throw new IllegalArgumentException("not an editable column: " + column);
+                }
+                return new Command(line, dbName, kind, tenantId, null, 0, column, toValue(column, args[1].trim()));
+            }
+            default:
+                if (!rest.trim().isEmpty()) {
+                    throw new IllegalArgumentException("delete takes no arguments");
+                }
+                return new Command(line, dbName, kind, tenantId, null, 0, null, null);
+        }
+    }
+
+    private static String[] arguments(String rest, int count, String expected) {
+        String[] args = rest.split(",", count);
+        if (args.length != count || args[count - 1].trim().isEmpty()) {
+            throw new IllegalArgumentException("expected " + expected);
+        }
+        return args;
+    }
+
+    private static Object toValue(String column, String value) {
+        switch (column) {
+            case "lease_start":
+            case "lease_expired":
+                return Date.valueOf(LocalDate.parse(value));
+            case "security":
+            case "rent":
+                return Double.parseDouble(value);
+            default:
+                return value;
+        }
+    }
+
+    public CompletableFuture<Report> run() {
+        Map<String, List<Command>> byBuilding = new LinkedHashMap<>();
+        for (Command command : commands) {
+            byBuilding.computeIfAbsent(command.dbName, k -> new ArrayList<>()).add(command);
+        }
+        long started = System.nanoTime();
+        return BackgroundExecutor.forEachBuilding(new ArrayList<>(byBuilding.keySet()),
+                        dbName -> runBuilding(dbName, byBuilding.get(dbName)))
+                .thenApply(results -> new Report(new ArrayList<>(results.values()), dryRun, System.nanoTime() - started));
+    }
+
+    private BuildingResult runBuilding(String dbName, List<Command> commands) throws SQLException {
+        BuildingResult result = new BuildingResult(dbName);
+        List<ChangeJournal.Entry> changes = new ArrayList<>();
+        long started = System.nanoTime();
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.BATCH);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             PaymentLedger.Batch payments = new PaymentLedger.Batch(conn);
+             PreparedStatement rent = conn.prepareStatement("UPDATE tenants SET rent = ? WHERE id = ?");
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM tenants WHERE id = ?")) {
+            Map<String, PreparedStatement> setters = new LinkedHashMap<>();
+            conn.setAutoCommit(false);
+            try {
+                for (Command command : commands) {
+                    long commandStarted = System.nanoTime();
+                    Savepoint savepoint = continueOnError ? conn.setSavepoint() : null;
+                    try {
+                        execute(conn, command, payments, rent, delete, setters);
+                        changes.add(journalEntry(command));
+                        result.succeeded++;
+                    } catch (SQLException e) {
+                        result.failures.add(new Failure(command, e.getMessage()));
+                        if (!continueOnError) {
+                            conn.rollback();
+                            result.rolledBack = true;
+                            break;
+                        }
+                        conn.rollback(savepoint);
+                    } finally {
+                        result.latency(command.kind).record(System.nanoTime() - commandStarted);
+                    }
+                }
+                if (dryRun && !result.rolledBack) {
+                    conn.rollback();
+                } else if (!result.rolledBack) {
+                    ChangeJournal.commit(dbName, conn, changes);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                for (PreparedStatement stmt : setters.values()) {
+                    stmt.close();
+                }
+                conn.setAutoCommit(true);
+            }
+            sample.done(result.isCommitted(dryRun) ? result.succeeded : 0);
+        }
+        result.elapsedNanos = System.nanoTime() - started;
+        if (result.isCommitted(dryRun) && result.succeeded > 0) {
+            TenantEvents.invalidated(dbName);
+        }
+        return result;
+    }
+
+    private static void execute(Connection conn, Command command, PaymentLedger.Batch payments, PreparedStatement rent,
+                                PreparedStatement delete, Map<String, PreparedStatement> setters) throws SQLException {
+        PreparedStatement stmt;
+        switch (command.kind) {
+            case PAYMENT:
+                payments.post(command.tenantId, command.period, command.amount);
+                return;
+            case RENT:
+                stmt = rent;
+                stmt.setDouble(1, command.amount);
+                stmt.setInt(2, command.tenantId);
+                break;
+            case SET:
+                stmt = setters.get(command.column);
+                if (stmt == null) {
+                    stmt = conn.prepareStatement("UPDATE tenants SET " + command.column + " = ? WHERE id = ?");
+                    setters.put(command.column, stmt);
+                }
+                stmt.setObject(1, command.value);
+                stmt.setInt(2, command.tenantId);
+                break;
+            default:
+                stmt = delete;
+                stmt.setInt(1, command.tenantId);
+        }
+        if (stmt.executeUpdate() == 0) {
+            throw new SQLException("Tenant " + command.tenantId + " not found");
+        }
+    }
+
+    private static ChangeJournal.Entry journalEntry(Command command) {
+        switch (command.kind) {
+            case PAYMENT:
+                return ChangeJournal.Entry.payment(command.dbName, command.tenantId, command.period, command.amount);
+            case RENT:
+                return ChangeJournal.Entry.updated(command.dbName, command.tenantId, "rent", command.amount);
+            case SET:
+                return ChangeJournal.Entry.updated(command.dbName, command.tenantId, command.column, command.value);
+            default:
+                return ChangeJournal.Entry.deleted(command.dbName, command.tenantId);
+        }
+    }
+
+    /** A command that did not go through. */
+    public static final class Failure {
+        private final Command command;
+        private final String message;
+
+        Failure(Command command, String message) {
+            this.command = command;
+            this.message = message;
+        }
+
+        public Command getCommand() {
+            return command;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + command.line + " (" + command.kind.label() + " tenant " + command.tenantId + "): " + message;
+        }
+    }
+
+    public static final class BuildingResult {
+        private final String dbName;
+        private final List<Failure> failures = new ArrayList<>();
+        private final Map<Kind, LatencyHistogram> latencies = new EnumMap<>(Kind.class);
+        private int succeeded;
+        private boolean rolledBack;
+        private long elapsedNanos;
+
+        BuildingResult(String dbName) {
+            this.dbName = dbName;
+        }
+
+        private LatencyHistogram latency(Kind kind) {
+            return latencies.computeIfAbsent(kind, k -> new LatencyHistogram());
+        }
+
+        private boolean isCommitted(boolean dryRun) {
+            return !dryRun && !rolledBack;
+        }
+
+        public String getDbName() {
+            return dbName;
+        }
+
+        /** Commands that ran without error; none of them are kept if the building was rolled back. */
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public List<Failure> getFailures() {
+            return failures;
+        }
+
+        /** True if a failure undid the building's whole transaction. */
+        public boolean isRolledBack() {
+            return rolledBack;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    public static final class Report {
+        private final List<BuildingResult> buildings;
+        private final boolean dryRun;
+        private final long elapsedNanos;
+
+        Report(List<BuildingResult> buildings, boolean dryRun, long elapsedNanos) {
+            this.buildings = buildings;
+            this.dryRun = dryRun;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<BuildingResult> getBuildings() {
+            return buildings;
+        }
+
+        public int getSucceeded() {
+            int total = 0;
+            for (BuildingResult result : buildings) total += result.succeeded;
+            return total;
+        }
+
+        public int getFailed() {
+            int total = 0;
+            for (BuildingResult result : buildings) total += result.failures.size();
+            return total;
+        }
+
+        /** Commands per second of wall-clock time across all buildings. */
+        public double getCommandsPerSecond() {
+            return elapsedNanos == 0 ? 0 : (getSucceeded() + getFailed()) / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(dryRun ? "Batch dry run (nothing written):\n" : "Batch results:\n");
+            Map<Kind, LatencyHistogram> latencies = new EnumMap<>(Kind.class);
+            for (BuildingResult result : buildings) {
+                String outcome = result.rolledBack ? "ROLLED BACK" : dryRun ? "not committed" : "committed";
+                sb.append(String.format("  %s: %d ok, %d failed, %s in %.1f ms%n", result.dbName, result.succeeded,
+                        result.failures.size(), outcome, result.elapsedNanos / 1e6));
+                for (Failure failure : result.failures) {
+                    sb.append("    ").append(failure).append('\n');
+                }
+                for (Map.Entry<Kind, LatencyHistogram> entry : result.latencies.entrySet()) {
+                    latencies.computeIfAbsent(entry.getKey(), k -> new LatencyHistogram()).merge(entry.getValue());
+                }
+            }
+            sb.append("  Latency per command (µs):\n");
+            for (Map.Entry<Kind, LatencyHistogram> entry : latencies.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                sb.append(String.format("    %-8s n=%-7d p50=%-6d p95=%-6d p99=%-6d max=%d%n", entry.getKey().label(),
+                        histogram.count(), histogram.percentile(50), histogram.percentile(95),
+                        histogram.percentile(99), histogram.max()));
+            }
+            sb.append(String.format("  Total: %d ok, %d failed in %.1f ms (%.0f commands/s)",
+                    getSucceeded(), getFailed(), elapsedNanos / 1e6, getCommandsPerSecond()));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The buildings of the portfolio and when their databases get opened.
+ * <p>
+ * Buildings are rows of a {@code buildings} table: in file storage a small database of its own
+ * ({@code registry}, next to the building files, seeded with {@code property_1} .. {@code property_5}),
+ * in consolidated storage the shared database's table. Listing the buildings reads only that table,
+ * so startup costs the same however many buildings there are. A building's database is opened the
+ * first time a connection to it is asked for, and its schema is created or upgraded then unless the
+ * registry records it as current; {@link #upgradeOutdated()} upgrades the others in parallel ahead of
+ * time. {@link ConnectionProvider} closes the least recently used idle buildings beyond
+ * {@code pm.pool.maxOpenBuildings}.
+ */
+public final class BuildingRegistry {
+    /** Name of the registry database in file storage. */
+    public static final String DATABASE = "registry";
+    private static final List<String> DEFAULTS = List.of("property_1", "property_2", "property_3", "property_4", "property_5");
+
+    /** Buildings whose schema is known to be current in this process. */
+    private static final Set<String> READY = ConcurrentHashMap.newKeySet();
+    /** Buildings this thread is initializing, whose own connections must not start another initialization. */
+    private static final ThreadLocal<Set<String>> INITIALIZING = ThreadLocal.withInitial(HashSet::new);
+    private static final Map<String, Object> LOCKS = new ConcurrentHashMap<>();
+    private static final List<ReadyListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static volatile boolean created;
+
+    /**
+     * Told once per process about each building, when it is first used and its schema is ready. Runs
+     * on the thread that asked for the connection, before it gets it.
+     */
+    public interface ReadyListener {
+        void buildingReady(String dbName);
+    }
+
+    private BuildingRegistry() {
+    }
+
+    public static void addReadyListener(ReadyListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeReadyListener(ReadyListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /** How a building is shown: {@code property_3} becomes "Property 3", {@code oak_street} "Oak street". */
+    public static String displayName(String name) {
+        String spaced = name.replace('_', ' ').trim();
+        if (spaced.isEmpty()) return name;
+        return Character.toUpperCase(spaced.charAt(0)) + spaced.substring(1);
+    }
+
+    /** Every building, in the order they were added. */
+    public static List<String> names() throws SQLException {
+        return new ArrayList<>(schemaVersions().keySet());
+    }
+
+    /**
+     * Registers a new building, or does nothing if it exists, and creates its database. Names start
+     * with a letter and contain only letters, digits and '_'.
+     */
+    public static void add(String name) throws SQLException {
+        if (ConsolidatedStorage.isEnabled()) {
+            ConsolidatedStorage.addBuilding(name);
+            READY.add(name);
+            return;
+        }
+        if (!ConsolidatedStorage.BUILDING_NAME.matcher(name).matches() || name.equalsIgnoreCase(DATABASE)) {
+            throw new IllegalArgumentException("Building names must start with a letter and contain only letters, digits and '_': " + name);
+        }
+        createTable();
+        try (Connection conn = ConnectionProvider.getConnection(DATABASE);
+             PreparedStatement stmt = conn.prepareStatement("MERGE INTO buildings (name) KEY (name) VALUES (?)")) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+        }
+        ensureReady(name);
+    }
+
+    /**
+     * Makes sure the building's schema exists and is current before its first connection is handed
+     * out. Called by {@link ConnectionProvider}; cheap once a building is ready.
+     */
+    static void ensureReady(String dbName) throws SQLException {
+        if (READY.contains(dbName) || dbName.equals(DATABASE) || dbName.equals(ConsolidatedStorage.SHARED_SCHEMA)) return;
+        Set<String> initializing = INITIALIZING.get();
+        if (!initializing.add(dbName)) return;
+        try {
+            synchronized (LOCKS.computeIfAbsent(dbName, name -> new Object())) {
+                if (READY.contains(dbName)) return;
+                // Views and memory copies are set up by every process again, so only files record a version.
+                Integer recorded = ConsolidatedStorage.isEnabled() || MemoryStorage.isEnabled() ? null : recordedSchemaVersion(dbName);
+                if (recorded == null || recorded < DatabaseManager.SCHEMA_VERSION) {
+                    DatabaseManager.initialize(dbName);
+                    if (recorded != null) recordSchemaVersion(dbName);
+                }
+                READY.add(dbName);
+            }
+            for (ReadyListener listener : LISTENERS) {
+                listener.buildingReady(dbName);
+            }
+        } finally {
+            initializing.remove(dbName);
+        }
+    }
+
+    /**
+     * Upgrades, all at once on the {@link BackgroundExecutor}, the buildings whose recorded schema is
+     * older than this version's. Completes with their names.
+     */
+    public static CompletableFuture<List<String>> upgradeOutdated() {
+        return BackgroundExecutor.supply(() -> {
+            List<String> outdated = new ArrayList<>();
+            // Views and memory copies are set up when a building opens anyway.
+            if (ConsolidatedStorage.isEnabled() || MemoryStorage.isEnabled()) return outdated;
+            try {
+                for (Map.Entry<String, Integer> building : schemaVersions().entrySet()) {
+                    if (building.getValue() < DatabaseManager.SCHEMA_VERSION) outdated.add(building.getKey());
+                }
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+            return outdated;
+        }).thenCompose(outdated -> BackgroundExecutor.forEachBuilding(outdated, dbName -> {
+            ensureReady(dbName);
+            return dbName;
+        })).thenApply(results -> new ArrayList<>(results.keySet()));
+    }
+
+    /** Building names with the schema version recorded for them (0 if never opened), in the order added. */
+    private static Map<String, Integer> schemaVersions() throws SQLException {
+        Map<String, Integer> buildings = new LinkedHashMap<>();
+        if (ConsolidatedStorage.isEnabled()) {
+            for (String name : ConsolidatedStorage.buildings(DEFAULTS)) {
+                buildings.put(name, DatabaseManager.SCHEMA_VERSION);
+            }
+            return buildings;
+        }
+        createTable();
+        try (Connection conn = ConnectionProvider.getConnection(DATABASE);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name, schema_version FROM buildings ORDER BY id")) {
+            while (rs.next()) {
+                buildings.put(rs.getString(1), rs.getInt(2));
+            }
+        }
+        return buildings;
+    }
+
+    /** The schema version the registry has for a building, or null for a database it does not list. */
+    private static Integer recordedSchemaVersion(String dbName) throws SQLException {
+        createTable();
+        try (Connection conn = ConnectionProvider.getConnection(DATABASE);
+             PreparedStatement stmt = conn.prepareStatement("SELECT schema_version FROM buildings WHERE name = ?")) {
+            stmt.setString(1, dbName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    private static void recordSchemaVersion(String dbName) throws SQLException {
+        try (Connection conn = ConnectionProvider.getConnection(DATABASE);
+             PreparedStatement stmt = conn.prepareStatement("UPDATE buildings SET schema_version = ? WHERE name = ?")) {
+            stmt.setInt(1, DatabaseManager.SCHEMA_VERSION);
+            stmt.setString(2, dbName);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static synchronized void createTable() throws SQLException {
+        if (created) return;
+        try (Connection conn = ConnectionProvider.getConnection(DATABASE);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS buildings ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "name VARCHAR(63) NOT NULL UNIQUE, "
+                    + "schema_version INT NOT NULL DEFAULT 0, "
+                    + "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM buildings")) {
+                rs.next();
+                if (rs.getInt(1) == 0) {
+                    for (String name : DEFAULTS) {
+                        stmt.executeUpdate("INSERT INTO buildings (name) VALUES ('" + name + "')");
+                    }
+                }
+            }
+        }
+        created = true;
+    }
+}
@@ -0,0 +1,903 @@
+package org.core;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary snapshots of a whole building, for backups, restores and moving a building between
+ * installations.
+ * <p>
+ * A snapshot holds every column of the building's {@code tenants} and {@code payments} tables, stored
+ * column by column: numbers, dates and timestamps at fixed width with their exact bits, so money keeps
+ * every digit CSV rounds away, and strings once each in a dictionary with an int code per row. With
+ * {@link #compress(boolean) compression} on, a column is deflated when that makes it smaller. Every
+ * column carries a CRC32. Snapshots are written through a file channel and read back from a
+ * memory-mapped file; {@link #restore} replaces the building's tenants and payments with the
+ * snapshot's in one transaction of batched inserts.
+ * <pre>
+ * file:   int magic 'PMSN', short format version, long created (epoch millis), string building, byte tables
+ * table:  string name, int rows, short columns
+ * column: string name, byte type, byte nullable, byte codec, int raw length, int stored length, int crc32, bytes
+ * </pre>
+ * Strings in the layout are a short byte length and UTF-8, all numbers big-endian. A nullable column
+ * starts with a bitmap of its null rows; a string column is its dictionary followed by the codes, -1
+ * for NULL.
+ * <p>
+ * Restored tenants get new row versions and {@code updated_at} from the database, so every open view
+ * of the building picks them up as changes; payments get new ledger ids.
+ */
+public class BuildingSnapshot {
+    public static final String EXTENSION = ".pmsnap";
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x504D534E;
+    private static final List<String> TABLES = List.of("tenants", "payments");
+    /** Columns the database assigns on insert instead of taking them from the snapshot. */
+    private static final Map<String, Set<String>> GENERATED = Map.of(
+            "tenants", Set.of("row_version", "updated_at"),
+            "payments", Set.of("id"));
+    private static final int FETCH_SIZE = 1000;
+    private static final int BATCH_SIZE = 1000;
+
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte DATE = 4;
+    private static final byte TIMESTAMP = 5;
+    private static final byte STRING = 6;
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+
+    private boolean compress;
+
+    public BuildingSnapshot compress(boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+
+    public String fileNameFor(String dbName) {
+        return dbName + EXTENSION;
+    }
+
+    public SnapshotResult write(String dbName, Path target) throws IOException, SQLException {
+        long started = System.nanoTime();
+        List<ColumnWriter[]> tables = new ArrayList<>(TABLES.size());
+        int[] rows = new int[TABLES.size()];
+
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.SNAPSHOT)) {
+            try (Connection conn = ConnectionProvider.getConnection(dbName)) {
+                // Both tables from one point in time, so no payment refers to a tenant the snapshot lacks.
+                int isolation = conn.getTransactionIsolation();
+                conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                conn.setAutoCommit(false);
+                try {
+                    for (int i = 0; i < TABLES.size(); i++) {
+                        ColumnWriter[] columns = readTable(conn, TABLES.get(i));
+                        tables.add(columns);
+                        rows[i] = columns.length == 0 ? 0 : columns[0].rows;
+                    }
+                    conn.commit();
+                } finally {
+                    conn.setAutoCommit(true);
+                    conn.setTransactionIsolation(isolation);
+                }
+            }
+
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(64 + dbName.length() * 3);
+                header.putInt(MAGIC).putShort((short) FORMAT_VERSION).putLong(System.currentTimeMillis());
+                putString(header, dbName);
+                header.put((byte) TABLES.size());
+                writeFully(channel, header.flip());
+
+                for (int i = 0; i < TABLES.size(); i++) {
+                    ColumnWriter[] columns = tables.get(i);
+                    ByteBuffer tableHeader = ByteBuffer.allocate(64);
+                    putString(tableHeader, TABLES.get(i));
+                    tableHeader.putInt(rows[i]).putShort((short) columns.length);
+                    writeFully(channel, tableHeader.flip());
+                    for (ColumnWriter column : columns) {
+                        column.writeTo(channel, compress);
+                    }
+                }
+            }
+            sample.done(rows[0] + rows[1]);
+        }
+        return new SnapshotResult(dbName, target, rows[0], rows[1], rows[0] + rows[1], Files.size(target), System.nanoTime() - started);
+    }
+
+    public CompletableFuture<SnapshotResult> writeAsync(String dbName, Path target) {
+        return BackgroundExecutor.supply(() -> {
+            try {
+                return write(dbName, target);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Writes a snapshot of every building into {@code directory}, all buildings at once. Completes
+     * when the last file is written; fails if any building fails.
+     */
+    public CompletableFuture<Map<String, SnapshotResult>> writeAll(List<String> buildings, Path directory) {
+        return BackgroundExecutor.forEachBuilding(buildings, dbName -> write(dbName, directory.resolve(fileNameFor(dbName))));
+    }
+
+    /**
+     * Makes the tenants and payments of {@code dbName} those of the snapshot, which may come from
+     * another building. Only the differences are written: tenants are paired by id and updated where
+     * a column differs, payments are paired by their contents, and what the snapshot lacks is deleted.
+     * That happens in one transaction, so nothing changes if any row is refused, and a failed
+     * restore never leaves the building half restored.
+     */
+    public SnapshotResult restore(String dbName, Path source) throws IOException, SQLException {
+        long started = System.nanoTime();
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.RESTORE);
+             FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            Map<String, Table> tables = map(channel);
+            Table tenants = tables.get("tenants");
+            Table payments = tables.get("payments");
+            if (tenants == null || payments == null) {
+                throw new IOException("Not a building snapshot: " + source.getFileName() + " lacks the tenants or payments table");
+            }
+
+            TableDiff tenantDiff;
+            TableDiff paymentDiff;
+            try (Connection conn = ConnectionProvider.getConnection(dbName)) {
+                conn.setAutoCommit(false);
+                try {
+                    tenantDiff = TableDiff.compute(conn, "tenants", tenants, true);
+                    paymentDiff = TableDiff.compute(conn, "payments", payments, false);
+                    // Payments first out and last in, for their foreign key on tenants.
+                    paymentDiff.delete(conn);
+                    tenantDiff.delete(conn);
+                    tenantDiff.write(conn);
+                    paymentDiff.write(conn);
+                    ChangeJournal.commit(dbName, conn, journal(dbName, tenantDiff));
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                // The views of consolidated storage number new tenants themselves.
+                if (!ConsolidatedStorage.isEnabled() && !tenantDiff.inserted.isEmpty()) {
+                    restartTenantIds(conn);
+                }
+            }
+            int changed = tenantDiff.size() + paymentDiff.size();
+            if (changed > 0) {
+                TenantEvents.invalidated(dbName);
+            }
+            sample.done(changed);
+            return new SnapshotResult(dbName, source, tenants.rows, payments.rows, changed, channel.size(), System.nanoTime() - started);
+        }
+    }
+
+    public CompletableFuture<SnapshotResult> restoreAsync(String dbName, Path source) {
+        return BackgroundExecutor.supply(() -> {
+            try {
+                return restore(dbName, source);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private static ColumnWriter[] readTable(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " ORDER BY id")) {
+                ResultSetMetaData meta = rs.getMetaData();
+                ColumnWriter[] columns = new ColumnWriter[meta.getColumnCount()];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = new ColumnWriter(meta.getColumnName(i + 1).toLowerCase(Locale.ROOT), typeOf(meta.getColumnType(i + 1)));
+                }
+                while (rs.next()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        columns[i].add(rs, i + 1);
+                    }
+                }
+                return columns;
+            }
+        }
+    }
+
+    /** Explicit ids do not move an identity column along, so it is moved past the largest id. */
+    private static void restartTenantIds(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            long next;
+            try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM tenants")) {
+                rs.next();
+                next = rs.getLong(1);
+            }
+            stmt.execute("ALTER TABLE tenants ALTER COLUMN id RESTART WITH " + next);
+        }
+    }
+
+    /** The journal entries of a restore's tenant changes; none if the journal is off. */
+    private static List<ChangeJournal.Entry> journal(String dbName, TableDiff tenants) {
+        if (!ChangeJournal.isEnabled()) return Collections.emptyList();
+        List<ChangeJournal.Entry> changes = new ArrayList<>(tenants.size());
+        for (Object id : tenants.deleted) {
+            changes.add(ChangeJournal.Entry.deleted(dbName, ((Number) id).intValue()));
+        }
+        for (int i = 0; i < tenants.updated.size(); i++) {
+            int row = tenants.updated.get(i);
+            changes.add(ChangeJournal.Entry.updated(dbName, tenants.snapshot.column("id").intAt(row), tenants.updatedFields.get(i)));
+        }
+        for (int row : tenants.inserted) {
+            changes.add(ChangeJournal.Entry.inserted(dbName, tenants.snapshot.column("id").intAt(row), tenants.snapshot.rowAt(row)));
+        }
+        return changes;
+    }
+
+    /** What it takes to turn one table of a building into the snapshot's. */
+    private static final class TableDiff {
+        private final String table;
+        private final Table snapshot;
+        /** The snapshot's columns the building's table has, less those the database generates. */
+        private final List<Column> columns;
+        /** Ids of the building's rows that are not in the snapshot. */
+        private final List<Object> deleted = new ArrayList<>();
+        /** Snapshot rows whose tenant exists with other values, and which columns differ. */
+        private final List<Integer> updated = new ArrayList<>();
+        private final List<Map<String, Object>> updatedFields = new ArrayList<>();
+        /** Snapshot rows missing from the building. */
+        private final List<Integer> inserted = new ArrayList<>();
+
+        private TableDiff(String table, Table snapshot, List<Column> columns) {
+            this.table = table;
+            this.snapshot = snapshot;
+            this.columns = columns;
+        }
+
+        /**
+         * Reads the building's rows and pairs them with the snapshot's: by {@code id} if
+         * {@code byId}, otherwise by their values, each building row pairing with at most one
+         * snapshot row.
+         */
+        static TableDiff compute(Connection conn, String table, Table snapshot, boolean byId) throws SQLException {
+            Set<String> existing = new HashSet<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+                ResultSetMetaData meta = rs.getMetaData();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    existing.add(meta.getColumnName(i).toLowerCase(Locale.ROOT));
+                }
+            }
+            List<Column> columns = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            for (Column column : snapshot.columns.values()) {
+                if (existing.contains(column.name) && !GENERATED.get(table).contains(column.name)) {
+                    columns.add(column);
+                    names.add(column.name);
+                }
+            }
+            TableDiff diff = new TableDiff(table, snapshot, columns);
+            int key = names.indexOf("id");
+            if (byId && key < 0) {
+                throw new SQLException("Snapshot has no " + table + ".id column");
+            }
+
+            Map<Object, Object[]> byKey = new HashMap<>();
+            Map<List<Object>, ArrayDeque<Object>> byValues = new HashMap<>();
+            try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery("SELECT id, " + String.join(", ", names) + " FROM " + table)) {
+                    while (rs.next()) {
+                        Object[] values = new Object[columns.size()];
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = valueOf(rs, i + 2, columns.get(i).type);
+                        }
+                        if (byId) {
+                            byKey.put(values[key], values);
+                        } else {
+                            byValues.computeIfAbsent(Arrays.asList(values), v -> new ArrayDeque<>()).add(rs.getObject(1));
+                        }
+                    }
+                }
+            }
+
+            for (int row = 0; row < snapshot.rows; row++) {
+                Object[] values = new Object[columns.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = columns.get(i).valueAt(row);
+                }
+                if (byId) {
+                    Object[] current = byKey.remove(values[key]);
+                    if (current == null) {
+                        diff.inserted.add(row);
+                    } else if (!Arrays.equals(current, values)) {
+                        Map<String, Object> fields = new LinkedHashMap<>();
+                        for (int i = 0; i < values.length; i++) {
+                            if (!Objects.equals(current[i], values[i])) fields.put(names.get(i), values[i]);
+                        }
+                        diff.updated.add(row);
+                        diff.updatedFields.add(fields);
+                    }
+                } else {
+                    ArrayDeque<Object> ids = byValues.get(Arrays.asList(values));
+                    if (ids == null || ids.poll() == null) {
+                        diff.inserted.add(row);
+                    }
+                }
+            }
+            diff.deleted.addAll(byKey.keySet());
+            for (ArrayDeque<Object> ids : byValues.values()) {
+                diff.deleted.addAll(ids);
+            }
+            return diff;
+        }
+
+        int size() {
+            return deleted.size() + updated.size() + inserted.size();
+        }
+
+        void delete(Connection conn) throws SQLException {
+            if (deleted.isEmpty()) return;
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM " + table + " WHERE id = ?")) {
+                for (int i = 0; i < deleted.size(); i++) {
+                    stmt.setObject(1, deleted.get(i));
+                    stmt.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        stmt.executeBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+        }
+
+        /** Updates the changed rows and inserts the missing ones, in batches. */
+        void write(Connection conn) throws SQLException {
+            List<String> names = new ArrayList<>(columns.size());
+            List<String> assignments = new ArrayList<>(columns.size());
+            for (Column column : columns) {
+                names.add(column.name);
+                assignments.add(column.name + " = ?");
+            }
+            if (!updated.isEmpty()) {
+                try (PreparedStatement stmt = conn.prepareStatement("UPDATE " + table + " SET " + String.join(", ", assignments)
+                        + " WHERE id = ?")) {
+                    Column id = snapshot.column("id");
+                    for (int i = 0; i < updated.size(); i++) {
+                        int row = updated.get(i);
+                        bind(stmt, row);
+                        id.bind(stmt, columns.size() + 1, row);
+                        stmt.addBatch();
+                        if ((i + 1) % BATCH_SIZE == 0) {
+                            stmt.executeBatch();
+                        }
+                    }
+                    stmt.executeBatch();
+                }
+            }
+            if (!inserted.isEmpty()) {
+                try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO " + table + " (" + String.join(", ", names)
+                        + ") VALUES (" + String.join(", ", Collections.nCopies(names.size(), "?")) + ")")) {
+                    for (int i = 0; i < inserted.size(); i++) {
+                        bind(stmt, inserted.get(i));
+                        stmt.addBatch();
+                        if ((i + 1) % BATCH_SIZE == 0) {
+                            stmt.executeBatch();
+                        }
+                    }
+                    stmt.executeBatch();
+                }
+            }
+        }
+
+        private void bind(PreparedStatement stmt, int row) throws SQLException {
+            for (int i = 0; i < columns.size(); i++) {
+                columns.get(i).bind(stmt, i + 1, row);
+            }
+        }
+    }
+
+    /** Reads the layout of a snapshot; column data stays in the mapped file unless it was deflated. */
+    private static Map<String, Table> map(FileChannel channel) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large to map: " + channel.size() + " bytes");
+        }
+        ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        try {
+            if (file.remaining() < 4 || file.getInt() != MAGIC) {
+                throw new IOException("Not a building snapshot");
+            }
+            int version = file.getShort();
+            if (version > FORMAT_VERSION) {
+                throw new IOException("Snapshot format " + version + " is newer than this version reads (" + FORMAT_VERSION + ")");
+            }
+            file.getLong(); // created
+            getString(file); // building
+            int tableCount = file.get();
+            Map<String, Table> tables = new LinkedHashMap<>();
+            for (int t = 0; t < tableCount; t++) {
+                String name = getString(file);
+                int rows = file.getInt();
+                int columnCount = file.getShort();
+                Map<String, Column> columns = new LinkedHashMap<>();
+                for (int c = 0; c < columnCount; c++) {
+                    Column column = Column.read(file, rows);
+                    columns.put(column.name, column);
+                }
+                tables.put(name, new Table(rows, columns));
+            }
+            return tables;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Snapshot is truncated or corrupt", e);
+        }
+    }
+
+    private static byte typeOf(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return INT;
+            case Types.BIGINT:
+                return LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.DATE:
+                return DATE;
+            case Types.TIMESTAMP:
+                return TIMESTAMP;
+            default:
+                return STRING;
+        }
+    }
+
+    /** A building's value in the form {@link Column#valueAt} gives the snapshot's, so the two compare with equals. */
+    private static Object valueOf(ResultSet rs, int index, byte type) throws SQLException {
+        Object value;
+        switch (type) {
+            case INT:
+                value = rs.getInt(index);
+                break;
+            case LONG:
+                value = rs.getLong(index);
+                break;
+            case DOUBLE:
+                value = rs.getDouble(index);
+                break;
+            case DATE:
+                return rs.getObject(index, LocalDate.class);
+            case TIMESTAMP:
+                return rs.getObject(index, LocalDateTime.class);
+            default:
+                return rs.getString(index);
+        }
+        return rs.wasNull() ? null : value;
+    }
+
+    private static int widthOf(byte type) {
+        return type == LONG || type == DOUBLE || type == TIMESTAMP ? 8 : 4;
+    }
+
+    private static long toMicros(LocalDateTime value) {
+        return value.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + value.getNano() / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /** One column being collected from a result set. */
+    private static final class ColumnWriter {
+        private final String name;
+        private final byte type;
+        private final BitSet nulls = new BitSet();
+        private final Map<String, Integer> dictionary = new LinkedHashMap<>();
+        private ByteBuffer values = ByteBuffer.allocate(1 << 12);
+        private int rows;
+
+        ColumnWriter(String name, byte type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        void add(ResultSet rs, int index) throws SQLException {
+            ensure(widthOf(type));
+            switch (type) {
+                case INT:
+                    values.putInt(rs.getInt(index));
+                    break;
+                case LONG:
+                    values.putLong(rs.getLong(index));
+                    break;
+                case DOUBLE:
+                    values.putDouble(rs.getDouble(index));
+                    break;
+                case DATE: {
+                    LocalDate date = rs.getObject(index, LocalDate.class);
+                    values.putInt(date == null ? 0 : (int) date.toEpochDay());
+                    break;
+                }
+                case TIMESTAMP: {
+                    LocalDateTime timestamp = rs.getObject(index, LocalDateTime.class);
+                    values.putLong(timestamp == null ? 0 : toMicros(timestamp));
+                    break;
+                }
+                default: {
+                    String value = rs.getString(index);
+                    values.putInt(value == null ? -1 : dictionary.computeIfAbsent(value, key -> dictionary.size()));
+                    break;
+                }
+            }
+            if (type != STRING && rs.wasNull()) {
+                nulls.set(rows);
+            }
+            rows++;
+        }
+
+        /** Column header, then the column as is or deflated, whichever is smaller. */
+        void writeTo(FileChannel channel, boolean compress) throws IOException {
+            ByteBuffer raw = encode();
+            ByteBuffer stored = compress ? deflate(raw) : null;
+            byte codec = DEFLATE;
+            if (stored == null) {
+                stored = raw;
+                codec = RAW;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(stored.duplicate());
+
+            ByteBuffer header = ByteBuffer.allocate(32 + name.length() * 3);
+            putString(header, name);
+            header.put(type).put((byte) (nulls.isEmpty() ? 0 : 1)).put(codec)
+                    .putInt(raw.remaining()).putInt(stored.remaining()).putInt((int) crc.getValue());
+            writeFully(channel, header.flip(), stored);
+        }
+
+        private ByteBuffer encode() {
+            values.flip();
+            if (type == STRING) {
+                List<byte[]> entries = new ArrayList<>(dictionary.size());
+                int size = 4 + values.remaining();
+                for (String value : dictionary.keySet()) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    entries.add(bytes);
+                    size += 4 + bytes.length;
+                }
+                ByteBuffer raw = ByteBuffer.allocate(size).putInt(entries.size());
+                for (byte[] bytes : entries) {
+                    raw.putInt(bytes.length).put(bytes);
+                }
+                return raw.put(values).flip();
+            }
+            if (nulls.isEmpty()) {
+                return values;
+            }
+            byte[] bitmap = new byte[(rows + 7) / 8];
+            byte[] set = nulls.toByteArray();
+            System.arraycopy(set, 0, bitmap, 0, set.length);
+            return ByteBuffer.allocate(bitmap.length + values.remaining()).put(bitmap).put(values).flip();
+        }
+
+        /** The deflated column, or null if deflating does not make it smaller. */
+        private static ByteBuffer deflate(ByteBuffer raw) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw.duplicate());
+                deflater.finish();
+                ByteBuffer out = ByteBuffer.allocate(raw.remaining());
+                while (!deflater.finished() && out.hasRemaining()) {
+                    deflater.deflate(out);
+                }
+                return deflater.finished() ? out.flip() : null;
+            } finally {
+                deflater.end();
+            }
+        }
+
+        private void ensure(int bytes) {
+            if (values.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(values.capacity() * 2);
+                values = larger.put(values.flip());
+            }
+        }
+    }
+
+    /** One column of a snapshot being read, positioned over its values. */
+    private static final class Column {
+        private final String name;
+        private final byte type;
+        private final ByteBuffer nulls;
+        private final ByteBuffer values;
+        private final String[] dictionary;
+
+        private Column(String name, byte type, ByteBuffer nulls, ByteBuffer values, String[] dictionary) {
+            this.name = name;
+            this.type = type;
+            this.nulls = nulls;
+            this.values = values;
+            this.dictionary = dictionary;
+        }
+
+        static Column read(ByteBuffer file, int rows) throws IOException {
+            String name = getString(file);
+            byte type = file.get();
+            boolean nullable = file.get() != 0;
+            byte codec = file.get();
+            int rawLength = file.getInt();
+            int storedLength = file.getInt();
+            int checksum = file.getInt();
+
+            ByteBuffer stored = file.slice(file.position(), storedLength);
+            file.position(file.position() + storedLength);
+            CRC32 crc = new CRC32();
+            crc.update(stored.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Snapshot column " + name + " is corrupt (checksum mismatch)");
+            }
+            ByteBuffer raw = codec == DEFLATE ? inflate(stored, rawLength, name) : stored;
+
+            if (type == STRING) {
+                String[] dictionary = new String[raw.getInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    byte[] bytes = new byte[raw.getInt()];
+                    raw.get(bytes);
+                    dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                return new Column(name, type, null, values(raw, rows * 4, name), dictionary);
+            }
+            ByteBuffer nulls = null;
+            if (nullable) {
+                nulls = raw.slice(raw.position(), (rows + 7) / 8);
+                raw.position(raw.position() + nulls.capacity());
+            }
+            return new Column(name, type, nulls, values(raw, rows * widthOf(type), name), null);
+        }
+
+        private static ByteBuffer values(ByteBuffer raw, int expected, String name) throws IOException {
+            if (raw.remaining() != expected) {
+                throw new IOException("Snapshot column " + name + " has " + raw.remaining() + " bytes of values, expected " + expected);
+            }
+            return raw.slice();
+        }
+
+        private static ByteBuffer inflate(ByteBuffer stored, int rawLength, String name) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                ByteBuffer raw = ByteBuffer.allocate(rawLength);
+                while (!inflater.finished() && raw.hasRemaining()) {
+                    if (inflater.inflate(raw) == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                }
+                if (!inflater.finished() || raw.hasRemaining()) {
+                    throw new IOException("Snapshot column " + name + " is corrupt (bad deflate stream)");
+                }
+                return raw.flip();
+            } catch (DataFormatException e) {
+                throw new IOException("Snapshot column " + name + " is corrupt", e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        boolean isNull(int row) {
+            if (type == STRING) return values.getInt(row * 4) < 0;
+            return nulls != null && (nulls.get(row >>> 3) & (1 << (row & 7))) != 0;
+        }
+
+        Object valueAt(int row) {
+            if (isNull(row)) return null;
+            switch (type) {
+                case INT:
+                    return values.getInt(row * 4);
+                case LONG:
+                    return values.getLong(row * 8);
+                case DOUBLE:
+                    return values.getDouble(row * 8);
+                case DATE:
+                    return LocalDate.ofEpochDay(values.getInt(row * 4));
+                case TIMESTAMP:
+                    return fromMicros(values.getLong(row * 8));
+                default:
+                    return stringAt(row);
+            }
+        }
+
+        int intAt(int row) {
+            return values.getInt(row * 4);
+        }
+
+        String stringAt(int row) {
+            int code = values.getInt(row * 4);
+            return code < 0 ? null : dictionary[code];
+        }
+
+        void bind(PreparedStatement stmt, int index, int row) throws SQLException {
+            if (isNull(row)) {
+                stmt.setNull(index, sqlTypeOf(type));
+                return;
+            }
+            switch (type) {
+                case INT:
+                    stmt.setInt(index, values.getInt(row * 4));
+                    break;
+                case LONG:
+                    stmt.setLong(index, values.getLong(row * 8));
+                    break;
+                case DOUBLE:
+                    stmt.setDouble(index, values.getDouble(row * 8));
+                    break;
+                case DATE:
+                    stmt.setObject(index, LocalDate.ofEpochDay(values.getInt(row * 4)));
+                    break;
+                case TIMESTAMP:
+                    stmt.setObject(index, fromMicros(values.getLong(row * 8)));
+                    break;
+                default:
+                    stmt.setString(index, stringAt(row));
+                    break;
+            }
+        }
+
+        private static int sqlTypeOf(byte type) {
+            switch (type) {
+                case INT:
+                    return Types.INTEGER;
+                case LONG:
+                    return Types.BIGINT;
+                case DOUBLE:
+                    return Types.DOUBLE;
+                case DATE:
+                    return Types.DATE;
+                case TIMESTAMP:
+                    return Types.TIMESTAMP;
+                default:
+                    return Types.VARCHAR;
+            }
+        }
+    }
+
+    /** The columns of one table of a snapshot. */
+    private static final class Table {
+        private final int rows;
+        private final Map<String, Column> columns;
+
+        Table(int rows, Map<String, Column> columns) {
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        Column column(String name) {
+            Column column = columns.get(name);
+            if (column == null) {
+                throw new IllegalStateException("Snapshot has no " + name + " column");
+            }
+            return column;
+        }
+
+        /** Column name to value, null where the snapshot has NULL. */
+        Map<String, Object> rowAt(int row) {
+            Map<String, Object> values = new HashMap<>(columns.size() * 2);
+            for (Map.Entry<String, Column> column : columns.entrySet()) {
+                values.put(column.getKey(), column.getValue().valueAt(row));
+            }
+            return values;
+        }
+    }
+
+    public static final class SnapshotResult {
+        private final String dbName;
+        private final Path file;
+        private final int tenants;
+        private final int payments;
+        private final int rowsChanged;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        SnapshotResult(String dbName, Path file, int tenants, int payments, int rowsChanged, long bytes, long elapsedNanos) {
+            this.dbName = dbName;
+            this.file = file;
+            this.tenants = tenants;
+            this.payments = payments;
+            this.rowsChanged = rowsChanged;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public String getDbName() {
+            return dbName;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public int getTenants() {
+            return tenants;
+        }
+
+        public int getPayments() {
+            return payments;
+        }
+
+        /** Rows written: all of them for a snapshot, those that differed for a restore. */
+        public int getRowsChanged() {
+            return rowsChanged;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : (tenants + payments) * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d tenants, %d payments, %d rows written, %d KB in %.2fs (%.0f rows/sec), %s",
+                    dbName, tenants, payments, rowsChanged, bytes / 1024, elapsedNanos / 1e9, getRowsPerSecond(), file);
+        }
+    }
+}
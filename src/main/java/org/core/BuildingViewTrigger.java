@@ -0,0 +1,162 @@
+package org.core;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Makes a building's {@code tenants} and {@code payments} views writable in
+ * {@link ConsolidatedStorage consolidated mode} by applying each row change to the shared table
+ * with the building's {@code building_id}. Runs inside the writer's transaction.
+ * <p>
+ * New tenants without an id get the next id from their building's {@code last_tenant_id} counter,
+ * which explicit ids also raise, so an id is never handed out twice, not even after its tenant was
+ * deleted, and concurrent inserts cannot pick the same one. A balance change is applied
+ * as a difference ({@code balance = balance + (new - old)}), so concurrent payments on the same
+ * tenant add up instead of overwriting each other.
+ */
+public class BuildingViewTrigger implements Trigger {
+    private String schema;
+    private boolean tenants;
+    private volatile int buildingId;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) {
+        this.schema = schemaName;
+        this.tenants = tableName.equalsIgnoreCase("TENANTS");
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        int building = buildingId(conn);
+        if (tenants) {
+            fireTenants(conn, building, oldRow, newRow);
+        } else {
+            firePayments(conn, building, oldRow, newRow);
+        }
+    }
+
+    /**
+     * Row layout: id, name, apt_number, lease_start, lease_expired, security, rent, balance, accrued_through,
+     * row_version, updated_at. The last two are left to the shared table, which maintains them itself.
+     */
+    private static void fireTenants(Connection conn, int building, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (oldRow == null) {
+            if (newRow[0] == null) {
+                newRow[0] = nextTenantId(conn, building);
+            } else {
+                reserveTenantId(conn, building, ((Number) newRow[0]).intValue());
+            }
+            if (newRow[7] == null) {
+                newRow[7] = 0.0;
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO PUBLIC.tenants "
+                    + "(building_id, id, name, apt_number, lease_start, lease_expired, security, rent, balance, accrued_through) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, COALESCE(?, " + RentAccrual.DEFAULT_ACCRUED_THROUGH + "))")) {
+                stmt.setInt(1, building);
+                for (int i = 0; i < 9; i++) {
+                    stmt.setObject(i + 2, newRow[i]);
+                }
+                stmt.executeUpdate();
+            }
+        } else if (newRow == null) {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM PUBLIC.tenants WHERE building_id = ? AND id = ?")) {
+                stmt.setInt(1, building);
+                stmt.setObject(2, oldRow[0]);
+                stmt.executeUpdate();
+            }
+        } else {
+            if (!oldRow[0].equals(newRow[0])) {
+                reserveTenantId(conn, building, ((Number) newRow[0]).intValue());
+            }
+            boolean delta = oldRow[7] != null && newRow[7] != null;
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE PUBLIC.tenants SET id = ?, name = ?, apt_number = ?, "
+                    + "lease_start = ?, lease_expired = ?, security = ?, rent = ?, "
+                    + (delta ? "balance = balance + ?" : "balance = ?")
+                    + ", accrued_through = ? WHERE building_id = ? AND id = ?")) {
+                for (int i = 0; i < 7; i++) {
+                    stmt.setObject(i + 1, newRow[i]);
+                }
+                if (delta) {
+                    stmt.setDouble(8, ((Number) newRow[7]).doubleValue() - ((Number) oldRow[7]).doubleValue());
+                } else {
+                    stmt.setObject(8, newRow[7]);
+                }
+                stmt.setObject(9, newRow[8]);
+                stmt.setInt(10, building);
+                stmt.setObject(11, oldRow[0]);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    /** Row layout: id, tenant_id, period, amount, posted_at, bank_ref. */
+    private static void firePayments(Connection conn, int building, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (oldRow == null) {
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO PUBLIC.payments "
+                    + "(building_id, tenant_id, period, amount, posted_at, bank_ref) VALUES (?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP), ?)")) {
+                stmt.setInt(1, building);
+                for (int i = 1; i < 6; i++) {
+                    stmt.setObject(i + 1, newRow[i]);
+                }
+                stmt.executeUpdate();
+            }
+        } else if (newRow == null) {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM PUBLIC.payments WHERE building_id = ? AND id = ?")) {
+                stmt.setInt(1, building);
+                stmt.setObject(2, oldRow[0]);
+                stmt.executeUpdate();
+            }
+        } else {
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE PUBLIC.payments SET tenant_id = ?, period = ?, amount = ?, "
+                    + "posted_at = ?, bank_ref = ? WHERE building_id = ? AND id = ?")) {
+                for (int i = 1; i < 6; i++) {
+                    stmt.setObject(i, newRow[i]);
+                }
+                stmt.setInt(6, building);
+                stmt.setObject(7, oldRow[0]);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    /** Takes the next id from the building's counter; the row stays locked until the insert commits. */
+    private static int nextTenantId(Connection conn, int building) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT last_tenant_id FROM FINAL TABLE "
+                + "(UPDATE PUBLIC.buildings SET last_tenant_id = last_tenant_id + 1 WHERE id = ?)")) {
+            stmt.setInt(1, building);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("No building with id " + building);
+                }
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /** Moves the counter past an id inserted explicitly, e.g. by an import or a restore. */
+    private static void reserveTenantId(Connection conn, int building, int id) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE PUBLIC.buildings SET last_tenant_id = ? WHERE id = ? AND last_tenant_id < ?")) {
+            stmt.setInt(1, id);
+            stmt.setInt(2, building);
+            stmt.setInt(3, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    /** Looked up on first use rather than in init(), which can run while the database is still opening. */
+    private int buildingId(Connection conn) throws SQLException {
+        if (buildingId == 0) {
+            int id = ConsolidatedStorage.buildingId(conn, schema);
+            if (id == 0) {
+                throw new SQLException("No building registered for schema " + schema);
+            }
+            buildingId = id;
+        }
+        return buildingId;
+    }
+}
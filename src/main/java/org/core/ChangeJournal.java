@@ -0,0 +1,564 @@
+package org.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of every committed tenant change in every building: the operation, the
+ * building, the tenant id, the fields that were set and when. Entries carry one sequence number
+ * across all buildings and can be read back from any of them with a {@link Cursor}, so other views
+ * can follow changes instead of re-querying, and a day's activity can be replayed or audited
+ * without scanning the databases.
+ * <p>
+ * The journal is a directory ({@code pm.data.dir/journal}) of segment files named after the first
+ * sequence number they hold. The newest segment is memory-mapped and appended to in place; once it
+ * is full ({@code pm.journal.segmentBytes}, default 8 MB) it is sealed and the next one is started,
+ * and segments beyond {@code pm.journal.maxSegments} (default 32) are deleted, oldest first.
+ * Entries are framed like {@link WriteBehindLog} records ({@code [length][payload][crc32]}), so an
+ * entry torn by a crash ends the journal on recovery. Appends are in the page cache as soon as they
+ * return; set {@code pm.journal.sync=true} to also force each one to disk.
+ * <p>
+ * Writers commit through {@link #commit(String, Connection, List)}, which appends their entries
+ * before another transaction of the same building in this process can commit, so each building's
+ * entries are in commit order and replay in it. A
+ * lock file keeps other processes from writing to the same directory. A journal that cannot be
+ * written is reported and skipped; it never fails the change itself.
+ */
+public final class ChangeJournal {
+    /** Off by default in {@link DatabaseServer} clients, which may share a data directory. */
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("pm.journal.enabled",
+            String.valueOf(!DatabaseServer.isClient())));
+    private static final int SEGMENT_BYTES = Integer.getInteger("pm.journal.segmentBytes", 8 << 20);
+    private static final int MAX_SEGMENTS = Integer.getInteger("pm.journal.maxSegments", 32);
+    private static final boolean SYNC = Boolean.parseBoolean(System.getProperty("pm.journal.sync", "false"));
+
+    private static final int MAGIC = 0x504d4a31; // "PMJ1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final String SUFFIX = ".seg";
+    private static final String[] COLUMNS = {"name", "apt_number", "lease_start", "lease_expired", "security", "rent", "balance"};
+
+    private static final String LOCK_FILE = "journal.lock";
+
+    /** Per building, held from a transaction's commit until its entries are appended. */
+    private static final Map<String, Object> COMMIT_ORDER = new ConcurrentHashMap<>();
+
+    private static ChangeJournal shared;
+
+    static {
+        if (!ENABLED && DatabaseServer.isClient()) {
+            System.out.println("Change journal is off: server mode keeps none (-Dpm.journal.enabled=true records this client's changes).");
+        }
+    }
+
+    public enum Op {
+        INSERT, UPDATE, DELETE, PAYMENT
+    }
+
+    /**
+     * One change to one tenant. Inserts carry every field, updates only the columns that were set,
+     * payments their {@code period} and {@code amount}, deletes nothing.
+     */
+    public static final class Entry {
+        private final long seq;
+        private final long timestamp;
+        private final Op op;
+        private final String dbName;
+        private final int tenantId;
+        private final Map<String, Object> fields;
+
+        private Entry(long seq, long timestamp, Op op, String dbName, int tenantId, Map<String, Object> fields) {
+            this.seq = seq;
+            this.timestamp = timestamp;
+            this.op = op;
+            this.dbName = dbName;
+            this.tenantId = tenantId;
+            this.fields = Collections.unmodifiableMap(fields);
+        }
+
+        static Entry inserted(String dbName, Tenant tenant) {
+            return new Entry(0, 0, Op.INSERT, dbName, tenant.getId(), fieldsOf(tenant, null));
+        }
+
+        /** An insert of a row read as column name to value, which keeps NULLs that a {@link Tenant} has no room for. */
+        static Entry inserted(String dbName, int tenantId, Map<String, Object> row) {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            for (String column : COLUMNS) {
+                fields.put(column, row.get(column));
+            }
+            return new Entry(0, 0, Op.INSERT, dbName, tenantId, fields);
+        }
+
+        /** The fields of {@code after} that differ from {@code before}, or all of them if it is unknown. Null if none do. */
+        static Entry updated(String dbName, Tenant before, Tenant after) {
+            Map<String, Object> fields = fieldsOf(after, before);
+            return fields.isEmpty() ? null : new Entry(0, 0, Op.UPDATE, dbName, after.getId(), fields);
+        }
+
+        static Entry updated(String dbName, int tenantId, String column, Object value) {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put(column, value instanceof Date ? ((Date) value).toLocalDate() : value);
+            return new Entry(0, 0, Op.UPDATE, dbName, tenantId, fields);
+        }
+
+        static Entry updated(String dbName, int tenantId, Map<String, Object> fields) {
+            return new Entry(0, 0, Op.UPDATE, dbName, tenantId, new LinkedHashMap<>(fields));
+        }
+
+        static Entry deleted(String dbName, int tenantId) {
+            return new Entry(0, 0, Op.DELETE, dbName, tenantId, new LinkedHashMap<>());
+        }
+
+        static Entry payment(String dbName, int tenantId, YearMonth period, double amount) {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("period", period.toString());
+            fields.put("amount", amount);
+            return new Entry(0, 0, Op.PAYMENT, dbName, tenantId, fields);
+        }
+
+        private static Map<String, Object> fieldsOf(Tenant tenant, Tenant before) {
+            Object[] values = valuesOf(tenant);
+            Object[] previous = before == null ? null : valuesOf(before);
+            Map<String, Object> fields = new LinkedHashMap<>();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (previous == null || !Objects.equals(values[i], previous[i])) {
+                    fields.put(COLUMNS[i], values[i]);
+                }
+            }
+            return fields;
+        }
+
+        private static Object[] valuesOf(Tenant tenant) {
+            return new Object[]{tenant.getName(), tenant.getAptNumber(), tenant.getLeaseStart(), tenant.getLeaseExpired(),
+                    tenant.getSecurity(), tenant.getRent(), tenant.getBalance()};
+        }
+
+        private Entry numbered(long seq, long timestamp) {
+            return new Entry(seq, timestamp, op, dbName, tenantId, fields);
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public LocalDateTime getTimestamp() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        }
+
+        public long getTimestampMillis() {
+            return timestamp;
+        }
+
+        public Op getOp() {
+            return op;
+        }
+
+        public String getDbName() {
+            return dbName;
+        }
+
+        public int getTenantId() {
+            return tenantId;
+        }
+
+        /** Column name to value; dates are {@code LocalDate}s, money {@code Double}s. */
+        public Map<String, Object> getFields() {
+            return fields;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + seq + " " + getTimestamp().withNano(0) + " " + dbName + " " + op + " tenant " + tenantId
+                    + (fields.isEmpty() ? "" : " " + fields);
+        }
+    }
+
+    /**
+     * Reads entries in sequence order from a starting point, and keeps following the journal:
+     * {@link #next()} returns {@code null} when it has caught up and picks up new entries on a
+     * later call. If the entries asked for were already deleted, reading starts at the oldest one
+     * kept; compare {@link Entry#getSeq()} with the sequence asked for to notice the gap.
+     */
+    public final class Cursor {
+        private long nextSeq;
+        private Segment segment;
+        private ByteBuffer view;
+        private int position;
+
+        private Cursor(long fromSeq) {
+            this.nextSeq = fromSeq;
+        }
+
+        /** The next entry, or {@code null} if there is none yet. */
+        public Entry next() throws IOException {
+            while (true) {
+                if (segment == null && !open(segments.floorEntry(nextSeq))) {
+                    if (!open(segments.firstEntry())) return null;
+                }
+                // Look for a newer segment before reading, so a record appended just before a roll is not skipped.
+                Map.Entry<Long, Segment> following = segments.higherEntry(segment.firstSeq);
+                byte[] payload = readAt(view, position, segment.end);
+                if (payload != null) {
+                    position += payload.length + 8;
+                    Entry entry = decode(payload);
+                    if (entry.seq < nextSeq) continue;
+                    nextSeq = entry.seq + 1;
+                    return entry;
+                }
+                if (following == null) return null;
+                segment = null;
+                if (!open(following)) return null;
+            }
+        }
+
+        /** Sequence number of the entry {@link #next()} will return. */
+        public long getNextSeq() {
+            return nextSeq;
+        }
+
+        private boolean open(Map.Entry<Long, Segment> entry) throws IOException {
+            while (entry != null) {
+                try {
+                    segment = entry.getValue();
+                    view = segment.readView();
+                    position = HEADER_BYTES;
+                    return true;
+                } catch (NoSuchFileException e) {
+                    // Deleted by retention since we looked it up; move on to the next one.
+                    entry = segments.higherEntry(entry.getKey());
+                }
+            }
+            segment = null;
+            return false;
+        }
+    }
+
+    private static final class Segment {
+        final long firstSeq;
+        final Path path;
+        /** Writable mapping while this is the newest segment, or a read-only one mapped on first read. */
+        private MappedByteBuffer buffer;
+        /** Bytes holding complete entries. Published after the entry bytes, so readers never see half an entry. */
+        volatile int end;
+
+        Segment(long firstSeq, Path path, MappedByteBuffer buffer, int end) {
+            this.firstSeq = firstSeq;
+            this.path = path;
+            this.buffer = buffer;
+            this.end = end;
+        }
+
+        synchronized ByteBuffer readView() throws IOException {
+            if (buffer == null) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                end = buffer.capacity();
+            }
+            return buffer.duplicate();
+        }
+    }
+
+    private final Path dir;
+    /** Open for as long as this journal is, to keep its lock on the directory. */
+    private final FileChannel lockChannel;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment active;
+    private volatile long lastSeq;
+    private long lastTimestamp;
+
+    private ChangeJournal(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        this.lockChannel = lock(dir);
+        try {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    try {
+                        long firstSeq = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                        segments.put(firstSeq, new Segment(firstSeq, file, null, 0));
+                    } catch (NumberFormatException e) {
+                        // Not one of ours.
+                    }
+                }
+            }
+            if (segments.isEmpty()) {
+                lastSeq = 0;
+                active = startSegment(1);
+            } else {
+                recover(segments.lastEntry().getValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the journal in another directory, e.g. a copy taken for an audit. Only one journal
+     * may write to a directory at a time: this fails if another one, in any process, has it open.
+     */
+    public static ChangeJournal open(Path dir) throws IOException {
+        return new ChangeJournal(dir);
+    }
+
+    /** The journal of this installation, in {@code pm.data.dir/journal}. Opened on first use. */
+    public static synchronized ChangeJournal get() throws IOException {
+        if (shared == null) {
+            shared = new ChangeJournal(Paths.get(System.getProperty("pm.data.dir", "."), "journal"));
+        }
+        return shared;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /** {@link #commit(String, Connection, List)} for a transaction with one entry, or none if it is null. */
+    static void commit(String dbName, Connection conn, Entry entry) throws SQLException {
+        commit(dbName, conn, entry == null ? Collections.emptyList() : Collections.singletonList(entry));
+    }
+
+    /**
+     * Commits {@code conn}, a transaction of building {@code dbName}, and appends its changes to the
+     * shared journal, if it is enabled, before another transaction of that building can do the same;
+     * appending after the commit alone could put two writers' entries in the opposite order to their
+     * commits. Other buildings commit meanwhile: their rows never conflict with these, so replay does
+     * not depend on their relative order. Journal failures are reported, not thrown.
+     */
+    static void commit(String dbName, Connection conn, List<Entry> entries) throws SQLException {
+        if (!ENABLED || entries.isEmpty()) {
+            conn.commit();
+            return;
+        }
+        synchronized (COMMIT_ORDER.computeIfAbsent(dbName, name -> new Object())) {
+            conn.commit();
+            try {
+                get().append(entries);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /** Numbers, timestamps and appends the entries, in order. Returns them as written. */
+    public synchronized List<Entry> append(List<Entry> entries) throws IOException {
+        long now = Math.max(System.currentTimeMillis(), lastTimestamp);
+        List<Entry> numbered = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            Entry withSeq = entry.numbered(lastSeq + 1, now);
+            byte[] payload = encode(withSeq);
+            int size = payload.length + 8;
+            if (size > SEGMENT_BYTES - HEADER_BYTES) {
+                throw new IOException("Journal entry of " + size + " bytes does not fit in a segment");
+            }
+            if (active.end + size > active.buffer.capacity()) {
+                roll(withSeq.seq);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            MappedByteBuffer buffer = active.buffer;
+            int position = active.end;
+            buffer.putInt(position, payload.length);
+            buffer.put(position + 4, payload);
+            buffer.putInt(position + 4 + payload.length, (int) crc.getValue());
+            active.end = position + size;
+            lastSeq = withSeq.seq;
+            numbered.add(withSeq);
+        }
+        lastTimestamp = now;
+        if (SYNC) active.buffer.force();
+        return numbered;
+    }
+
+    /** Reads from {@code fromSeq} on; use 1 for everything still kept, {@code getLastSeq() + 1} for new entries only. */
+    public Cursor read(long fromSeq) {
+        return new Cursor(fromSeq);
+    }
+
+    /** Entries written in {@code [from, to)}, in order. Reads only the segments that can hold them. */
+    public List<Entry> readBetween(LocalDateTime from, LocalDateTime to) throws IOException {
+        long fromMillis = from.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long toMillis = to.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        // Timestamps never go backwards, so start in the last segment that begins before the window.
+        long start = 1;
+        for (Segment segment : segments.values()) {
+            Entry first = read(segment.firstSeq).next();
+            if (first == null || first.timestamp >= fromMillis) break;
+            start = first.seq;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        Cursor cursor = read(start);
+        Entry entry;
+        while ((entry = cursor.next()) != null && entry.timestamp < toMillis) {
+            if (entry.timestamp >= fromMillis) entries.add(entry);
+        }
+        return entries;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    /** Sequence number of the oldest entry still kept, or {@code getLastSeq() + 1} if there is none. */
+    public long getFirstSeq() {
+        Map.Entry<Long, Segment> first = segments.firstEntry();
+        return first == null ? lastSeq + 1 : Math.min(first.getKey(), lastSeq + 1);
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /** Locks {@code dir} for this journal, or fails if another journal holds it. */
+    private static FileChannel lock(Path dir) throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() != null) return channel;
+        } catch (OverlappingFileLockException e) {
+            // Held by another journal in this process.
+        }
+        channel.close();
+        throw new IOException("Another journal is writing to " + dir);
+    }
+
+    /** Finds the end of the newest segment after a restart and reopens it for appending. */
+    private void recover(Segment last) throws IOException {
+        MappedByteBuffer buffer = map(last.path, 0);
+        if (buffer.capacity() < HEADER_BYTES) {
+            // Created but never written to before the process stopped.
+            segments.remove(last.firstSeq);
+            lastSeq = last.firstSeq - 1;
+            active = startSegment(last.firstSeq);
+            return;
+        }
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException(last.path + " is not a change journal segment");
+        }
+        int position = HEADER_BYTES;
+        long seq = last.firstSeq - 1;
+        byte[] payload;
+        while ((payload = readAt(buffer, position, buffer.capacity())) != null) {
+            Entry entry = decode(payload);
+            seq = entry.seq;
+            lastTimestamp = entry.timestamp;
+            position += payload.length + 8;
+        }
+        if (position + 4 <= buffer.capacity() && buffer.getInt(position) != 0) {
+            // A torn entry: clear it so it cannot be mistaken for data once new entries are written over it.
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        lastSeq = seq;
+        active = new Segment(last.firstSeq, last.path, buffer, position);
+        segments.put(last.firstSeq, active);
+    }
+
+    private void roll(long firstSeq) throws IOException {
+        active.buffer.force();
+        active = startSegment(firstSeq);
+        while (segments.size() > MAX_SEGMENTS) {
+            Map.Entry<Long, Segment> oldest = segments.pollFirstEntry();
+            try {
+                Files.deleteIfExists(oldest.getValue().path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private Segment startSegment(long firstSeq) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", firstSeq, SUFFIX));
+        MappedByteBuffer buffer = map(path, SEGMENT_BYTES);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        Segment segment = new Segment(firstSeq, path, buffer, HEADER_BYTES);
+        segments.put(firstSeq, segment);
+        return segment;
+    }
+
+    /** Maps a segment for writing; {@code size} 0 keeps the size the file already has. */
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size == 0 ? channel.size() : size);
+        }
+    }
+
+    /** The payload of the intact entry at {@code position}, or null if there is none before {@code limit}. */
+    private static byte[] readAt(ByteBuffer buffer, int position, int limit) {
+        if (position + 4 > limit) return null;
+        int length = buffer.getInt(position);
+        if (length <= 0 || (long) position + 8 + length > limit) return null;
+        byte[] payload = new byte[length];
+        buffer.get(position + 4, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == buffer.getInt(position + 4 + length) ? payload : null;
+    }
+
+    private static byte[] encode(Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(entry.seq);
+        out.writeLong(entry.timestamp);
+        out.writeByte(entry.op.ordinal());
+        out.writeUTF(entry.dbName);
+        out.writeInt(entry.tenantId);
+        out.writeShort(entry.fields.size());
+        for (Map.Entry<String, Object> field : entry.fields.entrySet()) {
+            out.writeUTF(field.getKey());
+            WriteBehindLog.writeValue(out, field.getValue());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long seq = in.readLong();
+        long timestamp = in.readLong();
+        Op op = Op.values()[in.readByte()];
+        String dbName = in.readUTF();
+        int tenantId = in.readInt();
+        int count = in.readShort();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            fields.put(in.readUTF(), WriteBehindLog.readValue(in));
+        }
+        return new Entry(seq, timestamp, op, dbName, tenantId, fields);
+    }
+}
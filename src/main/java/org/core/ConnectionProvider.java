@@ -0,0 +1,433 @@
+package org.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands out pooled JDBC connections, one bounded pool per building database.
+ * <p>
+ * Keeping at least one connection open keeps the H2 file open, so callers no longer
+ * pay for opening and closing the whole database on every action. Connections are
+ * borrowed with {@link #getConnection(String)} and go back to the pool when closed,
+ * so the usual try-with-resources blocks keep working unchanged.
+ * <p>
+ * A building's pool is created on its first connection, after {@link BuildingRegistry} made sure
+ * its schema is ready. At most {@code pm.pool.maxOpenBuildings} buildings (default 32) stay open:
+ * beyond that the least recently used building without borrowed connections is closed, to be
+ * opened again when it is next used.
+ */
+public final class ConnectionProvider {
+    private static final String USER = "sa";
+
+    private static final int MAX_POOL_SIZE = Integer.getInteger("pm.pool.maxSize", 4);
+    private static final long ACQUIRE_TIMEOUT_MS = Long.getLong("pm.pool.acquireTimeoutMs", 10_000);
+    private static final long VALIDATE_AFTER_IDLE_MS = Long.getLong("pm.pool.validateAfterIdleMs", 30_000);
+    private static final long MAX_LIFETIME_MS = Long.getLong("pm.pool.maxLifetimeMs", 30 * 60_000);
+    private static final int MAX_OPEN_BUILDINGS = Integer.getInteger("pm.pool.maxOpenBuildings", 32);
+
+    private static final Map<String, BuildingPool> POOLS = new ConcurrentHashMap<>();
+    private static final Map<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ConnectionProvider::closeAll, "connection-pool-shutdown"));
+    }
+
+    private ConnectionProvider() {
+    }
+
+    /**
+     * Borrows a connection to the given building. Closing the returned connection hands it
+     * back to the pool; the underlying H2 connection stays open for the next caller.
+     */
+    public static Connection getConnection(String dbName) throws SQLException {
+        while (true) {
+            BuildingPool pool = POOLS.get(dbName);
+            if (pool == null) {
+                pool = open(dbName);
+            }
+            Connection conn = pool.borrow();
+            if (conn != null) return conn;
+            // The building was closed between looking up its pool and borrowing from it; open it again.
+        }
+    }
+
+    /** Databases that are never evicted: the registry and the shared consolidated schema. */
+    private static boolean isPinned(String dbName) {
+        return dbName.equals(BuildingRegistry.DATABASE) || dbName.equals(ConsolidatedStorage.SHARED_SCHEMA);
+    }
+
+    private static BuildingPool open(String dbName) throws SQLException {
+        if (!isPinned(dbName)) {
+            BuildingRegistry.ensureReady(dbName);
+        }
+        BuildingPool created;
+        synchronized (lockFor(dbName)) {
+            BuildingPool existing = POOLS.get(dbName);
+            if (existing != null) return existing;
+            if (MemoryStorage.isEnabled() && !isPinned(dbName)) {
+                MemoryStorage.ensureOpen(dbName);
+            }
+            created = new BuildingPool(dbName);
+            POOLS.put(dbName, created);
+        }
+        evictIdle(created);
+        return created;
+    }
+
+    /** Opening and closing a building's pool (and memory copy) hold this, so neither overtakes the other. */
+    private static Object lockFor(String dbName) {
+        return LOCKS.computeIfAbsent(dbName, name -> new Object());
+    }
+
+    /**
+     * Closes the least recently used idle buildings while more than the cap are open. A pool is only
+     * closed while nothing is leased from it; a borrower that finds it closed opens the building again.
+     */
+    private static void evictIdle(BuildingPool opened) {
+        while (POOLS.size() > MAX_OPEN_BUILDINGS) {
+            BuildingPool eldest = null;
+            for (BuildingPool pool : POOLS.values()) {
+                if (pool == opened || isPinned(pool.dbName) || !pool.isIdle()) continue;
+                if (eldest == null || pool.lastUsed < eldest.lastUsed) eldest = pool;
+            }
+            if (eldest == null) return; // every other building is in use
+            synchronized (lockFor(eldest.dbName)) {
+                if (POOLS.get(eldest.dbName) == eldest && eldest.closeIfIdle()) {
+                    POOLS.remove(eldest.dbName, eldest);
+                    MemoryStorage.close(eldest.dbName);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a connection outside the pools, with the credentials every building uses: user
+     * {@code sa} and the {@code pm.server.password} (empty unless set). A {@link DatabaseServer}
+     * sets that password on the files it serves, so they need it afterwards in embedded use too.
+     */
+    static Connection openUnpooled(String url) throws SQLException {
+        return DriverManager.getConnection(url, USER, password());
+    }
+
+    static String password() {
+        return System.getProperty("pm.server.password", "");
+    }
+
+    /** Buildings with an open pool, without the registry and the shared schema. */
+    public static Set<String> openBuildings() {
+        Set<String> open = new HashSet<>();
+        for (String dbName : POOLS.keySet()) {
+            if (!isPinned(dbName)) open.add(dbName);
+        }
+        return open;
+    }
+
+    /** Number of databases with an open pool, the registry and shared schema included. */
+    public static int openDatabases() {
+        return POOLS.size();
+    }
+
+    /**
+     * Where a building's connections go: its own file, its schema in the shared database when
+     * {@link ConsolidatedStorage} is enabled, or its memory copy under {@link MemoryStorage}.
+     */
+    public static String urlFor(String dbName) {
+        if (dbName.equals(BuildingRegistry.DATABASE)) return fileUrlFor(dbName);
+        if (ConsolidatedStorage.isEnabled()) return ConsolidatedStorage.urlFor(dbName);
+        if (MemoryStorage.isEnabled()) return MemoryStorage.urlFor(dbName);
+        return fileUrlFor(dbName);
+    }
+
+    /**
+     * Building files live in the working directory unless {@code pm.data.dir} points elsewhere, or
+     * on the {@link DatabaseServer} when this process is its client.
+     */
+    public static String fileUrlFor(String dbName) {
+        if (DatabaseServer.isClient()) return DatabaseServer.urlFor(dbName);
+        return "jdbc:h2:" + System.getProperty("pm.data.dir", ".") + "/" + dbName;
+    }
+
+    /**
+     * Closes every idle connection of one building and forgets its pool. Connections that
+     * are still borrowed are closed when they are returned.
+     */
+    public static void close(String dbName) {
+        synchronized (lockFor(dbName)) {
+            BuildingPool pool = POOLS.remove(dbName);
+            if (pool != null) {
+                pool.close();
+            }
+            MemoryStorage.close(dbName);
+        }
+    }
+
+    public static void closeAll() {
+        for (String dbName : POOLS.keySet()) {
+            close(dbName);
+        }
+        MemoryStorage.closeAll();
+    }
+
+    private static final class BuildingPool {
+        private final String dbName;
+        private final Semaphore permits = new Semaphore(MAX_POOL_SIZE, true);
+        private final Deque<PooledEntry> idle = new ConcurrentLinkedDeque<>();
+        /** Connections borrowed or being borrowed; guarded by this pool, which closes only at zero. */
+        private int leases;
+        private volatile boolean closed;
+        private volatile long lastUsed = System.nanoTime();
+
+        BuildingPool(String dbName) {
+            this.dbName = dbName;
+        }
+
+        /** Returns null if the pool was closed, e.g. evicted, before a connection could be leased. */
+        Connection borrow() throws SQLException {
+            if (!lease()) return null;
+            try {
+                if (!permits.tryAcquire(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Timed out waiting for a connection to " + dbName);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                release();
+                throw new SQLException("Interrupted while waiting for a connection to " + dbName, e);
+            } catch (SQLException e) {
+                release();
+                throw e;
+            }
+
+            try {
+                PooledEntry entry;
+                while ((entry = idle.pollFirst()) != null) {
+                    if (isUsable(entry)) {
+                        return entry.lease(this);
+                    }
+                    closeQuietly(entry.connection);
+                }
+                return new PooledEntry(openUnpooled(urlFor(dbName))).lease(this);
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                release();
+                throw e;
+            }
+        }
+
+        private synchronized boolean lease() {
+            if (closed) return false;
+            leases++;
+            lastUsed = System.nanoTime();
+            return true;
+        }
+
+        private synchronized void release() {
+            leases--;
+        }
+
+        void giveBack(PooledEntry entry) {
+            try {
+                if (!entry.connection.isClosed()) {
+                    reset(entry.connection);
+                    committed(dbName, entry.connection);
+                }
+                boolean keep = !closed && !entry.connection.isClosed() && !entry.isExpired();
+                if (keep) {
+                    entry.lastReturned = System.currentTimeMillis();
+                    idle.offerFirst(entry);
+                } else {
+                    closeQuietly(entry.connection);
+                }
+            } catch (SQLException e) {
+                closeQuietly(entry.connection);
+            } finally {
+                permits.release();
+                release();
+            }
+        }
+
+        /** No connection is borrowed. */
+        synchronized boolean isIdle() {
+            return leases == 0;
+        }
+
+        /** Closes the pool unless a connection is borrowed; returns whether it did. */
+        synchronized boolean closeIfIdle() {
+            if (leases > 0) return false;
+            close();
+            return true;
+        }
+
+        synchronized void close() {
+            closed = true;
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                closeQuietly(entry.connection);
+            }
+        }
+
+        private boolean isUsable(PooledEntry entry) throws SQLException {
+            if (entry.isExpired() || entry.connection.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - entry.lastReturned > VALIDATE_AFTER_IDLE_MS) {
+                return entry.connection.isValid(2);
+            }
+            return true;
+        }
+
+        /** Anything still pending was committed or rolled back by reset(); let the write-behind log catch up. */
+        private static void committed(String dbName, Connection conn) throws SQLException {
+            if (MemoryStorage.isEnabled()) {
+                MemoryStorage.afterCommit(dbName, conn);
+            }
+        }
+
+        private static void reset(Connection conn) throws SQLException {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            if (conn.isReadOnly()) {
+                conn.setReadOnly(false);
+            }
+            conn.clearWarnings();
+        }
+
+        private static void closeQuietly(Connection conn) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+                // The connection is being discarded anyway.
+            }
+        }
+    }
+
+    private static final class PooledEntry {
+        private final Connection connection;
+        private final long createdAt = System.currentTimeMillis();
+        private long lastReturned = createdAt;
+
+        PooledEntry(Connection connection) {
+            this.connection = connection;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - createdAt > MAX_LIFETIME_MS;
+        }
+
+        Connection lease(BuildingPool pool) {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionProvider.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Lease(pool, this));
+        }
+    }
+
+    /** The handle a caller sees: forwards everything except close(), which returns the connection. */
+    private static final class Lease implements InvocationHandler {
+        private final BuildingPool pool;
+        private final PooledEntry entry;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        Lease(BuildingPool pool, PooledEntry entry) {
+            this.pool = pool;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        pool.giveBack(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || entry.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pool.dbName + "] " + entry.connection;
+                default:
+                    if (returned.get()) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(entry.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (MemoryStorage.isEnabled()) {
+                        result = watchCommits(method, args, result);
+                    }
+                    return result;
+            }
+        }
+
+        /**
+         * In {@link MemoryStorage} mode every commit has to reach the write-behind log: explicit
+         * commits, switching auto-commit back on, and statements run in auto-commit mode.
+         */
+        private Object watchCommits(Method method, Object[] args, Object result) throws SQLException {
+            switch (method.getName()) {
+                case "commit":
+                    MemoryStorage.afterCommit(pool.dbName, entry.connection);
+                    return result;
+                case "setAutoCommit":
+                    if ((Boolean) args[0]) {
+                        MemoryStorage.afterCommit(pool.dbName, entry.connection);
+                    }
+                    return result;
+                case "createStatement":
+                case "prepareStatement":
+                case "prepareCall":
+                    return Proxy.newProxyInstance(
+                            ConnectionProvider.class.getClassLoader(),
+                            new Class<?>[]{method.getReturnType()},
+                            new AutoCommitStatement(result));
+                default:
+                    return result;
+            }
+        }
+
+        /** Logs the changes of each statement that ran in auto-commit mode. */
+        private final class AutoCommitStatement implements InvocationHandler {
+            private final Object statement;
+
+            AutoCommitStatement(Object statement) {
+                this.statement = statement;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Object result;
+                try {
+                    result = method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (method.getName().startsWith("execute") && entry.connection.getAutoCommit()) {
+                    MemoryStorage.afterCommit(pool.dbName, entry.connection);
+                }
+                return result;
+            }
+        }
+    }
+}
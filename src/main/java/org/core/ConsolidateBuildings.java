@@ -0,0 +1,36 @@
+package org.core;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One-shot tool that merges building files into the consolidated database:
+ * <pre>
+ * java -cp ... org.core.ConsolidateBuildings [building ...]
+ * </pre>
+ * Without arguments it merges the five {@code property_N} files. Afterwards start the application
+ * with {@code -Dpm.storage=consolidated}. The building files are not changed or removed.
+ */
+public class ConsolidateBuildings {
+    public static void main(String[] args) {
+        System.setProperty("pm.storage", "consolidated");
+        List<String> buildings = args.length > 0
+                ? Arrays.asList(args)
+                : Arrays.asList("property_1", "property_2", "property_3", "property_4", "property_5");
+
+        try {
+            long started = System.nanoTime();
+            for (ConsolidatedStorage.MergeResult result : ConsolidatedStorage.mergeFiles(buildings)) {
+                System.out.println(result);
+            }
+            System.out.printf("Merged into %s.mv.db in %.1f s%n", ConsolidatedStorage.databaseName(),
+                    (System.nanoTime() - started) / 1e9);
+        } catch (SQLException | IllegalArgumentException e) {
+            System.out.println("Merge failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            ConnectionProvider.closeAll();
+        }
+    }
+}
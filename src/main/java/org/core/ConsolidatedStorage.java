@@ -0,0 +1,311 @@
+package org.core;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Optional storage mode that keeps every building in one H2 database ({@code -Dpm.storage=consolidated}).
+ * <p>
+ * Tenants and payments of all buildings live in {@code PUBLIC.tenants} and {@code PUBLIC.payments}
+ * with a {@code building_id} column, and every index leads with it. Each building gets a schema of
+ * its own name holding {@code tenants} and {@code payments} views over its rows, with
+ * {@link BuildingViewTrigger} turning writes on the views into writes on the shared tables. Connections
+ * for a building open with that schema as default, so all existing SQL keeps working unchanged.
+ * Adding a building is a row in {@code buildings} plus its views; all buildings share one file, one
+ * page cache and one lock.
+ * <p>
+ * {@link ConsolidateBuildings} merges existing {@code property_N} files into the shared database.
+ */
+public final class ConsolidatedStorage {
+    /** Name of the pool used for the shared tables; it maps to H2's default schema. */
+    public static final String SHARED_SCHEMA = "PUBLIC";
+
+    static final Pattern BUILDING_NAME = Pattern.compile("[A-Za-z][A-Za-z0-9_]{0,62}");
+    private static final String[] TENANT_COLUMNS = {"name", "apt_number", "lease_start", "lease_expired", "security", "rent", "balance"};
+
+    private static volatile boolean initialized;
+
+    private ConsolidatedStorage() {
+    }
+
+    public static boolean isEnabled() {
+        return "consolidated".equalsIgnoreCase(System.getProperty("pm.storage", "files"));
+    }
+
+    /** Name of the shared database file, {@code portfolio} unless {@code pm.storage.database} says otherwise. */
+    public static String databaseName() {
+        return System.getProperty("pm.storage.database", "portfolio");
+    }
+
+    /** JDBC URL of the shared database with {@code schema} as the default schema. */
+    static String urlFor(String schema) {
+        if (DatabaseServer.isClient()) return DatabaseServer.urlFor(databaseName() + ";SCHEMA=" + schema);
+        return "jdbc:h2:" + System.getProperty("pm.data.dir", ".") + "/" + databaseName() + ";SCHEMA=" + schema;
+    }
+
+    /**
+     * Creates the shared tables if needed and, on first use, registers {@code defaults} as buildings.
+     * Returns every building name in the order they were added.
+     */
+    public static List<String> buildings(List<String> defaults) throws SQLException {
+        initialize(defaults);
+        List<String> names = new ArrayList<>();
+        try (Connection conn = ConnectionProvider.getConnection(SHARED_SCHEMA);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM buildings ORDER BY id")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Adds a building, or makes sure its schema and views exist if it is already registered.
+     * Returns its {@code building_id}.
+     */
+    public static int addBuilding(String name) throws SQLException {
+        if (!BUILDING_NAME.matcher(name).matches() || name.equalsIgnoreCase(SHARED_SCHEMA)
+                || name.equalsIgnoreCase("INFORMATION_SCHEMA")) {
+            throw new IllegalArgumentException("Building names must start with a letter and contain only letters, digits and '_': " + name);
+        }
+        initialize(new ArrayList<>());
+        try (Connection conn = ConnectionProvider.getConnection(SHARED_SCHEMA)) {
+            int id = buildingId(conn, name);
+            if (id == 0) {
+                try (PreparedStatement insert = conn.prepareStatement("INSERT INTO buildings (name) VALUES (?)")) {
+                    insert.setString(1, name);
+                    insert.executeUpdate();
+                }
+                id = buildingId(conn, name);
+            }
+            createViews(conn, name, id);
+            return id;
+        }
+    }
+
+    static int buildingId(Connection conn, String name) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM PUBLIC.buildings WHERE UPPER(name) = ?")) {
+            stmt.setString(1, name.toUpperCase(Locale.ROOT));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private static synchronized void initialize(List<String> defaults) throws SQLException {
+        if (initialized) return;
+        try (Connection conn = ConnectionProvider.getConnection(SHARED_SCHEMA);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS buildings ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                    + "name VARCHAR(63) NOT NULL UNIQUE, "
+                    + "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS tenants ("
+                    + "building_id INT NOT NULL, "
+                    + "id INT NOT NULL, "
+                    + "name VARCHAR(255), "
+                    + "apt_number VARCHAR(50), "
+                    + "lease_start DATE, "
+                    + "lease_expired DATE, "
+                    + "security DOUBLE, "
+                    + "rent DOUBLE, "
+                    + "balance DOUBLE DEFAULT 0, "
+                    + "accrued_through DATE DEFAULT " + RentAccrual.DEFAULT_ACCRUED_THROUGH + ", "
+                    + "PRIMARY KEY (building_id, id), "
+                    + "FOREIGN KEY (building_id) REFERENCES buildings(id))");
+            // Same (sort column, id) indexes as the per-file schema, behind the building.
+            for (String column : TENANT_COLUMNS) {
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_tenants_" + column + " ON tenants (building_id, " + column + ", id)");
+            }
+            // Databases created before rent accrual existed.
+            stmt.execute("ALTER TABLE tenants ADD COLUMN IF NOT EXISTS accrued_through DATE DEFAULT " + RentAccrual.DEFAULT_ACCRUED_THROUGH);
+            stmt.execute("UPDATE tenants SET accrued_through = " + RentAccrual.DEFAULT_ACCRUED_THROUGH + " WHERE accrued_through IS NULL");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tenants_accrued_through ON tenants (building_id, accrued_through)");
+            // Change tracking for TenantDelta, as in the per-file schema but with one sequence for all buildings.
+            stmt.execute("CREATE SEQUENCE IF NOT EXISTS tenants_version");
+            stmt.execute("ALTER TABLE tenants ADD COLUMN IF NOT EXISTS row_version BIGINT "
+                    + "DEFAULT NEXT VALUE FOR tenants_version ON UPDATE NEXT VALUE FOR tenants_version NOT NULL");
+            stmt.execute("ALTER TABLE tenants ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP "
+                    + "DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP NOT NULL");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tenants_row_version ON tenants (building_id, row_version)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS tenant_tombstones ("
+                    + "building_id INT NOT NULL, "
+                    + "tenant_id INT NOT NULL, "
+                    + "row_version BIGINT NOT NULL, "
+                    + "deleted_at TIMESTAMP NOT NULL, "
+                    + "PRIMARY KEY (building_id, tenant_id))");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tenant_tombstones_row_version ON tenant_tombstones (building_id, row_version)");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS tenants_tombstone AFTER DELETE ON tenants "
+                    + "FOR EACH ROW CALL \"" + TombstoneTrigger.Consolidated.class.getName() + "\"");
+            stmt.execute("CREATE TABLE IF NOT EXISTS payments ("
+                    + "building_id INT NOT NULL, "
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "tenant_id INT NOT NULL, "
+                    + "period DATE NOT NULL, "
+                    + "amount DOUBLE NOT NULL, "
+                    + "posted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "FOREIGN KEY (building_id, tenant_id) REFERENCES tenants(building_id, id) ON DELETE CASCADE)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_payments_tenant_period ON payments (building_id, tenant_id, period)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_payments_period ON payments (building_id, period)");
+            stmt.execute("ALTER TABLE payments ADD COLUMN IF NOT EXISTS bank_ref VARCHAR(64)");
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_payments_bank_ref ON payments (bank_ref)");
+            // The last tenant id handed out per building, so ids are never reused (BuildingViewTrigger).
+            // Databases created before it start past every id still in use or remembered by a tombstone.
+            stmt.execute("ALTER TABLE buildings ADD COLUMN IF NOT EXISTS last_tenant_id INT");
+            stmt.execute("UPDATE buildings b SET last_tenant_id = GREATEST("
+                    + "(SELECT COALESCE(MAX(id), 0) FROM tenants t WHERE t.building_id = b.id), "
+                    + "(SELECT COALESCE(MAX(tenant_id), 0) FROM tenant_tombstones d WHERE d.building_id = b.id)) "
+                    + "WHERE last_tenant_id IS NULL");
+            stmt.execute("ALTER TABLE buildings ALTER COLUMN last_tenant_id SET DEFAULT 0");
+            stmt.execute("ALTER TABLE buildings ALTER COLUMN last_tenant_id SET NOT NULL");
+
+            boolean empty;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM buildings")) {
+                rs.next();
+                empty = rs.getInt(1) == 0;
+            }
+            initialized = true;
+            if (empty) {
+                for (String name : defaults) {
+                    addBuilding(name);
+                }
+            }
+        }
+    }
+
+    /** (Re)creates the building's schema, its views and their write triggers. Safe to run again. */
+    private static void createViews(Connection conn, String name, int id) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE SCHEMA IF NOT EXISTS " + name);
+            stmt.execute("CREATE OR REPLACE VIEW " + name + ".tenants AS SELECT id, "
+                    + String.join(", ", TENANT_COLUMNS) + ", accrued_through, row_version, updated_at FROM PUBLIC.tenants WHERE building_id = " + id);
+            stmt.execute("CREATE OR REPLACE VIEW " + name + ".tenant_tombstones AS SELECT tenant_id, row_version, deleted_at "
+                    + "FROM PUBLIC.tenant_tombstones WHERE building_id = " + id);
+            stmt.execute("CREATE OR REPLACE VIEW " + name + ".payments AS SELECT id, tenant_id, period, amount, posted_at, bank_ref "
+                    + "FROM PUBLIC.payments WHERE building_id = " + id);
+            for (String view : new String[]{"tenants", "payments"}) {
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS " + name + "." + view + "_write INSTEAD OF INSERT, UPDATE, DELETE ON "
+                        + name + "." + view + " FOR EACH ROW CALL \"" + BuildingViewTrigger.class.getName() + "\"");
+            }
+            stmt.execute(RentAccrual.createLogTable(name + ".rent_accruals"));
+        }
+    }
+
+    /**
+     * Copies the given building files into the shared database, one transaction per building.
+     * A building that was merged before is replaced, so the merge can be repeated. Files that do
+     * not exist are skipped; the source files are left untouched.
+     */
+    public static List<MergeResult> mergeFiles(List<String> buildingFiles) throws SQLException {
+        List<MergeResult> results = new ArrayList<>();
+        for (String name : buildingFiles) {
+            Path file = Paths.get(System.getProperty("pm.data.dir", "."), name + ".mv.db");
+            if (!Files.exists(file)) {
+                results.add(new MergeResult(name, false, 0, 0));
+                continue;
+            }
+            int buildingId = addBuilding(name);
+            try (Connection source = ConnectionProvider.openUnpooled(ConnectionProvider.fileUrlFor(name));
+                 Connection target = ConnectionProvider.getConnection(SHARED_SCHEMA)) {
+                DatabaseManager.initializeSchema(source);
+                target.setAutoCommit(false);
+                try {
+                    try (PreparedStatement clear = target.prepareStatement("DELETE FROM tenants WHERE building_id = ?")) {
+                        clear.setInt(1, buildingId);
+                        clear.executeUpdate();
+                    }
+                    int tenants = copy(source, target, buildingId,
+                            "SELECT id, " + String.join(", ", TENANT_COLUMNS) + ", accrued_through FROM tenants ORDER BY id",
+                            "INSERT INTO tenants (building_id, id, " + String.join(", ", TENANT_COLUMNS) + ", accrued_through) "
+                                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                    int payments = copy(source, target, buildingId,
+                            "SELECT tenant_id, period, amount, posted_at, bank_ref FROM payments ORDER BY id",
+                            "INSERT INTO payments (building_id, tenant_id, period, amount, posted_at, bank_ref) VALUES (?, ?, ?, ?, ?, ?)");
+                    try (PreparedStatement reserve = target.prepareStatement("UPDATE buildings SET last_tenant_id = "
+                            + "GREATEST(last_tenant_id, (SELECT COALESCE(MAX(id), 0) FROM tenants WHERE building_id = ?)) WHERE id = ?")) {
+                        reserve.setInt(1, buildingId);
+                        reserve.setInt(2, buildingId);
+                        reserve.executeUpdate();
+                    }
+                    target.commit();
+                    results.add(new MergeResult(name, true, tenants, payments));
+                } catch (SQLException e) {
+                    target.rollback();
+                    throw e;
+                }
+            }
+            TenantEvents.invalidated(name);
+        }
+        return results;
+    }
+
+    private static int copy(Connection source, Connection target, int buildingId, String select, String insert) throws SQLException {
+        int rows = 0;
+        try (Statement read = source.createStatement();
+             ResultSet rs = read.executeQuery(select);
+             PreparedStatement write = target.prepareStatement(insert)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                write.setInt(1, buildingId);
+                for (int i = 1; i <= columns; i++) {
+                    write.setObject(i + 1, rs.getObject(i));
+                }
+                write.addBatch();
+                if (++rows % 1000 == 0) {
+                    write.executeBatch();
+                }
+            }
+            write.executeBatch();
+        }
+        return rows;
+    }
+
+    public static final class MergeResult {
+        private final String building;
+        private final boolean merged;
+        private final int tenants;
+        private final int payments;
+
+        MergeResult(String building, boolean merged, int tenants, int payments) {
+            this.building = building;
+            this.merged = merged;
+            this.tenants = tenants;
+            this.payments = payments;
+        }
+
+        public String getBuilding() {
+            return building;
+        }
+
+        /** False if there was no file for the building. */
+        public boolean isMerged() {
+            return merged;
+        }
+
+        public int getTenants() {
+            return tenants;
+        }
+
+        public int getPayments() {
+            return payments;
+        }
+
+        @Override
+        public String toString() {
+            return merged
+                    ? building + ": " + tenants + " tenants, " + payments + " payments"
+                    : building + ": no database file, skipped";
+        }
+    }
+}
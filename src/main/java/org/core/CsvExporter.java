@@ -0,0 +1,305 @@
+package org.core;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the tenants of a building to CSV straight from the database.
+ * <p>
+ * Rows are streamed from a forward-only result set and formatted by hand into a large byte
+ * buffer that is drained into a file channel, so nothing is materialized as {@link Tenant}
+ * objects and no {@code String.format} runs per row. The format matches what
+ * {@link CsvImporter} reads back.
+ */
+public class CsvExporter {
+    public static final String HEADER = "ID,Name,Apt#,LeaseStart,LeaseExpired,Security,Rent,Balance";
+
+    private static final int FETCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private boolean gzip;
+
+    public CsvExporter gzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    public String fileNameFor(String dbName) {
+        return dbName + "_tenants.csv" + (gzip ? ".gz" : "");
+    }
+
+    public ExportResult export(String dbName, Path target) throws IOException, SQLException {
+        long started = System.nanoTime();
+        long rows = 0;
+
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.EXPORT);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             CsvChannelWriter out = new CsvChannelWriter(openChannel(target))) {
+            stmt.setFetchSize(FETCH_SIZE);
+            out.ascii(HEADER).newLine();
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT id, name, apt_number, lease_start, lease_expired, security, rent, balance FROM tenants ORDER BY id")) {
+                while (rs.next()) {
+                    out.integer(rs.getInt(1)).comma()
+                            .text(rs.getString(2)).comma()
+                            .text(rs.getString(3)).comma()
+                            .date(rs.getDate(4)).comma()
+                            .date(rs.getDate(5)).comma()
+                            .money(rs.getDouble(6)).comma()
+                            .money(rs.getDouble(7)).comma()
+                            .money(rs.getDouble(8)).newLine();
+                    rows++;
+                }
+            }
+            sample.done(rows);
+        }
+        return new ExportResult(dbName, target, rows, Files.size(target), System.nanoTime() - started);
+    }
+
+    public CompletableFuture<ExportResult> exportAsync(String dbName, Path target) {
+        return BackgroundExecutor.supply(() -> {
+            try {
+                return export(dbName, target);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Exports every building into its own file in {@code directory}, all buildings at once.
+     * Completes when the last file is written; fails if any building fails.
+     */
+    public CompletableFuture<Map<String, ExportResult>> exportAll(List<String> buildings, Path directory) {
+        return BackgroundExecutor.forEachBuilding(buildings, dbName -> export(dbName, directory.resolve(fileNameFor(dbName))));
+    }
+
+    private WritableByteChannel openChannel(Path target) throws IOException {
+        FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        if (!gzip) {
+            return file;
+        }
+        return Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file), 1 << 16));
+    }
+
+    /** Appends CSV fields to a byte buffer and drains it into a channel when it fills up. */
+    static final class CsvChannelWriter implements AutoCloseable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder();
+        private final byte[] digits = new byte[20];
+
+        CsvChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        CsvChannelWriter comma() throws IOException {
+            return put((byte) ',');
+        }
+
+        CsvChannelWriter newLine() throws IOException {
+            return put((byte) '\n');
+        }
+
+        CsvChannelWriter ascii(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                put((byte) value.charAt(i));
+            }
+            return this;
+        }
+
+        /** Writes a text field, quoted per RFC 4180 if it holds a comma, quote or line break. NULL leaves it empty. */
+        CsvChannelWriter text(String value) throws IOException {
+            if (value == null) return this;
+            boolean ascii = true, quote = false;
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    ascii = false;
+                } else if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    quote = true;
+                }
+            }
+            if (!quote) {
+                return ascii ? ascii(value) : encode(value);
+            }
+            String escaped = value.replace("\"", "\"\"");
+            put((byte) '"');
+            if (ascii) {
+                ascii(escaped);
+            } else {
+                encode(escaped);
+            }
+            return put((byte) '"');
+        }
+
+        CsvChannelWriter integer(long value) throws IOException {
+            if (value < 0) {
+                if (value == Long.MIN_VALUE) return ascii(Long.toString(value));
+                put((byte) '-');
+                value = -value;
+            }
+            int pos = digits.length;
+            do {
+                digits[--pos] = (byte) ('0' + (value % 10));
+                value /= 10;
+            } while (value != 0);
+            ensure(digits.length - pos);
+            buffer.put(digits, pos, digits.length - pos);
+            return this;
+        }
+
+        /**
+         * Writes {@code value} with exactly two decimals as {@code %.2f} does: rounded half up from
+         * its shortest decimal form, so 1.005 gives 1.01, and negative even when it rounds to zero.
+         */
+        CsvChannelWriter money(double value) throws IOException {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return ascii(Double.toString(value));
+            }
+            BigDecimal rounded = BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+            if (rounded.signum() == 0 && (value < 0 || 1 / value < 0)) {
+                put((byte) '-');
+            }
+            return ascii(rounded.toPlainString());
+        }
+
+        /** Writes yyyy-MM-dd; a NULL date leaves the field empty. */
+        @SuppressWarnings("deprecation")
+        CsvChannelWriter date(Date date) throws IOException {
+            if (date == null) return this;
+            int year = date.getYear() + 1900;
+            int month = date.getMonth() + 1;
+            int day = date.getDate();
+            pad(year, 4);
+            put((byte) '-');
+            pad(month, 2);
+            put((byte) '-');
+            return pad(day, 2);
+        }
+
+        private CsvChannelWriter pad(int value, int width) throws IOException {
+            ensure(width);
+            int start = buffer.position();
+            buffer.position(start + width);
+            for (int i = width - 1; i >= 0; i--) {
+                buffer.put(start + i, (byte) ('0' + value % 10));
+                value /= 10;
+            }
+            return this;
+        }
+
+        private CsvChannelWriter encode(String value) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(value);
+            utf8.reset();
+            while (true) {
+                CoderResult result = utf8.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    drain();
+                } else {
+                    break;
+                }
+            }
+            utf8.flush(buffer);
+            return this;
+        }
+
+        private CsvChannelWriter put(byte b) throws IOException {
+            if (!buffer.hasRemaining()) drain();
+            buffer.put(b);
+            return this;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    public static final class ExportResult {
+        private final String dbName;
+        private final Path file;
+        private final long rows;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        ExportResult(String dbName, Path file, long rows, long bytes, long elapsedNanos) {
+            this.dbName = dbName;
+            this.file = file;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public String getDbName() {
+            return dbName;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d rows, %d KB in %.2fs (%.0f rows/sec) -> %s",
+                    dbName, rows, bytes / 1024, elapsedNanos / 1e9, getRowsPerSecond(), file);
+        }
+    }
+}
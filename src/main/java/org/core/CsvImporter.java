@@ -0,0 +1,404 @@
+package org.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Imports tenants from a CSV file (ID,Name,Apt#,LeaseStart,LeaseExpired,Security,Rent,Balance)
+ * into one building.
+ * <p>
+ * The file is streamed line by line and inserted with JDBC batches, committing once per
+ * chunk. Rows that cannot be parsed or that the database rejects are skipped and written
+ * to the import log, so a bad line no longer leaves the building half-imported.
+ */
+public class CsvImporter {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /** How many lines one quoted record may span before its quote is taken to be unbalanced. */
+    public static final int MAX_RECORD_LINES = 20;
+
+    private static final String INSERT_SQL = "INSERT INTO tenants (id, name, apt_number, lease_start, lease_expired, security, rent, balance) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /** Receives progress after every committed chunk. Called on the import thread. */
+    public interface ProgressListener {
+        void onProgress(long rowsImported, long bytesRead, long totalBytes);
+    }
+
+    private final String dbName;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private Path logFile = Paths.get("import_log.txt");
+    private ProgressListener listener = (rows, bytes, total) -> { };
+    private volatile boolean cancelled;
+
+    public CsvImporter(String dbName) {
+        this.dbName = dbName;
+    }
+
+    public CsvImporter batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public CsvImporter logFile(Path logFile) {
+        this.logFile = logFile;
+        return this;
+    }
+
+    public CsvImporter onProgress(ProgressListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /** Asks a running import to stop after the current row. The open chunk is rolled back. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** Runs the import on the {@link BackgroundExecutor}. */
+    public CompletableFuture<ImportResult> startAsync(Path csvFile) {
+        return BackgroundExecutor.supply(() -> {
+            try {
+                return importFile(csvFile);
+            } catch (IOException | SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    public ImportResult importFile(Path csvFile) throws IOException, SQLException {
+        long started = System.nanoTime();
+        long totalBytes = Files.size(csvFile);
+        long imported = 0;
+        long rejected = 0;
+        List<Object[]> chunk = new ArrayList<>(batchSize);
+
+        try (LineReader reader = new LineReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8));
+             BufferedWriter log = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+
+            conn.setAutoCommit(false);
+            log.write("--- Import of " + csvFile.getFileName() + " into " + dbName + " started: " + LocalDateTime.now() + " ---");
+            log.newLine();
+
+            String line = reader.readLine(); // header
+            long lineNumber = 1;
+            while (!cancelled && (line = reader.readLine()) != null) {
+                lineNumber++;
+                // A quoted field may hold line breaks, so a record can span several lines.
+                String record = line;
+                long firstLine = lineNumber;
+                List<String> fields;
+                while ((fields = fields(record)) == null && lineNumber - firstLine + 1 < MAX_RECORD_LINES
+                        && (line = reader.readLine()) != null) {
+                    lineNumber++;
+                    record += "\n" + line;
+                }
+                if (fields == null) {
+                    // An unbalanced quote would otherwise swallow the rest of the file.
+                    rejected += lineNumber - firstLine + 1;
+                    log.write("Rejected lines " + firstLine + "-" + lineNumber + ": unclosed quote after "
+                            + (lineNumber - firstLine + 1) + " lines");
+                    log.newLine();
+                    for (String swallowed : record.split("\n", -1)) {
+                        log.write("  " + swallowed);
+                        log.newLine();
+                    }
+                    continue;
+                }
+                Object[] row = parse(fields);
+                if (row == null) {
+                    rejected++;
+                    log.write("Rejected line " + firstLine + ": " + record);
+                    log.newLine();
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == batchSize) {
+                    ChunkOutcome outcome = flush(conn, pstmt, chunk, log);
+                    imported += outcome.inserted;
+                    rejected += outcome.rejected;
+                    listener.onProgress(imported, reader.getBytesRead(), totalBytes);
+                }
+            }
+
+            if (cancelled) {
+                conn.rollback();
+                log.write("Import cancelled; " + chunk.size() + " uncommitted rows discarded.");
+                log.newLine();
+            } else if (!chunk.isEmpty()) {
+                ChunkOutcome outcome = flush(conn, pstmt, chunk, log);
+                imported += outcome.inserted;
+                rejected += outcome.rejected;
+                listener.onProgress(imported, reader.getBytesRead(), totalBytes);
+            }
+
+            ImportResult result = new ImportResult(imported, rejected, System.nanoTime() - started, cancelled);
+            log.write("--- Import finished: " + LocalDateTime.now() + " (" + result + ") ---");
+            log.newLine();
+            log.newLine();
+            return result;
+        }
+    }
+
+    /**
+     * Sends one chunk as a batch and commits it. If the database rejects any row, the chunk
+     * is rolled back and replayed row by row so only the offending rows are skipped.
+     */
+    private ChunkOutcome flush(Connection conn, PreparedStatement pstmt, List<Object[]> chunk, BufferedWriter log)
+            throws SQLException, IOException {
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.IMPORT_BATCH)) {
+            ChunkOutcome outcome = new ChunkOutcome();
+            List<Tenant> committed = new ArrayList<>(chunk.size());
+            try {
+                for (Object[] row : chunk) {
+                    bind(pstmt, row);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                List<Tenant> inserted = new ArrayList<>(chunk.size());
+                for (Object[] row : chunk) {
+                    inserted.add(toTenant(row));
+                }
+                ChangeJournal.commit(dbName, conn, journal(inserted));
+                outcome.inserted = chunk.size();
+                committed.addAll(inserted);
+            } catch (BatchUpdateException e) {
+                pstmt.clearBatch();
+                conn.rollback();
+                for (Object[] row : chunk) {
+                    try {
+                        bind(pstmt, row);
+                        pstmt.executeUpdate();
+                        Tenant tenant = toTenant(row);
+                        ChangeJournal.commit(dbName, conn, ChangeJournal.Entry.inserted(dbName, tenant));
+                        outcome.inserted++;
+                        committed.add(tenant);
+                    } catch (SQLException rowError) {
+                        conn.rollback();
+                        outcome.rejected++;
+                        log.write("Rejected tenant " + row[0] + ": " + rowError.getMessage().replace(System.lineSeparator(), " "));
+                        log.newLine();
+                    }
+                }
+            }
+            log.write("Imported " + outcome.inserted + " tenants (ids " + chunk.get(0)[0] + " .. " + chunk.get(chunk.size() - 1)[0] + ")");
+            log.newLine();
+            chunk.clear();
+            TenantEvents.upserted(dbName, committed);
+            sample.done(outcome.inserted);
+            return outcome;
+        }
+    }
+
+    private List<ChangeJournal.Entry> journal(List<Tenant> inserted) {
+        List<ChangeJournal.Entry> changes = new ArrayList<>(inserted.size());
+        for (Tenant tenant : inserted) {
+            changes.add(ChangeJournal.Entry.inserted(dbName, tenant));
+        }
+        return changes;
+    }
+
+    /**
+     * Splits one record into its fields, unquoting those quoted per RFC 4180. Returns null if a
+     * quoted field is still open at the end, meaning the record goes on on the next line.
+     */
+    static List<String> fields(String record) {
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false, wasQuoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                // Only a quote that opens a field quotes it; one inside an unquoted field is kept.
+                quoted = wasQuoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static Object[] parse(List<String> tokens) {
+        if (tokens.size() < 8) {
+            return null;
+        }
+        try {
+            return new Object[]{
+                    Integer.parseInt(tokens.get(0).trim()),
+                    tokens.get(1),
+                    tokens.get(2),
+                    Date.valueOf(tokens.get(3).trim()),
+                    Date.valueOf(tokens.get(4).trim()),
+                    Double.parseDouble(tokens.get(5).trim()),
+                    Double.parseDouble(tokens.get(6).trim()),
+                    Double.parseDouble(tokens.get(7).trim())
+            };
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Tenant toTenant(Object[] row) {
+        return new Tenant((Integer) row[0], (String) row[1], (String) row[2],
+                ((Date) row[3]).toLocalDate(), ((Date) row[4]).toLocalDate(),
+                (Double) row[5], (Double) row[6], (Double) row[7]);
+    }
+
+    private static void bind(PreparedStatement pstmt, Object[] row) throws SQLException {
+        pstmt.setInt(1, (Integer) row[0]);
+        pstmt.setString(2, (String) row[1]);
+        pstmt.setString(3, (String) row[2]);
+        pstmt.setDate(4, (Date) row[3]);
+        pstmt.setDate(5, (Date) row[4]);
+        pstmt.setDouble(6, (Double) row[5]);
+        pstmt.setDouble(7, (Double) row[6]);
+        pstmt.setDouble(8, (Double) row[7]);
+    }
+
+    /**
+     * Reads lines like {@link BufferedReader#readLine()} but counts the UTF-8 bytes it has
+     * consumed, line terminators included, so progress can be set against the file size.
+     */
+    private static final class LineReader implements AutoCloseable {
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int pos, limit;
+        private long bytesRead;
+
+        LineReader(Reader in) {
+            this.in = in;
+        }
+
+        String readLine() throws IOException {
+            line.setLength(0);
+            int c;
+            while ((c = read()) != -1) {
+                if (c == '\n') {
+                    bytesRead++;
+                    return line.toString();
+                }
+                if (c == '\r') {
+                    bytesRead++;
+                    if (peek() == '\n') {
+                        pos++;
+                        bytesRead++;
+                    }
+                    return line.toString();
+                }
+                // Surrogates are two of a four-byte pair; everything else is one, two or three bytes.
+                bytesRead += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate((char) c) ? 2 : 3;
+                line.append((char) c);
+            }
+            return line.length() == 0 ? null : line.toString();
+        }
+
+        long getBytesRead() {
+            return bytesRead;
+        }
+
+        private int read() throws IOException {
+            int c = peek();
+            if (c != -1) pos++;
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (pos == limit) {
+                int n = in.read(buffer, 0, buffer.length);
+                if (n <= 0) return -1;
+                pos = 0;
+                limit = n;
+            }
+            return buffer[pos];
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class ChunkOutcome {
+        long inserted;
+        long rejected;
+    }
+
+    public static final class ImportResult {
+        private final long rowsImported;
+        private final long rowsRejected;
+        private final long elapsedNanos;
+        private final boolean cancelled;
+
+        ImportResult(long rowsImported, long rowsRejected, long elapsedNanos, boolean cancelled) {
+            this.rowsImported = rowsImported;
+            this.rowsRejected = rowsRejected;
+            this.elapsedNanos = elapsedNanos;
+            this.cancelled = cancelled;
+        }
+
+        public long getRowsImported() {
+            return rowsImported;
+        }
+
+        public long getRowsRejected() {
+            return rowsRejected;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowsImported * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d imported, %d rejected in %.2fs, %.0f rows/sec%s",
+                    rowsImported, rowsRejected, elapsedNanos / 1e9, getRowsPerSecond(), cancelled ? ", cancelled" : "");
+        }
+    }
+}
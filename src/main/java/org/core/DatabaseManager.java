@@ -1,15 +1,37 @@
 package org.core;
 
 import java.sql.*;
+import java.time.LocalDate;
 
 
 public class DatabaseManager {
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+    /** The version {@link #migrate} brings every building to. */
+    static final int SCHEMA_VERSION = 4;
+
     public static void initializeDatabase(String dbName) {
-        String DB_URL = "jdbc:h2:./" + dbName;
+        try {
+            initialize(dbName);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, "sa", "");
-             Statement stmt = conn.createStatement()) {
+    /** Creates or upgrades the building's schema, or its views in consolidated storage. */
+    static void initialize(String dbName) throws SQLException {
+        if (ConsolidatedStorage.isEnabled()) {
+            ConsolidatedStorage.addBuilding(dbName);
+        } else {
+            try (Connection conn = ConnectionProvider.getConnection(dbName)) {
+                initializeSchema(conn);
+            }
+        }
+        System.out.println("Database initialized: " + dbName);
+    }
 
+    /** Creates or upgrades the per-building schema on {@code conn}. */
+    static void initializeSchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
             String sql = "CREATE TABLE IF NOT EXISTS tenants ("
                     + "id INT AUTO_INCREMENT PRIMARY KEY, "
                     + "name VARCHAR(255), "
@@ -18,24 +40,175 @@ public class DatabaseManager {
                     + "lease_expired DATE, "
                     + "security DOUBLE, "
                     + "rent DOUBLE, "
-                    + "jan_paid DOUBLE DEFAULT 0, "
-                    + "feb_paid DOUBLE DEFAULT 0, "
-                    + "mar_paid DOUBLE DEFAULT 0, "
-                    + "apr_paid DOUBLE DEFAULT 0, "
-                    + "may_paid DOUBLE DEFAULT 0, "
-                    + "jun_paid DOUBLE DEFAULT 0, "
-                    + "jul_paid DOUBLE DEFAULT 0, "
-                    + "aug_paid DOUBLE DEFAULT 0, "
-                    + "sep_paid DOUBLE DEFAULT 0, "
-                    + "oct_paid DOUBLE DEFAULT 0, "
-                    + "nov_paid DOUBLE DEFAULT 0, "
-                    + "dec_paid DOUBLE DEFAULT 0, "
                     + "balance DOUBLE DEFAULT 0)";
             stmt.execute(sql);
-            System.out.println("Database initialized: " + dbName);
+
+            // Composite (sort column, id) indexes back the keyset pagination in TenantPager.
+            for (String column : new String[]{"name", "apt_number", "lease_start", "lease_expired", "security", "rent", "balance"}) {
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_tenants_" + column + " ON tenants (" + column + ", id)");
+            }
+
+            migrate(conn);
+        }
+    }
+
+    /**
+     * Brings an existing database up to the current schema and records the result in
+     * {@code schema_version}. H2 commits on DDL, so every step must be safe to run again
+     * if it was interrupted halfway.
+     */
+    private static void migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL)");
+        }
+        int version = schemaVersion(conn);
+
+        if (version < 1) {
+            runStep(conn, 1, () -> migrateToPaymentLedger(conn));
+        }
+        if (version < 2) {
+            runStep(conn, 2, () -> addRentAccrual(conn));
+        }
+        if (version < 3) {
+            runStep(conn, 3, () -> addRowVersions(conn));
+        }
+        if (version < 4) {
+            runStep(conn, 4, () -> addBankReferences(conn));
+        }
+        // Bump SCHEMA_VERSION with every new step.
+        restartRowVersions(conn);
+    }
+
+    /**
+     * Version 1: payments move from the twelve jan_paid .. dec_paid columns into the payments
+     * ledger. The old columns carry no year, so their amounts are booked to the current year.
+     */
+    private static void migrateToPaymentLedger(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS payments ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "tenant_id INT NOT NULL, "
+                    + "period DATE NOT NULL, "
+                    + "amount DOUBLE NOT NULL, "
+                    + "posted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "FOREIGN KEY (tenant_id) REFERENCES tenants(id) ON DELETE CASCADE)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_payments_tenant_period ON payments (tenant_id, period)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_payments_period ON payments (period)");
+
+            int year = LocalDate.now().getYear();
+            for (int i = 0; i < MONTHS.length; i++) {
+                String column = MONTHS[i] + "_paid";
+                if (!hasColumn(conn, "TENANTS", column.toUpperCase())) continue;
+
+                stmt.execute("INSERT INTO payments (tenant_id, period, amount) "
+                        + "SELECT id, DATE '" + LocalDate.of(year, i + 1, 1) + "', " + column
+                        + " FROM tenants WHERE " + column + " <> 0");
+                stmt.execute("ALTER TABLE tenants DROP COLUMN " + column);
+            }
+        }
+    }
+
+    /**
+     * Version 2: {@link RentAccrual} bookkeeping. Balances so far were only computed when a tenant
+     * was added, so existing tenants are taken as charged through last month.
+     */
+    private static void addRentAccrual(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE tenants ADD COLUMN IF NOT EXISTS accrued_through DATE DEFAULT " + RentAccrual.DEFAULT_ACCRUED_THROUGH);
+            stmt.execute("UPDATE tenants SET accrued_through = " + RentAccrual.DEFAULT_ACCRUED_THROUGH + " WHERE accrued_through IS NULL");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tenants_accrued_through ON tenants (accrued_through)");
+            stmt.execute(RentAccrual.createLogTable("rent_accruals"));
+        }
+    }
+
+    /**
+     * Version 3: change tracking for {@link TenantDelta}. Every insert and every update that changes
+     * a row gives it the next {@code row_version} from one sequence and sets {@code updated_at};
+     * {@link TombstoneTrigger} records deletions the same way in {@code tenant_tombstones}.
+     */
+    private static void addRowVersions(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE SEQUENCE IF NOT EXISTS tenants_version");
+            stmt.execute("ALTER TABLE tenants ADD COLUMN IF NOT EXISTS row_version BIGINT "
+                    + "DEFAULT NEXT VALUE FOR tenants_version ON UPDATE NEXT VALUE FOR tenants_version NOT NULL");
+            stmt.execute("ALTER TABLE tenants ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP "
+                    + "DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP NOT NULL");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tenants_row_version ON tenants (row_version)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS tenant_tombstones ("
+                    + "tenant_id INT PRIMARY KEY, "
+                    + "row_version BIGINT NOT NULL, "
+                    + "deleted_at TIMESTAMP NOT NULL)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tenant_tombstones_row_version ON tenant_tombstones (row_version)");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS tenants_tombstone AFTER DELETE ON tenants "
+                    + "FOR EACH ROW CALL \"" + TombstoneTrigger.class.getName() + "\"");
+        }
+    }
+
+    /**
+     * Version 4: payments posted from a bank statement remember the statement line they came from
+     * ({@link PaymentReconciler#bankReference}), so the same line is never posted twice.
+     */
+    private static void addBankReferences(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE payments ADD COLUMN IF NOT EXISTS bank_ref VARCHAR(64)");
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_payments_bank_ref ON payments (bank_ref)");
+        }
+    }
+
+    /**
+     * Moves {@code tenants_version} past every version in use. Rows copied in with their versions
+     * (see {@link MemoryStorage}) would otherwise be overtaken by older-looking new versions.
+     */
+    static void restartRowVersions(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            long next;
+            try (ResultSet rs = stmt.executeQuery("SELECT GREATEST(COALESCE((SELECT MAX(row_version) FROM tenants), 0), "
+                    + "COALESCE((SELECT MAX(row_version) FROM tenant_tombstones), 0)) + 1, "
+                    + "(SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_SCHEMA = SCHEMA() AND SEQUENCE_NAME = 'TENANTS_VERSION')")) {
+                rs.next();
+                next = rs.getLong(1);
+                if (rs.getLong(2) >= next) return;
+            }
+            stmt.execute("ALTER SEQUENCE tenants_version RESTART WITH " + next);
+        }
+    }
+
+    private interface Step {
+        void apply() throws SQLException;
+    }
+
+    private static void runStep(Connection conn, int version, Step step) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            step.apply();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM schema_version");
+                stmt.executeUpdate("INSERT INTO schema_version (version) VALUES (" + version + ")");
+            }
+            conn.commit();
         } catch (SQLException e) {
-            e.printStackTrace();
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
     }
-}
 
+    private static int schemaVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
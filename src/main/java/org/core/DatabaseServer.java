@@ -0,0 +1,144 @@
+package org.core;
+
+import org.h2.api.ErrorCode;
+import org.h2.tools.Server;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared server mode: one process owns the building databases and serves them over TCP, so the
+ * CLI, the GUI and further workstations can work on the same buildings at once.
+ * <pre>
+ * java -Dpm.server.password=... -cp ... org.core.DatabaseServer              # serves pm.data.dir on pm.server.port (9092)
+ * java -Dpm.server=localhost:9092 -Dpm.server.password=... -cp ... Main      # a client, CLI or GUI alike
+ * </pre>
+ * Clients open {@code jdbc:h2:tcp://} URLs instead of the files, in either file or consolidated
+ * storage, and log in with {@code pm.server.password}. The server refuses to start without one and
+ * sets it on every database file it serves, since whoever can log in to an H2 database can run
+ * code in the server process ({@code CREATE ALIAS}). It only accepts connections from this machine
+ * unless started with {@code -Dpm.server.allowOthers=true}. A local-only server creates databases
+ * the first time a client asks for them, as the embedded mode does; one open to other machines
+ * serves only databases that exist, creating the registered buildings' files at startup, so a
+ * building added later needs a restart of the server.
+ * <p>
+ * Concurrent edits of one tenant are caught by {@link TenantRepository} comparing row versions.
+ * {@link MemoryStorage} keeps a building in one process and cannot be used by clients. Nothing is
+ * written to a {@link ChangeJournal} in server mode: the server does not see which tenants its
+ * clients change, and the journal is off by default in a client since clients may share a data
+ * directory, which a client reports when it starts.
+ */
+public final class DatabaseServer {
+    public static final int DEFAULT_PORT = 9092;
+
+    private DatabaseServer() {
+    }
+
+    /** True if this process is a client of a server ({@code pm.server=host:port}). */
+    public static boolean isClient() {
+        return !address().isEmpty();
+    }
+
+    private static String address() {
+        return System.getProperty("pm.server", "").trim();
+    }
+
+    /** URL of a database on the server, e.g. {@code jdbc:h2:tcp://localhost:9092/property_1}. */
+    static String urlFor(String database) {
+        if (MemoryStorage.isEnabled()) {
+            throw new IllegalStateException("pm.storage=memory cannot be combined with pm.server");
+        }
+        return "jdbc:h2:tcp://" + address() + "/" + database;
+    }
+
+    /**
+     * Starts serving {@code pm.data.dir}; port 0 picks a free one. Throws if {@code pm.server.password}
+     * is not set.
+     */
+    public static Server start(int port) throws SQLException {
+        String password = ConnectionProvider.password();
+        if (password.isEmpty()) {
+            throw new SQLException("Set -Dpm.server.password: clients log in with it and the served databases are protected by it");
+        }
+        String dataDir = System.getProperty("pm.data.dir", ".");
+        protect(Paths.get(dataDir), password);
+        List<String> args = new ArrayList<>(List.of(
+                "-tcpPort", String.valueOf(port),
+                "-baseDir", dataDir));
+        if (Boolean.getBoolean("pm.server.allowOthers")) {
+            // Never together with -ifNotExists: anyone could create a database of their own and run code in it.
+            createRegistered();
+            args.add("-tcpAllowOthers");
+        } else {
+            args.add("-ifNotExists");
+        }
+        return Server.createTcpServer(args.toArray(new String[0])).start();
+    }
+
+    /** Sets the password on every database in the directory that still has the default empty one. */
+    private static void protect(Path dir, String password) throws SQLException {
+        List<String> databases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.mv.db")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                databases.add(name.substring(0, name.length() - ".mv.db".length()));
+            }
+        } catch (IOException e) {
+            throw new SQLException("Could not list the databases in " + dir, e);
+        }
+        for (String database : databases) {
+            String url = "jdbc:h2:" + dir + "/" + database;
+            if (acceptsPassword(url)) continue;
+            try (Connection conn = DriverManager.getConnection(url, "sa", "");
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER USER sa SET PASSWORD '" + password.replace("'", "''") + "'");
+            }
+        }
+    }
+
+    private static boolean acceptsPassword(String url) throws SQLException {
+        try {
+            ConnectionProvider.openUnpooled(url).close();
+            return true;
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ErrorCode.WRONG_USER_OR_PASSWORD) throw e;
+            return false;
+        }
+    }
+
+    /** Creates the files of the registered buildings, which a server open to others will not create on demand. */
+    private static void createRegistered() throws SQLException {
+        try {
+            for (String name : BuildingRegistry.names()) {
+                if (!ConsolidatedStorage.isEnabled()) {
+                    ConnectionProvider.openUnpooled(ConnectionProvider.fileUrlFor(name)).close();
+                }
+            }
+        } finally {
+            // The server opens them itself.
+            ConnectionProvider.closeAll();
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            Server server = start(Integer.getInteger("pm.server.port", DEFAULT_PORT));
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "database-server-shutdown"));
+            System.out.println("Serving " + System.getProperty("pm.data.dir", ".") + " at " + server.getURL()
+                    + "; start clients with -Dpm.server=localhost:" + server.getPort() + " and the same -Dpm.server.password."
+                    + " No change journal is kept in server mode. Ctrl+C stops the server.");
+        } catch (SQLException e) {
+            System.out.println("Could not start the database server: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
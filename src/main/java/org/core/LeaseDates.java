@@ -0,0 +1,46 @@
+package org.core;
+
+import java.time.LocalDate;
+
+/**
+ * Date helpers shared by the CLI and the GUI. Users type dates as MM-DD-YYYY; the database
+ * stores them as YYYY-MM-DD.
+ */
+public final class LeaseDates {
+    private LeaseDates() {
+    }
+
+    /** Converts MM-DD-YYYY to YYYY-MM-DD. */
+    public static String convertDateFormat(String date) {
+        try {
+            String[] parts = date.split("-");
+            if (parts.length != 3) throw new IllegalArgumentException();
+            return parts[2] + "-" + parts[0] + "-" + parts[1];
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid date format. Use MM-DD-YYYY.");
+        }
+    }
+
+    /** Formats a date the way users type it, MM-DD-YYYY. */
+    public static String formatForInput(LocalDate date) {
+        return String.format("%02d-%02d-%d", date.getMonthValue(), date.getDayOfMonth(), date.getYear());
+    }
+
+    /** Whole months between a YYYY-MM-DD lease start and the current month; 0 if the start is unreadable. */
+    public static int getUnpaidMonths(String leaseStart) {
+        return getUnpaidMonths(leaseStart, LocalDate.now());
+    }
+
+    public static int getUnpaidMonths(String leaseStart, LocalDate today) {
+        try {
+            String[] parts = leaseStart.split("-");
+            int leaseYear = Integer.parseInt(parts[0]);
+            int leaseMonth = Integer.parseInt(parts[1]);
+
+            int totalMonths = (today.getYear() - leaseYear) * 12 + (today.getMonthValue() - leaseMonth);
+            return Math.max(totalMonths, 0);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Lease expiry dates of every loaded building in one ordered index.
+ * <p>
+ * Each building is read once; after that the index follows {@link TenantEvents}, so adds, edits,
+ * deletes and imports update it in place. "Expiring within N days" is a range over the ordered
+ * set, so it costs the number of leases in the range, not the number of tenants. A daily check
+ * tells {@link Listener}s about leases that have come within {@code pm.leases.noticeDays} (30 by
+ * default), each lease once per expiry date.
+ */
+public final class LeaseExpirations {
+    public static final int NOTICE_DAYS = Integer.getInteger("pm.leases.noticeDays", 30);
+
+    /** Told about leases entering the notice window. Runs on a background thread. */
+    public interface Listener {
+        void leasesExpiring(List<Expiration> expirations);
+    }
+
+    private static final Comparator<Expiration> ORDER = Comparator.comparing(Expiration::getLeaseExpired)
+            .thenComparing(Expiration::getBuilding)
+            .thenComparingInt(Expiration::getTenantId);
+
+    private static final ReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private static final NavigableSet<Expiration> BY_DATE = new TreeSet<>(ORDER);
+    private static final Map<String, Map<Integer, Expiration>> BY_BUILDING = new HashMap<>();
+    /** Bumped by every event, so a load that raced with a write can tell and read again. */
+    private static final Map<String, Integer> VERSIONS = new HashMap<>();
+    private static final Set<Expiration> NOTIFIED = new HashSet<>();
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static ScheduledExecutorService scheduler;
+
+    static {
+        TenantEvents.addListener(new TenantEvents.Listener() {
+            @Override
+            public void tenantsUpserted(String dbName, List<Tenant> tenants) {
+                LOCK.writeLock().lock();
+                try {
+                    bump(dbName);
+                    Map<Integer, Expiration> building = BY_BUILDING.get(dbName);
+                    if (building == null) return;
+                    for (Tenant tenant : tenants) {
+                        removeLocked(building, tenant.getId());
+                        if (tenant.getLeaseExpired() != null) {
+                            addLocked(building, new Expiration(dbName, tenant.getId(), tenant.getName(),
+                                    tenant.getAptNumber(), tenant.getLeaseExpired()));
+                        }
+                    }
+                } finally {
+                    LOCK.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public void tenantDeleted(String dbName, int tenantId) {
+                LOCK.writeLock().lock();
+                try {
+                    bump(dbName);
+                    Map<Integer, Expiration> building = BY_BUILDING.get(dbName);
+                    if (building == null) return;
+                    removeLocked(building, tenantId);
+                } finally {
+                    LOCK.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public void buildingInvalidated(String dbName) {
+                boolean loaded;
+                LOCK.readLock().lock();
+                try {
+                    loaded = BY_BUILDING.containsKey(dbName);
+                } finally {
+                    LOCK.readLock().unlock();
+                }
+                if (loaded) {
+                    BackgroundExecutor.run(() -> reload(dbName));
+                }
+            }
+        });
+    }
+
+    private LeaseExpirations() {
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /** Reads every building not in the index yet, all at the same time. */
+    public static CompletableFuture<Void> load(List<String> buildings) {
+        List<String> missing = new ArrayList<>();
+        LOCK.readLock().lock();
+        try {
+            for (String dbName : buildings) {
+                if (!BY_BUILDING.containsKey(dbName)) missing.add(dbName);
+            }
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        return BackgroundExecutor.forEachBuilding(missing, dbName -> {
+            reload(dbName);
+            return null;
+        }).thenApply(ignored -> null);
+    }
+
+    /** Leases expiring from today through {@code days} days from now, soonest first. */
+    public static List<Expiration> expiringWithin(int days) {
+        LocalDate today = LocalDate.now();
+        return expiringBetween(today, today.plusDays(days));
+    }
+
+    /** Leases expiring between the two dates, both inclusive, soonest first. */
+    public static List<Expiration> expiringBetween(LocalDate from, LocalDate to) {
+        LOCK.readLock().lock();
+        try {
+            return new ArrayList<>(BY_DATE.subSet(bound(from, true), true, bound(to, false), true));
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    public static int size() {
+        LOCK.readLock().lock();
+        try {
+            return BY_DATE.size();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks for leases entering the notice window in the buildings that are open, now and once a
+     * day on a daemon thread, and in every other building once it is first used. Buildings are not
+     * opened just for the check. Calling it again does nothing.
+     */
+    public static synchronized void scheduleDailyCheck(Supplier<List<String>> buildings) {
+        if (scheduler != null) return;
+        BuildingRegistry.addReadyListener(dbName -> load(List.of(dbName)).whenComplete((ignored, error) -> {
+            if (error != null) error.printStackTrace();
+            else check(LocalDate.now());
+        }));
+        scheduler = Executors.newSingleThreadScheduledExecutor(new BackgroundExecutor.DaemonThreadFactory("pm-lease-expirations"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                List<String> open = new ArrayList<>(buildings.get());
+                open.retainAll(ConnectionProvider.openBuildings());
+                load(open).join();
+                check(LocalDate.now());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, 0, 1, TimeUnit.DAYS);
+    }
+
+    /** Notifies listeners about leases in the notice window they have not been told about yet. */
+    public static List<Expiration> check(LocalDate today) {
+        List<Expiration> fresh = new ArrayList<>();
+        synchronized (NOTIFIED) {
+            NOTIFIED.removeIf(expiration -> expiration.getLeaseExpired().isBefore(today));
+            for (Expiration expiration : expiringBetween(today, today.plusDays(NOTICE_DAYS))) {
+                if (NOTIFIED.add(expiration)) fresh.add(expiration);
+            }
+        }
+        if (!fresh.isEmpty()) {
+            for (Listener listener : LISTENERS) {
+                listener.leasesExpiring(fresh);
+            }
+        }
+        return fresh;
+    }
+
+    private static void reload(String dbName) {
+        while (true) {
+            int version;
+            LOCK.readLock().lock();
+            try {
+                version = VERSIONS.getOrDefault(dbName, 0);
+            } finally {
+                LOCK.readLock().unlock();
+            }
+
+            Map<Integer, Expiration> loaded = new HashMap<>();
+            try (Connection conn = ConnectionProvider.getConnection(dbName);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(
+                         "SELECT id, name, apt_number, lease_expired FROM tenants WHERE lease_expired IS NOT NULL")) {
+                while (rs.next()) {
+                    loaded.put(rs.getInt(1), new Expiration(dbName, rs.getInt(1), rs.getString(2), rs.getString(3),
+                            rs.getDate(4).toLocalDate()));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not load lease expirations for " + dbName, e);
+            }
+
+            LOCK.writeLock().lock();
+            try {
+                if (VERSIONS.getOrDefault(dbName, 0) != version) continue;
+                Map<Integer, Expiration> building = BY_BUILDING.computeIfAbsent(dbName, k -> new HashMap<>());
+                // Not removeAll: with a collection as large as the set it calls values().contains per entry.
+                for (Expiration expiration : building.values()) {
+                    BY_DATE.remove(expiration);
+                }
+                building.clear();
+                for (Expiration expiration : loaded.values()) {
+                    addLocked(building, expiration);
+                }
+                return;
+            } finally {
+                LOCK.writeLock().unlock();
+            }
+        }
+    }
+
+    private static void bump(String dbName) {
+        VERSIONS.merge(dbName, 1, Integer::sum);
+    }
+
+    private static void addLocked(Map<Integer, Expiration> building, Expiration expiration) {
+        building.put(expiration.getTenantId(), expiration);
+        BY_DATE.add(expiration);
+    }
+
+    private static void removeLocked(Map<Integer, Expiration> building, int tenantId) {
+        Expiration old = building.remove(tenantId);
+        if (old != null) {
+            BY_DATE.remove(old);
+        }
+    }
+
+    /** A key that sorts before (or after) every lease expiring on {@code date}. */
+    private static Expiration bound(LocalDate date, boolean lower) {
+        return new Expiration(lower ? "" : "\uffff", lower ? Integer.MIN_VALUE : Integer.MAX_VALUE, null, null, date);
+    }
+
+    public static final class Expiration {
+        private final String building;
+        private final int tenantId;
+        private final String name;
+        private final String aptNumber;
+        private final LocalDate leaseExpired;
+
+        Expiration(String building, int tenantId, String name, String aptNumber, LocalDate leaseExpired) {
+            this.building = building;
+            this.tenantId = tenantId;
+            this.name = name;
+            this.aptNumber = aptNumber;
+            this.leaseExpired = leaseExpired;
+        }
+
+        public String getBuilding() {
+            return building;
+        }
+
+        public int getTenantId() {
+            return tenantId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getAptNumber() {
+            return aptNumber;
+        }
+
+        public LocalDate getLeaseExpired() {
+            return leaseExpired;
+        }
+
+        public long daysLeft(LocalDate today) {
+            return ChronoUnit.DAYS.between(today, leaseExpired);
+        }
+
+        /** Same lease and expiry date; a renewed lease is a new expiration. */
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Expiration)) return false;
+            Expiration other = (Expiration) o;
+            return tenantId == other.tenantId && building.equals(other.building) && leaseExpired.equals(other.leaseExpired);
+        }
+
+        @Override
+        public int hashCode() {
+            return (building.hashCode() * 31 + tenantId) * 31 + leaseExpired.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s  %s  ID: %d, Name: %s, Apt#: %s (in %d days)",
+                    leaseExpired, building, tenantId, name, aptNumber, daysLeft(LocalDate.now()));
+        }
+    }
+}
@@ -0,0 +1,577 @@
+package org.core;
+
+import org.h2.jdbc.JdbcConnection;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional storage mode that serves every building from an in-memory H2 database
+ * ({@code -Dpm.storage=memory}).
+ * <p>
+ * The first connection to a building loads its {@code property_N} file into memory; from then on
+ * all reads and writes go to the memory copy. {@link WriteBehindTrigger} notes which rows each
+ * session changes, and when the session commits those rows are re-read and appended to the
+ * building's {@link WriteBehindLog}. The commit returns once the log is on disk (unless
+ * {@code pm.memory.syncCommits=false}), and a background flusher applies the logged rows to the
+ * building file every {@code pm.memory.flushIntervalMs} (1000 by default) in one transaction.
+ * <p>
+ * After a crash the file is behind by at most the unflushed part of the log, which is replayed the
+ * next time the building is opened in this mode.
+ * <p>
+ * Every table of the building schema with a single-column primary key is loaded and written
+ * behind, found from the schema when the building opens, so tables added by later migrations are
+ * covered without listing them here. Tables without one ({@code schema_version}, the file's
+ * {@code write_behind_state}) are bookkeeping of each database and stay where they are.
+ */
+public final class MemoryStorage {
+    private static final long FLUSH_INTERVAL_MS = Long.getLong("pm.memory.flushIntervalMs", 1000);
+    private static final boolean SYNC_COMMITS = Boolean.parseBoolean(System.getProperty("pm.memory.syncCommits", "true"));
+    private static final int READ_CHUNK = 500;
+    private static final int BATCH_SIZE = 1000;
+
+    private static final Map<String, Building> BUILDINGS = new ConcurrentHashMap<>();
+    private static final Map<String, Object> LOCKS = new ConcurrentHashMap<>();
+    private static final Map<String, Building> CATALOGS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(
+            new BackgroundExecutor.DaemonThreadFactory("pm-write-behind"));
+
+    private MemoryStorage() {
+    }
+
+    public static boolean isEnabled() {
+        return "memory".equalsIgnoreCase(System.getProperty("pm.storage", "files"));
+    }
+
+    static String urlFor(String dbName) {
+        return "jdbc:h2:mem:pm_" + dbName + ";DB_CLOSE_DELAY=-1";
+    }
+
+    /**
+     * Loads the building into memory on first use, replaying its write-behind log if it has one.
+     * Buildings load independently of each other.
+     */
+    static void ensureOpen(String dbName) throws SQLException {
+        if (BUILDINGS.containsKey(dbName)) return;
+        synchronized (lockFor(dbName)) {
+            if (!BUILDINGS.containsKey(dbName)) {
+                BUILDINGS.put(dbName, open(dbName));
+            }
+        }
+    }
+
+    private static Object lockFor(String dbName) {
+        return LOCKS.computeIfAbsent(dbName, k -> new Object());
+    }
+
+    /**
+     * Called by {@link ConnectionProvider} after {@code conn} committed. Logs the rows its session
+     * changed and waits until the log is durable.
+     */
+    static void afterCommit(String dbName, Connection conn) throws SQLException {
+        Building building = BUILDINGS.get(dbName);
+        if (building == null) return;
+        Changes changes = building.pending.remove(conn.unwrap(JdbcConnection.class).getSession());
+        if (changes != null) {
+            building.log(conn, changes);
+        }
+    }
+
+    /** Called by {@link WriteBehindTrigger} for every row written to a memory table. */
+    static void rowChanged(Connection conn, String table, Object[] row) throws SQLException {
+        Building building = CATALOGS.get(conn.getCatalog());
+        if (building == null) return;
+        Table written = building.tables.get(table.toUpperCase(Locale.ROOT));
+        if (written == null) return;
+        Object session = conn.unwrap(JdbcConnection.class).getSession();
+        building.pending.computeIfAbsent(session, s -> new Changes()).add(written, keyValue(row[written.keyIndex]));
+    }
+
+    /** Applies everything logged so far for the building to its file. */
+    public static void flush(String dbName) throws SQLException {
+        Building building = BUILDINGS.get(dbName);
+        if (building != null) {
+            building.flush();
+        }
+    }
+
+    /** Number of logged changes not yet applied to the building file. */
+    public static int backlog(String dbName) {
+        Building building = BUILDINGS.get(dbName);
+        return building == null ? 0 : building.queue.size();
+    }
+
+    /** Flushes the building, writes its file's final state and drops the memory copy. */
+    static void close(String dbName) {
+        synchronized (lockFor(dbName)) {
+            Building building = BUILDINGS.remove(dbName);
+            if (building != null) {
+                building.close();
+            }
+        }
+    }
+
+    static void closeAll() {
+        for (String dbName : BUILDINGS.keySet()) {
+            close(dbName);
+        }
+    }
+
+    private static Building open(String dbName) throws SQLException {
+        Connection file = ConnectionProvider.openUnpooled(ConnectionProvider.fileUrlFor(dbName));
+        Connection memory = null;
+        WriteBehindLog log = null;
+        try {
+            DatabaseManager.initializeSchema(file);
+            Map<String, Table> tables = tables(file);
+            Path logFile = Paths.get(System.getProperty("pm.data.dir", "."), dbName + ".wal");
+            long applied = recover(file, logFile, tables);
+            restartIdentities(file, tables);
+
+            memory = ConnectionProvider.openUnpooled(urlFor(dbName));
+            try (Statement stmt = memory.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+            DatabaseManager.initializeSchema(memory);
+            for (Table table : tables.values()) {
+                copy(file, memory, table);
+            }
+            restartIdentities(memory, tables);
+
+            log = new WriteBehindLog(logFile, applied, SYNC_COMMITS);
+            Building building = new Building(dbName, file, memory, log, tables);
+            CATALOGS.put(memory.getCatalog(), building);
+            try (Statement stmt = memory.createStatement()) {
+                for (Table table : tables.values()) {
+                    stmt.execute("CREATE TRIGGER IF NOT EXISTS " + table.name + "_write_behind AFTER INSERT, UPDATE, DELETE ON "
+                            + table.name + " FOR EACH ROW CALL \"" + WriteBehindTrigger.class.getName() + "\"");
+                }
+            }
+            building.flushTask = FLUSHER.scheduleWithFixedDelay(building::flushQuietly,
+                    FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            return building;
+        } catch (SQLException | IOException | RuntimeException e) {
+            closeQuietly(log);
+            closeQuietly(memory);
+            closeQuietly(file);
+            if (e instanceof SQLException) throw (SQLException) e;
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new SQLException("Could not open the write-behind log of " + dbName, e);
+        }
+    }
+
+    /**
+     * Applies the records of the log that the file has not seen yet, then empties the log.
+     * Returns the last sequence number in use.
+     */
+    private static long recover(Connection file, Path logFile, Map<String, Table> tables) throws SQLException, IOException {
+        try (Statement stmt = file.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS write_behind_state (applied_seq BIGINT NOT NULL)");
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM write_behind_state")) {
+                rs.next();
+                if (rs.getInt(1) == 0) {
+                    stmt.executeUpdate("INSERT INTO write_behind_state (applied_seq) VALUES (0)");
+                }
+            }
+        }
+        long applied = appliedSeq(file);
+        List<WriteBehindLog.Record> missing = new ArrayList<>();
+        for (WriteBehindLog.Record record : WriteBehindLog.read(logFile)) {
+            if (record.getSeq() > applied) {
+                missing.add(record);
+            }
+        }
+        if (!missing.isEmpty()) {
+            applied = apply(file, missing, tables);
+            checkpoint(file);
+            System.out.println("Replayed " + missing.size() + " logged changes into " + logFile.getFileName());
+        }
+        try (WriteBehindLog log = new WriteBehindLog(logFile, applied, true)) {
+            log.truncateIfApplied(applied);
+        }
+        return applied;
+    }
+
+    private static long appliedSeq(Connection file) throws SQLException {
+        try (Statement stmt = file.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(applied_seq) FROM write_behind_state")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /** Writes the records to the file in one transaction and returns the new applied sequence number. */
+    private static long apply(Connection file, List<WriteBehindLog.Record> records, Map<String, Table> tables) throws SQLException {
+        long last = 0;
+        Map<String, PreparedStatement> statements = new HashMap<>();
+        file.setAutoCommit(false);
+        try {
+            PreparedStatement batch = null;
+            int batched = 0;
+            for (WriteBehindLog.Record record : records) {
+                Table table = tables.get(record.getTable().toUpperCase(Locale.ROOT));
+                if (table == null) {
+                    throw new SQLException("Logged change to unknown table " + record.getTable());
+                }
+                String sql = record.isDelete()
+                        ? "DELETE FROM " + table.name + " WHERE " + table.key + " = ?"
+                        : "MERGE INTO " + table.name + " (" + String.join(", ", record.getColumns()) + ") KEY (" + table.key
+                          + ") VALUES (" + String.join(", ", Collections.nCopies(record.getColumns().length, "?")) + ")";
+                PreparedStatement stmt = statements.get(sql);
+                if (stmt == null) {
+                    stmt = file.prepareStatement(sql);
+                    statements.put(sql, stmt);
+                }
+                // Rows go in log order, so a batch ends whenever the statement changes.
+                if (batch != null && (stmt != batch || batched == BATCH_SIZE)) {
+                    batch.executeBatch();
+                    batched = 0;
+                }
+                if (record.isDelete()) {
+                    stmt.setObject(1, record.getId());
+                } else {
+                    Object[] values = record.getValues();
+                    for (int i = 0; i < values.length; i++) {
+                        stmt.setObject(i + 1, values[i]);
+                    }
+                }
+                stmt.addBatch();
+                batch = stmt;
+                batched++;
+                last = record.getSeq();
+            }
+            if (batch != null) {
+                batch.executeBatch();
+            }
+            try (PreparedStatement state = file.prepareStatement("UPDATE write_behind_state SET applied_seq = ?")) {
+                state.setLong(1, last);
+                state.executeUpdate();
+            }
+            file.commit();
+            return last;
+        } catch (SQLException e) {
+            file.rollback();
+            throw e;
+        } finally {
+            for (PreparedStatement stmt : statements.values()) {
+                stmt.close();
+            }
+            file.setAutoCommit(true);
+        }
+    }
+
+    /** H2 writes commits to disk lazily; the log may only be emptied once the file has them for sure. */
+    private static void checkpoint(Connection file) throws SQLException {
+        try (Statement stmt = file.createStatement()) {
+            stmt.execute("CHECKPOINT SYNC");
+        }
+    }
+
+    /** Explicit ids do not move an identity column along, so it is moved past the largest id. */
+    private static void restartIdentities(Connection conn, Map<String, Table> tables) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (Table table : tables.values()) {
+                if (!table.identity) continue;
+                long next;
+                try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(" + table.key + "), 0) + 1 FROM " + table.name)) {
+                    rs.next();
+                    next = rs.getLong(1);
+                }
+                stmt.execute("ALTER TABLE " + table.name + " ALTER COLUMN " + table.key + " RESTART WITH " + next);
+            }
+        }
+        DatabaseManager.restartRowVersions(conn);
+    }
+
+    /**
+     * The tables to keep in memory, parents before the tables whose foreign keys point at them,
+     * keyed by upper-case name.
+     */
+    private static Map<String, Table> tables(Connection conn) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        Map<String, Table> found = new HashMap<>();
+        Map<String, Set<String>> parents = new HashMap<>();
+        try (ResultSet tables = meta.getTables(null, "PUBLIC", "%", new String[]{"TABLE", "BASE TABLE"})) {
+            while (tables.next()) {
+                String name = tables.getString("TABLE_NAME");
+                List<String> key = new ArrayList<>();
+                try (ResultSet rs = meta.getPrimaryKeys(null, "PUBLIC", name)) {
+                    while (rs.next()) key.add(rs.getString("COLUMN_NAME"));
+                }
+                if (key.size() != 1) continue;
+                int keyIndex = -1;
+                boolean identity = false;
+                try (ResultSet rs = meta.getColumns(null, "PUBLIC", name, "%")) {
+                    while (rs.next()) {
+                        if (rs.getString("COLUMN_NAME").equals(key.get(0))) {
+                            keyIndex = rs.getInt("ORDINAL_POSITION") - 1;
+                            identity = "YES".equals(rs.getString("IS_AUTOINCREMENT"));
+                        }
+                    }
+                }
+                Set<String> references = new HashSet<>();
+                try (ResultSet rs = meta.getImportedKeys(null, "PUBLIC", name)) {
+                    while (rs.next()) {
+                        String parent = rs.getString("PKTABLE_NAME");
+                        if (!parent.equals(name)) references.add(parent.toUpperCase(Locale.ROOT));
+                    }
+                }
+                String upper = name.toUpperCase(Locale.ROOT);
+                found.put(upper, new Table(name, key.get(0), keyIndex, identity));
+                parents.put(upper, references);
+            }
+        }
+        Map<String, Table> ordered = new LinkedHashMap<>();
+        for (String name : new TreeSet<>(found.keySet())) {
+            addParentsFirst(name, found, parents, ordered, new HashSet<>());
+        }
+        return ordered;
+    }
+
+    private static void addParentsFirst(String name, Map<String, Table> found, Map<String, Set<String>> parents,
+                                        Map<String, Table> ordered, Set<String> visiting) {
+        if (ordered.containsKey(name) || !found.containsKey(name) || !visiting.add(name)) return;
+        for (String parent : parents.get(name)) {
+            addParentsFirst(parent, found, parents, ordered, visiting);
+        }
+        ordered.put(name, found.get(name));
+    }
+
+    /** Trigger rows and result sets do not always agree on the Java type of a date, and keys from both are compared. */
+    private static Object keyValue(Object value) {
+        return value instanceof java.sql.Date ? ((java.sql.Date) value).toLocalDate() : value;
+    }
+
+    private static void copy(Connection source, Connection target, Table table) throws SQLException {
+        try (Statement read = source.createStatement();
+             ResultSet rs = read.executeQuery("SELECT * FROM " + table.name + " ORDER BY " + table.key)) {
+            String[] columns = columnNames(rs.getMetaData());
+            try (PreparedStatement write = target.prepareStatement("INSERT INTO " + table.name + " (" + String.join(", ", columns)
+                    + ") VALUES (" + String.join(", ", Collections.nCopies(columns.length, "?")) + ")")) {
+                int rows = 0;
+                while (rs.next()) {
+                    for (int i = 1; i <= columns.length; i++) {
+                        write.setObject(i, rs.getObject(i));
+                    }
+                    write.addBatch();
+                    if (++rows % BATCH_SIZE == 0) {
+                        write.executeBatch();
+                    }
+                }
+                write.executeBatch();
+            }
+        }
+    }
+
+    private static String[] columnNames(ResultSetMetaData meta) throws SQLException {
+        String[] columns = new String[meta.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = meta.getColumnName(i + 1);
+        }
+        return columns;
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        if (resource == null) return;
+        try {
+            resource.close();
+        } catch (Exception ignored) {
+            // Already failing; the original error is the one worth reporting.
+        }
+    }
+
+    /** A table kept in memory and the primary key its rows are logged by. */
+    private static final class Table {
+        final String name;
+        final String key;
+        final int keyIndex;
+        final boolean identity;
+
+        Table(String name, String key, int keyIndex, boolean identity) {
+            this.name = name;
+            this.key = key;
+            this.keyIndex = keyIndex;
+            this.identity = identity;
+        }
+    }
+
+    /** Keys of the rows one session changed since its last commit, per table. */
+    private static final class Changes {
+        private final Map<Table, Set<Object>> keys = new HashMap<>();
+
+        void add(Table table, Object key) {
+            keys.computeIfAbsent(table, t -> new LinkedHashSet<>()).add(key);
+        }
+
+        Set<Object> of(Table table) {
+            return keys.getOrDefault(table, Collections.emptySet());
+        }
+    }
+
+    private static final class Building {
+        private final String dbName;
+        private final Connection file;
+        private final Connection memory;
+        private final WriteBehindLog log;
+        private final Map<String, Table> tables;
+        private final Map<Object, Changes> pending = new ConcurrentHashMap<>();
+        private final Deque<WriteBehindLog.Record> queue = new ConcurrentLinkedDeque<>();
+        private final Object commitLock = new Object();
+        private final Object flushLock = new Object();
+        private ScheduledFuture<?> flushTask;
+
+        Building(String dbName, Connection file, Connection memory, WriteBehindLog log, Map<String, Table> tables) {
+            this.dbName = dbName;
+            this.file = file;
+            this.memory = memory;
+            this.log = log;
+            this.tables = tables;
+        }
+
+        /**
+         * Re-reads the changed rows as committed and logs them: first the rows that are gone,
+         * children before parents, then the rows that exist, parents before children. With the
+         * deletes first, a tombstone logged here also replaces the one the file's own trigger writes.
+         */
+        void log(Connection conn, Changes changes) throws SQLException {
+            long position;
+            try {
+                synchronized (commitLock) {
+                    List<WriteBehindLog.Record> records = new ArrayList<>();
+                    List<WriteBehindLog.Record> upserts = new ArrayList<>();
+                    for (Table table : tables.values()) {
+                        List<WriteBehindLog.Record> deletes = new ArrayList<>();
+                        for (Object key : read(conn, table, changes.of(table), upserts)) {
+                            deletes.add(WriteBehindLog.Record.delete(table.name, key));
+                        }
+                        records.addAll(0, deletes);
+                    }
+                    records.addAll(upserts);
+                    if (records.isEmpty()) return;
+                    WriteBehindLog.AppendResult result = log.append(records);
+                    queue.addAll(result.records);
+                    position = result.position;
+                }
+                log.awaitDurable(position);
+            } catch (IOException e) {
+                throw new SQLException("Could not write the write-behind log of " + dbName, e);
+            }
+        }
+
+        /** Adds the current image of each row to {@code records} and returns the ids that no longer exist. */
+        private static List<Object> read(Connection conn, Table table, Set<Object> ids, List<WriteBehindLog.Record> records)
+                throws SQLException {
+            List<Object> gone = new ArrayList<>();
+            List<Object> all = new ArrayList<>(ids);
+            for (int from = 0; from < all.size(); from += READ_CHUNK) {
+                List<Object> chunk = all.subList(from, Math.min(all.size(), from + READ_CHUNK));
+                Set<Object> found = new LinkedHashSet<>();
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM " + table.name + " WHERE " + table.key + " IN ("
+                        + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")")) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setObject(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        String[] columns = columnNames(rs.getMetaData());
+                        while (rs.next()) {
+                            Object[] values = new Object[columns.length];
+                            for (int i = 0; i < values.length; i++) {
+                                values[i] = rs.getObject(i + 1);
+                            }
+                            records.add(WriteBehindLog.Record.upsert(table.name, columns, values));
+                            found.add(keyValue(values[table.keyIndex]));
+                        }
+                    }
+                }
+                for (Object id : chunk) {
+                    if (!found.contains(id)) {
+                        gone.add(id);
+                    }
+                }
+            }
+            return gone;
+        }
+
+        void flush() throws SQLException {
+            synchronized (flushLock) {
+                List<WriteBehindLog.Record> batch = new ArrayList<>();
+                WriteBehindLog.Record record;
+                while ((record = queue.pollFirst()) != null) {
+                    batch.add(record);
+                }
+                if (batch.isEmpty()) return;
+
+                try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.FLUSH)) {
+                    long applied = apply(file, batch, tables);
+                    sample.done(batch.size());
+                    if (applied >= log.getLastSeq()) {
+                        checkpoint(file);
+                        log.truncateIfApplied(applied);
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    // Still in the log; put them back so the next flush tries again in order.
+                    for (int i = batch.size() - 1; i >= 0; i--) {
+                        queue.addFirst(batch.get(i));
+                    }
+                    throw e;
+                } catch (IOException e) {
+                    throw new SQLException("Could not truncate the write-behind log of " + dbName, e);
+                }
+            }
+        }
+
+        void flushQuietly() {
+            try {
+                flush();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        void close() {
+            if (flushTask != null) {
+                flushTask.cancel(false);
+            }
+            try {
+                flush();
+                restartIdentities(file, tables);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            try (Statement stmt = memory.createStatement()) {
+                CATALOGS.values().remove(this);
+                stmt.execute("SHUTDOWN");
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            closeQuietly(log);
+            closeQuietly(memory);
+            closeQuietly(file);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package org.core;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times database operations per building.
+ * <p>
+ * Every operation is wrapped in a {@link Sample}:
+ * <pre>
+ * try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.INSERT)) {
+ *     pstmt.executeUpdate();
+ *     sample.done();
+ * }
+ * </pre>
+ * A sample that is closed without {@code done()} (because an exception left the block) is
+ * counted as an error. Each building/operation pair is also published over JMX as
+ * {@code org.core:type=Metrics,building=...,operation=...}, and {@code org.core:type=Metrics}
+ * can dump or reset everything. Set {@code pm.metrics.enabled=false} to turn recording off.
+ */
+public final class Metrics {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("pm.metrics.enabled", "true"));
+    private static final String JMX_DOMAIN = "org.core";
+
+    public enum Operation {
+        REFRESH, INSERT, UPDATE, DELETE, PAYMENT, IMPORT_BATCH, EXPORT, FLUSH, ACCRUAL, BATCH, SNAPSHOT, RESTORE;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final Map<String, OperationMetrics> METRICS = new ConcurrentHashMap<>();
+
+    static {
+        if (ENABLED) {
+            register(JMX_DOMAIN + ":type=Metrics", new Registry());
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static Sample start(String dbName, Operation operation) {
+        return new Sample(ENABLED ? metricsFor(dbName, operation) : null);
+    }
+
+    /** One timed operation. Closing it records the elapsed time. */
+    public static final class Sample implements AutoCloseable {
+        private final OperationMetrics metrics;
+        private final long started;
+        private boolean done;
+        private long rows;
+
+        private Sample(OperationMetrics metrics) {
+            this.metrics = metrics;
+            this.started = metrics == null ? 0 : System.nanoTime();
+        }
+
+        /** Marks the operation as successful. */
+        public void done() {
+            done = true;
+        }
+
+        /** Marks the operation as successful and records how many rows it touched. */
+        public void done(long rows) {
+            this.rows = rows;
+            done = true;
+        }
+
+        @Override
+        public void close() {
+            if (metrics != null) {
+                metrics.record(System.nanoTime() - started, rows, !done);
+            }
+        }
+    }
+
+    /** A point-in-time copy of every building/operation pair, sorted by building then operation. */
+    public static List<OperationStats> snapshot() {
+        List<OperationStats> stats = new ArrayList<>();
+        for (OperationMetrics metrics : METRICS.values()) {
+            stats.add(metrics.snapshot());
+        }
+        stats.sort(Comparator.comparing(OperationStats::getBuilding).thenComparing(OperationStats::getOperation));
+        return stats;
+    }
+
+    public static List<OperationStats> snapshot(String dbName) {
+        List<OperationStats> stats = snapshot();
+        stats.removeIf(s -> !s.getBuilding().equals(dbName));
+        return stats;
+    }
+
+    public static String report(List<OperationStats> stats) {
+        StringBuilder sb = new StringBuilder(String.format("%-12s %-13s %8s %6s %10s %9s %9s %9s %9s %9s %10s%n",
+                "building", "operation", "count", "errors", "rows", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "rows/s"));
+        for (OperationStats s : stats) {
+            sb.append(String.format("%-12s %-13s %8d %6d %10d %9.2f %9.2f %9.2f %9.2f %9.2f %10.0f%n",
+                    s.getBuilding(), s.getOperation().label(), s.getCount(), s.getErrors(), s.getRows(),
+                    s.getMeanMillis(), s.getP50Millis(), s.getP95Millis(), s.getP99Millis(), s.getMaxMillis(),
+                    s.getRowsPerSecond()));
+        }
+        return sb.toString();
+    }
+
+    /** Appends a timestamped report of every building to {@code file}. */
+    public static void dump(Path file) throws IOException {
+        String text = "--- Metrics at " + LocalDateTime.now() + " ---" + System.lineSeparator()
+                + report(snapshot()) + System.lineSeparator();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public static void reset() {
+        for (OperationMetrics metrics : METRICS.values()) {
+            metrics.reset();
+        }
+    }
+
+    private static OperationMetrics metricsFor(String dbName, Operation operation) {
+        String key = dbName + '/' + operation.label();
+        OperationMetrics metrics = METRICS.get(key);
+        if (metrics != null) return metrics;
+        return METRICS.computeIfAbsent(key, k -> {
+            OperationMetrics created = new OperationMetrics(dbName, operation);
+            register(JMX_DOMAIN + ":type=Metrics,building=" + propertyValue(dbName) + ",operation=" + operation.label(), created);
+            return created;
+        });
+    }
+
+    /** {@code value} as an ObjectName property value, quoted only if it holds a character that needs it. */
+    static String propertyValue(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (",=:\"*?\n\\".indexOf(value.charAt(i)) >= 0) {
+                return ObjectName.quote(value);
+            }
+        }
+        return value;
+    }
+
+    private static void register(String name, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(mbean, objectName);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** JMX view of one building/operation pair. Times are in milliseconds. */
+    public interface OperationMetricsMXBean {
+        String getBuilding();
+        String getOperation();
+        long getCount();
+        long getErrors();
+        long getRows();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP95Millis();
+        double getP99Millis();
+        double getMaxMillis();
+        double getRowsPerSecond();
+        void reset();
+    }
+
+    /** JMX entry point for all metrics. */
+    public interface RegistryMXBean {
+        String getReport();
+        void dump(String file) throws IOException;
+        void reset();
+    }
+
+    private static final class Registry implements RegistryMXBean {
+        @Override
+        public String getReport() {
+            return report(snapshot());
+        }
+
+        @Override
+        public void dump(String file) throws IOException {
+            Metrics.dump(Path.of(file));
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+
+    private static final class OperationMetrics implements OperationMetricsMXBean {
+        private final String building;
+        private final Operation operation;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        OperationMetrics(String building, Operation operation) {
+            this.building = building;
+            this.operation = operation;
+        }
+
+        void record(long nanos, long rowCount, boolean failed) {
+            count.increment();
+            if (failed) errors.increment();
+            if (rowCount > 0) rows.add(rowCount);
+            totalNanos.add(nanos);
+            histogram.record(nanos);
+        }
+
+        OperationStats snapshot() {
+            return new OperationStats(building, operation, count.sum(), errors.sum(), rows.sum(), totalNanos.sum(),
+                    histogram.percentile(50), histogram.percentile(95), histogram.percentile(99), histogram.max());
+        }
+
+        @Override
+        public String getBuilding() {
+            return building;
+        }
+
+        @Override
+        public String getOperation() {
+            return operation.label();
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public long getRows() {
+            return rows.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return snapshot().getMeanMillis();
+        }
+
+        @Override
+        public double getP50Millis() {
+            return histogram.percentile(50) / 1000.0;
+        }
+
+        @Override
+        public double getP95Millis() {
+            return histogram.percentile(95) / 1000.0;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return histogram.percentile(99) / 1000.0;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return histogram.max() / 1000.0;
+        }
+
+        @Override
+        public double getRowsPerSecond() {
+            return snapshot().getRowsPerSecond();
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+            errors.reset();
+            rows.reset();
+            totalNanos.reset();
+            histogram.reset();
+        }
+    }
+
+    public static final class OperationStats {
+        private final String building;
+        private final Operation operation;
+        private final long count;
+        private final long errors;
+        private final long rows;
+        private final long totalNanos;
+        private final long p50Micros;
+        private final long p95Micros;
+        private final long p99Micros;
+        private final long maxMicros;
+
+        OperationStats(String building, Operation operation, long count, long errors, long rows, long totalNanos,
+                       long p50Micros, long p95Micros, long p99Micros, long maxMicros) {
+            this.building = building;
+            this.operation = operation;
+            this.count = count;
+            this.errors = errors;
+            this.rows = rows;
+            this.totalNanos = totalNanos;
+            this.p50Micros = p50Micros;
+            this.p95Micros = p95Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        public String getBuilding() {
+            return building;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        public double getP50Millis() {
+            return p50Micros / 1000.0;
+        }
+
+        public double getP95Millis() {
+            return p95Micros / 1000.0;
+        }
+
+        public double getP99Millis() {
+            return p99Micros / 1000.0;
+        }
+
+        public double getMaxMillis() {
+            return maxMicros / 1000.0;
+        }
+
+        /** Rows per second of time spent inside the operation, for imports and exports. */
+        public double getRowsPerSecond() {
+            return totalNanos == 0 ? 0 : rows / (totalNanos / 1e9);
+        }
+    }
+}
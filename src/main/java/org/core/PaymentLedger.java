@@ -0,0 +1,235 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posts tenant payments to the {@code payments} ledger.
+ * <p>
+ * A payment is one ledger row plus {@code balance = balance - amount} on the tenant, both in
+ * the same transaction. The balance is never read and written back by the application, so
+ * concurrent postings cannot overwrite each other.
+ */
+public final class PaymentLedger {
+    private static final String DEBIT_SQL = "UPDATE tenants SET balance = balance - ? WHERE id = ?";
+    private static final String INSERT_SQL = "INSERT INTO payments (tenant_id, period, amount, posted_at, bank_ref) VALUES (?, ?, ?, ?, ?)";
+
+    private PaymentLedger() {
+    }
+
+    /**
+     * Records a payment and returns the tenant's new balance. Joins the caller's transaction if
+     * auto-commit is off; otherwise commits on its own.
+     */
+    public static double post(Connection conn, int tenantId, YearMonth period, double amount) throws SQLException {
+        return post(conn, tenantId, period, amount, null);
+    }
+
+    /**
+     * Like {@link #post(Connection, int, YearMonth, double)} for a payment from a bank statement line
+     * ({@code bankRef}, see {@link PaymentReconciler#bankReference}). Fails if that line was already posted.
+     */
+    public static double post(Connection conn, int tenantId, YearMonth period, double amount, String bankRef) throws SQLException {
+        boolean ownTransaction = conn.getAutoCommit();
+        if (ownTransaction) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            try (PreparedStatement debit = conn.prepareStatement(DEBIT_SQL)) {
+                debit.setDouble(1, amount);
+                debit.setInt(2, tenantId);
+                if (debit.executeUpdate() == 0) {
+                    throw new SQLException("Tenant " + tenantId + " not found");
+                }
+            }
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_SQL)) {
+                insert.setInt(1, tenantId);
+                insert.setDate(2, Date.valueOf(period.atDay(1)));
+                insert.setDouble(3, amount);
+                insert.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+                insert.setString(5, bankRef);
+                insert.executeUpdate();
+            }
+            double balance = balanceOf(conn, tenantId);
+            if (ownTransaction) {
+                conn.commit();
+            }
+            return balance;
+        } catch (SQLException e) {
+            if (ownTransaction) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Posts many payments in the caller's transaction, reusing its statements. Unlike {@link #post}
+     * it does not read the new balance back.
+     * <p>
+     * {@link #post} writes one payment at a time. {@link #add} only queues one, and {@link #flush}
+     * then sends them as JDBC batches with a single debit per tenant, which is much cheaper when a
+     * statement pays the same tenants many times.
+     */
+    static final class Batch implements AutoCloseable {
+        private final PreparedStatement debit;
+        private final PreparedStatement insert;
+        private final Map<Integer, Double> debits = new LinkedHashMap<>();
+        private int queued;
+
+        Batch(Connection conn) throws SQLException {
+            this.debit = conn.prepareStatement(DEBIT_SQL);
+            this.insert = conn.prepareStatement(INSERT_SQL);
+        }
+
+        void post(int tenantId, YearMonth period, double amount) throws SQLException {
+            debit.setDouble(1, amount);
+            debit.setInt(2, tenantId);
+            if (debit.executeUpdate() == 0) {
+                throw new SQLException("Tenant " + tenantId + " not found");
+            }
+            insert.setInt(1, tenantId);
+            insert.setDate(2, Date.valueOf(period.atDay(1)));
+            insert.setDouble(3, amount);
+            insert.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            insert.setString(5, null);
+            insert.executeUpdate();
+        }
+
+        void add(int tenantId, YearMonth period, double amount) throws SQLException {
+            add(tenantId, period, amount, null);
+        }
+
+        /** Queues a payment from a bank statement line; the flush fails if that line was already posted. */
+        void add(int tenantId, YearMonth period, double amount, String bankRef) throws SQLException {
+            debits.merge(tenantId, amount, Double::sum);
+            insert.setInt(1, tenantId);
+            insert.setDate(2, Date.valueOf(period.atDay(1)));
+            insert.setDouble(3, amount);
+            insert.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            insert.setString(5, bankRef);
+            insert.addBatch();
+            queued++;
+        }
+
+        /** Drops everything queued by {@link #add}, e.g. after the transaction was rolled back. */
+        void clear() throws SQLException {
+            debits.clear();
+            queued = 0;
+            insert.clearBatch();
+            debit.clearBatch();
+        }
+
+        /** Writes everything queued by {@link #add}. Fails without writing ledger rows if a tenant is missing. */
+        void flush() throws SQLException {
+            if (queued == 0) return;
+            List<Integer> tenantIds = new ArrayList<>(debits.keySet());
+            for (int tenantId : tenantIds) {
+                debit.setDouble(1, debits.get(tenantId));
+                debit.setInt(2, tenantId);
+                debit.addBatch();
+            }
+            debits.clear();
+            queued = 0;
+            int[] counts = debit.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    insert.clearBatch();
+                    throw new SQLException("Tenant " + tenantIds.get(i) + " not found");
+                }
+            }
+            insert.executeBatch();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                debit.close();
+            } finally {
+                insert.close();
+            }
+        }
+    }
+
+    /** Total paid by a tenant for one month. */
+    public static double totalForPeriod(Connection conn, int tenantId, YearMonth period) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT COALESCE(SUM(amount), 0) FROM payments WHERE tenant_id = ? AND period = ?")) {
+            stmt.setInt(1, tenantId);
+            stmt.setDate(2, Date.valueOf(period.atDay(1)));
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getDouble(1);
+            }
+        }
+    }
+
+    public static List<Payment> history(Connection conn, int tenantId) throws SQLException {
+        List<Payment> payments = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT period, amount, posted_at FROM payments WHERE tenant_id = ? ORDER BY period, posted_at")) {
+            stmt.setInt(1, tenantId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    payments.add(new Payment(tenantId, YearMonth.from(rs.getDate(1).toLocalDate()),
+                            rs.getDouble(2), rs.getTimestamp(3).toLocalDateTime()));
+                }
+            }
+        }
+        return payments;
+    }
+
+    private static double balanceOf(Connection conn, int tenantId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT balance FROM tenants WHERE id = ?")) {
+            stmt.setInt(1, tenantId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getDouble(1);
+            }
+        }
+    }
+
+    public static final class Payment {
+        private final int tenantId;
+        private final YearMonth period;
+        private final double amount;
+        private final LocalDateTime postedAt;
+
+        Payment(int tenantId, YearMonth period, double amount, LocalDateTime postedAt) {
+            this.tenantId = tenantId;
+            this.period = period;
+            this.amount = amount;
+            this.postedAt = postedAt;
+        }
+
+        public int getTenantId() {
+            return tenantId;
+        }
+
+        public YearMonth getPeriod() {
+            return period;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public LocalDateTime getPostedAt() {
+            return postedAt;
+        }
+    }
+}
@@ -0,0 +1,799 @@
+package org.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches the lines of a bank statement to tenants and posts the payments.
+ * <p>
+ * A statement is a text file with one payment per line, {@code date,amount,payer,memo}, where
+ * the date is {@code YYYY-MM-DD}, the memo is optional and may mention the apartment
+ * ({@code "Apt 3B"}, {@code "Unit 12"}, {@code "#4"}), and a first line that is not a payment is
+ * taken as a header. Every tenant of every building is first put into hash indexes on the
+ * normalized name (case, accents, punctuation, titles and word order ignored), the normalized
+ * apartment number and each name word. Lines are then matched in parallel chunks:
+ * <ol>
+ * <li>an exact name that belongs to one tenant, or to one tenant in the memo's apartment;</li>
+ * <li>otherwise the tenants of the memo's apartment, by name similarity;</li>
+ * <li>otherwise the tenants sharing a name word with the payer, by name similarity.</li>
+ * </ol>
+ * Confident matches are posted to the ledger per building in batched transactions of
+ * {@link #POST_BATCH} payments, all buildings at once. Everything else goes to the
+ * {@link PaymentReviewQueue} with its closest candidates.
+ * <p>
+ * Every line has a {@link #bankReference bank reference} that goes into {@code payments.bank_ref}
+ * or the review queue with it. Lines whose reference is already in either are skipped, so
+ * reconciling the same statement again, or one that overlaps it, posts nothing twice.
+ */
+public class PaymentReconciler {
+    /** Payments per posting transaction. */
+    static final int POST_BATCH = 1000;
+    /** Statement lines per matching task. */
+    private static final int MATCH_CHUNK = 5000;
+    /** References per lookup of lines already handled. */
+    static final int REFERENCE_CHUNK = 10_000;
+    /** Name similarity that is posted without review when no other tenant comes close. */
+    private static final double AUTO_POST_SCORE = 0.93;
+    /** Lower bar when the memo's apartment already narrowed it down to a few tenants. */
+    private static final double APARTMENT_SCORE = 0.80;
+    /** How far ahead of the runner-up a similarity match has to be. */
+    private static final double MARGIN = 0.04;
+    /** Candidates below this are not worth showing to a reviewer. */
+    private static final double REVIEW_SCORE = 0.70;
+    private static final int REVIEW_CANDIDATES = 5;
+    /** Name words shared by more tenants than this are too common to look up on their own. */
+    private static final int MAX_WORD_CANDIDATES = 500;
+
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern APARTMENT = Pattern.compile(
+            "(?i)(?:\\bapt\\.?|\\bapartment|\\bunit|\\bsuite|#)\\s*#?\\s*([a-z0-9][a-z0-9-]*)");
+    private static final Set<String> TITLES = new HashSet<>(Arrays.asList("mr", "mrs", "ms", "miss", "dr", "jr", "sr"));
+
+    public enum Method {
+        EXACT_NAME, NAME_AND_APARTMENT, SIMILAR_NAME_IN_APARTMENT, SIMILAR_NAME
+    }
+
+    /** One line of a bank statement. */
+    public static final class BankPayment {
+        private final int line;
+        private final LocalDate date;
+        private final double amount;
+        private final String payer;
+        private final String memo;
+        private final String reference;
+
+        BankPayment(int line, LocalDate date, double amount, String payer, String memo, String reference) {
+            this.line = line;
+            this.date = date;
+            this.amount = amount;
+            this.payer = payer;
+            this.memo = memo;
+            this.reference = reference;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public String getPayer() {
+            return payer;
+        }
+
+        public String getMemo() {
+            return memo;
+        }
+
+        /** Identifies the statement line, see {@link #bankReference}. */
+        public String getReference() {
+            return reference;
+        }
+
+        /** The month the payment is booked for: the month it arrived in. */
+        public YearMonth getPeriod() {
+            return YearMonth.from(date);
+        }
+    }
+
+    /** A tenant a payment might belong to. */
+    public static final class Candidate {
+        private final String dbName;
+        private final int tenantId;
+        private final String name;
+        private final String aptNumber;
+        private final String nameKey;
+        private final char[] nameChars;
+        private final String aptKey;
+        private final double score;
+
+        Candidate(String dbName, Tenant tenant) {
+            this(dbName, tenant.getId(), tenant.getName(), tenant.getAptNumber(), normalizeName(tenant.getName()), null,
+                    normalizeApartment(tenant.getAptNumber()), 1.0);
+        }
+
+        private Candidate(String dbName, int tenantId, String name, String aptNumber, String nameKey, char[] nameChars,
+                          String aptKey, double score) {
+            this.dbName = dbName;
+            this.tenantId = tenantId;
+            this.name = name;
+            this.aptNumber = aptNumber;
+            this.nameKey = nameKey;
+            this.nameChars = nameChars != null ? nameChars : nameKey.toCharArray();
+            this.aptKey = aptKey;
+            this.score = score;
+        }
+
+        Candidate withScore(double score) {
+            return new Candidate(dbName, tenantId, name, aptNumber, nameKey, nameChars, aptKey, score);
+        }
+
+        public String getDbName() {
+            return dbName;
+        }
+
+        public int getTenantId() {
+            return tenantId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getAptNumber() {
+            return aptNumber;
+        }
+
+        /** Name similarity to the payer, 1.0 for an exact match. */
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s  ID: %d, Name: %s, Apt#: %s (%.0f%%)", dbName, tenantId, name, aptNumber, score * 100);
+        }
+    }
+
+    /** A payment matched with enough confidence to post it. */
+    public static final class Match {
+        private final BankPayment payment;
+        private final Candidate tenant;
+        private final Method method;
+
+        Match(BankPayment payment, Candidate tenant, Method method) {
+            this.payment = payment;
+            this.tenant = tenant;
+            this.method = method;
+        }
+
+        public BankPayment getPayment() {
+            return payment;
+        }
+
+        public Candidate getTenant() {
+            return tenant;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+    }
+
+    /** A payment someone has to look at, with the tenants it most likely belongs to. */
+    public static final class ReviewItem {
+        private final BankPayment payment;
+        private final String reason;
+        private final List<Candidate> candidates;
+
+        ReviewItem(BankPayment payment, String reason, List<Candidate> candidates) {
+            this.payment = payment;
+            this.reason = reason;
+            this.candidates = candidates;
+        }
+
+        public BankPayment getPayment() {
+            return payment;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        /** Most likely first; may be empty. */
+        public List<Candidate> getCandidates() {
+            return candidates;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("line %d: %s $%,.2f from %s%s - %s", payment.line, payment.date, payment.amount,
+                    payment.payer, payment.memo.isEmpty() ? "" : " (" + payment.memo + ")", reason);
+        }
+    }
+
+    /** Tenants of all buildings, indexed for matching. Read-only once built, so matching threads share it. */
+    private static final class TenantIndex {
+        final Map<String, List<Candidate>> byName = new HashMap<>();
+        final Map<String, List<Candidate>> byApartment = new HashMap<>();
+        final Map<String, List<Candidate>> byWord = new HashMap<>();
+        /** Name word plus the initial of another name word: "smith j" for John Smith. */
+        final Map<String, List<Candidate>> byWordAndInitial = new HashMap<>();
+        int size;
+
+        void add(Candidate candidate) {
+            size++;
+            byName.computeIfAbsent(candidate.nameKey, k -> new ArrayList<>(1)).add(candidate);
+            if (!candidate.aptKey.isEmpty()) {
+                byApartment.computeIfAbsent(candidate.aptKey, k -> new ArrayList<>(2)).add(candidate);
+            }
+            String[] words = candidate.nameKey.split(" ");
+            for (int i = 0; i < words.length; i++) {
+                if (words[i].length() < 2) continue;
+                byWord.computeIfAbsent(words[i], k -> new ArrayList<>(2)).add(candidate);
+                for (int j = 0; j < words.length; j++) {
+                    if (j != i && !words[j].isEmpty()) {
+                        byWordAndInitial.computeIfAbsent(words[i] + ' ' + words[j].charAt(0), k -> new ArrayList<>(2)).add(candidate);
+                    }
+                }
+            }
+        }
+    }
+
+    private final List<String> buildings;
+    private final boolean dryRun;
+
+    public PaymentReconciler(List<String> buildings, boolean dryRun) {
+        this.buildings = new ArrayList<>(buildings);
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Reads, matches and posts a statement. Review items are added to the {@link PaymentReviewQueue}
+     * unless this is a dry run. Lines that cannot be read are reported, not posted, and lines that
+     * were posted or queued before are left alone.
+     */
+    public CompletableFuture<Result> reconcile(Path statement) {
+        long started = System.nanoTime();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(statement, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Could not read " + statement + ": " + e.getMessage(), e));
+        }
+        String[] references = references(lines);
+        List<String> keys = new ArrayList<>(lines.size());
+        for (String reference : references) {
+            if (reference != null) keys.add(reference);
+        }
+        CompletableFuture<Set<String>> handled = BackgroundExecutor.forEachBuilding(buildings, dbName -> postedAmong(dbName, keys))
+                .thenApply(posted -> {
+                    Set<String> all = new HashSet<>();
+                    for (Set<String> refs : posted.values()) all.addAll(refs);
+                    try {
+                        all.addAll(PaymentReviewQueue.knownAmong(keys));
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                    return all;
+                });
+        CompletableFuture<Map<String, List<Tenant>>> loaded = BackgroundExecutor.forEachBuilding(buildings, TenantLoader::loadAll);
+        return handled.thenCompose(done -> loaded.thenCompose(tenants -> {
+            TenantIndex index = new TenantIndex();
+            for (Map.Entry<String, List<Tenant>> building : tenants.entrySet()) {
+                for (Tenant tenant : building.getValue()) {
+                    index.add(new Candidate(building.getKey(), tenant));
+                }
+            }
+            long indexed = System.nanoTime();
+
+            List<CompletableFuture<Chunk>> chunks = new ArrayList<>();
+            for (int from = 0; from < lines.size(); from += MATCH_CHUNK) {
+                int start = from, end = Math.min(lines.size(), from + MATCH_CHUNK);
+                chunks.add(BackgroundExecutor.supply(() -> matchLines(index, lines, references, done, start, end)));
+            }
+            return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).thenCompose(ignored -> {
+                Chunk all = new Chunk();
+                for (CompletableFuture<Chunk> chunk : chunks) {
+                    all.addAll(chunk.join());
+                }
+                long matched = System.nanoTime();
+                return post(all.matches).thenApply(posting -> {
+                    List<ReviewItem> review = new ArrayList<>(all.review);
+                    review.addAll(posting.failed);
+                    if (!dryRun) {
+                        try {
+                            PaymentReviewQueue.addAll(review);
+                        } catch (SQLException e) {
+                            throw new CompletionException(e);
+                        }
+                    }
+                    return new Result(lines.size(), index.size, all.matches, posting.posted, review, all.unreadable,
+                            all.skipped, dryRun, indexed - started, matched - indexed, System.nanoTime() - matched);
+                });
+            });
+        }));
+    }
+
+    /**
+     * Identifies a statement line by its text and how many identical lines come before it, so two
+     * equal payments on one statement stay two payments while the same statement read again gives
+     * the same references: the SHA-256 of the trimmed line and that count, in hex.
+     */
+    public static String bankReference(String line, int occurrence) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((line.trim() + "\n" + occurrence).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The {@link #bankReference} of every line, null for blank lines and comments. */
+    private static String[] references(List<String> lines) {
+        String[] references = new String[lines.size()];
+        Map<String, Integer> seen = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String text = lines.get(i).trim();
+            if (text.isEmpty() || text.startsWith("#")) continue;
+            references[i] = bankReference(text, seen.merge(text, 1, Integer::sum) - 1);
+        }
+        return references;
+    }
+
+    /** The references a building already has payments for. */
+    private static Set<String> postedAmong(String dbName, List<String> references) throws SQLException {
+        Set<String> posted = new HashSet<>();
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             PreparedStatement stmt = conn.prepareStatement("SELECT bank_ref FROM payments WHERE bank_ref = ANY(?)")) {
+            for (int from = 0; from < references.size(); from += REFERENCE_CHUNK) {
+                List<String> chunk = references.subList(from, Math.min(references.size(), from + REFERENCE_CHUNK));
+                stmt.setArray(1, conn.createArrayOf("VARCHAR", chunk.toArray()));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) posted.add(rs.getString(1));
+                }
+            }
+        }
+        return posted;
+    }
+
+    private static final class Chunk {
+        final List<Match> matches = new ArrayList<>();
+        final List<ReviewItem> review = new ArrayList<>();
+        final List<String> unreadable = new ArrayList<>();
+        int skipped;
+
+        void addAll(Chunk other) {
+            matches.addAll(other.matches);
+            review.addAll(other.review);
+            unreadable.addAll(other.unreadable);
+            skipped += other.skipped;
+        }
+    }
+
+    private static Chunk matchLines(TenantIndex index, List<String> lines, String[] references, Set<String> done,
+                                    int start, int end) {
+        Chunk chunk = new Chunk();
+        for (int i = start; i < end; i++) {
+            if (references[i] == null) continue;
+            String text = lines.get(i).trim();
+            BankPayment payment;
+            try {
+                payment = parse(i + 1, text, references[i]);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                if (i > 0 || !isHeader(text)) {
+                    chunk.unreadable.add("line " + (i + 1) + ": " + text);
+                }
+                continue;
+            }
+            if (done.contains(payment.reference)) {
+                chunk.skipped++;
+                continue;
+            }
+            Object outcome = match(index, payment);
+            if (outcome instanceof Match) {
+                chunk.matches.add((Match) outcome);
+            } else {
+                chunk.review.add((ReviewItem) outcome);
+            }
+        }
+        return chunk;
+    }
+
+    /** The first line may be a header, recognised by a first field that is not a date; a bad payment line is not one. */
+    private static boolean isHeader(String text) {
+        try {
+            LocalDate.parse(text.split(",", 2)[0].trim());
+            return false;
+        } catch (DateTimeParseException e) {
+            return true;
+        }
+    }
+
+    static BankPayment parse(int line, String text, String reference) {
+        String[] fields = text.split(",", 4);
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("expected date,amount,payer,memo");
+        }
+        return new BankPayment(line, LocalDate.parse(fields[0].trim()), Double.parseDouble(fields[1].trim()),
+                fields[2].trim(), fields.length > 3 ? fields[3].trim() : "", reference);
+    }
+
+    /** Returns a {@link Match} or a {@link ReviewItem}. */
+    private static Object match(TenantIndex index, BankPayment payment) {
+        if (payment.amount <= 0) {
+            return new ReviewItem(payment, "Not a payment", Collections.emptyList());
+        }
+        String nameKey = normalizeName(payment.payer);
+        String aptKey = apartmentIn(payment.memo);
+
+        List<Candidate> exact = index.byName.get(nameKey);
+        if (exact != null) {
+            List<Candidate> inApartment = new ArrayList<>();
+            for (Candidate candidate : exact) {
+                if (candidate.aptKey.equals(aptKey)) inApartment.add(candidate);
+            }
+            if (inApartment.size() == 1) {
+                return new Match(payment, inApartment.get(0), Method.NAME_AND_APARTMENT);
+            }
+            if (exact.size() == 1 && aptKey == null) {
+                return new Match(payment, exact.get(0), Method.EXACT_NAME);
+            }
+            return new ReviewItem(payment, exact.size() == 1
+                    ? "Name matches but the apartment in the memo does not"
+                    : exact.size() + " tenants have this name", exact);
+        }
+
+        if (aptKey != null) {
+            List<Candidate> scored = score(nameKey, index.byApartment.getOrDefault(aptKey, Collections.emptyList()));
+            if (isConfident(scored, APARTMENT_SCORE)) {
+                return new Match(payment, scored.get(0), Method.SIMILAR_NAME_IN_APARTMENT);
+            }
+        }
+
+        List<Candidate> scored = score(nameKey, wordCandidates(index, nameKey));
+        if (isConfident(scored, AUTO_POST_SCORE) && (aptKey == null || aptKey.equals(scored.get(0).aptKey))) {
+            return new Match(payment, scored.get(0), Method.SIMILAR_NAME);
+        }
+        List<Candidate> closest = new ArrayList<>();
+        for (Candidate candidate : scored) {
+            if (closest.size() == REVIEW_CANDIDATES) break;
+            closest.add(candidate);
+        }
+        return new ReviewItem(payment, closest.isEmpty() ? "No matching tenant" : "No certain match", closest);
+    }
+
+    private static boolean isConfident(List<Candidate> scored, double threshold) {
+        return !scored.isEmpty() && scored.get(0).score >= threshold
+                && (scored.size() == 1 || scored.get(0).score - scored.get(1).score >= MARGIN);
+    }
+
+    /**
+     * Tenants worth scoring against the payer. First those that have one of the payer's name words
+     * and another word with the same initial as another of the payer's words, which covers a typo
+     * in one word and is a small set even for common names. Failing that, everyone sharing a name
+     * word, skipping words most tenants have; at most {@link #MAX_WORD_CANDIDATES} either way.
+     */
+    private static List<Candidate> wordCandidates(TenantIndex index, String nameKey) {
+        String[] words = nameKey.split(" ");
+        // Counting is far cheaper than scoring, so only the tenants with the most hits get scored.
+        Map<Candidate, Integer> hits = new HashMap<>();
+        for (int i = 0; i < words.length; i++) {
+            for (int j = 0; j < words.length; j++) {
+                if (j == i || words[j].isEmpty()) continue;
+                List<Candidate> withBoth = index.byWordAndInitial.get(words[i] + ' ' + words[j].charAt(0));
+                if (withBoth == null) continue;
+                for (Candidate candidate : withBoth) {
+                    hits.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        Set<Candidate> candidates = new HashSet<>();
+        if (!hits.isEmpty()) {
+            int most = Collections.max(hits.values());
+            for (Map.Entry<Candidate, Integer> entry : hits.entrySet()) {
+                if (entry.getValue() == most) candidates.add(entry.getKey());
+            }
+        } else {
+            List<Candidate> smallest = null;
+            for (String word : words) {
+                List<Candidate> withWord = index.byWord.get(word);
+                if (withWord == null) continue;
+                if (withWord.size() <= MAX_WORD_CANDIDATES) {
+                    candidates.addAll(withWord);
+                } else if (smallest == null || withWord.size() < smallest.size()) {
+                    smallest = withWord;
+                }
+            }
+            if (candidates.isEmpty() && smallest != null) {
+                return smallest.subList(0, MAX_WORD_CANDIDATES);
+            }
+        }
+        List<Candidate> list = new ArrayList<>(candidates);
+        return list.size() > MAX_WORD_CANDIDATES ? list.subList(0, MAX_WORD_CANDIDATES) : list;
+    }
+
+    /**
+     * Scores candidates against the payer's name and returns those at {@link #REVIEW_SCORE} or
+     * better, best first. Anything lower is too far off to post or to show.
+     */
+    private static List<Candidate> score(String nameKey, List<Candidate> candidates) {
+        char[] payer = nameKey.toCharArray();
+        List<Candidate> scored = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            double score = similarity(payer, candidate.nameChars);
+            if (score >= REVIEW_SCORE) {
+                scored.add(candidate.withScore(score));
+            }
+        }
+        scored.sort((a, b) -> Double.compare(b.score, a.score));
+        return scored;
+    }
+
+    private static final class Posting {
+        int posted;
+        final List<ReviewItem> failed = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    private CompletableFuture<Posting> post(List<Match> matches) {
+        Posting posting = new Posting();
+        if (dryRun || matches.isEmpty()) {
+            return CompletableFuture.completedFuture(posting);
+        }
+        Map<String, List<Match>> byBuilding = new LinkedHashMap<>();
+        for (Match match : matches) {
+            byBuilding.computeIfAbsent(match.tenant.dbName, k -> new ArrayList<>()).add(match);
+        }
+        return BackgroundExecutor.forEachBuilding(new ArrayList<>(byBuilding.keySet()),
+                        dbName -> postBuilding(dbName, byBuilding.get(dbName), posting.failed))
+                .thenApply(counts -> {
+                    for (int count : counts.values()) posting.posted += count;
+                    return posting;
+                });
+    }
+
+    /** Posts in transactions of {@link #POST_BATCH}; a batch that fails goes to review as a whole. */
+    private static int postBuilding(String dbName, List<Match> matches, List<ReviewItem> failed) throws SQLException {
+        int posted = 0;
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.PAYMENT);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             PaymentLedger.Batch ledger = new PaymentLedger.Batch(conn)) {
+            conn.setAutoCommit(false);
+            try {
+                for (int from = 0; from < matches.size(); from += POST_BATCH) {
+                    List<Match> batch = matches.subList(from, Math.min(matches.size(), from + POST_BATCH));
+                    try {
+                        for (Match match : batch) {
+                            ledger.add(match.tenant.tenantId, match.payment.getPeriod(), match.payment.amount, match.payment.reference);
+                        }
+                        ledger.flush();
+                        List<ChangeJournal.Entry> changes = new ArrayList<>(batch.size());
+                        for (Match match : batch) {
+                            changes.add(ChangeJournal.Entry.payment(dbName, match.tenant.tenantId,
+                                    match.payment.getPeriod(), match.payment.amount));
+                        }
+                        ChangeJournal.commit(dbName, conn, changes);
+                        posted += batch.size();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        ledger.clear();
+                        for (Match match : batch) {
+                            failed.add(new ReviewItem(match.payment, "Could not post: " + e.getMessage(),
+                                    Collections.singletonList(match.tenant)));
+                        }
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            sample.done(posted);
+        }
+        if (posted > 0) {
+            TenantEvents.invalidated(dbName);
+        }
+        return posted;
+    }
+
+    /** Lower case, no accents, punctuation or titles, words sorted: "Doe, Mrs. Jane" becomes "doe jane". */
+    static String normalizeName(String name) {
+        if (name == null) return "";
+        String plain = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        List<String> words = new ArrayList<>();
+        for (String word : NON_ALNUM.split(plain.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty() && !TITLES.contains(word)) words.add(word);
+        }
+        Collections.sort(words);
+        return String.join(" ", words);
+    }
+
+    /** Upper case letters and digits only: "apt 3-b" and "3B" both become "3B". */
+    static String normalizeApartment(String aptNumber) {
+        if (aptNumber == null) return "";
+        StringBuilder key = new StringBuilder(aptNumber.length());
+        for (int i = 0; i < aptNumber.length(); i++) {
+            char c = aptNumber.charAt(i);
+            if (Character.isLetterOrDigit(c)) key.append(Character.toUpperCase(c));
+        }
+        return key.toString();
+    }
+
+    /** The apartment a memo mentions, normalized, or null. */
+    static String apartmentIn(String memo) {
+        if (memo == null || memo.isEmpty()) return null;
+        Matcher matcher = APARTMENT.matcher(memo);
+        return matcher.find() ? normalizeApartment(matcher.group(1)) : null;
+    }
+
+    /** Jaro-Winkler similarity, 1.0 for equal strings. */
+    static double similarity(String a, String b) {
+        return similarity(a.toCharArray(), b.toCharArray());
+    }
+
+    /**
+     * Jaro-Winkler on char arrays. This is the inner loop of fuzzy matching, so names of up to 64
+     * characters keep their matched flags in two longs instead of allocating arrays.
+     */
+    static double similarity(char[] a, char[] b) {
+        int lenA = a.length, lenB = b.length;
+        if (lenA == 0 || lenB == 0) return 0.0;
+        if (lenA > 64 || lenB > 64) {
+            return similarity(Arrays.copyOf(a, Math.min(lenA, 64)), Arrays.copyOf(b, Math.min(lenB, 64)));
+        }
+
+        int window = Math.max(0, Math.max(lenA, lenB) / 2 - 1);
+        long matchedA = 0, matchedB = 0;
+        int matches = 0;
+        for (int i = 0; i < lenA; i++) {
+            int from = Math.max(0, i - window), to = Math.min(lenB - 1, i + window);
+            for (int j = from; j <= to; j++) {
+                if ((matchedB & (1L << j)) == 0 && a[i] == b[j]) {
+                    matchedA |= 1L << i;
+                    matchedB |= 1L << j;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) return 0.0;
+
+        int transpositions = 0;
+        for (int i = 0, j = 0; i < lenA; i++) {
+            if ((matchedA & (1L << i)) == 0) continue;
+            while ((matchedB & (1L << j)) == 0) j++;
+            if (a[i] != b[j]) transpositions++;
+            j++;
+        }
+        double m = matches;
+        double jaro = (m / lenA + m / lenB + (m - transpositions / 2.0) / m) / 3.0;
+
+        int prefix = 0;
+        while (prefix < Math.min(4, Math.min(lenA, lenB)) && a[prefix] == b[prefix]) prefix++;
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+
+    public static final class Result {
+        private final int lines;
+        private final int tenantsIndexed;
+        private final List<Match> matches;
+        private final int posted;
+        private final List<ReviewItem> review;
+        private final List<String> unreadable;
+        private final int skipped;
+        private final boolean dryRun;
+        private final long indexNanos;
+        private final long matchNanos;
+        private final long postNanos;
+
+        Result(int lines, int tenantsIndexed, List<Match> matches, int posted, List<ReviewItem> review,
+               List<String> unreadable, int skipped, boolean dryRun, long indexNanos, long matchNanos, long postNanos) {
+            this.lines = lines;
+            this.tenantsIndexed = tenantsIndexed;
+            this.matches = matches;
+            this.posted = posted;
+            this.review = review;
+            this.unreadable = unreadable;
+            this.skipped = skipped;
+            this.dryRun = dryRun;
+            this.indexNanos = indexNanos;
+            this.matchNanos = matchNanos;
+            this.postNanos = postNanos;
+        }
+
+        /** Confident matches, posted unless this was a dry run or their batch failed. */
+        public List<Match> getMatches() {
+            return matches;
+        }
+
+        public int getPosted() {
+            return posted;
+        }
+
+        public List<ReviewItem> getReview() {
+            return review;
+        }
+
+        public List<String> getUnreadable() {
+            return unreadable;
+        }
+
+        /** Lines posted or queued for review by an earlier reconciliation, left alone this time. */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public long getElapsedNanos() {
+            return indexNanos + matchNanos + postNanos;
+        }
+
+        @Override
+        public String toString() {
+            Map<Method, Integer> byMethod = new EnumMap<>(Method.class);
+            double amount = 0;
+            for (Match match : matches) {
+                byMethod.merge(match.method, 1, Integer::sum);
+                amount += match.payment.amount;
+            }
+            StringBuilder sb = new StringBuilder(dryRun ? "Reconciliation dry run (nothing posted):\n" : "Reconciliation:\n");
+            sb.append(String.format("  %d lines against %d tenants%n", lines, tenantsIndexed));
+            sb.append(String.format("  Matched: %d ($%,.2f)%n", matches.size(), amount));
+            for (Map.Entry<Method, Integer> entry : byMethod.entrySet()) {
+                sb.append(String.format("    %s: %d%n", entry.getKey().name().toLowerCase().replace('_', ' '), entry.getValue()));
+            }
+            if (!dryRun) {
+                sb.append(String.format("  Posted: %d%n", posted));
+            }
+            sb.append(String.format("  For review: %d%n", review.size()));
+            if (skipped > 0) {
+                sb.append(String.format("  Already reconciled: %d%n", skipped));
+            }
+            if (!unreadable.isEmpty()) {
+                sb.append(String.format("  Unreadable lines: %d (first: %s)%n", unreadable.size(), unreadable.get(0)));
+            }
+            double seconds = getElapsedNanos() / 1e9;
+            sb.append(String.format("  Took %.1f ms (index %.1f, match %.1f, post %.1f), %.0f lines/s",
+                    getElapsedNanos() / 1e6, indexNanos / 1e6, matchNanos / 1e6, postNanos / 1e6,
+                    seconds == 0 ? 0 : lines / seconds));
+            return sb.toString();
+        }
+    }
+}
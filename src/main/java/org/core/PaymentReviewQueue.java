@@ -0,0 +1,205 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bank payments the {@link PaymentReconciler} could not match with confidence, waiting for
+ * someone to pick the tenant.
+ * <p>
+ * Kept in the {@link BuildingRegistry registry} database, keyed by the statement line's
+ * {@link PaymentReconciler#bankReference bank reference}, so the queue outlives the application
+ * and the CLI and the GUI see the same one. Dismissed items stay recorded, which keeps reconciling
+ * the same statement again from bringing them back.
+ */
+public final class PaymentReviewQueue {
+    private static volatile boolean created;
+
+    private PaymentReviewQueue() {
+    }
+
+    /** Adds the items whose statement lines are not in the queue yet. */
+    static void addAll(Collection<PaymentReconciler.ReviewItem> items) throws SQLException {
+        if (items.isEmpty()) return;
+        createTables();
+        try (Connection conn = ConnectionProvider.getConnection(BuildingRegistry.DATABASE)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement item = conn.prepareStatement("MERGE INTO payment_review "
+                         + "(bank_ref, line, paid_on, amount, payer, memo, reason) KEY (bank_ref) VALUES (?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement candidate = conn.prepareStatement("MERGE INTO payment_review_candidates "
+                         + "(bank_ref, rank, db_name, tenant_id, name, apt_number, score) KEY (bank_ref, rank) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (PaymentReconciler.ReviewItem review : items) {
+                    PaymentReconciler.BankPayment payment = review.getPayment();
+                    item.setString(1, payment.getReference());
+                    item.setInt(2, payment.getLine());
+                    item.setDate(3, Date.valueOf(payment.getDate()));
+                    item.setDouble(4, payment.getAmount());
+                    item.setString(5, payment.getPayer());
+                    item.setString(6, payment.getMemo());
+                    item.setString(7, review.getReason());
+                    item.addBatch();
+                    List<PaymentReconciler.Candidate> candidates = review.getCandidates();
+                    for (int rank = 0; rank < candidates.size(); rank++) {
+                        PaymentReconciler.Candidate tenant = candidates.get(rank);
+                        candidate.setString(1, payment.getReference());
+                        candidate.setInt(2, rank);
+                        candidate.setString(3, tenant.getDbName());
+                        candidate.setInt(4, tenant.getTenantId());
+                        candidate.setString(5, tenant.getName());
+                        candidate.setString(6, tenant.getAptNumber());
+                        candidate.setDouble(7, tenant.getScore());
+                        candidate.addBatch();
+                    }
+                }
+                item.executeBatch();
+                candidate.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /** The waiting items, in statement order. */
+    public static List<PaymentReconciler.ReviewItem> items() throws SQLException {
+        createTables();
+        Map<String, PaymentReconciler.BankPayment> payments = new LinkedHashMap<>();
+        Map<String, String> reasons = new LinkedHashMap<>();
+        Map<String, List<PaymentReconciler.Candidate>> candidates = new LinkedHashMap<>();
+        try (Connection conn = ConnectionProvider.getConnection(BuildingRegistry.DATABASE);
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT bank_ref, line, paid_on, amount, payer, memo, reason "
+                    + "FROM payment_review WHERE dismissed_at IS NULL ORDER BY added_at, line")) {
+                while (rs.next()) {
+                    String reference = rs.getString(1);
+                    payments.put(reference, new PaymentReconciler.BankPayment(rs.getInt(2), rs.getDate(3).toLocalDate(),
+                            rs.getDouble(4), rs.getString(5), rs.getString(6), reference));
+                    reasons.put(reference, rs.getString(7));
+                    candidates.put(reference, new ArrayList<>());
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT c.bank_ref, c.db_name, c.tenant_id, c.name, c.apt_number, c.score "
+                    + "FROM payment_review_candidates c JOIN payment_review r ON r.bank_ref = c.bank_ref "
+                    + "WHERE r.dismissed_at IS NULL ORDER BY c.bank_ref, c.rank")) {
+                while (rs.next()) {
+                    List<PaymentReconciler.Candidate> list = candidates.get(rs.getString(1));
+                    if (list == null) continue; // added after the first query
+                    Tenant tenant = new Tenant(rs.getInt(3), rs.getString(4), rs.getString(5), null, null, 0, 0, 0);
+                    list.add(new PaymentReconciler.Candidate(rs.getString(2), tenant).withScore(rs.getDouble(6)));
+                }
+            }
+        }
+        List<PaymentReconciler.ReviewItem> items = new ArrayList<>(payments.size());
+        for (Map.Entry<String, PaymentReconciler.BankPayment> entry : payments.entrySet()) {
+            String reference = entry.getKey();
+            items.add(new PaymentReconciler.ReviewItem(entry.getValue(), reasons.get(reference), candidates.get(reference)));
+        }
+        return items;
+    }
+
+    public static int size() throws SQLException {
+        createTables();
+        try (Connection conn = ConnectionProvider.getConnection(BuildingRegistry.DATABASE);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM payment_review WHERE dismissed_at IS NULL")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /** The references among these that are in the queue, waiting or dismissed. */
+    static Set<String> knownAmong(List<String> references) throws SQLException {
+        createTables();
+        Set<String> known = new HashSet<>();
+        try (Connection conn = ConnectionProvider.getConnection(BuildingRegistry.DATABASE);
+             PreparedStatement stmt = conn.prepareStatement("SELECT bank_ref FROM payment_review WHERE bank_ref = ANY(?)")) {
+            for (int from = 0; from < references.size(); from += PaymentReconciler.REFERENCE_CHUNK) {
+                List<String> chunk = references.subList(from, Math.min(references.size(), from + PaymentReconciler.REFERENCE_CHUNK));
+                stmt.setArray(1, conn.createArrayOf("VARCHAR", chunk.toArray()));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) known.add(rs.getString(1));
+                }
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Posts the payment to the chosen tenant and takes it off the queue. Returns the tenant with the
+     * new balance, or null if someone else already handled the item.
+     */
+    public static Tenant post(PaymentReconciler.ReviewItem item, PaymentReconciler.Candidate tenant) throws SQLException {
+        createTables();
+        PaymentReconciler.BankPayment payment = item.getPayment();
+        if (!take(payment.getReference())) return null;
+        try {
+            return TenantRepository.forBuilding(tenant.getDbName())
+                    .recordPayment(tenant.getTenantId(), payment.getPeriod(), payment.getAmount(), payment.getReference());
+        } catch (SQLException | RuntimeException e) {
+            addAll(List.of(item));
+            throw e;
+        }
+    }
+
+    /** Drops an item without posting it, e.g. a payment that was not rent. */
+    public static boolean dismiss(PaymentReconciler.ReviewItem item) throws SQLException {
+        createTables();
+        try (Connection conn = ConnectionProvider.getConnection(BuildingRegistry.DATABASE);
+             PreparedStatement stmt = conn.prepareStatement(
+                     "UPDATE payment_review SET dismissed_at = CURRENT_TIMESTAMP WHERE bank_ref = ? AND dismissed_at IS NULL")) {
+            stmt.setString(1, item.getPayment().getReference());
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /** Removes a waiting item; false if it is gone or dismissed. The candidates go with it. */
+    private static boolean take(String reference) throws SQLException {
+        try (Connection conn = ConnectionProvider.getConnection(BuildingRegistry.DATABASE);
+             PreparedStatement stmt = conn.prepareStatement(
+                     "DELETE FROM payment_review WHERE bank_ref = ? AND dismissed_at IS NULL")) {
+            stmt.setString(1, reference);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    private static synchronized void createTables() throws SQLException {
+        if (created) return;
+        try (Connection conn = ConnectionProvider.getConnection(BuildingRegistry.DATABASE);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS payment_review ("
+                    + "bank_ref VARCHAR(64) PRIMARY KEY, "
+                    + "line INT NOT NULL, "
+                    + "paid_on DATE NOT NULL, "
+                    + "amount DOUBLE NOT NULL, "
+                    + "payer VARCHAR(255) NOT NULL, "
+                    + "memo VARCHAR(1000) NOT NULL, "
+                    + "reason VARCHAR(1000) NOT NULL, "
+                    + "added_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "dismissed_at TIMESTAMP)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS payment_review_candidates ("
+                    + "bank_ref VARCHAR(64) NOT NULL REFERENCES payment_review (bank_ref) ON DELETE CASCADE, "
+                    + "rank INT NOT NULL, "
+                    + "db_name VARCHAR(63) NOT NULL, "
+                    + "tenant_id INT NOT NULL, "
+                    + "name VARCHAR(255), "
+                    + "apt_number VARCHAR(50), "
+                    + "score DOUBLE NOT NULL, "
+                    + "PRIMARY KEY (bank_ref, rank))");
+        }
+        created = true;
+    }
+}
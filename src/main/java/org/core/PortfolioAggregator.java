@@ -0,0 +1,229 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers portfolio-level questions (rent roll, arrears, negative balances, ...) by running
+ * one aggregate query per building concurrently and merging the partial results, so the
+ * total latency follows the slowest building rather than the sum of all of them. The queries run
+ * on a pool of their own with a thread per building, up to {@code pm.aggregate.threads} (default
+ * 64); a larger portfolio is queried in waves of that many. In
+ * {@link ConsolidatedStorage consolidated mode} a single grouped query answers for every building.
+ */
+public final class PortfolioAggregator {
+    private static final String AGGREGATES = "COUNT(t.id), "
+            + "COALESCE(SUM(rent), 0), "
+            + "COALESCE(SUM(security), 0), "
+            + "COALESCE(SUM(CASE WHEN balance > 0 THEN balance ELSE 0 END), 0), "
+            + "COUNT(CASE WHEN balance > 0 THEN 1 END), "
+            + "COALESCE(SUM(CASE WHEN balance < 0 THEN balance ELSE 0 END), 0), "
+            + "COUNT(CASE WHEN balance < 0 THEN 1 END), "
+            + "COUNT(CASE WHEN lease_expired < CURRENT_DATE THEN 1 END)";
+    private static final String AGGREGATE_SQL = "SELECT " + AGGREGATES + " FROM tenants t";
+    /** Consolidated mode: every building in one pass over the shared table. */
+    private static final String SHARED_AGGREGATE_SQL = "SELECT b.name, " + AGGREGATES
+            + " FROM buildings b LEFT JOIN tenants t ON t.building_id = b.id GROUP BY b.id, b.name";
+
+    /** Grows to one thread per building up to the cap; idle threads exit after a minute. */
+    private static final ThreadPoolExecutor FAN_OUT = newFanOut(Integer.getInteger("pm.aggregate.threads", 64));
+
+    private PortfolioAggregator() {
+    }
+
+    public static CompletableFuture<PortfolioSummary> summarize(List<String> buildings) {
+        long started = System.nanoTime();
+        if (ConsolidatedStorage.isEnabled()) {
+            return BackgroundExecutor.supply(() -> {
+                try {
+                    return new PortfolioSummary(summarizeShared(buildings), System.nanoTime() - started);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        }
+        return BackgroundExecutor.forEachBuilding(buildings, PortfolioAggregator::summarizeBuilding, FAN_OUT)
+                .thenApply(results -> new PortfolioSummary(new ArrayList<>(results.values()), System.nanoTime() - started));
+    }
+
+    private static ThreadPoolExecutor newFanOut(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new BackgroundExecutor.DaemonThreadFactory("pm-aggregate"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    static Executor executor() {
+        return FAN_OUT;
+    }
+
+    public static BuildingStats summarizeBuilding(String dbName) throws SQLException {
+        long started = System.nanoTime();
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(AGGREGATE_SQL)) {
+            rs.next();
+            return new BuildingStats(dbName, rs.getInt(1), rs.getDouble(2), rs.getDouble(3),
+                    rs.getDouble(4), rs.getInt(5), rs.getDouble(6), rs.getInt(7), rs.getInt(8),
+                    System.nanoTime() - started);
+        }
+    }
+
+    private static List<BuildingStats> summarizeShared(List<String> buildings) throws SQLException {
+        long started = System.nanoTime();
+        Map<String, BuildingStats> byName = new HashMap<>();
+        try (Connection conn = ConnectionProvider.getConnection(ConsolidatedStorage.SHARED_SCHEMA);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(SHARED_AGGREGATE_SQL)) {
+            while (rs.next()) {
+                String name = rs.getString(1);
+                byName.put(name.toUpperCase(Locale.ROOT), new BuildingStats(name, rs.getInt(2), rs.getDouble(3), rs.getDouble(4),
+                        rs.getDouble(5), rs.getInt(6), rs.getDouble(7), rs.getInt(8), rs.getInt(9),
+                        System.nanoTime() - started));
+            }
+        }
+        List<BuildingStats> stats = new ArrayList<>();
+        for (String building : buildings) {
+            BuildingStats found = byName.get(building.toUpperCase(Locale.ROOT));
+            if (found == null) {
+                throw new SQLException("Unknown building: " + building);
+            }
+            stats.add(found);
+        }
+        return stats;
+    }
+
+    /** Aggregates of one building, or of the whole portfolio when merged. */
+    public static final class BuildingStats {
+        private final String name;
+        private final int tenantCount;
+        private final double rentRoll;
+        private final double securityHeld;
+        private final double arrears;
+        private final int tenantsInArrears;
+        private final double credits;
+        private final int negativeBalanceCount;
+        private final int expiredLeaseCount;
+        private final long elapsedNanos;
+
+        BuildingStats(String name, int tenantCount, double rentRoll, double securityHeld, double arrears,
+                      int tenantsInArrears, double credits, int negativeBalanceCount, int expiredLeaseCount,
+                      long elapsedNanos) {
+            this.name = name;
+            this.tenantCount = tenantCount;
+            this.rentRoll = rentRoll;
+            this.securityHeld = securityHeld;
+            this.arrears = arrears;
+            this.tenantsInArrears = tenantsInArrears;
+            this.credits = credits;
+            this.negativeBalanceCount = negativeBalanceCount;
+            this.expiredLeaseCount = expiredLeaseCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        static BuildingStats merge(String name, List<BuildingStats> parts, long elapsedNanos) {
+            int tenants = 0, inArrears = 0, negative = 0, expired = 0;
+            double rent = 0, security = 0, arrears = 0, credits = 0;
+            for (BuildingStats part : parts) {
+                tenants += part.tenantCount;
+                rent += part.rentRoll;
+                security += part.securityHeld;
+                arrears += part.arrears;
+                inArrears += part.tenantsInArrears;
+                credits += part.credits;
+                negative += part.negativeBalanceCount;
+                expired += part.expiredLeaseCount;
+            }
+            return new BuildingStats(name, tenants, rent, security, arrears, inArrears, credits, negative, expired, elapsedNanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getTenantCount() {
+            return tenantCount;
+        }
+
+        /** Sum of monthly rent. */
+        public double getRentRoll() {
+            return rentRoll;
+        }
+
+        public double getSecurityHeld() {
+            return securityHeld;
+        }
+
+        /** Sum of positive balances, i.e. money owed. */
+        public double getArrears() {
+            return arrears;
+        }
+
+        public int getTenantsInArrears() {
+            return tenantsInArrears;
+        }
+
+        /** Sum of negative balances, i.e. prepaid credit. */
+        public double getCredits() {
+            return credits;
+        }
+
+        public int getNegativeBalanceCount() {
+            return negativeBalanceCount;
+        }
+
+        public int getExpiredLeaseCount() {
+            return expiredLeaseCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s tenants: %6d  rent roll: $%,12.2f  arrears: $%,12.2f (%d)  negative balances: %d  expired leases: %d  [%.1f ms]",
+                    name, tenantCount, rentRoll, arrears, tenantsInArrears, negativeBalanceCount, expiredLeaseCount, elapsedNanos / 1e6);
+        }
+    }
+
+    public static final class PortfolioSummary {
+        private final List<BuildingStats> buildings;
+        private final BuildingStats total;
+
+        PortfolioSummary(List<BuildingStats> buildings, long elapsedNanos) {
+            this.buildings = buildings;
+            this.total = BuildingStats.merge("Portfolio", buildings, elapsedNanos);
+        }
+
+        public List<BuildingStats> getBuildings() {
+            return buildings;
+        }
+
+        public BuildingStats getTotal() {
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (BuildingStats stats : buildings) {
+                sb.append(stats).append('\n');
+            }
+            return sb.append(total).toString();
+        }
+    }
+}
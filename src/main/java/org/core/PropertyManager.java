@@ -1,43 +1,104 @@
 package org.core;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletionException;
 
 public class PropertyManager {
-    private static final String[] BUILDINGS = {
-            "property_1",
-            "property_2",
-            "property_3",
-            "property_4",
-            "property_5"
-    };
+    private static final int VIEW_PAGE_SIZE = 20;
+    private static final int REPORT_TOP = 10;
+    private static final int REPORT_MONTHS = 12;
+    private static final int JOURNAL_LINES = 100;
+
+    /** The buildings to manage, as listed by the {@link BuildingRegistry}. */
+    public static List<String> getBuildings() {
+        try {
+            return BuildingRegistry.names();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
     public static void start() {
         Scanner scanner = new Scanner(System.in);
 
-        for (String building : BUILDINGS) {
-            DatabaseManager.initializeDatabase(building);
-        }
+        // Buildings open on first use; only those with an old schema are upgraded ahead of time.
+        BuildingRegistry.upgradeOutdated().whenComplete((upgraded, error) -> {
+            if (error != null) error.printStackTrace();
+        });
+        RentAccrual.schedule(PropertyManager::getBuildings);
+        LeaseExpirations.addListener(expirations -> {
+            System.out.println("\n[Lease notice] " + expirations.size() + " lease(s) expire within "
+                    + LeaseExpirations.NOTICE_DAYS + " days:");
+            for (LeaseExpirations.Expiration expiration : expirations) {
+                System.out.println("  " + expiration);
+            }
+        });
+        LeaseExpirations.scheduleDailyCheck(PropertyManager::getBuildings);
 
         boolean exit = false;
 
         while (!exit) {
+            List<String> buildings = getBuildings();
             System.out.println("\nSelect a building to manage (or type 'back' to exit):");
-            for (int i = 0; i < BUILDINGS.length; i++) {
-                System.out.println((i + 1) + ". " + BUILDINGS[i]);
+            for (int i = 0; i < buildings.size(); i++) {
+                System.out.println((i + 1) + ". " + buildings.get(i));
+            }
+            System.out.println("s. Portfolio Summary (all buildings)");
+            System.out.println("r. Bulk Rent Adjustment (all buildings)");
+            System.out.println("c. Charge Monthly Rent (all buildings)");
+            System.out.println("e. Upcoming Lease Expirations (all buildings)");
+            System.out.println("b. Run Batch Command File");
+            System.out.println("p. Reconcile Bank Statement");
+            System.out.println("q. Payment Review Queue (" + reviewQueueSize() + ")");
+            if (ChangeJournal.isEnabled()) {
+                System.out.println("j. Change Journal (a day's activity)");
             }
+            System.out.println("a. Add Building");
+            System.out.println("k. Snapshots (back up all buildings / restore one)");
 
             String input = scanner.nextLine();
             if (input.equalsIgnoreCase("back")) {
                 exit = true;
+            } else if (input.equalsIgnoreCase("s")) {
+                portfolioSummary();
+            } else if (input.equalsIgnoreCase("r")) {
+                bulkRentAdjustment(scanner);
+            } else if (input.equalsIgnoreCase("c")) {
+                accrueRent();
+            } else if (input.equalsIgnoreCase("e")) {
+                upcomingExpirations(scanner);
+            } else if (input.equalsIgnoreCase("b")) {
+                runBatch(scanner);
+            } else if (input.equalsIgnoreCase("p")) {
+                reconcilePayments(scanner);
+            } else if (input.equalsIgnoreCase("q")) {
+                reviewPayments(scanner);
+            } else if (input.equalsIgnoreCase("j") && ChangeJournal.isEnabled()) {
+                showJournal(scanner);
+            } else if (input.equalsIgnoreCase("a")) {
+                addBuilding(scanner);
+            } else if (input.equalsIgnoreCase("k")) {
+                snapshots(scanner, buildings);
             } else {
                 try {
                     int choice = Integer.parseInt(input);
-                    if (choice >= 1 && choice <= BUILDINGS.length) {
-                        manageBuilding(BUILDINGS[choice - 1], scanner);
+                    if (choice >= 1 && choice <= buildings.size()) {
+                        manageBuilding(buildings.get(choice - 1), scanner);
                     } else {
                         System.out.println("Invalid choice. Try again.");
                     }
@@ -49,6 +110,19 @@ public class PropertyManager {
         scanner.close();
     }
 
+    private static void addBuilding(Scanner scanner) {
+        System.out.print("Enter new building name (letters, digits and '_'): ");
+        String name = scanner.nextLine().trim();
+        try {
+            BuildingRegistry.add(name);
+            System.out.println("Building added: " + name);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (SQLException e) {
+            System.out.println("Could not add building: " + e.getMessage());
+        }
+    }
+
     private static void manageBuilding(String dbName, Scanner scanner) {
         boolean back = false;
 
@@ -60,14 +134,16 @@ public class PropertyManager {
             System.out.println("4. Delete Tenant");
             System.out.println("5. Increase Rent for a Tenant");
             System.out.println("6. Edit Tenant Information");
-            System.out.println("7. Go Back");
+            System.out.println("7. Performance Metrics");
+            System.out.println("8. Reports");
+            System.out.println("9. Go Back");
 
             System.out.print("Enter your choice: ");
             String input = scanner.nextLine();
 
             switch (input) {
                 case "1":
-                    viewTenants(dbName);
+                    viewTenants(dbName, scanner);
                     break;
                 case "2":
                     addTenant(dbName, scanner);
@@ -84,33 +160,82 @@ public class PropertyManager {
                 case "6":  // ✅ Edit Tenant Information now works correctly
                     editTenant(dbName, scanner);
                     break;
-                case "7":  // ✅ Correctly allows the user to go back
+                case "7":
+                    showMetrics(dbName, scanner);
+                    break;
+                case "8":
+                    showReports(dbName);
+                    break;
+                case "9":  // ✅ Correctly allows the user to go back
                     back = true;
                     break;
                 default:
-                    System.out.println("Invalid choice. Please enter a valid number (1-7).");
+                    System.out.println("Invalid choice. Please enter a valid number (1-9).");
             }
         }
     }
 
 
-    private static void viewTenants(String dbName) {
-        String DB_URL = "jdbc:h2:./" + dbName;
+    private static void viewTenants(String dbName, Scanner scanner) {
+        TenantPager pager = new TenantPager(dbName, TenantPager.SortKey.ID, true, "");
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, "sa", "");
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT * FROM tenants")) {
+        try {
+            TenantPager.TenantPage page = pager.first(VIEW_PAGE_SIZE);
+            int pageNumber = 1;
+            while (true) {
+                System.out.println("\nTenants in " + dbName + " (page " + pageNumber + ", sorted by "
+                        + pager.getSortKey().getColumn() + (pager.isAscending() ? " asc" : " desc")
+                        + (pager.getFilter().isEmpty() ? "" : ", filter '" + pager.getFilter() + "'") + "):");
+                if (page.getTenants().isEmpty()) {
+                    System.out.println("No tenants found.");
+                }
+                for (Tenant t : page.getTenants()) {
+                    System.out.println("ID: " + t.getId() +
+                            ", Name: " + t.getName() +
+                            ", Apt#: " + t.getAptNumber() +
+                            ", Lease Start: " + t.getLeaseStart() +
+                            ", Lease Expiry: " + t.getLeaseExpired() +
+                            ", Security: $" + t.getSecurity() +
+                            ", Rent: $" + t.getRent() +
+                            ", Balance: $" + t.getBalance());
+                }
 
-            System.out.println("\nTenants in " + dbName + ":");
-            while (rs.next()) {
-                System.out.println("ID: " + rs.getInt("id") +
-                        ", Name: " + rs.getString("name") +
-                        ", Apt#: " + rs.getString("apt_number") +
-                        ", Lease Start: " + rs.getDate("lease_start") +
-                        ", Lease Expiry: " + rs.getDate("lease_expired") +
-                        ", Security: $" + rs.getDouble("security") +
-                        ", Rent: $" + rs.getDouble("rent") +
-                        ", Balance: $" + rs.getDouble("balance"));
+                System.out.print("\n" + (page.hasMore() ? "[Enter] next page, " : "")
+                        + "'s' to sort, 'f' to filter, 'back' to return: ");
+                String input = scanner.nextLine().trim();
+                if (input.isEmpty() && page.hasMore()) {
+                    page = pager.after(page, VIEW_PAGE_SIZE);
+                    pageNumber++;
+                    continue;
+                }
+                switch (input.toLowerCase()) {
+                    case "s":
+                        System.out.print("Sort by (" + Arrays.toString(TenantPager.SortKey.values()).toLowerCase() + "): ");
+                        TenantPager.SortKey key;
+                        try {
+                            key = TenantPager.SortKey.valueOf(scanner.nextLine().trim().toUpperCase());
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Unknown sort column.");
+                            break;
+                        }
+                        System.out.print("Descending? (y/n): ");
+                        boolean ascending = !scanner.nextLine().trim().equalsIgnoreCase("y");
+                        pager = new TenantPager(dbName, key, ascending, pager.getFilter());
+                        page = pager.first(VIEW_PAGE_SIZE);
+                        pageNumber = 1;
+                        break;
+                    case "f":
+                        System.out.print("Filter by name or apartment (blank for none): ");
+                        pager = new TenantPager(dbName, pager.getSortKey(), pager.isAscending(), scanner.nextLine());
+                        page = pager.first(VIEW_PAGE_SIZE);
+                        pageNumber = 1;
+                        break;
+                    case "back":
+                    case "":
+                        return;
+                    default:
+                        System.out.println("Invalid option.");
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -118,9 +243,7 @@ public class PropertyManager {
     }
 
     private static void addTenant(String dbName, Scanner scanner) {
-        String DB_URL = "jdbc:h2:./" + dbName;
-
-        try (Connection conn = DriverManager.getConnection(DB_URL, "sa", "")) {
+        try {
             System.out.println("Enter tenant details (or type 'back' to return):");
 
             System.out.print("Enter tenant name: ");
@@ -134,12 +257,12 @@ public class PropertyManager {
             System.out.print("Enter lease start (MM-DD-YYYY): ");
             String leaseStart = scanner.nextLine();
             if (leaseStart.equalsIgnoreCase("back")) return;
-            leaseStart = convertDateFormat(leaseStart);
+            leaseStart = LeaseDates.convertDateFormat(leaseStart);
 
             System.out.print("Enter lease expiry (MM-DD-YYYY): ");
             String leaseExpired = scanner.nextLine();
             if (leaseExpired.equalsIgnoreCase("back")) return;
-            leaseExpired = convertDateFormat(leaseExpired);
+            leaseExpired = LeaseDates.convertDateFormat(leaseExpired);
 
             System.out.print("Enter security deposit: ");
             double security = Double.parseDouble(scanner.nextLine());
@@ -148,22 +271,13 @@ public class PropertyManager {
             double rent = Double.parseDouble(scanner.nextLine());
 
             // Calculate initial balance based on the number of unpaid months
-            int unpaidMonths = getUnpaidMonths(leaseStart);
+            int unpaidMonths = LeaseDates.getUnpaidMonths(leaseStart);
             double balance = rent * unpaidMonths;
 
-            String sql = "INSERT INTO tenants (name, apt_number, lease_start, lease_expired, security, rent, balance) VALUES (?, ?, ?, ?, ?, ?, ?)";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, name);
-                pstmt.setString(2, aptNumber);
-                pstmt.setDate(3, Date.valueOf(leaseStart));
-                pstmt.setDate(4, Date.valueOf(leaseExpired));
-                pstmt.setDouble(5, security);
-                pstmt.setDouble(6, rent);
-                pstmt.setDouble(7, balance);
-                pstmt.executeUpdate();
-                System.out.println("Tenant added successfully with an initial balance of $" + balance);
-            }
-        } catch (SQLException | NumberFormatException e) {
+            TenantRepository.forBuilding(dbName).insert(new Tenant(0, name, aptNumber,
+                    Date.valueOf(leaseStart).toLocalDate(), Date.valueOf(leaseExpired).toLocalDate(), security, rent, balance));
+            System.out.println("Tenant added successfully with an initial balance of $" + balance);
+        } catch (SQLException | IllegalArgumentException e) {
             System.out.println("Invalid input. Please try again.");
         }
     }
@@ -172,102 +286,49 @@ public class PropertyManager {
 
 
     private static void recordPayment(String dbName, Scanner scanner) {
-        String DB_URL = "jdbc:h2:./" + dbName;
-
-        try (Connection conn = DriverManager.getConnection(DB_URL, "sa", "")) {
-            // Fetch tenant list for selection
-            List<Integer> tenantIds = new ArrayList<>();
-            List<String> tenantNames = new ArrayList<>();
-
+        TenantRepository repository = TenantRepository.forBuilding(dbName);
+        try {
             System.out.println("\nSelect a tenant to record a payment:");
+            Tenant tenant = chooseTenant(repository, scanner, "\nEnter the number of the tenant to record a payment (or type 'back' to cancel): ");
+            if (tenant == null) return;
 
-            String selectAllSql = "SELECT id, name, apt_number FROM tenants";
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(selectAllSql)) {
-
-                int index = 1;
-                while (rs.next()) {
-                    tenantIds.add(rs.getInt("id"));
-                    tenantNames.add(rs.getString("name") + " (Apt#: " + rs.getString("apt_number") + ")");
-                    System.out.println(index + ". " + tenantNames.get(index - 1));
-                    index++;
-                }
-
-                if (tenantIds.isEmpty()) {
-                    System.out.println("No tenants found.");
-                    return;
-                }
-
-                System.out.print("\nEnter the number of the tenant to record a payment (or type 'back' to cancel): ");
-                String input = scanner.nextLine();
-                if (input.equalsIgnoreCase("back")) return;
+            // Ask for the month
+            System.out.print("Enter month (e.g., 'jan', 'feb', 'mar'): ");
+            String month = scanner.nextLine().toLowerCase();
 
-                int choice;
-                try {
-                    choice = Integer.parseInt(input);
-                } catch (NumberFormatException e) {
-                    System.out.println("Invalid choice. Please enter a valid number.");
-                    return;
-                }
-
-                if (choice < 1 || choice > tenantIds.size()) {
-                    System.out.println("Invalid choice. Try again.");
-                    return;
-                }
-
-                int tenantId = tenantIds.get(choice - 1);
-
-                // Ask for the month
-                System.out.print("Enter month (e.g., 'jan', 'feb', 'mar'): ");
-                String month = scanner.nextLine().toLowerCase();
-
-                // Validate that the month is correct
-                List<String> validMonths = Arrays.asList("jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec");
-                if (!validMonths.contains(month)) {
-                    System.out.println("Invalid month entered. Try again.");
-                    return;
-                }
+            // Validate that the month is correct
+            List<String> validMonths = Arrays.asList("jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec");
+            if (!validMonths.contains(month)) {
+                System.out.println("Invalid month entered. Try again.");
+                return;
+            }
 
-                String monthColumn = month + "_paid";
+            System.out.print("Enter year (blank for " + Year.now() + "): ");
+            String yearInput = scanner.nextLine().trim();
+            YearMonth period;
+            try {
+                int year = yearInput.isEmpty() ? Year.now().getValue() : Integer.parseInt(yearInput);
+                period = YearMonth.of(year, validMonths.indexOf(month) + 1);
+            } catch (NumberFormatException | DateTimeException e) {
+                System.out.println("Invalid year entered. Try again.");
+                return;
+            }
 
-                System.out.print("Enter payment amount: ");
-                double payment;
-                try {
-                    String paymentInput = scanner.nextLine();
-                    payment = Double.parseDouble(paymentInput.trim()); // Ensuring valid parsing
-                } catch (NumberFormatException e) {
-                    System.out.println("Invalid amount entered. Please enter a valid number.");
-                    return;
-                }
+            System.out.print("Enter payment amount: ");
+            double payment;
+            try {
+                String paymentInput = scanner.nextLine();
+                payment = Double.parseDouble(paymentInput.trim()); // Ensuring valid parsing
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid amount entered. Please enter a valid number.");
+                return;
+            }
 
-                // Fetch current rent and balance
-                String checkSql = "SELECT rent, balance, " + monthColumn + " FROM tenants WHERE id = ?";
-                try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                    checkStmt.setInt(1, tenantId);
-                    ResultSet rsCheck = checkStmt.executeQuery();
-
-                    if (rsCheck.next()) {
-                        double rent = rsCheck.getDouble("rent");
-                        double currentBalance = rsCheck.getDouble("balance");
-                        double previousPayment = rsCheck.getDouble(monthColumn);
-
-                        // Calculate new balance
-                        double newBalance = currentBalance - payment;
-
-                        // Update the payment for the given month and adjust balance
-                        String sql = "UPDATE tenants SET " + monthColumn + " = ?, balance = ? WHERE id = ?";
-                        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                            pstmt.setDouble(1, previousPayment + payment);
-                            pstmt.setDouble(2, newBalance);
-                            pstmt.setInt(3, tenantId);
-                            pstmt.executeUpdate();
-
-                            System.out.printf("Payment of $%.2f recorded for %s. New balance: $%.2f\n", payment, month.toUpperCase(), newBalance);
-                        }
-                    } else {
-                        System.out.println("Error: Tenant not found.");
-                    }
-                }
+            try {
+                Tenant updated = repository.recordPayment(tenant.getId(), period, payment);
+                System.out.printf("Payment of $%.2f recorded for %s. New balance: $%.2f\n", payment, period, updated.getBalance());
+            } catch (SQLException e) {
+                System.out.println("Error: " + e.getMessage());
             }
         } catch (SQLException e) {
             System.out.println("Database error occurred.");
@@ -280,251 +341,463 @@ public class PropertyManager {
 
 
     private static void deleteTenant(String dbName, Scanner scanner) {
-        String DB_URL = "jdbc:h2:./" + dbName;
-
-        try (Connection conn = DriverManager.getConnection(DB_URL, "sa", "");
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT id, name, apt_number FROM tenants")) {
-
-            List<Integer> tenantIds = new ArrayList<>();
-            List<String> tenantNames = new ArrayList<>();
-
+        TenantRepository repository = TenantRepository.forBuilding(dbName);
+        try {
             System.out.println("\nSelect a tenant to delete:");
-            int index = 1;
-            while (rs.next()) {
-                tenantIds.add(rs.getInt("id"));
-                tenantNames.add(rs.getString("name") + " (Apt#: " + rs.getString("apt_number") + ")");
-                System.out.println(index + ". " + tenantNames.get(index - 1));
-                index++;
-            }
+            Tenant tenant = chooseTenant(repository, scanner, "\nEnter the number of the tenant to delete (or type 'back' to return): ");
+            if (tenant == null) return;
 
-            if (tenantIds.isEmpty()) {
-                System.out.println("No tenants found.");
-                return;
-            }
-
-            System.out.print("\nEnter the number of the tenant to delete (or type 'back' to return): ");
-            String input = scanner.nextLine();
-            if (input.equalsIgnoreCase("back")) return;
-
-            try {
-                int choice = Integer.parseInt(input);
-                if (choice < 1 || choice > tenantIds.size()) {
-                    System.out.println("Invalid choice. Try again.");
-                    return;
-                }
-
-                int tenantIdToDelete = tenantIds.get(choice - 1);
-                String sql = "DELETE FROM tenants WHERE id = ?";
-                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                    pstmt.setInt(1, tenantIdToDelete);
-                    pstmt.executeUpdate();
-                    System.out.println("Tenant '" + tenantNames.get(choice - 1) + "' deleted successfully.");
-                }
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid input. Please enter a number.");
+            if (repository.delete(tenant.getId())) {
+                System.out.println("Tenant '" + describe(tenant) + "' deleted successfully.");
+            } else {
+                System.out.println("Tenant '" + describe(tenant) + "' not found; it may have been deleted already.");
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
     private static void increaseRent(String dbName, Scanner scanner) {
-        String DB_URL = "jdbc:h2:./" + dbName;
-
-        try (Connection conn = DriverManager.getConnection(DB_URL, "sa", "")) {
+        TenantRepository repository = TenantRepository.forBuilding(dbName);
+        try {
             System.out.print("Enter tenant ID to increase rent: ");
             int id = Integer.parseInt(scanner.nextLine());
 
             System.out.print("Enter percentage increase (e.g., '10' for 10% increase): ");
             double percentage = Double.parseDouble(scanner.nextLine()) / 100.0;
 
-            String selectSql = "SELECT rent FROM tenants WHERE id = ?";
-            try (PreparedStatement selectStmt = conn.prepareStatement(selectSql)) {
-                selectStmt.setInt(1, id);
-                ResultSet rs = selectStmt.executeQuery();
-
-                if (rs.next()) {
-                    double currentRent = rs.getDouble("rent");
-                    double newRent = currentRent * (1 + percentage);
-
-                    String updateSql = "UPDATE tenants SET rent = ? WHERE id = ?";
-                    try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                        updateStmt.setDouble(1, newRent);
-                        updateStmt.setInt(2, id);
-                        updateStmt.executeUpdate();
-                        System.out.printf("Rent updated from $%.2f to $%.2f\n", currentRent, newRent);
-                    }
-                } else {
-                    System.out.println("Tenant ID not found.");
-                }
+            Tenant tenant = repository.findById(id);
+            if (tenant != null) {
+                double currentRent = tenant.getRent();
+                double newRent = currentRent * (1 + percentage);
+                repository.updateField(id, tenant.getVersion(), "rent", newRent);
+                System.out.printf("Rent updated from $%.2f to $%.2f\n", currentRent, newRent);
+            } else {
+                System.out.println("Tenant ID not found.");
             }
+        } catch (TenantConflictException e) {
+            System.out.println(e.getMessage() + "; the rent was not changed. Please try again.");
         } catch (SQLException | NumberFormatException e) {
             System.out.println("Invalid input. Please try again.");
         }
     }
 
-    private static void editTenant(String dbName, Scanner scanner) {
-        String DB_URL = "jdbc:h2:./" + dbName;
-
-        try (Connection conn = DriverManager.getConnection(DB_URL, "sa", "")) {
-            System.out.println("\nEditing Tenant Information");
+    /**
+     * Lists the building's tenants, numbered, and returns the one the user picks, or null if
+     * they backed out or typed something invalid. The list comes from the repository cache.
+     */
+    private static Tenant chooseTenant(TenantRepository repository, Scanner scanner, String prompt) throws SQLException {
+        List<Tenant> tenants = repository.listAll();
+        for (int i = 0; i < tenants.size(); i++) {
+            System.out.println((i + 1) + ". " + describe(tenants.get(i)));
+        }
 
-            // List tenants and let user select one
-            List<Integer> tenantIds = new ArrayList<>();
-            List<String> tenantNames = new ArrayList<>();
-
-            String selectAllSql = "SELECT id, name, apt_number FROM tenants";
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(selectAllSql)) {
-
-                int index = 1;
-                while (rs.next()) {
-                    tenantIds.add(rs.getInt("id"));
-                    tenantNames.add(rs.getString("name") + " (Apt#: " + rs.getString("apt_number") + ")");
-                    System.out.println(index + ". " + tenantNames.get(index - 1));
-                    index++;
-                }
+        if (tenants.isEmpty()) {
+            System.out.println("No tenants found.");
+            return null;
+        }
 
-                if (tenantIds.isEmpty()) {
-                    System.out.println("No tenants found.");
-                    return;
-                }
+        System.out.print(prompt);
+        String input = scanner.nextLine();
+        if (input.equalsIgnoreCase("back")) return null;
 
-                System.out.print("\nEnter the number of the tenant to edit (or type 'back' to cancel): ");
-                String input = scanner.nextLine();
-                if (input.equalsIgnoreCase("back")) return;
+        int choice;
+        try {
+            choice = Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid choice. Please enter a valid number.");
+            return null;
+        }
 
-                int choice;
-                try {
-                    choice = Integer.parseInt(input);
-                } catch (NumberFormatException e) {
-                    System.out.println("Invalid choice. Please enter a valid number.");
-                    return;
-                }
+        if (choice < 1 || choice > tenants.size()) {
+            System.out.println("Invalid choice. Try again.");
+            return null;
+        }
+        return tenants.get(choice - 1);
+    }
 
-                if (choice < 1 || choice > tenantIds.size()) {
-                    System.out.println("Invalid choice. Try again.");
-                    return;
-                }
+    private static String describe(Tenant tenant) {
+        return tenant.getName() + " (Apt#: " + tenant.getAptNumber() + ")";
+    }
 
-                int tenantId = tenantIds.get(choice - 1);
-
-                // Editing Menu
-                boolean editing = true;
-                while (editing) {
-                    System.out.println("\nEditing: " + tenantNames.get(choice - 1));
-                    System.out.println("1. Edit Name");
-                    System.out.println("2. Edit Apartment Number");
-                    System.out.println("3. Edit Lease Start Date (MM-DD-YYYY)");
-                    System.out.println("4. Edit Lease Expiry Date (MM-DD-YYYY)");
-                    System.out.println("5. Edit Security Deposit");
-                    System.out.println("6. Edit Monthly Rent");
-                    System.out.println("7. Done Editing");
-
-                    System.out.print("Select an option: ");
-                    String editChoice = scanner.nextLine();
-
-                    switch (editChoice) {
-                        case "1":
-                            updateTenantField(conn, tenantId, "name", "Enter new name: ", scanner);
-                            break;
-                        case "2":
-                            updateTenantField(conn, tenantId, "apt_number", "Enter new apartment number: ", scanner);
-                            break;
-                        case "3":
-                            updateTenantField(conn, tenantId, "lease_start", "Enter new lease start date (MM-DD-YYYY): ", scanner, true);
-                            break;
-                        case "4":
-                            updateTenantField(conn, tenantId, "lease_expired", "Enter new lease expiry date (MM-DD-YYYY): ", scanner, true);
-                            break;
-                        case "5":
-                            updateTenantField(conn, tenantId, "security", "Enter new security deposit: ", scanner);
-                            break;
-                        case "6":
-                            updateTenantField(conn, tenantId, "rent", "Enter new monthly rent: ", scanner);
-                            break;
-                        case "7":
-                            editing = false;
-                            System.out.println("Finished editing tenant information.");
-                            break;
-                        default:
-                            System.out.println("Invalid option. Try again.");
-                    }
-                }
+    private static void showMetrics(String dbName, Scanner scanner) {
+        List<Metrics.OperationStats> stats = Metrics.snapshot(dbName);
+        System.out.println("\nMetrics for " + dbName + " since startup:");
+        if (stats.isEmpty()) {
+            System.out.println("No operations recorded yet.");
+        } else {
+            System.out.print(Metrics.report(stats));
+        }
+        System.out.println("Tenant cache: " + TenantRepository.forBuilding(dbName).getStats());
+
+        System.out.print("\nType 'a' for all buildings, 'd' to dump all metrics to a file, or press Enter to go back: ");
+        String input = scanner.nextLine().trim();
+        if (input.equalsIgnoreCase("a")) {
+            System.out.print(Metrics.report(Metrics.snapshot()));
+        } else if (input.equalsIgnoreCase("d")) {
+            System.out.print("File name (blank for metrics.txt): ");
+            String file = scanner.nextLine().trim();
+            Path target = Paths.get(file.isEmpty() ? "metrics.txt" : file);
+            try {
+                Metrics.dump(target);
+                System.out.println("Metrics appended to " + target.toAbsolutePath());
+            } catch (IOException e) {
+                System.out.println("Could not write metrics: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.out.println("Error: Unable to edit tenant.");
-            e.printStackTrace();
         }
     }
 
+    private static void showReports(String dbName) {
+        try {
+            TenantColumns columns = TenantColumns.load(dbName);
+            long started = System.nanoTime();
+            int inArrears = columns.count(TenantColumns.balanceAbove(0));
+            double arrears = columns.arrears();
+            int[] top = columns.topByBalance(REPORT_TOP);
+            YearMonth from = YearMonth.now();
+            int[] expiring = columns.countByLeaseExpiryMonth(from, REPORT_MONTHS);
+            double[] expiringRent = columns.sumByLeaseExpiryMonth(TenantColumns.Column.RENT, from, REPORT_MONTHS);
+            long elapsed = System.nanoTime() - started;
+
+            System.out.println("\nReports for " + dbName + " (" + columns.size() + " tenants):");
+            System.out.printf("Rent roll: $%,.2f  Security held: $%,.2f%n",
+                    columns.sum(TenantColumns.Column.RENT), columns.sum(TenantColumns.Column.SECURITY));
+            System.out.printf("Arrears: $%,.2f owed by %d tenants%n", arrears, inArrears);
+
+            System.out.println("\nLargest balances:");
+            for (int row : top) {
+                if (columns.balance(row) <= 0) break;
+                System.out.printf("  ID: %d, Apt#: %s, Balance: $%,.2f%n", columns.id(row), columns.aptNumber(row), columns.balance(row));
+            }
 
+            System.out.println("\nLeases expiring:");
+            for (int m = 0; m < REPORT_MONTHS; m++) {
+                System.out.printf("  %s: %4d leases, $%,.2f monthly rent%n", from.plusMonths(m), expiring[m], expiringRent[m]);
+            }
+            System.out.printf("(computed in %.2f ms)%n", elapsed / 1e6);
+        } catch (SQLException e) {
+            System.out.println("Could not load the reports: " + e.getMessage());
+        }
+    }
 
-    private static void updateTenantField(Connection conn, int tenantId, String field, String prompt, Scanner scanner) {
-        updateTenantField(conn, tenantId, field, prompt, scanner, false);
+    private static void portfolioSummary() {
+        try {
+            System.out.println("\nPortfolio summary:");
+            System.out.println(PortfolioAggregator.summarize(getBuildings()).join());
+        } catch (CompletionException e) {
+            System.out.println("Could not load the portfolio summary: " + e.getCause().getMessage());
+        }
     }
 
-    private static void updateTenantField(Connection conn, int tenantId, String field, String prompt, Scanner scanner, boolean isDate) {
+    private static void upcomingExpirations(Scanner scanner) {
+        System.out.print("Expiring within how many days? (blank for " + LeaseExpirations.NOTICE_DAYS + "): ");
+        String input = scanner.nextLine().trim();
         try {
-            System.out.print(prompt);
-            String newValue = scanner.nextLine();
-            if (newValue.equalsIgnoreCase("back")) return;
+            int days = input.isEmpty() ? LeaseExpirations.NOTICE_DAYS : Integer.parseInt(input);
+            LeaseExpirations.load(getBuildings()).join();
+            List<LeaseExpirations.Expiration> expirations = LeaseExpirations.expiringWithin(days);
+            System.out.println("\nLeases expiring within " + days + " days: " + expirations.size());
+            for (LeaseExpirations.Expiration expiration : expirations) {
+                System.out.println("  " + expiration);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input. Please try again.");
+        } catch (CompletionException e) {
+            System.out.println("Could not load lease expirations: " + e.getCause().getMessage());
+        }
+    }
 
-            if (isDate) {
-                newValue = convertDateFormat(newValue);
+    private static void showJournal(Scanner scanner) {
+        System.out.print("Which day? (YYYY-MM-DD, blank for today): ");
+        String input = scanner.nextLine().trim();
+        try {
+            LocalDate day = input.isEmpty() ? LocalDate.now() : LocalDate.parse(input);
+            List<ChangeJournal.Entry> entries = ChangeJournal.get().readBetween(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+            Map<ChangeJournal.Op, Integer> counts = new EnumMap<>(ChangeJournal.Op.class);
+            for (ChangeJournal.Entry entry : entries) {
+                counts.merge(entry.getOp(), 1, Integer::sum);
+            }
+            System.out.println("\nChanges on " + day + ": " + entries.size() + " " + counts);
+            int shown = Math.min(entries.size(), JOURNAL_LINES);
+            for (ChangeJournal.Entry entry : entries.subList(entries.size() - shown, entries.size())) {
+                System.out.println("  " + entry);
             }
+            if (shown < entries.size()) {
+                System.out.println("  (showing the last " + shown + ")");
+            }
+        } catch (DateTimeException e) {
+            System.out.println("Invalid date. Please try again.");
+        } catch (IOException e) {
+            System.out.println("Could not read the change journal: " + e.getMessage());
+        }
+    }
 
-            String sql = "UPDATE tenants SET " + field + " = ? WHERE id = ?";
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                if (field.equals("security") || field.equals("rent")) {
-                    pstmt.setDouble(1, Double.parseDouble(newValue));
-                } else {
-                    pstmt.setString(1, newValue);
+    private static void runBatch(Scanner scanner) {
+        System.out.print("Path to command file: ");
+        String path = scanner.nextLine().trim();
+        System.out.print("Dry run? (y/N): ");
+        boolean dryRun = scanner.nextLine().trim().equalsIgnoreCase("y");
+        System.out.print("Keep going past failed commands? (y/N): ");
+        boolean continueOnError = scanner.nextLine().trim().equalsIgnoreCase("y");
+        try {
+            List<BatchJob.Command> commands = BatchJob.parse(Paths.get(path), getBuildings());
+            System.out.println(new BatchJob(commands, dryRun, continueOnError).run().join());
+        } catch (IOException e) {
+            System.out.println("Could not read " + path + ": " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Batch not run: " + e.getMessage());
+        } catch (CompletionException e) {
+            System.out.println("Batch failed: " + e.getCause().getMessage());
+        }
+    }
+
+    /** Backs up every building into a directory, or replaces one building with a snapshot. */
+    private static void snapshots(Scanner scanner, List<String> buildings) {
+        System.out.print("1. Back up all buildings  2. Restore a building: ");
+        String choice = scanner.nextLine().trim();
+        try {
+            if (choice.equals("1")) {
+                System.out.print("Directory to write the snapshots to: ");
+                Path directory = Paths.get(scanner.nextLine().trim());
+                Files.createDirectories(directory);
+                System.out.print("Compress? (y/N): ");
+                boolean compress = scanner.nextLine().trim().equalsIgnoreCase("y");
+                new BuildingSnapshot().compress(compress).writeAll(buildings, directory).join()
+                        .values().forEach(System.out::println);
+            } else if (choice.equals("2")) {
+                System.out.print("Path to snapshot file: ");
+                Path file = Paths.get(scanner.nextLine().trim());
+                System.out.print("Building to restore into: ");
+                String dbName = scanner.nextLine().trim();
+                if (!buildings.contains(dbName)) {
+                    System.out.println("Unknown building: " + dbName);
+                    return;
+                }
+                System.out.print("This replaces every tenant and payment of " + dbName + ". Continue? (y/N): ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                    System.out.println(new BuildingSnapshot().restore(dbName, file));
                 }
-                pstmt.setInt(2, tenantId);
-                pstmt.executeUpdate();
-                System.out.println("Updated successfully.");
+            } else {
+                System.out.println("Invalid choice.");
             }
-        } catch (SQLException | NumberFormatException e) {
-            System.out.println("Invalid input. Update failed.");
+        } catch (IOException e) {
+            System.out.println("Snapshot failed: " + e.getMessage());
+        } catch (SQLException e) {
+            System.out.println("Restore failed: " + e.getMessage());
+        } catch (CompletionException e) {
+            System.out.println("Snapshot failed: " + e.getCause().getMessage());
         }
     }
-    private static String convertDateFormat(String date) {
+
+    private static void reconcilePayments(Scanner scanner) {
+        System.out.print("Path to bank statement (date,amount,payer,memo): ");
+        String path = scanner.nextLine().trim();
+        System.out.print("Dry run? (y/N): ");
+        boolean dryRun = scanner.nextLine().trim().equalsIgnoreCase("y");
         try {
-            String[] parts = date.split("-");
-            if (parts.length != 3) throw new IllegalArgumentException();
-            return parts[2] + "-" + parts[0] + "-" + parts[1]; // Converts MM-DD-YYYY to YYYY-MM-DD
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Invalid date format. Use MM-DD-YYYY.");
+            System.out.println(new PaymentReconciler(getBuildings(), dryRun).reconcile(Paths.get(path)).join());
+        } catch (CompletionException e) {
+            System.out.println("Reconciliation failed: " + e.getCause().getMessage());
         }
     }
 
+    /** Walks the review queue: pick a candidate by number, 's' to skip, 'd' to dismiss, 'back' to stop. */
+    private static void reviewPayments(Scanner scanner) {
+        List<PaymentReconciler.ReviewItem> items;
+        try {
+            items = PaymentReviewQueue.items();
+        } catch (SQLException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        for (PaymentReconciler.ReviewItem item : items) {
+            System.out.println("\n" + item);
+            List<PaymentReconciler.Candidate> candidates = item.getCandidates();
+            for (int i = 0; i < candidates.size(); i++) {
+                System.out.println("  " + (i + 1) + ". " + candidates.get(i));
+            }
+            System.out.print("Post to which tenant? (number, 's' skip, 'd' dismiss, 'back'): ");
+            String input = scanner.nextLine().trim();
+            if (input.equalsIgnoreCase("back")) return;
+            try {
+                if (input.equalsIgnoreCase("d")) {
+                    PaymentReviewQueue.dismiss(item);
+                    continue;
+                }
+                int choice = Integer.parseInt(input);
+                if (choice < 1 || choice > candidates.size()) continue;
+                Tenant updated = PaymentReviewQueue.post(item, candidates.get(choice - 1));
+                if (updated != null) {
+                    System.out.printf("Posted. New balance for %s: $%.2f\n", updated.getName(), updated.getBalance());
+                }
+            } catch (NumberFormatException e) {
+                // skipped
+            } catch (SQLException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+        System.out.println("Review queue: " + reviewQueueSize() + " left.");
+    }
 
+    private static String reviewQueueSize() {
+        try {
+            return String.valueOf(PaymentReviewQueue.size());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return "?";
+        }
+    }
 
-    private static int getUnpaidMonths(String leaseStart) {
+    private static void accrueRent() {
         try {
-            String[] parts = leaseStart.split("-");
-            int leaseYear = Integer.parseInt(parts[0]);
-            int leaseMonth = Integer.parseInt(parts[1]);
-
-            java.time.LocalDate today = java.time.LocalDate.now();
-            int currentYear = today.getYear();
-            int currentMonth = today.getMonthValue();
-
-            int totalMonths = (currentYear - leaseYear) * 12 + (currentMonth - leaseMonth);
-            return Math.max(totalMonths, 0);
-        } catch (Exception e) {
-            return 0;
+            System.out.println(new RentAccrual().run(getBuildings()).join());
+        } catch (CompletionException e) {
+            System.out.println("Rent accrual failed: " + e.getCause().getMessage());
         }
     }
 
+    private static void bulkRentAdjustment(Scanner scanner) {
+        try {
+            System.out.print("Adjust by percentage or flat amount? (p/f): ");
+            boolean percentage = !scanner.nextLine().trim().equalsIgnoreCase("f");
+            System.out.print(percentage ? "Enter percentage (e.g., '3.5' or '-2'): " : "Enter amount to add to monthly rent: ");
+            double amount = Double.parseDouble(scanner.nextLine().trim());
+            RentAdjustment.Rule rule = percentage ? RentAdjustment.Rule.percent(amount) : RentAdjustment.Rule.flat(amount);
+
+            System.out.print("Buildings (e.g., '1,3'; blank for all): ");
+            String buildingInput = scanner.nextLine().trim();
+            if (!buildingInput.isEmpty()) {
+                for (String part : buildingInput.split(",")) {
+                    rule.inBuildings(getBuildings().get(Integer.parseInt(part.trim()) - 1));
+                }
+            }
 
+            System.out.print("Apartment pattern (e.g., '3*'; blank for all): ");
+            String aptPattern = scanner.nextLine().trim();
+            if (!aptPattern.isEmpty()) {
+                rule.aptMatching(aptPattern);
+            }
 
+            System.out.print("Only leases expiring from (MM-DD-YYYY, blank for no limit): ");
+            String from = scanner.nextLine().trim();
+            System.out.print("Only leases expiring until (MM-DD-YYYY, blank for no limit): ");
+            String to = scanner.nextLine().trim();
+            rule.leaseExpiringBetween(
+                    from.isEmpty() ? null : java.time.LocalDate.parse(LeaseDates.convertDateFormat(from)),
+                    to.isEmpty() ? null : java.time.LocalDate.parse(LeaseDates.convertDateFormat(to)));
 
+            List<RentAdjustment.Rule> rules = List.of(rule);
+            System.out.println(new RentAdjustment(rules, true).run(getBuildings()).join());
 
-}
+            System.out.print("Apply this adjustment? (y/n): ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                System.out.println(new RentAdjustment(rules, false).run(getBuildings()).join());
+            } else {
+                System.out.println("Nothing changed.");
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException | DateTimeException e) {
+            System.out.println("Invalid input. Please try again.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (CompletionException e) {
+            System.out.println("Rent adjustment failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private static void editTenant(String dbName, Scanner scanner) {
+        TenantRepository repository = TenantRepository.forBuilding(dbName);
+        try {
+            System.out.println("\nEditing Tenant Information");
+
+            // List tenants and let user select one
+            Tenant tenant = chooseTenant(repository, scanner, "\nEnter the number of the tenant to edit (or type 'back' to cancel): ");
+            if (tenant == null) return;
+
+            // Editing Menu
+            boolean editing = true;
+            while (editing) {
+                System.out.println("\nEditing: " + describe(tenant));
+                System.out.println("1. Edit Name");
+                System.out.println("2. Edit Apartment Number");
+                System.out.println("3. Edit Lease Start Date (MM-DD-YYYY)");
+                System.out.println("4. Edit Lease Expiry Date (MM-DD-YYYY)");
+                System.out.println("5. Edit Security Deposit");
+                System.out.println("6. Edit Monthly Rent");
+                System.out.println("7. Done Editing");
+
+                System.out.print("Select an option: ");
+                String editChoice = scanner.nextLine();
+
+                switch (editChoice) {
+                    case "1":
+                        tenant = updateTenantField(repository, tenant, "name", "Enter new name: ", scanner);
+                        break;
+                    case "2":
+                        tenant = updateTenantField(repository, tenant, "apt_number", "Enter new apartment number: ", scanner);
+                        break;
+                    case "3":
+                        tenant = updateTenantField(repository, tenant, "lease_start", "Enter new lease start date (MM-DD-YYYY): ", scanner, true);
+                        break;
+                    case "4":
+                        tenant = updateTenantField(repository, tenant, "lease_expired", "Enter new lease expiry date (MM-DD-YYYY): ", scanner, true);
+                        break;
+                    case "5":
+                        tenant = updateTenantField(repository, tenant, "security", "Enter new security deposit: ", scanner);
+                        break;
+                    case "6":
+                        tenant = updateTenantField(repository, tenant, "rent", "Enter new monthly rent: ", scanner);
+                        break;
+                    case "7":
+                        editing = false;
+                        System.out.println("Finished editing tenant information.");
+                        break;
+                    default:
+                        System.out.println("Invalid option. Try again.");
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Error: Unable to edit tenant.");
+            e.printStackTrace();
+        }
+    }
 
 
 
+    private static Tenant updateTenantField(TenantRepository repository, Tenant tenant, String field, String prompt, Scanner scanner) {
+        return updateTenantField(repository, tenant, field, prompt, scanner, false);
+    }
 
+    /**
+     * Sets one field of a tenant, provided nobody changed the tenant since it was read, and returns
+     * the tenant as it is now.
+     */
+    private static Tenant updateTenantField(TenantRepository repository, Tenant tenant, String field, String prompt, Scanner scanner, boolean isDate) {
+        try {
+            System.out.print(prompt);
+            String newValue = scanner.nextLine();
+            if (newValue.equalsIgnoreCase("back")) return tenant;
 
+            Object value;
+            if (isDate) {
+                value = Date.valueOf(LeaseDates.convertDateFormat(newValue)).toLocalDate();
+            } else if (field.equals("security") || field.equals("rent")) {
+                value = Double.parseDouble(newValue);
+            } else {
+                value = newValue;
+            }
+
+            Tenant updated = repository.updateField(tenant.getId(), tenant.getVersion(), field, value);
+            if (updated == null) {
+                System.out.println("This tenant no longer exists.");
+                return tenant;
+            }
+            System.out.println("Updated successfully.");
+            return updated;
+        } catch (TenantConflictException e) {
+            System.out.println(e.getMessage() + "; nothing was changed. Showing the current values.");
+            return e.getCurrent();
+        } catch (SQLException | IllegalArgumentException e) {
+            System.out.println("Invalid input. Update failed.");
+            return tenant;
+        }
+    }
+}
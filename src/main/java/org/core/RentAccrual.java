@@ -0,0 +1,310 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Charges each month's rent to every lease that was active in it.
+ * <p>
+ * A tenant's {@code accrued_through} column is its watermark: the first day of the last month
+ * already charged. New tenants start at last month, because {@link LeaseDates#getUnpaidMonths}
+ * already put every month before the current one into their opening balance. A run walks each
+ * building from its oldest watermark up to the target month, one transaction per month, with two
+ * set-based UPDATEs: active leases get {@code balance + rent}, and every tenant behind the
+ * watermark moves up to that month. A month is therefore charged at most once per tenant, no
+ * matter how often the job runs or how long it was down. Each charged month is also recorded in
+ * the building's {@code rent_accruals} table.
+ * <p>
+ * Months are charged once they are over, matching how opening balances are computed, and all
+ * buildings run at the same time on the {@link BackgroundExecutor}.
+ */
+public class RentAccrual {
+    /** Column default for {@code accrued_through}: the first day of last month. */
+    static final String DEFAULT_ACCRUED_THROUGH = "DATEADD(MONTH, -1, DATE_TRUNC(MONTH, CURRENT_DATE))";
+
+    private static final long INTERVAL_MINUTES = Long.getLong("pm.accrual.intervalMinutes", 360);
+
+    private static final String ACTIVE = "accrued_through < ? AND lease_start <= ? AND (lease_expired IS NULL OR lease_expired >= ?)";
+
+    private static ScheduledExecutorService scheduler;
+
+    private final YearMonth through;
+
+    /** Accrues every month up to and including {@code through}. */
+    public RentAccrual(YearMonth through) {
+        this.through = through;
+    }
+
+    /** Accrues up to last month, the most recent month that is over. */
+    public RentAccrual() {
+        this(YearMonth.now().minusMonths(1));
+    }
+
+    static String createLogTable(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " ("
+                + "period DATE PRIMARY KEY, "
+                + "tenants INT NOT NULL, "
+                + "amount DOUBLE NOT NULL, "
+                + "posted_at TIMESTAMP NOT NULL)";
+    }
+
+    /**
+     * Keeps balances charged without opening every building: each building is brought up to date
+     * when it is first used, and the buildings that are open are caught up now and then every
+     * {@code pm.accrual.intervalMinutes} (360 by default, 0 turns it off) on a daemon thread.
+     * Catching up is cheap when there is nothing to do, so the interval only decides how soon after
+     * a month ends it gets charged.
+     */
+    public static synchronized void schedule(Supplier<List<String>> buildings) {
+        if (scheduler != null || INTERVAL_MINUTES <= 0) return;
+        BuildingRegistry.addReadyListener(dbName -> {
+            try {
+                BuildingResult result = new RentAccrual().runBuilding(dbName);
+                print(new Report(List.of(result), result.getElapsedNanos()));
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(new BackgroundExecutor.DaemonThreadFactory("pm-rent-accrual"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                List<String> open = new ArrayList<>(buildings.get());
+                open.retainAll(ConnectionProvider.openBuildings());
+                print(new RentAccrual().run(open).join());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, 0, INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private static void print(Report report) {
+        if (report.getTenantsCharged() > 0) {
+            System.out.println(report);
+        }
+    }
+
+    public CompletableFuture<Report> run(List<String> buildings) {
+        long started = System.nanoTime();
+        return BackgroundExecutor.forEachBuilding(buildings, this::runBuilding)
+                .thenApply(results -> new Report(new ArrayList<>(results.values()), System.nanoTime() - started));
+    }
+
+    /** Brings one building up to date. Safe to call again at any time. */
+    public BuildingResult runBuilding(String dbName) throws SQLException {
+        long started = System.nanoTime();
+        int months = 0, charged = 0;
+        double amount = 0;
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.ACCRUAL);
+             Connection conn = ConnectionProvider.getConnection(dbName)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE tenants SET accrued_through = " + DEFAULT_ACCRUED_THROUGH + " WHERE accrued_through IS NULL");
+            }
+            YearMonth month = oldestWatermark(conn);
+            while (month != null && month.isBefore(through)) {
+                month = month.plusMonths(1);
+                MonthResult result = accrueMonth(dbName, conn, month);
+                months++;
+                charged += result.tenants;
+                amount += result.amount;
+            }
+            sample.done(charged);
+        }
+        if (charged > 0) {
+            TenantEvents.invalidated(dbName);
+        }
+        return new BuildingResult(dbName, months, charged, amount, System.nanoTime() - started);
+    }
+
+    private static YearMonth oldestWatermark(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(accrued_through) FROM tenants")) {
+            Date oldest = rs.next() ? rs.getDate(1) : null;
+            return oldest == null ? null : YearMonth.from(oldest.toLocalDate());
+        }
+    }
+
+    private static MonthResult accrueMonth(String dbName, Connection conn, YearMonth month) throws SQLException {
+        Date first = Date.valueOf(month.atDay(1));
+        Date last = Date.valueOf(month.atEndOfMonth());
+        conn.setAutoCommit(false);
+        try {
+            int tenants = 0;
+            double amount = 0;
+            List<ChangeJournal.Entry> changes = new ArrayList<>();
+            // The charged rows as the UPDATE left them, so the journal, count and amount match what was written
+            // even if a payment commits at the same time.
+            try (PreparedStatement charge = conn.prepareStatement(
+                    "SELECT id, COALESCE(rent, 0), balance FROM FINAL TABLE (UPDATE tenants "
+                            + "SET balance = COALESCE(balance, 0) + COALESCE(rent, 0), accrued_through = ? WHERE " + ACTIVE + ")")) {
+                charge.setDate(1, first);
+                setActive(charge, 2, first, last);
+                try (ResultSet rs = charge.executeQuery()) {
+                    while (rs.next()) {
+                        tenants++;
+                        amount += rs.getDouble(2);
+                        if (ChangeJournal.isEnabled()) {
+                            Map<String, Object> fields = new LinkedHashMap<>();
+                            fields.put("balance", rs.getDouble(3));
+                            fields.put("accrued_through", month.atDay(1));
+                            changes.add(ChangeJournal.Entry.updated(dbName, rs.getInt(1), fields));
+                        }
+                    }
+                }
+            }
+            // Leases not running this month still move up, so the next run does not walk them again.
+            try (PreparedStatement advance = conn.prepareStatement("UPDATE tenants SET accrued_through = ? WHERE accrued_through < ?")) {
+                advance.setDate(1, first);
+                advance.setDate(2, first);
+                advance.executeUpdate();
+            }
+            if (tenants > 0) {
+                logMonth(conn, first, tenants, amount);
+            }
+            ChangeJournal.commit(dbName, conn, changes);
+            return new MonthResult(tenants, amount);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static void setActive(PreparedStatement stmt, int index, Date first, Date last) throws SQLException {
+        stmt.setDate(index, first);
+        stmt.setDate(index + 1, last);
+        stmt.setDate(index + 2, first);
+    }
+
+    /** Adds to the month's row, which already exists if a tenant was caught up for it later. */
+    private static void logMonth(Connection conn, Date period, int tenants, double amount) throws SQLException {
+        try (PreparedStatement update = conn.prepareStatement(
+                "UPDATE rent_accruals SET tenants = tenants + ?, amount = amount + ?, posted_at = ? WHERE period = ?")) {
+            update.setInt(1, tenants);
+            update.setDouble(2, amount);
+            update.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            update.setDate(4, period);
+            if (update.executeUpdate() > 0) return;
+        }
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO rent_accruals (period, tenants, amount, posted_at) VALUES (?, ?, ?, ?)")) {
+            insert.setDate(1, period);
+            insert.setInt(2, tenants);
+            insert.setDouble(3, amount);
+            insert.setTimestamp(4, Timestamp.valueOf(LocalDateTime.now()));
+            insert.executeUpdate();
+        }
+    }
+
+    private static final class MonthResult {
+        final int tenants;
+        final double amount;
+
+        MonthResult(int tenants, double amount) {
+            this.tenants = tenants;
+            this.amount = amount;
+        }
+    }
+
+    public static final class BuildingResult {
+        private final String dbName;
+        private final int months;
+        private final int tenantsCharged;
+        private final double amount;
+        private final long elapsedNanos;
+
+        BuildingResult(String dbName, int months, int tenantsCharged, double amount, long elapsedNanos) {
+            this.dbName = dbName;
+            this.months = months;
+            this.tenantsCharged = tenantsCharged;
+            this.amount = amount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public String getDbName() {
+            return dbName;
+        }
+
+        /** Months walked; 0 if the building was already up to date. */
+        public int getMonths() {
+            return months;
+        }
+
+        /** Rent charges posted, one per tenant and month. */
+        public int getTenantsCharged() {
+            return tenantsCharged;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : tenantsCharged / (elapsedNanos / 1e9);
+        }
+    }
+
+    public static final class Report {
+        private final List<BuildingResult> buildings;
+        private final long elapsedNanos;
+
+        Report(List<BuildingResult> buildings, long elapsedNanos) {
+            this.buildings = buildings;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<BuildingResult> getBuildings() {
+            return buildings;
+        }
+
+        public int getTenantsCharged() {
+            int total = 0;
+            for (BuildingResult result : buildings) total += result.getTenantsCharged();
+            return total;
+        }
+
+        public double getAmount() {
+            double total = 0;
+            for (BuildingResult result : buildings) total += result.getAmount();
+            return total;
+        }
+
+        /** Charges per second of wall-clock time across all buildings. */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : getTenantsCharged() / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Rent accrual:\n");
+            for (BuildingResult result : buildings) {
+                sb.append(String.format("  %s: %d months, %d charges, $%,.2f (%.0f rows/s)%n",
+                        result.getDbName(), result.getMonths(), result.getTenantsCharged(), result.getAmount(),
+                        result.getRowsPerSecond()));
+            }
+            sb.append(String.format("  Total: %d charges, $%,.2f in %.1f ms (%.0f rows/s)",
+                    getTenantsCharged(), getAmount(), elapsedNanos / 1e6, getRowsPerSecond()));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Applies rent changes to many tenants at once with set-based UPDATEs.
+ * <p>
+ * Each building runs its rules in order inside one transaction, and all buildings run at the
+ * same time on the {@link BackgroundExecutor}. A dry run executes exactly the same statements
+ * and then rolls back, so its row counts and revenue delta include the effect of earlier
+ * rules on later ones.
+ */
+public class RentAdjustment {
+
+    public static final class Rule {
+        private final boolean percentage;
+        private final double amount;
+        private final Set<String> buildings = new LinkedHashSet<>();
+        private String aptPattern;
+        private LocalDate expiresFrom;
+        private LocalDate expiresTo;
+
+        private Rule(boolean percentage, double amount) {
+            this.percentage = percentage;
+            this.amount = amount;
+        }
+
+        /** Raises (or lowers, if negative) rent by {@code percent} percent, rounded to cents. */
+        public static Rule percent(double percent) {
+            return new Rule(true, percent);
+        }
+
+        /** Adds a flat amount to the monthly rent. */
+        public static Rule flat(double amount) {
+            return new Rule(false, amount);
+        }
+
+        /** Limits the rule to these buildings; no buildings means every building. */
+        public Rule inBuildings(String... dbNames) {
+            Collections.addAll(buildings, dbNames);
+            return this;
+        }
+
+        /** Limits the rule to apartment numbers matching a pattern where {@code *} and {@code ?} are wildcards. */
+        public Rule aptMatching(String pattern) {
+            this.aptPattern = pattern;
+            return this;
+        }
+
+        /** Limits the rule to leases expiring between the two dates, both inclusive; either may be null. */
+        public Rule leaseExpiringBetween(LocalDate from, LocalDate to) {
+            this.expiresFrom = from;
+            this.expiresTo = to;
+            return this;
+        }
+
+        boolean appliesTo(String dbName) {
+            return buildings.isEmpty() || buildings.contains(dbName);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(percentage ? amount + "%" : "$" + amount);
+            if (!buildings.isEmpty()) sb.append(" in ").append(buildings);
+            if (aptPattern != null) sb.append(" apt ").append(aptPattern);
+            if (expiresFrom != null || expiresTo != null) {
+                sb.append(" expiring ").append(expiresFrom == null ? "..." : expiresFrom)
+                        .append(" to ").append(expiresTo == null ? "..." : expiresTo);
+            }
+            return sb.toString();
+        }
+    }
+
+    private final List<Rule> rules;
+    private final boolean dryRun;
+
+    public RentAdjustment(List<Rule> rules, boolean dryRun) {
+        this.rules = new ArrayList<>(rules);
+        this.dryRun = dryRun;
+    }
+
+    public CompletableFuture<Report> run(List<String> buildings) {
+        return BackgroundExecutor.forEachBuilding(buildings, this::runBuilding)
+                .thenApply(results -> new Report(new ArrayList<>(results.values()), dryRun));
+    }
+
+    private BuildingResult runBuilding(String dbName) throws SQLException {
+        List<Integer> rowsPerRule = new ArrayList<>();
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.UPDATE);
+             Connection conn = ConnectionProvider.getConnection(dbName)) {
+            conn.setAutoCommit(false);
+            try {
+                double rentBefore = totalRent(conn);
+                // Per-tenant rents only for the change journal; the statements themselves stay set-based.
+                Map<Integer, Double> rentsBefore = !dryRun && ChangeJournal.isEnabled() ? rents(conn) : null;
+                for (Rule rule : rules) {
+                    rowsPerRule.add(rule.appliesTo(dbName) ? apply(conn, rule) : 0);
+                }
+                double rentAfter = totalRent(conn);
+                Map<Integer, Double> rentsAfter = rentsBefore == null ? null : rents(conn);
+
+                BuildingResult result = new BuildingResult(dbName, rowsPerRule, rentAfter - rentBefore);
+                if (dryRun) {
+                    conn.rollback();
+                } else {
+                    ChangeJournal.commit(dbName, conn, rentsBefore == null || result.getRowsAffected() == 0
+                            ? Collections.emptyList() : rentChanges(dbName, rentsBefore, rentsAfter));
+                }
+                sample.done(dryRun ? 0 : result.getRowsAffected());
+                if (!dryRun && result.getRowsAffected() > 0) {
+                    TenantEvents.invalidated(dbName);
+                }
+                return result;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static int apply(Connection conn, Rule rule) throws SQLException {
+        StringBuilder sql = new StringBuilder(rule.percentage
+                ? "UPDATE tenants SET rent = ROUND(rent * (1 + ? / 100.0), 2) WHERE rent IS NOT NULL"
+                : "UPDATE tenants SET rent = rent + ? WHERE rent IS NOT NULL");
+        List<Object> params = new ArrayList<>();
+        params.add(rule.amount);
+
+        if (rule.aptPattern != null && !rule.aptPattern.isEmpty()) {
+            sql.append(" AND apt_number LIKE ? ESCAPE '\\'");
+            params.add(toLikePattern(rule.aptPattern));
+        }
+        if (rule.expiresFrom != null) {
+            sql.append(" AND lease_expired >= ?");
+            params.add(Date.valueOf(rule.expiresFrom));
+        }
+        if (rule.expiresTo != null) {
+            sql.append(" AND lease_expired <= ?");
+            params.add(Date.valueOf(rule.expiresTo));
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            return stmt.executeUpdate();
+        }
+    }
+
+    private static double totalRent(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(SUM(rent), 0) FROM tenants")) {
+            rs.next();
+            return rs.getDouble(1);
+        }
+    }
+
+    private static Map<Integer, Double> rents(Connection conn) throws SQLException {
+        Map<Integer, Double> rents = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, rent FROM tenants")) {
+            while (rs.next()) {
+                double rent = rs.getDouble(2);
+                rents.put(rs.getInt(1), rs.wasNull() ? null : rent);
+            }
+        }
+        return rents;
+    }
+
+    private static List<ChangeJournal.Entry> rentChanges(String dbName, Map<Integer, Double> before, Map<Integer, Double> after) {
+        List<ChangeJournal.Entry> changes = new ArrayList<>();
+        for (Map.Entry<Integer, Double> rent : after.entrySet()) {
+            if (!Objects.equals(before.get(rent.getKey()), rent.getValue())) {
+                changes.add(ChangeJournal.Entry.updated(dbName, rent.getKey(), "rent", rent.getValue()));
+            }
+        }
+        changes.sort(Comparator.comparingInt(ChangeJournal.Entry::getTenantId));
+        return changes;
+    }
+
+    static String toLikePattern(String glob) {
+        StringBuilder like = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            switch (c) {
+                case '*':
+                    like.append('%');
+                    break;
+                case '?':
+                    like.append('_');
+                    break;
+                case '%':
+                case '_':
+                case '\\':
+                    like.append('\\').append(c);
+                    break;
+                default:
+                    like.append(c);
+            }
+        }
+        return like.toString();
+    }
+
+    public static final class BuildingResult {
+        private final String dbName;
+        private final List<Integer> rowsPerRule;
+        private final double monthlyRevenueDelta;
+
+        BuildingResult(String dbName, List<Integer> rowsPerRule, double monthlyRevenueDelta) {
+            this.dbName = dbName;
+            this.rowsPerRule = rowsPerRule;
+            this.monthlyRevenueDelta = monthlyRevenueDelta;
+        }
+
+        public String getDbName() {
+            return dbName;
+        }
+
+        /** Rows changed by each rule, in rule order. A tenant hit by two rules counts twice. */
+        public List<Integer> getRowsPerRule() {
+            return rowsPerRule;
+        }
+
+        public int getRowsAffected() {
+            int total = 0;
+            for (int rows : rowsPerRule) total += rows;
+            return total;
+        }
+
+        public double getMonthlyRevenueDelta() {
+            return monthlyRevenueDelta;
+        }
+    }
+
+    public static final class Report {
+        private final List<BuildingResult> buildings;
+        private final boolean dryRun;
+
+        Report(List<BuildingResult> buildings, boolean dryRun) {
+            this.buildings = buildings;
+            this.dryRun = dryRun;
+        }
+
+        public List<BuildingResult> getBuildings() {
+            return buildings;
+        }
+
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        public int getRowsAffected() {
+            int total = 0;
+            for (BuildingResult result : buildings) total += result.getRowsAffected();
+            return total;
+        }
+
+        public double getMonthlyRevenueDelta() {
+            double total = 0;
+            for (BuildingResult result : buildings) total += result.getMonthlyRevenueDelta();
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(dryRun ? "Dry run (nothing written):\n" : "Rent adjustment applied:\n");
+            for (BuildingResult result : buildings) {
+                sb.append(String.format("  %s: %d rows, monthly rent %+.2f%n",
+                        result.getDbName(), result.getRowsAffected(), result.getMonthlyRevenueDelta()));
+            }
+            sb.append(String.format("  Total: %d rows, monthly rent %+.2f (annual %+.2f)",
+                    getRowsAffected(), getMonthlyRevenueDelta(), getMonthlyRevenueDelta() * 12));
+            return sb.toString();
+        }
+    }
+}
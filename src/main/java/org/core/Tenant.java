@@ -2,6 +2,7 @@
 package org.core;
 
 import java.time.LocalDate;
+import java.util.Objects;
 
 public class Tenant {
     private int id;
@@ -12,6 +13,8 @@ public class Tenant {
     private double security;
     private double rent;
     private double balance;
+    /** The row version this tenant was read at; 0 for a tenant not read from the database. */
+    private long version;
 
     public Tenant(int id, String name, String aptNumber, LocalDate leaseStart, LocalDate leaseExpired, double security, double rent, double balance) {
         this.id = id;
@@ -89,6 +92,28 @@ public class Tenant {
         this.balance = balance;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /** True if every column of the two tenants matches. Used to skip unchanged rows on refresh. */
+    public boolean hasSameValues(Tenant other) {
+        return other != null
+                && id == other.id
+                && version == other.version
+                && Double.compare(security, other.security) == 0
+                && Double.compare(rent, other.rent) == 0
+                && Double.compare(balance, other.balance) == 0
+                && Objects.equals(name, other.name)
+                && Objects.equals(aptNumber, other.aptNumber)
+                && Objects.equals(leaseStart, other.leaseStart)
+                && Objects.equals(leaseExpired, other.leaseExpired);
+    }
+
     @Override
     public String toString() {
         return name + " (Apt " + aptNumber + ") - Balance: $" + balance;
@@ -0,0 +1,362 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only, column-oriented snapshot of one building's tenants for reports.
+ * <p>
+ * Each field is a primitive array indexed by row: ids as {@code int}, money as {@code double},
+ * lease dates as epoch days ({@link #NO_DATE} when missing) and apartment numbers as codes into a
+ * dictionary of distinct values. The aggregates below are plain loops over those arrays and
+ * allocate nothing but their result, so they stay fast and cheap on very large buildings where a
+ * {@code List<Tenant>} would not. Names are not kept; look rows up by {@link #id(int)} when needed.
+ */
+public final class TenantColumns {
+    /** Epoch day stored for a missing lease date. */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final String SELECT = "SELECT id, apt_number, lease_start, lease_expired, security, rent, balance FROM tenants";
+
+    public enum Column {
+        RENT, SECURITY, BALANCE
+    }
+
+    /** Row predicate for {@link #count} and {@link #sum(Column, RowFilter)}. */
+    public interface RowFilter {
+        boolean test(TenantColumns columns, int row);
+    }
+
+    private final int size;
+    private final int[] ids;
+    private final int[] leaseStart;
+    private final int[] leaseExpired;
+    /** Expiry as {@code year * 12 + month - 1}, precomputed so month histograms are a subtraction. */
+    private final int[] expiryMonth;
+    private final double[] security;
+    private final double[] rent;
+    private final double[] balance;
+    private final int[] aptCodes;
+    private final String[] aptDictionary;
+
+    private TenantColumns(int size, int[] ids, int[] leaseStart, int[] leaseExpired, double[] security, double[] rent,
+                          double[] balance, int[] aptCodes, String[] aptDictionary) {
+        this.size = size;
+        this.ids = ids;
+        this.leaseStart = leaseStart;
+        this.leaseExpired = leaseExpired;
+        this.expiryMonth = new int[size];
+        for (int i = 0; i < size; i++) {
+            expiryMonth[i] = leaseExpired[i] == NO_DATE ? Integer.MIN_VALUE : monthNumber(leaseExpired[i]);
+        }
+        this.security = security;
+        this.rent = rent;
+        this.balance = balance;
+        this.aptCodes = aptCodes;
+        this.aptDictionary = aptDictionary;
+    }
+
+    public static TenantColumns load(String dbName) throws SQLException {
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.REFRESH);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(10_000);
+            try (ResultSet rs = stmt.executeQuery(SELECT)) {
+                TenantColumns columns = fromResultSet(rs);
+                sample.done(columns.size());
+                return columns;
+            }
+        }
+    }
+
+    /**
+     * Builds a snapshot from the remaining rows of {@code rs}, which must have the columns
+     * {@code id, apt_number, lease_start, lease_expired, security, rent, balance}.
+     */
+    public static TenantColumns fromResultSet(ResultSet rs) throws SQLException {
+        int capacity = 1024;
+        int[] ids = new int[capacity];
+        int[] leaseStart = new int[capacity];
+        int[] leaseExpired = new int[capacity];
+        double[] security = new double[capacity];
+        double[] rent = new double[capacity];
+        double[] balance = new double[capacity];
+        int[] aptCodes = new int[capacity];
+        Map<String, Integer> codes = new HashMap<>();
+        String[] dictionary = new String[16];
+
+        int id = rs.findColumn("id"), apt = rs.findColumn("apt_number"), start = rs.findColumn("lease_start"),
+                expired = rs.findColumn("lease_expired"), sec = rs.findColumn("security"), rnt = rs.findColumn("rent"),
+                bal = rs.findColumn("balance");
+        int size = 0;
+        while (rs.next()) {
+            if (size == capacity) {
+                capacity *= 2;
+                ids = Arrays.copyOf(ids, capacity);
+                leaseStart = Arrays.copyOf(leaseStart, capacity);
+                leaseExpired = Arrays.copyOf(leaseExpired, capacity);
+                security = Arrays.copyOf(security, capacity);
+                rent = Arrays.copyOf(rent, capacity);
+                balance = Arrays.copyOf(balance, capacity);
+                aptCodes = Arrays.copyOf(aptCodes, capacity);
+            }
+            ids[size] = rs.getInt(id);
+            leaseStart[size] = epochDay(rs.getObject(start, LocalDate.class));
+            leaseExpired[size] = epochDay(rs.getObject(expired, LocalDate.class));
+            security[size] = rs.getDouble(sec);
+            rent[size] = rs.getDouble(rnt);
+            balance[size] = rs.getDouble(bal);
+
+            String aptNumber = rs.getString(apt);
+            Integer code = codes.get(aptNumber);
+            if (code == null) {
+                code = codes.size();
+                codes.put(aptNumber, code);
+                if (code == dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, code * 2);
+                }
+                dictionary[code] = aptNumber;
+            }
+            aptCodes[size] = code;
+            size++;
+        }
+        return new TenantColumns(size, Arrays.copyOf(ids, size), Arrays.copyOf(leaseStart, size),
+                Arrays.copyOf(leaseExpired, size), Arrays.copyOf(security, size), Arrays.copyOf(rent, size),
+                Arrays.copyOf(balance, size), Arrays.copyOf(aptCodes, size), Arrays.copyOf(dictionary, codes.size()));
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int id(int row) {
+        return ids[row];
+    }
+
+    public double rent(int row) {
+        return rent[row];
+    }
+
+    public double security(int row) {
+        return security[row];
+    }
+
+    public double balance(int row) {
+        return balance[row];
+    }
+
+    /** Lease start as an epoch day, or {@link #NO_DATE}. */
+    public int leaseStartDay(int row) {
+        return leaseStart[row];
+    }
+
+    /** Lease expiry as an epoch day, or {@link #NO_DATE}. */
+    public int leaseExpiredDay(int row) {
+        return leaseExpired[row];
+    }
+
+    public String aptNumber(int row) {
+        return aptDictionary[aptCodes[row]];
+    }
+
+    /** Number of distinct apartment numbers. */
+    public int distinctApartments() {
+        return aptDictionary.length;
+    }
+
+    private double[] values(Column column) {
+        switch (column) {
+            case RENT:
+                return rent;
+            case SECURITY:
+                return security;
+            default:
+                return balance;
+        }
+    }
+
+    public double sum(Column column) {
+        double[] values = values(column);
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    public double sum(Column column, RowFilter filter) {
+        double[] values = values(column);
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(this, i)) {
+                sum += values[i];
+            }
+        }
+        return sum;
+    }
+
+    public int count(RowFilter filter) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (filter.test(this, i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Rows matching {@code filter}, in snapshot order. */
+    public int[] filter(RowFilter filter) {
+        int[] rows = new int[count(filter)];
+        int n = 0;
+        for (int i = 0; i < size && n < rows.length; i++) {
+            if (filter.test(this, i)) {
+                rows[n++] = i;
+            }
+        }
+        return rows;
+    }
+
+    /** Sum of positive balances, i.e. money owed. */
+    public double arrears() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += Math.max(balance[i], 0);
+        }
+        return sum;
+    }
+
+    public static RowFilter balanceAbove(double amount) {
+        return (c, row) -> c.balance[row] > amount;
+    }
+
+    public static RowFilter leaseExpiresBefore(LocalDate date) {
+        int day = (int) date.toEpochDay();
+        return (c, row) -> c.leaseExpired[row] != NO_DATE && c.leaseExpired[row] < day;
+    }
+
+    /** Case-sensitive match on the dictionary, so the per-row test is an int comparison. */
+    public RowFilter apartment(String aptNumber) {
+        int code = Arrays.asList(aptDictionary).indexOf(aptNumber);
+        return (c, row) -> c.aptCodes[row] == code;
+    }
+
+    /**
+     * Number of leases expiring in each of {@code months} months starting at {@code from}.
+     * Leases outside that range or without an expiry date are not counted.
+     */
+    public int[] countByLeaseExpiryMonth(YearMonth from, int months) {
+        int first = from.getYear() * 12 + from.getMonthValue() - 1;
+        int[] counts = new int[months];
+        for (int i = 0; i < size; i++) {
+            // Missing dates are Integer.MIN_VALUE and wrap to a large positive offset.
+            int month = expiryMonth[i] - first;
+            if (month >= 0 && month < months) {
+                counts[month]++;
+            }
+        }
+        return counts;
+    }
+
+    /** Sum of {@code column} over the leases expiring in each month, as in {@link #countByLeaseExpiryMonth}. */
+    public double[] sumByLeaseExpiryMonth(Column column, YearMonth from, int months) {
+        double[] values = values(column);
+        int first = from.getYear() * 12 + from.getMonthValue() - 1;
+        double[] sums = new double[months];
+        for (int i = 0; i < size; i++) {
+            int month = expiryMonth[i] - first;
+            if (month >= 0 && month < months) {
+                sums[month] += values[i];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * {@code year * 12 + month - 1} of an epoch day, in integer arithmetic so building a snapshot
+     * does not need a LocalDate per row (the days-to-civil algorithm used by java.time itself).
+     */
+    static int monthNumber(int epochDay) {
+        long zeroDay = epochDay + 719468L;
+        long era = (zeroDay >= 0 ? zeroDay : zeroDay - 146096) / 146097;
+        long dayOfEra = zeroDay - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 12 + month - 1);
+    }
+
+    /** Rows of the {@code k} largest balances, largest first. */
+    public int[] topByBalance(int k) {
+        k = Math.min(k, size);
+        if (k <= 0) return new int[0];
+
+        // Min-heap of row indexes on balance: the root is the smallest of the current top k.
+        int[] heap = new int[k];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (n < k) {
+                heap[n] = i;
+                siftUp(heap, n++);
+            } else if (balance[i] > balance[heap[0]]) {
+                heap[0] = i;
+                siftDown(heap, 0, n);
+            }
+        }
+        for (int end = n - 1; end > 0; end--) {
+            int root = heap[0];
+            heap[0] = heap[end];
+            heap[end] = root;
+            siftDown(heap, 0, end);
+        }
+        return heap;
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (balance[heap[parent]] <= balance[heap[i]]) break;
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int i, int n) {
+        while (true) {
+            int smallest = i, left = 2 * i + 1, right = left + 1;
+            if (left < n && balance[heap[left]] < balance[heap[smallest]]) smallest = left;
+            if (right < n && balance[heap[right]] < balance[heap[smallest]]) smallest = right;
+            if (smallest == i) return;
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    /** Approximate heap used by the arrays, for comparing against a list of tenants. */
+    public long approximateBytes() {
+        long bytes = (long) size * (5 * 4 + 8 * 3);
+        for (String apt : aptDictionary) {
+            bytes += 40 + (apt == null ? 0 : apt.length());
+        }
+        return bytes;
+    }
+}
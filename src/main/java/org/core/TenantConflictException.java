@@ -0,0 +1,22 @@
+package org.core;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when a tenant is saved from an image that is no longer current: someone else changed the
+ * tenant after it was read. Nothing was written; {@link #getCurrent()} is the tenant as it is now.
+ */
+public class TenantConflictException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Tenant current;
+
+    public TenantConflictException(Tenant current) {
+        super(current.getName() + " (Apt " + current.getAptNumber() + ") was changed by someone else in the meantime");
+        this.current = current;
+    }
+
+    public Tenant getCurrent() {
+        return current;
+    }
+}
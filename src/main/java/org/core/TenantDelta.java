@@ -0,0 +1,181 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The tenants of one building that were written or deleted after a caller's watermark.
+ * <p>
+ * Every write gives the row the next {@code row_version} and every delete leaves a tombstone with
+ * one (see {@link DatabaseManager}), both indexed, so asking for changes costs an index probe per
+ * table and reads only the rows that changed. The caller keeps {@link #getWatermark()} and passes
+ * it to the next call.
+ * <p>
+ * Versions are taken when a row is written but become visible when its transaction commits, so a
+ * version can show up after higher ones. The watermark therefore only moves up to versions that
+ * can no longer appear late: it stays where it was while another session of the database has
+ * uncommitted changes. The rows found are returned either way and may then come again in the next
+ * delta, which is harmless since applying one is idempotent.
+ */
+public final class TenantDelta {
+    /** Watermark that has seen nothing: the delta holds every tenant. */
+    public static final long ALL = 0;
+
+    private final long watermark;
+    private final List<Tenant> changed;
+    private final Set<Integer> deleted;
+
+    private TenantDelta(long watermark, List<Tenant> changed, Set<Integer> deleted) {
+        this.watermark = watermark;
+        this.changed = changed;
+        this.deleted = deleted;
+    }
+
+    public static TenantDelta since(String dbName, long watermark) throws SQLException {
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.REFRESH);
+             Connection conn = ConnectionProvider.getConnection(dbName)) {
+            TenantDelta delta = since(conn, watermark);
+            sample.done(delta.size());
+            return delta;
+        }
+    }
+
+    public static CompletableFuture<TenantDelta> sinceAsync(String dbName, long watermark) {
+        return BackgroundExecutor.supply(() -> {
+            try {
+                return since(dbName, watermark);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /** A watermark covering everything committed so far, for a caller that has just read the tenants itself. */
+    public static long currentWatermark(String dbName) throws SQLException {
+        try (Connection conn = ConnectionProvider.getConnection(dbName)) {
+            return safeWatermark(conn, ALL);
+        }
+    }
+
+    public static CompletableFuture<Long> currentWatermarkAsync(String dbName) {
+        return BackgroundExecutor.supply(() -> {
+            try {
+                return currentWatermark(dbName);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    static TenantDelta since(Connection conn, long since) throws SQLException {
+        long watermark = safeWatermark(conn, since);
+        if (watermark < since) {
+            // The database is behind the caller (restored from a copy, say); start over.
+            since = ALL;
+            watermark = safeWatermark(conn, ALL);
+        }
+
+        Map<Integer, Tenant> rows = new HashMap<>();
+        Map<Integer, Long> versions = new HashMap<>();
+        // A full read goes through the table rather than through the version index.
+        try (PreparedStatement stmt = conn.prepareStatement(since == ALL
+                ? "SELECT * FROM tenants" : "SELECT * FROM tenants WHERE row_version > ?")) {
+            if (since != ALL) stmt.setLong(1, since);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Tenant tenant = TenantLoader.fromRow(rs);
+                    rows.put(tenant.getId(), tenant);
+                    versions.put(tenant.getId(), rs.getLong("row_version"));
+                }
+            }
+        }
+
+        Set<Integer> deleted = new LinkedHashSet<>();
+        if (since != ALL) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT tenant_id, row_version FROM tenant_tombstones WHERE row_version > ? ORDER BY row_version")) {
+                stmt.setLong(1, since);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt(1);
+                        Long written = versions.get(id);
+                        // Deleted after the row we read was written, or the row was read after being added back.
+                        if (written == null || written < rs.getLong(2)) {
+                            rows.remove(id);
+                            deleted.add(id);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Tenant> changed = new ArrayList<>(rows.values());
+        changed.sort(Comparator.comparingInt(Tenant::getId));
+        return new TenantDelta(watermark, changed, deleted);
+    }
+
+    /**
+     * The highest version every change up to which is committed: the last one handed out, unless
+     * another session has uncommitted changes, in which case {@code since}.
+     */
+    private static long safeWatermark(Connection conn, long since) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT "
+                     + "(SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_SCHEMA = 'PUBLIC' AND SEQUENCE_NAME = 'TENANTS_VERSION') - 1, "
+                     + "EXISTS (SELECT 1 FROM INFORMATION_SCHEMA.SESSIONS WHERE CONTAINS_UNCOMMITTED AND SESSION_ID <> SESSION_ID())")) {
+            rs.next();
+            long last = rs.getLong(1);
+            return rs.getBoolean(2) ? Math.min(since, last) : last;
+        }
+    }
+
+    /** Tenants inserted or updated since the watermark, with their current values, ordered by id. */
+    public List<Tenant> getChanged() {
+        return changed;
+    }
+
+    /** Ids of tenants deleted since the watermark. */
+    public Set<Integer> getDeleted() {
+        return deleted;
+    }
+
+    /** Pass this to the next call. */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && deleted.isEmpty();
+    }
+
+    public int size() {
+        return changed.size() + deleted.size();
+    }
+
+    /** Brings a map of tenants by id up to date. */
+    public void applyTo(Map<Integer, Tenant> tenants) {
+        for (Integer id : deleted) {
+            tenants.remove(id);
+        }
+        for (Tenant tenant : changed) {
+            tenants.put(tenant.getId(), tenant);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return changed.size() + " changed, " + deleted.size() + " deleted (watermark " + watermark + ")";
+    }
+}
@@ -0,0 +1,116 @@
+package org.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Difference between the tenants currently shown and a freshly loaded list, keyed by tenant id.
+ * Applying it leaves unchanged rows alone, so list views keep their scroll position.
+ */
+public final class TenantDiff {
+    private final List<Tenant> fresh;
+    private final List<Tenant> inserted;
+    private final Map<Integer, Tenant> updated;
+    private final Set<Integer> removed;
+
+    private TenantDiff(List<Tenant> fresh, List<Tenant> inserted, Map<Integer, Tenant> updated, Set<Integer> removed) {
+        this.fresh = fresh;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.removed = removed;
+    }
+
+    public static TenantDiff between(List<Tenant> current, List<Tenant> fresh) {
+        Map<Integer, Tenant> currentById = new HashMap<>(current.size() * 2);
+        for (Tenant tenant : current) {
+            currentById.put(tenant.getId(), tenant);
+        }
+
+        List<Tenant> inserted = new ArrayList<>();
+        Map<Integer, Tenant> updated = new HashMap<>();
+        for (Tenant tenant : fresh) {
+            Tenant existing = currentById.remove(tenant.getId());
+            if (existing == null) {
+                inserted.add(tenant);
+            } else if (!existing.hasSameValues(tenant)) {
+                updated.put(tenant.getId(), tenant);
+            }
+        }
+        return new TenantDiff(fresh, inserted, updated, new HashSet<>(currentById.keySet()));
+    }
+
+    public boolean isEmpty() {
+        return inserted.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    public List<Tenant> getInserted() {
+        return inserted;
+    }
+
+    public Map<Integer, Tenant> getUpdated() {
+        return updated;
+    }
+
+    public Set<Integer> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Brings {@code target} in line with the fresh list. When no row appears or moves, removed rows
+     * are taken out and changed ones replaced in place. Otherwise the final list is built once and
+     * handed to {@code setAll} (for a JavaFX list {@code ObservableList::setAll}), a single change
+     * instead of one per moved row; rows that did not change keep their objects either way.
+     */
+    public void applyTo(List<Tenant> target, Consumer<List<Tenant>> setAll) {
+        if (changesOrder(target)) {
+            setAll.accept(merged(target));
+            return;
+        }
+        if (!removed.isEmpty()) {
+            target.removeIf(tenant -> removed.contains(tenant.getId()));
+        }
+        if (!updated.isEmpty()) {
+            for (int i = 0; i < target.size(); i++) {
+                Tenant replacement = updated.get(target.get(i).getId());
+                if (replacement != null) {
+                    target.set(i, replacement);
+                }
+            }
+        }
+    }
+
+    /** True unless the rows that stay are already in the fresh order and none are new. */
+    private boolean changesOrder(List<Tenant> current) {
+        if (!inserted.isEmpty()) return true;
+        int next = 0;
+        for (Tenant tenant : current) {
+            if (removed.contains(tenant.getId())) continue;
+            if (next >= fresh.size() || fresh.get(next).getId() != tenant.getId()) return true;
+            next++;
+        }
+        return next != fresh.size();
+    }
+
+    private List<Tenant> merged(List<Tenant> current) {
+        Map<Integer, Tenant> currentById = new HashMap<>(current.size() * 2);
+        for (Tenant tenant : current) {
+            currentById.put(tenant.getId(), tenant);
+        }
+        List<Tenant> merged = new ArrayList<>(fresh.size());
+        for (Tenant tenant : fresh) {
+            Tenant kept = updated.containsKey(tenant.getId()) ? null : currentById.get(tenant.getId());
+            merged.add(kept != null ? kept : tenant);
+        }
+        return merged;
+    }
+
+    @Override
+    public String toString() {
+        return "+" + inserted.size() + " ~" + updated.size() + " -" + removed.size();
+    }
+}
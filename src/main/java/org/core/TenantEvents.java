@@ -0,0 +1,73 @@
+package org.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process notifications about tenant writes, so derived structures (search index, caches, ...)
+ * can follow changes incrementally instead of re-reading the database.
+ * <p>
+ * Every code path that writes to the {@code tenants} table publishes here after the change is
+ * committed. Listeners run on the writer's thread and must be quick.
+ */
+public final class TenantEvents {
+
+    public interface Listener {
+        void tenantsUpserted(String dbName, List<Tenant> tenants);
+
+        void tenantDeleted(String dbName, int tenantId);
+
+        /** Many rows changed in a way that was not tracked row by row; reload what you need. */
+        default void buildingInvalidated(String dbName) {
+        }
+    }
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private TenantEvents() {
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    public static void upserted(String dbName, Tenant tenant) {
+        upserted(dbName, Collections.singletonList(tenant));
+    }
+
+    public static void upserted(String dbName, List<Tenant> tenants) {
+        if (tenants.isEmpty()) return;
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.tenantsUpserted(dbName, tenants);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static void deleted(String dbName, int tenantId) {
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.tenantDeleted(dbName, tenantId);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static void invalidated(String dbName) {
+        for (Listener listener : LISTENERS) {
+            try {
+                listener.buildingInvalidated(dbName);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
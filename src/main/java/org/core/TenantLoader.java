@@ -0,0 +1,75 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Reads tenants of one building into {@link Tenant} objects, either on the calling thread
+ * or on the {@link BackgroundExecutor}.
+ */
+public final class TenantLoader {
+    private TenantLoader() {
+    }
+
+    public static List<Tenant> loadAll(String dbName) throws SQLException {
+        List<Tenant> tenants = new ArrayList<>();
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.REFRESH);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM tenants")) {
+            while (rs.next()) {
+                tenants.add(fromRow(rs));
+            }
+            sample.done(tenants.size());
+        }
+        return tenants;
+    }
+
+    public static CompletableFuture<List<Tenant>> loadAllAsync(String dbName) {
+        return BackgroundExecutor.supply(() -> {
+            try {
+                return loadAll(dbName);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    public static Tenant findById(Connection conn, int id) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM tenants WHERE id = ?")) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? fromRow(rs) : null;
+            }
+        }
+    }
+
+    /** Builds a tenant from the current row of a {@code tenants} result set. */
+    public static Tenant fromRow(ResultSet rs) throws SQLException {
+        Tenant tenant = new Tenant(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getString("apt_number"),
+                toLocalDate(rs.getDate("lease_start")),
+                toLocalDate(rs.getDate("lease_expired")),
+                rs.getDouble("security"),
+                rs.getDouble("rent"),
+                rs.getDouble("balance")
+        );
+        tenant.setVersion(rs.getLong("row_version"));
+        return tenant;
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date == null ? null : date.toLocalDate();
+    }
+}
@@ -0,0 +1,255 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+
+/**
+ * Pages through the tenants of one building with keyset pagination on (sort column, id).
+ * <p>
+ * Sorting and the name/apartment filter run inside H2, and each page continues from the
+ * last row of the previous one instead of using OFFSET, so fetching page 500 costs the
+ * same as fetching page 1 and nothing beyond the visible pages is held in memory.
+ */
+public class TenantPager {
+    private static final int MAX_BOUND_IDS = 10_000;
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    public enum SortKey {
+        ID("id"),
+        NAME("name"),
+        APT_NUMBER("apt_number"),
+        LEASE_START("lease_start"),
+        LEASE_EXPIRED("lease_expired"),
+        SECURITY("security"),
+        RENT("rent"),
+        BALANCE("balance");
+
+        private final String column;
+
+        SortKey(String column) {
+            this.column = column;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        Object valueOf(Tenant tenant) {
+            switch (this) {
+                case NAME:
+                    return tenant.getName();
+                case APT_NUMBER:
+                    return tenant.getAptNumber();
+                case LEASE_START:
+                    return tenant.getLeaseStart() == null ? null : Date.valueOf(tenant.getLeaseStart());
+                case LEASE_EXPIRED:
+                    return tenant.getLeaseExpired() == null ? null : Date.valueOf(tenant.getLeaseExpired());
+                case SECURITY:
+                    return tenant.getSecurity();
+                case RENT:
+                    return tenant.getRent();
+                case BALANCE:
+                    return tenant.getBalance();
+                default:
+                    return tenant.getId();
+            }
+        }
+    }
+
+    private final String dbName;
+    private final SortKey sortKey;
+    private final boolean ascending;
+    private final String filter;
+    private final Integer[] matchingIds;
+
+    public TenantPager(String dbName, SortKey sortKey, boolean ascending, String filter) {
+        this(dbName, sortKey, ascending, filter, null);
+    }
+
+    /**
+     * Pages only through the given tenant ids, typically the answer of a {@link TenantSearchIndex}
+     * query for {@code filter}. A {@code null} set, or one too large to bind as a parameter
+     * efficiently, falls back to filtering in SQL, which matches the way the index does: anywhere
+     * for queries of three or more characters, at the start of a word for shorter ones.
+     */
+    public TenantPager(String dbName, SortKey sortKey, boolean ascending, String filter, Set<Integer> matchingIds) {
+        this.dbName = dbName;
+        this.sortKey = sortKey;
+        this.ascending = ascending;
+        this.filter = filter == null ? "" : filter.trim().toLowerCase();
+        this.matchingIds = matchingIds == null || matchingIds.size() > MAX_BOUND_IDS
+                ? null : matchingIds.toArray(new Integer[0]);
+    }
+
+    public String getDbName() {
+        return dbName;
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    /** True if a tenant changed from {@code before} to {@code after} keeps its place in this order. */
+    public boolean keepsPosition(Tenant before, Tenant after) {
+        return Objects.equals(sortKey.valueOf(before), sortKey.valueOf(after));
+    }
+
+    public TenantPage first(int pageSize) throws SQLException {
+        return fetch(null, pageSize);
+    }
+
+    /** Returns the page that follows {@code previous}, or an empty page if it was the last one. */
+    public TenantPage after(TenantPage previous, int pageSize) throws SQLException {
+        if (!previous.hasMore()) {
+            return new TenantPage(new ArrayList<>(), false);
+        }
+        return fetch(previous.last(), pageSize);
+    }
+
+    public CompletableFuture<TenantPage> firstAsync(int pageSize) {
+        return BackgroundExecutor.supply(() -> {
+            try {
+                return first(pageSize);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    public CompletableFuture<TenantPage> afterAsync(TenantPage previous, int pageSize) {
+        return BackgroundExecutor.supply(() -> {
+            try {
+                return after(previous, pageSize);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private TenantPage fetch(Tenant after, int pageSize) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM tenants WHERE 1=1");
+
+        if (matchingIds != null) {
+            sql.append(" AND id = ANY(?)");
+            params.add(matchingIds);
+        } else if (TenantSearchIndex.isPrefixQuery(filter)) {
+            // The start of any word, as the index matches short queries; a query with punctuation
+            // in it can only match the start of the whole field.
+            String pattern = (WORD.matcher(filter).matches() ? "(^|[^\\p{L}\\p{N}])" : "^") + Pattern.quote(filter);
+            sql.append(" AND (REGEXP_LIKE(LOWER(name), ?) OR REGEXP_LIKE(LOWER(apt_number), ?))");
+            params.add(pattern);
+            params.add(pattern);
+        } else if (!filter.isEmpty()) {
+            String pattern = "%" + escapeLike(filter) + "%";
+            sql.append(" AND (LOWER(name) LIKE ? ESCAPE '\\' OR LOWER(apt_number) LIKE ? ESCAPE '\\')");
+            params.add(pattern);
+            params.add(pattern);
+        }
+        if (after != null) {
+            appendKeyset(sql, params, after);
+        }
+
+        String direction = ascending ? "ASC" : "DESC";
+        sql.append(" ORDER BY ");
+        if (sortKey != SortKey.ID) {
+            sql.append(sortKey.column).append(' ').append(direction)
+                    .append(ascending ? " NULLS FIRST, " : " NULLS LAST, ");
+        }
+        sql.append("id ").append(direction).append(" LIMIT ?");
+        params.add(pageSize + 1);
+
+        List<Tenant> tenants = new ArrayList<>(pageSize + 1);
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.REFRESH);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tenants.add(TenantLoader.fromRow(rs));
+                }
+            }
+            sample.done(tenants.size());
+        }
+
+        boolean hasMore = tenants.size() > pageSize;
+        if (hasMore) {
+            tenants.remove(tenants.size() - 1);
+        }
+        return new TenantPage(tenants, hasMore);
+    }
+
+    /**
+     * Restricts the query to rows after {@code last} in (sort column, id) order. NULL sort values
+     * come first when ascending and last when descending, matching the ORDER BY clause.
+     */
+    private void appendKeyset(StringBuilder sql, List<Object> params, Tenant last) {
+        String idOp = ascending ? ">" : "<";
+        if (sortKey == SortKey.ID) {
+            sql.append(" AND id ").append(idOp).append(" ?");
+            params.add(last.getId());
+            return;
+        }
+
+        String column = sortKey.column;
+        Object value = sortKey.valueOf(last);
+        if (value == null) {
+            sql.append(" AND ((").append(column).append(" IS NULL AND id ").append(idOp).append(" ?)");
+            sql.append(ascending ? " OR " + column + " IS NOT NULL)" : ")");
+            params.add(last.getId());
+        } else {
+            sql.append(" AND (").append(column).append(' ').append(idOp).append(" ? OR (")
+                    .append(column).append(" = ? AND id ").append(idOp).append(" ?)");
+            sql.append(ascending ? ")" : " OR " + column + " IS NULL)");
+            params.add(value);
+            params.add(value);
+            params.add(last.getId());
+        }
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    public static final class TenantPage {
+        private final List<Tenant> tenants;
+        private final boolean hasMore;
+
+        TenantPage(List<Tenant> tenants, boolean hasMore) {
+            this.tenants = tenants;
+            this.hasMore = hasMore;
+        }
+
+        public List<Tenant> getTenants() {
+            return tenants;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        Tenant last() {
+            return tenants.get(tenants.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,542 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Single entry point for tenant lookups and writes of one building, shared by the CLI and the GUI.
+ * <p>
+ * Lookups by id and by apartment are read through a bounded LRU cache of {@link Tenant} objects
+ * ({@code pm.cache.maxTenants}, default 10,000 per building). Once {@link #listAll()} has loaded a
+ * building that fits in the cache, the cache is known to be complete and later lists and lookups
+ * never touch the database. Writes go to the database first and then publish through
+ * {@link TenantEvents}; the cache follows those events like every other listener, so writes made
+ * elsewhere (imports, bulk rent changes) keep it correct too. A bulk change that is not published
+ * row by row only marks a complete cache stale; the next list catches it up with a
+ * {@link TenantDelta} instead of reading the whole building again.
+ * <p>
+ * As a {@link DatabaseServer} client other processes write too, so lookups by id and apartment go
+ * to the database and every list first catches up with a delta, publishing what others changed to
+ * this process's listeners. Updates of a tenant read at a known version only apply if it still has
+ * that version and fail with a {@link TenantConflictException} otherwise.
+ */
+public final class TenantRepository {
+    private static final int MAX_TENANTS = Integer.getInteger("pm.cache.maxTenants", 10_000);
+    /** Other processes write to the same databases, so the cache can never be trusted as it is. */
+    private static final boolean SHARED = DatabaseServer.isClient();
+    /** Appended to an update by id; version 0 (a tenant not read from the database) always matches. */
+    private static final String VERSION_CHECK = " AND (? IN (0, row_version))";
+    static final Set<String> EDITABLE_COLUMNS = new HashSet<>(Arrays.asList(
+            "name", "apt_number", "lease_start", "lease_expired", "security", "rent"));
+    private static final Map<String, TenantRepository> REPOSITORIES = new ConcurrentHashMap<>();
+
+    static {
+        TenantEvents.addListener(new TenantEvents.Listener() {
+            @Override
+            public void tenantsUpserted(String dbName, List<Tenant> tenants) {
+                TenantRepository repository = REPOSITORIES.get(dbName);
+                if (repository != null) repository.cachedUpsert(tenants);
+            }
+
+            @Override
+            public void tenantDeleted(String dbName, int tenantId) {
+                TenantRepository repository = REPOSITORIES.get(dbName);
+                if (repository != null) repository.cachedDelete(tenantId);
+            }
+
+            @Override
+            public void buildingInvalidated(String dbName) {
+                TenantRepository repository = REPOSITORIES.get(dbName);
+                if (repository != null) repository.invalidate();
+            }
+        });
+    }
+
+    private final String dbName;
+    private final LinkedHashMap<Integer, Tenant> byId = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Tenant> eldest) {
+            if (size() <= MAX_TENANTS) return false;
+            evictions++;
+            complete = false;
+            return true;
+        }
+    };
+    private final LinkedHashMap<String, List<Integer>> byApartment = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<Integer>> eldest) {
+            return size() > MAX_TENANTS;
+        }
+    };
+    /** True while {@link #byId} holds every tenant of the building. */
+    private boolean complete;
+    /** A complete cache that missed an untracked bulk change; caught up from {@link #watermark} before it is used. */
+    private boolean stale;
+    /** {@link TenantDelta} watermark a complete cache is current as of. */
+    private long watermark;
+    /** Bumped by every write so reads that raced with it do not cache what they saw. */
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private TenantRepository(String dbName) {
+        this.dbName = dbName;
+    }
+
+    public static TenantRepository forBuilding(String dbName) {
+        return REPOSITORIES.computeIfAbsent(dbName, TenantRepository::new);
+    }
+
+    public String getDbName() {
+        return dbName;
+    }
+
+    /** Returns the tenant with this id, or {@code null} if there is none. */
+    public Tenant findById(int id) throws SQLException {
+        long seen;
+        synchronized (this) {
+            Tenant cached = byId.get(id);
+            if (!stale && !SHARED && (cached != null || complete)) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            seen = generation;
+        }
+
+        Tenant tenant;
+        try (Connection conn = ConnectionProvider.getConnection(dbName)) {
+            tenant = TenantLoader.findById(conn, id);
+        }
+        synchronized (this) {
+            if (tenant != null && seen == generation) {
+                byId.put(id, tenant);
+            }
+        }
+        return tenant;
+    }
+
+    /** Tenants living in an apartment, ordered by id. */
+    public List<Tenant> findByApartment(String aptNumber) throws SQLException {
+        long seen;
+        synchronized (this) {
+            List<Tenant> cached = cachedApartment(aptNumber);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            seen = generation;
+        }
+
+        List<Tenant> tenants = new ArrayList<>();
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM tenants WHERE apt_number = ? ORDER BY id")) {
+            stmt.setString(1, aptNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tenants.add(TenantLoader.fromRow(rs));
+                }
+            }
+        }
+        synchronized (this) {
+            if (seen == generation) {
+                List<Integer> ids = new ArrayList<>(tenants.size());
+                for (Tenant tenant : tenants) {
+                    byId.put(tenant.getId(), tenant);
+                    ids.add(tenant.getId());
+                }
+                byApartment.put(aptNumber, ids);
+            }
+        }
+        return tenants;
+    }
+
+    /**
+     * Every tenant of the building, ordered by id. Served from memory once the cache is complete,
+     * after catching up with the rows changed since if it went stale.
+     */
+    public List<Tenant> listAll() throws SQLException {
+        long seen;
+        long since;
+        synchronized (this) {
+            if (complete && !stale && !SHARED) {
+                hits++;
+                return sortedById(byId.values());
+            }
+            misses++;
+            seen = generation;
+            since = complete ? watermark : TenantDelta.ALL;
+        }
+
+        TenantDelta delta = read(since);
+        if (since != TenantDelta.ALL) {
+            List<Tenant> caughtUp = null;
+            synchronized (this) {
+                if (seen == generation && complete) {
+                    generation++;
+                    delta.applyTo(byId);
+                    if (complete) {
+                        stale = false;
+                        watermark = delta.getWatermark();
+                        caughtUp = sortedById(byId.values());
+                    }
+                }
+                // Written to or evicted from meanwhile; read everything instead.
+                seen = generation;
+            }
+            if (caughtUp != null) {
+                if (SHARED) publish(delta);
+                return caughtUp;
+            }
+            delta = read(TenantDelta.ALL);
+        }
+
+        List<Tenant> tenants = delta.getChanged();
+        synchronized (this) {
+            if (seen == generation && tenants.size() <= MAX_TENANTS) {
+                byId.clear();
+                byApartment.clear();
+                for (Tenant tenant : tenants) {
+                    byId.put(tenant.getId(), tenant);
+                }
+                complete = true;
+                stale = false;
+                watermark = delta.getWatermark();
+            }
+        }
+        return tenants;
+    }
+
+    private TenantDelta read(long since) throws SQLException {
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.REFRESH);
+             Connection conn = ConnectionProvider.getConnection(dbName)) {
+            TenantDelta delta = TenantDelta.since(conn, since);
+            sample.done(delta.size());
+            return delta;
+        }
+    }
+
+    /** Inserts a new tenant; the id of {@code tenant} is ignored. Returns the stored tenant. */
+    public Tenant insert(Tenant tenant) throws SQLException {
+        // FINAL TABLE rather than generated keys: it also sees ids assigned by BuildingViewTrigger.
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.INSERT);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "SELECT id FROM FINAL TABLE (INSERT INTO tenants (name, apt_number, lease_start, lease_expired, security, rent, balance) VALUES (?, ?, ?, ?, ?, ?, ?))")) {
+            pstmt.setString(1, tenant.getName());
+            pstmt.setString(2, tenant.getAptNumber());
+            pstmt.setDate(3, toSqlDate(tenant.getLeaseStart()));
+            pstmt.setDate(4, toSqlDate(tenant.getLeaseExpired()));
+            pstmt.setDouble(5, tenant.getSecurity());
+            pstmt.setDouble(6, tenant.getRent());
+            pstmt.setDouble(7, tenant.getBalance());
+            Tenant stored = journaled(conn, () -> {
+                try (ResultSet keys = pstmt.executeQuery()) {
+                    if (!keys.next()) {
+                        throw new SQLException("No id generated for new tenant");
+                    }
+                    return TenantLoader.findById(conn, keys.getInt(1));
+                }
+            }, inserted -> inserted == null ? null : ChangeJournal.Entry.inserted(dbName, inserted));
+            sample.done(1);
+            return published(stored);
+        }
+    }
+
+    /**
+     * Saves name, apartment, lease dates, security and rent. The balance is left alone. A tenant read
+     * from the database is only saved if nobody changed it since; otherwise this throws a
+     * {@link TenantConflictException}.
+     */
+    public Tenant update(Tenant tenant) throws SQLException {
+        Tenant before = cached(tenant.getId());
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.UPDATE);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "UPDATE tenants SET name=?, apt_number=?, lease_start=?, lease_expired=?, security=?, rent=? WHERE id=?"
+                             + VERSION_CHECK)) {
+            pstmt.setString(1, tenant.getName());
+            pstmt.setString(2, tenant.getAptNumber());
+            pstmt.setDate(3, toSqlDate(tenant.getLeaseStart()));
+            pstmt.setDate(4, toSqlDate(tenant.getLeaseExpired()));
+            pstmt.setDouble(5, tenant.getSecurity());
+            pstmt.setDouble(6, tenant.getRent());
+            pstmt.setInt(7, tenant.getId());
+            pstmt.setLong(8, tenant.getVersion());
+            Tenant saved = journaled(conn, () -> {
+                int rows = pstmt.executeUpdate();
+                sample.done(rows);
+                return checked(conn, tenant.getId(), rows);
+            }, after -> after == null ? null : ChangeJournal.Entry.updated(dbName, before, after));
+            return published(saved);
+        }
+    }
+
+    /**
+     * Sets one column of one tenant. {@code column} must be one of name, apt_number, lease_start,
+     * lease_expired, security or rent. Returns the updated tenant, or {@code null} if it does not exist.
+     */
+    public Tenant updateField(int tenantId, String column, Object value) throws SQLException {
+        return updateField(tenantId, 0, column, value);
+    }
+
+    /**
+     * Like {@link #updateField(int, String, Object)}, but only if the tenant still has the version it
+     * was read at; throws a {@link TenantConflictException} if someone changed it since.
+     */
+    public Tenant updateField(int tenantId, long version, String column, Object value) throws SQLException {
+        if (!EDITABLE_COLUMNS.contains(column)) {
+            throw new IllegalArgumentException("Not an editable column: " + column);
+        }
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.UPDATE);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             PreparedStatement pstmt = conn.prepareStatement("UPDATE tenants SET " + column + " = ? WHERE id = ?" + VERSION_CHECK)) {
+            pstmt.setObject(1, value instanceof LocalDate ? Date.valueOf((LocalDate) value) : value);
+            pstmt.setInt(2, tenantId);
+            pstmt.setLong(3, version);
+            Tenant saved = journaled(conn, () -> {
+                int rows = pstmt.executeUpdate();
+                sample.done(rows);
+                return checked(conn, tenantId, rows);
+            }, after -> after == null ? null : ChangeJournal.Entry.updated(dbName, tenantId, column, value));
+            return published(saved);
+        }
+    }
+
+    /** Returns true if the tenant existed. Their payments are removed with them. */
+    public boolean delete(int tenantId) throws SQLException {
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.DELETE);
+             Connection conn = ConnectionProvider.getConnection(dbName);
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM tenants WHERE id = ?")) {
+            pstmt.setInt(1, tenantId);
+            int rows = journaled(conn, pstmt::executeUpdate,
+                    deleted -> deleted > 0 ? ChangeJournal.Entry.deleted(dbName, tenantId) : null);
+            sample.done(rows);
+            if (rows > 0) {
+                TenantEvents.deleted(dbName, tenantId);
+            }
+            return rows > 0;
+        }
+    }
+
+    /** Posts a payment through the {@link PaymentLedger} and returns the tenant with the new balance. */
+    public Tenant recordPayment(int tenantId, YearMonth period, double amount) throws SQLException {
+        return recordPayment(tenantId, period, amount, null);
+    }
+
+    /** Like {@link #recordPayment(int, YearMonth, double)} for a bank statement line, which is only ever posted once. */
+    public Tenant recordPayment(int tenantId, YearMonth period, double amount, String bankRef) throws SQLException {
+        try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.PAYMENT);
+             Connection conn = ConnectionProvider.getConnection(dbName)) {
+            Tenant paid = journaled(conn, () -> {
+                PaymentLedger.post(conn, tenantId, period, amount, bankRef);
+                return TenantLoader.findById(conn, tenantId);
+            }, after -> ChangeJournal.Entry.payment(dbName, tenantId, period, amount));
+            sample.done(1);
+            return published(paid);
+        }
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, byId.size(), complete);
+    }
+
+    /** Drops everything cached for this building; the next lookups go to the database. */
+    public synchronized void clear() {
+        generation++;
+        byId.clear();
+        byApartment.clear();
+        complete = false;
+        stale = false;
+    }
+
+    /** Many rows changed untracked: a complete cache is caught up on its next use, anything else dropped. */
+    private synchronized void invalidate() {
+        if (!complete) {
+            clear();
+            return;
+        }
+        generation++;
+        byApartment.clear();
+        stale = true;
+    }
+
+    /** Work on a borrowed connection, run by {@link #journaled} in one transaction. */
+    private interface Transaction<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Runs {@code work} in one transaction and commits it through the {@link ChangeJournal} with the
+     * entry {@code entry} makes of its result (null for none), so entries follow the commit order.
+     */
+    private <T> T journaled(Connection conn, Transaction<T> work, Function<T, ChangeJournal.Entry> entry) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            T result = work.run();
+            ChangeJournal.commit(dbName, conn, entry.apply(result));
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /** The tenant after an update of {@code rows} rows; if it exists but was not updated, someone changed it first. */
+    private Tenant checked(Connection conn, int tenantId, int rows) throws SQLException {
+        Tenant saved = TenantLoader.findById(conn, tenantId);
+        if (rows == 0 && saved != null) {
+            TenantEvents.upserted(dbName, saved);
+            throw new TenantConflictException(saved);
+        }
+        return saved;
+    }
+
+    /** Tells every listener, this cache included, about a committed write. */
+    private Tenant published(Tenant tenant) {
+        if (tenant != null) {
+            TenantEvents.upserted(dbName, tenant);
+        }
+        return tenant;
+    }
+
+    /** Tells this process's listeners about a delta's rows; repeating a change is harmless to them. */
+    private void publish(TenantDelta delta) {
+        if (!delta.getChanged().isEmpty()) {
+            TenantEvents.upserted(dbName, delta.getChanged());
+        }
+        for (Integer id : delta.getDeleted()) {
+            TenantEvents.deleted(dbName, id);
+        }
+    }
+
+    /** The cached image of a tenant, without counting a lookup; null if not cached. */
+    private synchronized Tenant cached(int tenantId) {
+        return byId.get(tenantId);
+    }
+
+    private synchronized void cachedUpsert(List<Tenant> tenants) {
+        generation++;
+        for (Tenant tenant : tenants) {
+            Tenant previous = byId.get(tenant.getId());
+            if (previous != null) {
+                byApartment.remove(previous.getAptNumber());
+            }
+            byApartment.remove(tenant.getAptNumber());
+            if (previous != null || complete) {
+                byId.put(tenant.getId(), tenant);
+            }
+        }
+    }
+
+    private synchronized void cachedDelete(int tenantId) {
+        generation++;
+        Tenant previous = byId.remove(tenantId);
+        if (previous != null) {
+            byApartment.remove(previous.getAptNumber());
+        }
+    }
+
+    /** The cached tenants of an apartment, or null if that would need the database. */
+    private List<Tenant> cachedApartment(String aptNumber) {
+        if (SHARED) return null;
+        if (complete && !stale) {
+            List<Tenant> tenants = new ArrayList<>();
+            for (Tenant tenant : byId.values()) {
+                if (aptNumber.equals(tenant.getAptNumber())) tenants.add(tenant);
+            }
+            return sortedById(tenants);
+        }
+        List<Integer> ids = byApartment.get(aptNumber);
+        if (ids == null) return null;
+
+        List<Tenant> tenants = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Tenant tenant = byId.get(id);
+            if (tenant == null || !aptNumber.equals(tenant.getAptNumber())) {
+                byApartment.remove(aptNumber);
+                return null;
+            }
+            tenants.add(tenant);
+        }
+        return tenants;
+    }
+
+    private static List<Tenant> sortedById(Iterable<Tenant> tenants) {
+        List<Tenant> sorted = new ArrayList<>();
+        for (Tenant tenant : tenants) sorted.add(tenant);
+        sorted.sort(Comparator.comparingInt(Tenant::getId));
+        return sorted;
+    }
+
+    private static Date toSqlDate(LocalDate date) {
+        return date == null ? null : Date.valueOf(date);
+    }
+
+    public static final class CacheStats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+        private final boolean complete;
+
+        CacheStats(long hits, long misses, long evictions, int size, boolean complete) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.complete = complete;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        /** True if every tenant of the building is cached. */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d tenants cached%s, %d hits, %d misses (%.0f%% hit rate), %d evictions",
+                    size, complete ? " (complete)" : "", hits, misses, getHitRate() * 100, evictions);
+        }
+    }
+}
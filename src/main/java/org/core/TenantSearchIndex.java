@@ -0,0 +1,251 @@
+package org.core;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory search index over tenant names and apartment numbers of one building.
+ * <p>
+ * Text is lowercased once when a tenant is indexed. Queries of three or more characters are
+ * answered from trigram postings and match anywhere in the name or apartment number, like the
+ * old substring filter did; shorter queries match the start of any word. The index follows
+ * writes through {@link TenantEvents}, so it only reads the database when first used.
+ */
+public final class TenantSearchIndex {
+    private static final int GRAM = 3;
+    private static final Map<String, TenantSearchIndex> INDEXES = new ConcurrentHashMap<>();
+
+    static {
+        TenantEvents.addListener(new TenantEvents.Listener() {
+            @Override
+            public void tenantsUpserted(String dbName, List<Tenant> tenants) {
+                TenantSearchIndex index = INDEXES.get(dbName);
+                if (index != null) index.putAll(tenants);
+            }
+
+            @Override
+            public void tenantDeleted(String dbName, int tenantId) {
+                TenantSearchIndex index = INDEXES.get(dbName);
+                if (index != null) index.remove(tenantId);
+            }
+
+            @Override
+            public void buildingInvalidated(String dbName) {
+                TenantSearchIndex index = INDEXES.get(dbName);
+                if (index != null) index.markStale();
+            }
+        });
+    }
+
+    private final String dbName;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, String[]> documents = new HashMap<>();
+    private final Map<String, Set<Integer>> grams = new HashMap<>();
+    private final NavigableMap<String, Set<Integer>> words = new TreeMap<>();
+    private CompletableFuture<TenantSearchIndex> loading;
+    private boolean changedWhileLoading;
+
+    private TenantSearchIndex(String dbName) {
+        this.dbName = dbName;
+    }
+
+    public static TenantSearchIndex forBuilding(String dbName) {
+        return INDEXES.computeIfAbsent(dbName, TenantSearchIndex::new);
+    }
+
+    /** Loads the building on first use (on the {@link BackgroundExecutor}); completes once the index is usable. */
+    public synchronized CompletableFuture<TenantSearchIndex> ready() {
+        if (loading == null || loading.isCompletedExceptionally()) {
+            changedWhileLoading = false;
+            loading = BackgroundExecutor.supply(this::load);
+        }
+        return loading;
+    }
+
+    /**
+     * Returns the ids of tenants whose name or apartment number matches {@code query}, or
+     * {@code null} if the query is blank and everything matches.
+     */
+    public Set<Integer> search(String query) {
+        String q = normalize(query);
+        if (q.isEmpty()) return null;
+
+        lock.readLock().lock();
+        try {
+            if (q.length() < GRAM) {
+                return prefixMatches(q);
+            }
+
+            Set<Integer> smallest = null;
+            for (int i = 0; i + GRAM <= q.length(); i++) {
+                Set<Integer> posting = grams.get(q.substring(i, i + GRAM));
+                if (posting == null) return Collections.emptySet();
+                if (smallest == null || posting.size() < smallest.size()) smallest = posting;
+            }
+
+            Set<Integer> result = new HashSet<>();
+            for (Integer id : smallest) {
+                String[] doc = documents.get(id);
+                if (doc != null && (doc[0].contains(q) || doc[1].contains(q))) {
+                    result.add(id);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** True if {@link #search} matches {@code query} at the start of words rather than anywhere. */
+    static boolean isPrefixQuery(String query) {
+        String q = normalize(query);
+        return !q.isEmpty() && q.length() < GRAM;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void putAll(List<Tenant> tenants) {
+        lock.writeLock().lock();
+        try {
+            for (Tenant tenant : tenants) {
+                removeLocked(tenant.getId());
+                addLocked(tenant.getId(), tenant.getName(), tenant.getAptNumber());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        noteChange();
+    }
+
+    void remove(int tenantId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(tenantId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        noteChange();
+    }
+
+    private synchronized void markStale() {
+        if (loading != null && loading.isDone()) {
+            loading = null;
+        } else {
+            changedWhileLoading = true;
+        }
+    }
+
+    /** A write that raced with the initial load may have been missed; load once more afterwards. */
+    private synchronized void noteChange() {
+        if (loading != null && !loading.isDone()) {
+            changedWhileLoading = true;
+        }
+    }
+
+    private TenantSearchIndex load() {
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name, apt_number FROM tenants")) {
+            lock.writeLock().lock();
+            try {
+                documents.clear();
+                grams.clear();
+                words.clear();
+                while (rs.next()) {
+                    addLocked(rs.getInt(1), rs.getString(2), rs.getString(3));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not build search index for " + dbName, e);
+        }
+
+        synchronized (this) {
+            if (changedWhileLoading) {
+                changedWhileLoading = false;
+                return load();
+            }
+        }
+        return this;
+    }
+
+    private void addLocked(int id, String name, String aptNumber) {
+        String[] doc = {normalize(name), normalize(aptNumber)};
+        documents.put(id, doc);
+        for (String field : doc) {
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                grams.computeIfAbsent(field.substring(i, i + GRAM), k -> new HashSet<>()).add(id);
+            }
+            for (String word : words(field)) {
+                words.computeIfAbsent(word, k -> new HashSet<>()).add(id);
+            }
+        }
+    }
+
+    private void removeLocked(int id) {
+        String[] doc = documents.remove(id);
+        if (doc == null) return;
+        for (String field : doc) {
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                removePosting(grams, field.substring(i, i + GRAM), id);
+            }
+            for (String word : words(field)) {
+                removePosting(words, word, id);
+            }
+        }
+    }
+
+    private Set<Integer> prefixMatches(String prefix) {
+        Set<Integer> result = new HashSet<>();
+        for (Set<Integer> ids : words.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            result.addAll(ids);
+        }
+        return result;
+    }
+
+    private static void removePosting(Map<String, Set<Integer>> postings, String key, int id) {
+        Set<Integer> ids = postings.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            postings.remove(key);
+        }
+    }
+
+    private static List<String> words(String field) {
+        List<String> result = new ArrayList<>();
+        for (String word : field.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) result.add(word);
+        }
+        if (!field.isEmpty() && !result.contains(field)) {
+            result.add(field);
+        }
+        return result;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,173 @@
+package org.core;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Saves tenant edits of one building in the background, in the order they were made.
+ * <p>
+ * Callers get a future right away and can show the change before it is written. Writes run one
+ * at a time on the {@link BackgroundExecutor}; while one is running, later edits wait in the
+ * queue, and an edit of a tenant that already has an update waiting replaces it instead of adding
+ * another round trip, so a burst of edits to one row costs a single UPDATE. A delete replaces a
+ * waiting update of the same tenant the same way. Every future of a merged command completes with
+ * the result of the write that was actually made.
+ * <p>
+ * Updates carry the row version they were edited from, so an edit made while an earlier edit of
+ * the same tenant was still being saved is moved onto the version that save produced; only changes
+ * made by others end in a {@link TenantConflictException}.
+ */
+public final class TenantWriteQueue {
+    private static final Map<String, TenantWriteQueue> QUEUES = new ConcurrentHashMap<>();
+
+    private enum Kind {
+        INSERT, UPDATE, DELETE
+    }
+
+    private static final class Command {
+        Kind kind;
+        Tenant tenant;
+        final int tenantId;
+        final List<CompletableFuture<Tenant>> futures = new ArrayList<>();
+
+        Command(Kind kind, Tenant tenant, int tenantId) {
+            this.kind = kind;
+            this.tenant = tenant;
+            this.tenantId = tenantId;
+        }
+    }
+
+    private final String dbName;
+    /** Waiting commands in submission order. Updates and deletes are keyed by tenant id so they can be merged. */
+    private final LinkedHashMap<Object, Command> pending = new LinkedHashMap<>();
+    private boolean draining;
+    /** Per tenant, the version the last update was edited from and the version it produced. Used by the drain only. */
+    private final Map<Integer, long[]> savedVersions = new HashMap<>();
+    private long merged;
+
+    private TenantWriteQueue(String dbName) {
+        this.dbName = dbName;
+    }
+
+    public static TenantWriteQueue forBuilding(String dbName) {
+        return QUEUES.computeIfAbsent(dbName, TenantWriteQueue::new);
+    }
+
+    public String getDbName() {
+        return dbName;
+    }
+
+    /** Completes with the stored tenant, including its new id. */
+    public CompletableFuture<Tenant> insert(Tenant tenant) {
+        return submit(new Object(), Kind.INSERT, tenant, 0);
+    }
+
+    /**
+     * Completes with the stored tenant, or {@code null} if a delete of the same tenant replaced this
+     * update before it was written. Fails if the tenant no longer exists.
+     */
+    public CompletableFuture<Tenant> update(Tenant tenant) {
+        return submit(tenant.getId(), Kind.UPDATE, tenant, tenant.getId());
+    }
+
+    /** Completes with {@code null} once the tenant is gone. Fails if there was no such tenant. */
+    public CompletableFuture<Tenant> delete(int tenantId) {
+        return submit(tenantId, Kind.DELETE, null, tenantId);
+    }
+
+    /** Commands waiting to be written, not counting the one being written. */
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+    /** Edits that were folded into a waiting command instead of costing a write of their own. */
+    public synchronized long getMerged() {
+        return merged;
+    }
+
+    private CompletableFuture<Tenant> submit(Object key, Kind kind, Tenant tenant, int tenantId) {
+        CompletableFuture<Tenant> future = new CompletableFuture<>();
+        synchronized (this) {
+            Command waiting = pending.get(key);
+            if (waiting != null && waiting.kind == Kind.UPDATE) {
+                // Still queued, so the newer image (or the delete) simply takes its place.
+                waiting.kind = kind;
+                waiting.tenant = tenant;
+                waiting.futures.add(future);
+                merged++;
+            } else {
+                Command command = new Command(kind, tenant, tenantId);
+                command.futures.add(future);
+                // An update after a waiting delete must not merge into it, so it gets a key of its own.
+                pending.put(waiting == null ? key : new Object(), command);
+            }
+            if (!draining) {
+                draining = true;
+                BackgroundExecutor.run(this::drain);
+            }
+        }
+        return future;
+    }
+
+    private void drain() {
+        while (true) {
+            Command command;
+            synchronized (this) {
+                Iterator<Command> it = pending.values().iterator();
+                if (!it.hasNext()) {
+                    draining = false;
+                    return;
+                }
+                command = it.next();
+                it.remove();
+            }
+            Tenant result = null;
+            Throwable error = null;
+            try {
+                result = write(command);
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+            }
+            for (CompletableFuture<Tenant> future : command.futures) {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(result);
+                }
+            }
+        }
+    }
+
+    private Tenant write(Command command) throws SQLException {
+        TenantRepository repository = TenantRepository.forBuilding(dbName);
+        switch (command.kind) {
+            case INSERT:
+                return repository.insert(command.tenant);
+            case UPDATE:
+                long editedFrom = command.tenant.getVersion();
+                long[] ours = savedVersions.get(command.tenantId);
+                if (ours != null && ours[0] == editedFrom) {
+                    command.tenant.setVersion(ours[1]);
+                }
+                Tenant saved = repository.update(command.tenant);
+                if (saved == null) {
+                    throw new SQLException("Tenant " + command.tenantId + " no longer exists");
+                }
+                savedVersions.put(command.tenantId, new long[]{editedFrom, saved.getVersion()});
+                return saved;
+            default:
+                savedVersions.remove(command.tenantId);
+                if (!repository.delete(command.tenantId)) {
+                    throw new SQLException("Tenant " + command.tenantId + " no longer exists");
+                }
+                return null;
+        }
+    }
+}
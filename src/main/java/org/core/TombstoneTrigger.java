@@ -0,0 +1,51 @@
+package org.core;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Leaves a tombstone in {@code tenant_tombstones} for every deleted tenant, stamped with the next
+ * row version, so {@link TenantDelta} can report deletions since a watermark. Runs inside the
+ * deleting transaction, so a rolled-back delete leaves no tombstone. A tenant id keeps one
+ * tombstone, the latest.
+ */
+public class TombstoneTrigger implements Trigger {
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) {
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (oldRow == null || newRow != null) return;
+        // Row layout: id, name, ...
+        try (PreparedStatement stmt = conn.prepareStatement("MERGE INTO tenant_tombstones (tenant_id, row_version, deleted_at) "
+                + "KEY (tenant_id) VALUES (?, NEXT VALUE FOR tenants_version, CURRENT_TIMESTAMP)")) {
+            stmt.setObject(1, oldRow[0]);
+            stmt.executeUpdate();
+        }
+    }
+
+    /** The same for the shared {@code PUBLIC.tenants} table of {@link ConsolidatedStorage}. */
+    public static class Consolidated implements Trigger {
+
+        @Override
+        public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) {
+        }
+
+        @Override
+        public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+            if (oldRow == null || newRow != null) return;
+            // Row layout: building_id, id, name, ...
+            try (PreparedStatement stmt = conn.prepareStatement("MERGE INTO PUBLIC.tenant_tombstones (building_id, tenant_id, row_version, deleted_at) "
+                    + "KEY (building_id, tenant_id) VALUES (?, ?, NEXT VALUE FOR PUBLIC.tenants_version, CURRENT_TIMESTAMP)")) {
+                stmt.setObject(1, oldRow[0]);
+                stmt.setObject(2, oldRow[1]);
+                stmt.executeUpdate();
+            }
+        }
+    }
+}
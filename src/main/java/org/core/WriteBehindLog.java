@@ -0,0 +1,318 @@
+package org.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of committed row images for {@link MemoryStorage}. A commit is acknowledged once
+ * its records are on disk; the write-behind flusher applies them to the building file later and
+ * then empties the log.
+ * <p>
+ * Each record is framed as {@code [length][payload][crc32]}, so a record torn by a crash is
+ * detected and ignored on recovery along with anything after it. Concurrent commits share one
+ * {@code fsync}: whoever syncs first covers everything appended so far, and the others just wait
+ * for it (group commit).
+ */
+final class WriteBehindLog implements AutoCloseable {
+    private static final byte NULL = 0, INT = 1, LONG = 2, DOUBLE = 3, STRING = 4, DATE = 5, TIMESTAMP = 6, BOOLEAN = 7;
+
+    /** One committed row: its full image, or a deletion of its id. */
+    static final class Record {
+        private final long seq;
+        private final String table;
+        private final Object id;
+        private final String[] columns;
+        private final Object[] values;
+
+        Record(long seq, String table, Object id, String[] columns, Object[] values) {
+            this.seq = seq;
+            this.table = table;
+            this.id = id;
+            this.columns = columns;
+            this.values = values;
+        }
+
+        static Record upsert(String table, String[] columns, Object[] values) {
+            return new Record(0, table, values[0], columns, values);
+        }
+
+        static Record delete(String table, Object id) {
+            return new Record(0, table, id, null, null);
+        }
+
+        long getSeq() {
+            return seq;
+        }
+
+        String getTable() {
+            return table;
+        }
+
+        Object getId() {
+            return id;
+        }
+
+        boolean isDelete() {
+            return columns == null;
+        }
+
+        String[] getColumns() {
+            return columns;
+        }
+
+        Object[] getValues() {
+            return values;
+        }
+
+        Record withSeq(long seq) {
+            return new Record(seq, table, id, columns, values);
+        }
+    }
+
+    private final FileChannel channel;
+    private final boolean sync;
+    private long lastSeq;
+    private long written;
+    private long synced;
+    private boolean syncing;
+
+    WriteBehindLog(Path path, long lastSeq, boolean sync) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        this.sync = sync;
+        this.lastSeq = lastSeq;
+        this.written = channel.size();
+        this.synced = written;
+        channel.position(written);
+    }
+
+    /** Reads every intact record of a log file, stopping at the first torn or corrupt one. */
+    static List<Record> read(Path path) throws IOException {
+        List<Record> records = new ArrayList<>();
+        if (!Files.exists(path)) return records;
+
+        try (DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int length;
+                byte[] payload;
+                int crc;
+                try {
+                    length = in.readInt();
+                    if (length <= 0 || length > (1 << 24)) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 check = new CRC32();
+                check.update(payload);
+                if ((int) check.getValue() != crc) break;
+                records.add(decode(payload));
+            }
+        }
+        return records;
+    }
+
+    /** Numbers and appends the records of one commit. Returns the position to wait for with {@link #awaitDurable}. */
+    synchronized AppendResult append(List<Record> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<Record> numbered = new ArrayList<>(records.size());
+        for (Record record : records) {
+            Record withSeq = record.withSeq(++lastSeq);
+            numbered.add(withSeq);
+            byte[] payload = encode(withSeq);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeInt((int) crc.getValue());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        written = channel.position();
+        return new AppendResult(numbered, written);
+    }
+
+    static final class AppendResult {
+        final List<Record> records;
+        final long position;
+
+        AppendResult(List<Record> records, long position) {
+            this.records = records;
+            this.position = position;
+        }
+    }
+
+    /** Blocks until everything up to {@code position} has been forced to disk. */
+    void awaitDurable(long position) throws IOException {
+        if (!sync) return;
+        long target;
+        synchronized (this) {
+            while (true) {
+                if (synced >= position) return;
+                if (!syncing) break;
+                awaitSync();
+            }
+            syncing = true;
+            target = written;
+        }
+        // Forced outside the monitor so other commits keep appending; they are covered by the next force.
+        boolean forced = false;
+        try {
+            channel.force(false);
+            forced = true;
+        } finally {
+            synchronized (this) {
+                if (forced) synced = Math.max(synced, target);
+                syncing = false;
+                notifyAll();
+            }
+        }
+        if (target < position) awaitDurable(position);
+    }
+
+    private void awaitSync() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the write-behind log", e);
+        }
+    }
+
+    synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    /** Empties the log if every record in it has been applied up to {@code appliedSeq}. */
+    synchronized boolean truncateIfApplied(long appliedSeq) throws IOException {
+        while (syncing) {
+            awaitSync();
+        }
+        if (appliedSeq < lastSeq) return false;
+        channel.truncate(0);
+        channel.position(0);
+        if (sync) channel.force(false);
+        written = 0;
+        synced = 0;
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static byte[] encode(Record record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(record.seq);
+        out.writeUTF(record.table);
+        writeValue(out, record.id);
+        out.writeBoolean(record.isDelete());
+        if (!record.isDelete()) {
+            out.writeShort(record.columns.length);
+            for (int i = 0; i < record.columns.length; i++) {
+                out.writeUTF(record.columns[i]);
+                writeValue(out, record.values[i]);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Record decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(payload));
+        long seq = in.readLong();
+        String table = in.readUTF();
+        Object id = readValue(in);
+        if (in.readBoolean()) {
+            return new Record(seq, table, id, null, null);
+        }
+        int count = in.readShort();
+        String[] columns = new String[count];
+        Object[] values = new Object[count];
+        for (int i = 0; i < count; i++) {
+            columns[i] = in.readUTF();
+            values[i] = readValue(in);
+        }
+        return new Record(seq, table, id, columns, values);
+    }
+
+    static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).toLocalDate().toEpochDay());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(DATE);
+            out.writeLong(((LocalDate) value).toEpochDay());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeUTF(((Timestamp) value).toLocalDateTime().toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(TIMESTAMP);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            throw new IOException("Cannot log a value of type " + value.getClass().getName());
+        }
+    }
+
+    static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return in.readUTF();
+            case DATE:
+                return LocalDate.ofEpochDay(in.readLong());
+            case TIMESTAMP:
+                return LocalDateTime.parse(in.readUTF());
+            case BOOLEAN:
+                return in.readBoolean();
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.core;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Reports every row written to a building's in-memory tables to {@link MemoryStorage}, which logs
+ * the row once the writing session commits. Only the primary key is kept; the row itself is
+ * re-read after the commit, so rolled-back changes never reach the log.
+ */
+public class WriteBehindTrigger implements Trigger {
+    private String table;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) {
+        this.table = tableName;
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (oldRow != null) {
+            MemoryStorage.rowChanged(conn, table, oldRow);
+        }
+        if (newRow != null) {
+            MemoryStorage.rowChanged(conn, table, newRow);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** A command file is checked as a whole, a dry run writes nothing, and a failure undoes its building or only itself. */
+class BatchJobTest {
+    private static final String DB = "batch_test";
+    private static final String OTHER = "batch_other";
+    private static final List<String> BUILDINGS = List.of(DB, OTHER);
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+        BuildingRegistry.add(OTHER);
+    }
+
+    @Test
+    void parseSkipsCommentsAndNamesTheFirstBadLine() throws Exception {
+        List<BatchJob.Command> commands = BatchJob.parse(file(
+                "# rent day",
+                "",
+                "batch_test,payment,1,2026-09,1500.00",
+                "  batch_test , RENT , 1 , 1650 ",
+                "batch_other,set,7,name,Doe, Jane",
+                "batch_other,set,7,lease_expired,2027-12-31",
+                "batch_other,delete,9"), BUILDINGS);
+        assertEquals(5, commands.size());
+        assertEquals(3, commands.get(0).getLine());
+        assertEquals(BatchJob.Kind.RENT, commands.get(1).getKind());
+        assertEquals(DB, commands.get(1).getDbName());
+        assertEquals(9, commands.get(4).getTenantId());
+
+        for (String bad : new String[]{"nowhere,rent,1,1000", "batch_test,evict,1", "batch_test,payment,1,2026-13,10",
+                "batch_test,payment,1,2026-09", "batch_test,set,1,balance,0", "batch_test,set,1,lease_start,someday",
+                "batch_test,delete,1,now", "batch_test,rent,one,1000", "batch_test,rent"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> BatchJob.parse(file("batch_test,rent,1,1000", bad), BUILDINGS), bad);
+            assertTrue(e.getMessage().startsWith("Line 2: "), e.getMessage());
+        }
+    }
+
+    @Test
+    void dryRunWritesNothing() throws Exception {
+        Tenant ana = TenantRepository.forBuilding(DB).insert(TestData.tenant("Ana Rivera", "1A", 1000));
+        long journaled = ChangeJournal.get().getLastSeq();
+
+        BatchJob.Report report = new BatchJob(commands(
+                DB + ",payment," + ana.getId() + ",2026-09,400",
+                DB + ",rent," + ana.getId() + ",1200",
+                DB + ",set," + ana.getId() + ",name,Ana R."), true, false).run().join();
+
+        assertEquals(3, report.getSucceeded());
+        assertEquals(0, report.getFailed());
+        assertEquals(journaled, ChangeJournal.get().getLastSeq());
+        Tenant stored = TenantRepository.forBuilding(DB).findById(ana.getId());
+        assertEquals(1000, stored.getRent(), 0.001);
+        assertEquals(0, stored.getBalance(), 0.001);
+        assertEquals("Ana Rivera", stored.getName());
+        assertEquals(0, TestData.queryNumber(DB, "SELECT COUNT(*) FROM payments WHERE tenant_id = " + ana.getId()));
+    }
+
+    @Test
+    void failureRollsBackItsBuildingOnly() throws Exception {
+        Tenant ben = TenantRepository.forBuilding(DB).insert(TestData.tenant("Ben Smith", "2B", 1000));
+        Tenant cy = TenantRepository.forBuilding(OTHER).insert(TestData.tenant("Cy Young", "3C", 1000));
+
+        BatchJob.Report report = new BatchJob(commands(
+                DB + ",rent," + ben.getId() + ",1300",
+                DB + ",payment,999999,2026-09,50",
+                DB + ",rent," + ben.getId() + ",1400",
+                OTHER + ",rent," + cy.getId() + ",1100"), false, false).run().join();
+
+        for (BatchJob.BuildingResult result : report.getBuildings()) {
+            assertEquals(result.getDbName().equals(DB), result.isRolledBack(), result.getDbName());
+        }
+        assertEquals(1, report.getFailed());
+        assertEquals(1000, TenantRepository.forBuilding(DB).findById(ben.getId()).getRent(), 0.001);
+        assertEquals(1100, TenantRepository.forBuilding(OTHER).findById(cy.getId()).getRent(), 0.001);
+    }
+
+    @Test
+    void continueOnErrorUndoesOnlyTheFailedCommand() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant dana = repository.insert(TestData.tenant("Dana Brown", "4D", 1000));
+        long journaled = ChangeJournal.get().getLastSeq();
+
+        BatchJob.Report report;
+        // A payment's debit runs before its ledger row; failing the row shows whether the debit is undone too.
+        TestData.execute(DB, "ALTER TABLE payments ADD CONSTRAINT batch_test_limit CHECK (amount < 10000)");
+        try {
+            report = new BatchJob(commands(
+                    DB + ",payment," + dana.getId() + ",2026-09,250",
+                    DB + ",set," + dana.getId() + ",apt_number," + "X".repeat(60),
+                    DB + ",payment," + dana.getId() + ",2026-09,20000",
+                    DB + ",delete,999999",
+                    DB + ",rent," + dana.getId() + ",1250"), false, true).run().join();
+        } finally {
+            TestData.execute(DB, "ALTER TABLE payments DROP CONSTRAINT batch_test_limit");
+        }
+
+        BatchJob.BuildingResult result = report.getBuildings().get(0);
+        assertFalse(result.isRolledBack());
+        assertEquals(2, result.getSucceeded());
+        List<Integer> failedLines = new ArrayList<>();
+        for (BatchJob.Failure failure : result.getFailures()) failedLines.add(failure.getCommand().getLine());
+        assertEquals(List.of(2, 3, 4), failedLines);
+        Tenant stored = repository.findById(dana.getId());
+        assertEquals(1250, stored.getRent(), 0.001);
+        assertEquals(-250, stored.getBalance(), 0.001);
+        assertEquals("4D", stored.getAptNumber());
+        assertEquals(journaled + 2, ChangeJournal.get().getLastSeq());
+    }
+
+    private static List<BatchJob.Command> commands(String... lines) throws Exception {
+        return BatchJob.parse(file(lines), BUILDINGS);
+    }
+
+    private static Path file(String... lines) throws Exception {
+        Path file = Files.createTempFile(dataDir.path(), "commands", ".txt");
+        Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+}
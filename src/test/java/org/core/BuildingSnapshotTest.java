@@ -0,0 +1,81 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** A snapshot restored into another building gives back every column, NULLs included. */
+class BuildingSnapshotTest {
+    private static final String SOURCE = "snapshot_source";
+    private static final String TARGET = "snapshot_target";
+    /** Assigned by the database on insert, not restored. */
+    private static final String TENANT_COLUMNS = "id, name, apt_number, lease_start, lease_expired, security, rent, balance, accrued_through";
+    private static final String PAYMENT_COLUMNS = "tenant_id, period, amount, posted_at, bank_ref";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(SOURCE);
+        BuildingRegistry.add(TARGET);
+        TenantRepository repository = TenantRepository.forBuilding(SOURCE);
+        repository.insert(TestData.tenant("Ana Rivera", "1A", 1234.567));
+        repository.insert(TestData.tenant("Ben Smith", "2B", 0.1 + 0.2));
+        repository.insert(TestData.tenant("Zoë O'Brien, Jr.", "3-C", 1e9 + 0.01));
+        TestData.execute(SOURCE, "INSERT INTO tenants (id, name, apt_number, lease_start, lease_expired, security, rent, balance, accrued_through) "
+                + "VALUES (10, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL)");
+        TestData.execute(SOURCE, "UPDATE tenants SET accrued_through = DATE '2024-02-01' WHERE id = 1");
+        TestData.execute(SOURCE, "UPDATE tenants SET balance = -42.125, lease_expired = NULL WHERE id = 2");
+        repository.recordPayment(1, java.time.YearMonth.of(2024, 2), 617.28);
+        repository.recordPayment(1, java.time.YearMonth.of(2024, 3), 617.28, "ref-1");
+        repository.recordPayment(3, java.time.YearMonth.of(2024, 3), 0.01);
+    }
+
+    @Test
+    void roundTripKeepsEveryColumn() throws Exception {
+        for (boolean compress : new boolean[]{false, true}) {
+            Path file = dataDir.resolve("source" + compress + BuildingSnapshot.EXTENSION);
+            BuildingSnapshot snapshot = new BuildingSnapshot().compress(compress);
+            snapshot.write(SOURCE, file);
+            long journaled = ChangeJournal.get().getLastSeq();
+            snapshot.restore(TARGET, file);
+
+            assertEquals(TestData.rows(SOURCE, "SELECT " + TENANT_COLUMNS + " FROM tenants ORDER BY id"),
+                    TestData.rows(TARGET, "SELECT " + TENANT_COLUMNS + " FROM tenants ORDER BY id"));
+            assertEquals(TestData.rows(SOURCE, "SELECT " + PAYMENT_COLUMNS + " FROM payments ORDER BY tenant_id, period, bank_ref"),
+                    TestData.rows(TARGET, "SELECT " + PAYMENT_COLUMNS + " FROM payments ORDER BY tenant_id, period, bank_ref"));
+            List<Map<String, Object>> blank = TestData.rows(TARGET, "SELECT rent, balance, security FROM tenants WHERE id = 10");
+            assertNull(blank.get(0).get("RENT"));
+            assertNull(blank.get(0).get("BALANCE"));
+            assertNull(blank.get(0).get("SECURITY"));
+            Map<String, Object> insert = journaledInsert(journaled, 10);
+            assertNull(insert.get("rent"));
+            assertNull(insert.get("balance"));
+            assertNull(insert.get("security"));
+
+            // Back to an empty building for the next round.
+            TestData.execute(TARGET, "DELETE FROM payments");
+            TestData.execute(TARGET, "DELETE FROM tenants");
+        }
+    }
+
+    /** The fields journaled for the restore's insert of {@code tenantId} into the target. */
+    private static Map<String, Object> journaledInsert(long afterSeq, int tenantId) throws Exception {
+        ChangeJournal.Cursor cursor = ChangeJournal.get().read(afterSeq + 1);
+        ChangeJournal.Entry entry;
+        while ((entry = cursor.next()) != null) {
+            if (entry.getOp() == ChangeJournal.Op.INSERT && entry.getDbName().equals(TARGET) && entry.getTenantId() == tenantId) {
+                return entry.getFields();
+            }
+        }
+        throw new AssertionError("no journaled insert of tenant " + tenantId);
+    }
+}
@@ -0,0 +1,83 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** The journal lists changes in the order they committed, and only one journal writes to a directory. */
+class ChangeJournalTest {
+    private static final String DB = "journal_test";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+    }
+
+    @Test
+    void replayEndsWithTheCommittedValue() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        int tenantId = repository.insert(TestData.tenant("Ana Rivera", "1A", 1000)).getId();
+        long journaled = ChangeJournal.get().getLastSeq();
+
+        int threads = 8, perThread = 50;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Callable<Void>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int writer = t;
+            writers.add(() -> {
+                start.await(10, TimeUnit.SECONDS);
+                for (int i = 0; i < perThread; i++) {
+                    repository.updateField(tenantId, "rent", 1000.0 + writer * perThread + i);
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> done : pool.invokeAll(writers)) {
+                done.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Object lastRent = null;
+        int entries = 0;
+        ChangeJournal.Cursor cursor = ChangeJournal.get().read(journaled + 1);
+        ChangeJournal.Entry entry;
+        while ((entry = cursor.next()) != null) {
+            if (entry.getTenantId() == tenantId && entry.getFields().containsKey("rent")) {
+                lastRent = entry.getFields().get("rent");
+                entries++;
+            }
+        }
+        repository.clear();
+        assertEquals(threads * perThread, entries);
+        assertEquals(repository.findById(tenantId).getRent(), (Double) lastRent, 0.0);
+    }
+
+    @Test
+    void secondJournalOnTheDirectoryIsRefused() throws Exception {
+        Path dir = ChangeJournal.get().getDirectory();
+        assertThrows(IOException.class, () -> ChangeJournal.open(dir));
+        ChangeJournal other = ChangeJournal.open(dataDir.resolve("audit"));
+        assertThrows(IOException.class, () -> ChangeJournal.open(other.getDirectory()));
+    }
+}
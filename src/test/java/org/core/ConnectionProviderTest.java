@@ -0,0 +1,75 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Buildings evicted while other threads borrow from them, in memory storage where closing a
+ * building shuts its database down: no borrower may get a closed or emptied database.
+ */
+class ConnectionProviderTest {
+    private static final int BUILDINGS = 6;
+    private static final int THREADS = 8;
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        System.setProperty("pm.storage", "memory");
+        System.setProperty("pm.pool.maxOpenBuildings", "3");
+        for (int i = 0; i < BUILDINGS; i++) {
+            TenantRepository.forBuilding(building(i)).insert(TestData.tenant("Tenant " + i, "1A", 1000));
+        }
+    }
+
+    private static String building(int i) {
+        return "pool_test_" + i;
+    }
+
+    @Test
+    void borrowersNeverSeeAnEvictedBuilding() throws Exception {
+        long until = System.nanoTime() + 2_000_000_000L;
+        List<Callable<Integer>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(() -> {
+                int queries = 0;
+                while (System.nanoTime() < until) {
+                    try (Connection conn = ConnectionProvider.getConnection(building(ThreadLocalRandom.current().nextInt(BUILDINGS)));
+                         Statement stmt = conn.createStatement();
+                         ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM tenants")) {
+                        rs.next();
+                        assertEquals(1, rs.getInt(1));
+                        queries++;
+                    }
+                }
+                return queries;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Integer> worker : pool.invokeAll(workers)) {
+                assertTrue(worker.get() > 0);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        // The registry is pinned and not counted against the cap.
+        assertTrue(ConnectionProvider.openDatabases() <= 3 + 1);
+    }
+}
@@ -0,0 +1,72 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Tenant ids in consolidated storage, which come from a per-building counter instead of an identity column. */
+class ConsolidatedStorageTest {
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        System.setProperty("pm.storage", "consolidated");
+    }
+
+    @Test
+    void idsOfDeletedTenantsAreNotReused() throws Exception {
+        BuildingRegistry.add("ids_reuse");
+        TenantRepository repository = TenantRepository.forBuilding("ids_reuse");
+        repository.insert(TestData.tenant("Ana", "1A", 1000));
+        Tenant last = repository.insert(TestData.tenant("Ben", "1B", 1000));
+        assertTrue(repository.delete(last.getId()));
+
+        Tenant next = repository.insert(TestData.tenant("Carla", "1C", 1000));
+        assertEquals(last.getId() + 1, next.getId());
+    }
+
+    @Test
+    void concurrentInsertsGetDistinctIds() throws Exception {
+        BuildingRegistry.add("ids_concurrent");
+        TenantRepository repository = TenantRepository.forBuilding("ids_concurrent");
+        int threads = 4, perThread = 25;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Callable<List<Integer>>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int writer = t;
+            writers.add(() -> {
+                start.await(10, TimeUnit.SECONDS);
+                List<Integer> ids = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(repository.insert(TestData.tenant("Tenant " + writer + "-" + i, "A" + i, 900)).getId());
+                }
+                return ids;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Set<Integer> ids = new HashSet<>();
+        try {
+            for (Future<List<Integer>> writer : pool.invokeAll(writers)) {
+                ids.addAll(writer.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(threads * perThread, ids.size());
+    }
+}
@@ -0,0 +1,72 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** Exported money reads like {@code %.2f} and exported text survives the importer, whatever it holds. */
+class CsvExporterTest {
+    private static final String SOURCE = "export_source";
+    private static final String TARGET = "export_target";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(SOURCE);
+        BuildingRegistry.add(TARGET);
+    }
+
+    @Test
+    void moneyMatchesPrintf() throws Exception {
+        for (double value : new double[]{0, -0.0, 1.005, 2.675, 0.125, -0.001, -1.005, 1234.5, 0.1 + 0.2,
+                9_999_999_999.995, 1e15 + 0.5, 1e17, -42.125, Double.NaN}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (CsvExporter.CsvChannelWriter out = new CsvExporter.CsvChannelWriter(Channels.newChannel(bytes))) {
+                out.money(value);
+            }
+            assertEquals(String.format("%.2f", value), bytes.toString(StandardCharsets.US_ASCII), "value " + value);
+        }
+    }
+
+    @Test
+    void quotedTextRoundTrips() throws Exception {
+        List<String> names = List.of("Rivera, Ana", "Ben \"Benny\" Smith", "Zoë, \"Z\"", "Two\nLines", "Plain", "O\"Brien");
+        TenantRepository source = TenantRepository.forBuilding(SOURCE);
+        List<Tenant> exported = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            exported.add(source.insert(TestData.tenant(names.get(i), "Apt " + i + ", rear", 1000.005 + i)));
+        }
+        Path file = dataDir.resolve("tenants.csv");
+        new CsvExporter().export(SOURCE, file);
+
+        CsvImporter.ImportResult imported = new CsvImporter(TARGET).logFile(dataDir.resolve("import.log")).importFile(file);
+
+        assertEquals(names.size(), imported.getRowsImported());
+        assertEquals(0, imported.getRowsRejected());
+        TenantRepository target = TenantRepository.forBuilding(TARGET);
+        for (Tenant tenant : exported) {
+            Tenant copy = target.findById(tenant.getId());
+            assertEquals(tenant.getName(), copy.getName());
+            assertEquals(tenant.getAptNumber(), copy.getAptNumber());
+            assertEquals(Math.round(tenant.getRent() * 100) / 100.0, copy.getRent(), 0.001);
+        }
+    }
+
+    @Test
+    void unquotedFieldsKeepTheirQuotes() {
+        assertEquals(List.of("1", "O\"Brien", "a,b", "say \"hi\"", ""), CsvImporter.fields("1,O\"Brien,\"a,b\",\"say \"\"hi\"\"\","));
+        assertNull(CsvImporter.fields("1,\"open"));
+    }
+}
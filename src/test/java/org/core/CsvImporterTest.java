@@ -0,0 +1,64 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** A stray quote costs a bounded number of lines, and progress ends at the file size. */
+class CsvImporterTest {
+    private static final String DB = "import_test";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+    }
+
+    @Test
+    void unclosedQuoteIsCappedAndLogged() throws Exception {
+        StringBuilder csv = new StringBuilder("ID,Name,Apt#,LeaseStart,LeaseExpired,Security,Rent,Balance\r\n");
+        csv.append(row(1, "Zoë Müller")).append("\r\n");
+        csv.append("2,\"Ana Rivera,1A,2024-01-01,2026-12-31,1000,1000,0\r\n");
+        int rows = 2 + CsvImporter.MAX_RECORD_LINES + 10;
+        for (int id = 3; id <= rows; id++) {
+            csv.append(row(id, "Tenant " + id)).append("\r\n");
+        }
+        Path file = dataDir.resolve("stray_quote.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        Path log = dataDir.resolve("stray_quote.log");
+        AtomicLong lastBytes = new AtomicLong();
+
+        CsvImporter.ImportResult result = new CsvImporter(DB).batchSize(7).logFile(log)
+                .onProgress((imported, bytesRead, totalBytes) -> lastBytes.set(bytesRead))
+                .importFile(file);
+
+        // The bad line takes the next MAX_RECORD_LINES - 1 lines with it, and no more.
+        assertEquals(CsvImporter.MAX_RECORD_LINES, result.getRowsRejected());
+        assertEquals(rows - CsvImporter.MAX_RECORD_LINES, result.getRowsImported());
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        assertEquals("Zoë Müller", repository.findById(1).getName());
+        assertNull(repository.findById(2));
+        assertNull(repository.findById(CsvImporter.MAX_RECORD_LINES + 1));
+        assertNotNull(repository.findById(CsvImporter.MAX_RECORD_LINES + 2));
+        String logged = Files.readString(log, StandardCharsets.UTF_8);
+        assertTrue(logged.contains("Rejected lines 3-" + (CsvImporter.MAX_RECORD_LINES + 2)), logged);
+        assertTrue(logged.contains("  " + row(CsvImporter.MAX_RECORD_LINES + 1, "Tenant " + (CsvImporter.MAX_RECORD_LINES + 1))), logged);
+        assertEquals(Files.size(file), lastBytes.get());
+    }
+
+    private static String row(int id, String name) {
+        return id + "," + name + ",A" + id + ",2024-01-01,2026-12-31,1000,1000,0";
+    }
+}
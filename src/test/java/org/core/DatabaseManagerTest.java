@@ -0,0 +1,59 @@
+package org.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** A building file from before the payments ledger keeps its payments and balances through the migration. */
+class DatabaseManagerTest {
+    private static final String DB = "pre_ledger";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @Test
+    void paidColumnsMoveIntoTheLedger() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:" + dataDir.path() + "/" + DB, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            // The tenants table as the first release created it.
+            StringBuilder table = new StringBuilder("CREATE TABLE tenants (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255), "
+                    + "apt_number VARCHAR(50), lease_start DATE, lease_expired DATE, security DOUBLE, rent DOUBLE, ");
+            for (String month : new String[]{"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"}) {
+                table.append(month).append("_paid DOUBLE DEFAULT 0, ");
+            }
+            stmt.execute(table.append("balance DOUBLE DEFAULT 0)").toString());
+            stmt.execute("INSERT INTO tenants (name, apt_number, rent, jan_paid, feb_paid, dec_paid, balance) "
+                    + "VALUES ('Ana Rivera', '1A', 1000, 1000, 400, 0, 600)");
+            stmt.execute("INSERT INTO tenants (name, apt_number, rent, balance) VALUES ('Ben Smith', '2B', 800, 1600)");
+            stmt.execute("INSERT INTO tenants (name, apt_number, rent, mar_paid, dec_paid, balance) "
+                    + "VALUES ('Cy Young', '3C', 500, 250.5, 500, -0.5)");
+        }
+
+        DatabaseManager.initialize(DB);
+        DatabaseManager.initialize(DB);
+
+        int year = LocalDate.now().getYear();
+        assertEquals(List.of(
+                        payment(1, year, 1, 1000), payment(1, year, 2, 400),
+                        payment(3, year, 3, 250.5), payment(3, year, 12, 500)),
+                TestData.rows(DB, "SELECT tenant_id, period, amount FROM payments ORDER BY tenant_id, period"));
+        assertEquals(600 + 1600 - 0.5, TestData.queryNumber(DB, "SELECT SUM(balance) FROM tenants"), 0.001);
+        assertEquals(0, TestData.queryNumber(DB, "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = 'TENANTS' AND COLUMN_NAME LIKE '%_PAID'"));
+        assertEquals(DatabaseManager.SCHEMA_VERSION, TestData.queryNumber(DB, "SELECT MAX(version) FROM schema_version"));
+        assertEquals(0, TestData.queryNumber(DB, "SELECT COUNT(*) FROM tenants WHERE accrued_through IS NULL OR row_version IS NULL"));
+    }
+
+    private static Map<String, Object> payment(int tenantId, int year, int month, double amount) {
+        return Map.of("TENANT_ID", tenantId, "PERIOD", Date.valueOf(LocalDate.of(year, month, 1)), "AMOUNT", amount);
+    }
+}
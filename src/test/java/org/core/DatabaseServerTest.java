@@ -0,0 +1,151 @@
+package org.core;
+
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Several clients editing the same tenants through a {@link DatabaseServer} at once: stale saves are
+ * refused with the current tenant, and retrying on the conflict loses no update.
+ */
+class DatabaseServerTest {
+    private static final String DB = "server_test";
+    /** A building file from before the server, still with the default empty password. */
+    private static final String LEGACY = "server_test_legacy";
+    private static final int CLIENTS = 4;
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+    private static Server server;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        DriverManager.getConnection("jdbc:h2:" + dataDir.path() + "/" + LEGACY, "sa", "").close();
+        System.setProperty("pm.server.password", "s3cret'pw");
+        server = DatabaseServer.start(0);
+        System.setProperty("pm.server", "localhost:" + server.getPort());
+    }
+
+    @AfterAll
+    static void stopServer() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    void refusesToStartWithoutPassword() {
+        String password = System.clearProperty("pm.server.password");
+        try {
+            assertThrows(SQLException.class, () -> DatabaseServer.start(0));
+        } finally {
+            System.setProperty("pm.server.password", password);
+        }
+    }
+
+    @Test
+    void databasesNeedThePassword() throws Exception {
+        String url = DatabaseServer.urlFor(LEGACY);
+        assertThrows(SQLException.class, () -> DriverManager.getConnection(url, "sa", "").close());
+        try (Connection conn = ConnectionProvider.getConnection(LEGACY)) {
+            assertTrue(conn.isValid(1));
+        }
+    }
+
+    @Test
+    void staleSaveIsRefusedWithTheCurrentTenant() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant tenant = repository.insert(TestData.tenant("Ana Rivera", "1A", 1000));
+        long version = repository.findById(tenant.getId()).getVersion();
+
+        CyclicBarrier start = new CyclicBarrier(2);
+        List<Callable<Object>> saves = new ArrayList<>();
+        for (double rent : new double[]{1100, 1200}) {
+            saves.add(() -> {
+                start.await(10, TimeUnit.SECONDS);
+                try {
+                    return repository.updateField(tenant.getId(), version, "rent", rent);
+                } catch (TenantConflictException e) {
+                    return e;
+                }
+            });
+        }
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        List<Object> outcomes = new ArrayList<>();
+        try {
+            for (Future<Object> outcome : clients.invokeAll(saves)) {
+                outcomes.add(outcome.get());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        Tenant saved = null;
+        TenantConflictException conflict = null;
+        for (Object outcome : outcomes) {
+            if (outcome instanceof TenantConflictException) conflict = (TenantConflictException) outcome;
+            else saved = (Tenant) outcome;
+        }
+        assertNotNull(saved, "one save must win");
+        assertNotNull(conflict, "the other save must be refused");
+        assertEquals(saved.getRent(), conflict.getCurrent().getRent());
+        assertEquals(saved.getVersion(), conflict.getCurrent().getVersion());
+        repository.clear();
+        assertEquals(saved.getRent(), repository.findById(tenant.getId()).getRent());
+    }
+
+    @Test
+    void retryingOnConflictsLosesNoUpdate() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant tenant = repository.insert(TestData.tenant("Ben Smith", "2B", 1000));
+        int increments = 25;
+
+        CyclicBarrier start = new CyclicBarrier(CLIENTS);
+        List<Callable<Void>> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.add(() -> {
+                start.await(10, TimeUnit.SECONDS);
+                for (int n = 0; n < increments; n++) {
+                    Tenant current = repository.findById(tenant.getId());
+                    while (true) {
+                        try {
+                            repository.updateField(tenant.getId(), current.getVersion(), "rent", current.getRent() + 1);
+                            break;
+                        } catch (TenantConflictException e) {
+                            current = e.getCurrent();
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            for (Future<Void> client : pool.invokeAll(clients)) {
+                client.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        repository.clear();
+        assertEquals(1000 + CLIENTS * increments, repository.findById(tenant.getId()).getRent(), 0.0);
+    }
+}
@@ -0,0 +1,88 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The expiry index follows edits and deletes of loaded buildings, and each lease is announced once per expiry date. */
+class LeaseExpirationsTest {
+    private static final String DB = "expirations_test";
+    private static final LocalDate TODAY = LocalDate.of(2030, 6, 1);
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+    }
+
+    @Test
+    void indexFollowsEditsAndDeletes() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant ana = repository.insert(leasedUntil("Ana Rivera", "1A", TODAY.plusDays(10)));
+        Tenant ben = repository.insert(leasedUntil("Ben Smith", "2B", TODAY.plusDays(20)));
+        Tenant cy = repository.insert(leasedUntil("Cy Young", "3C", TODAY.plusDays(40)));
+        LeaseExpirations.load(List.of(DB)).join();
+        assertEquals(List.of(ana.getId(), ben.getId()), ids(TODAY, TODAY.plusDays(30)));
+
+        // Renewed past the window, and another tenant moved into it.
+        ana.setLeaseExpired(TODAY.plusYears(1));
+        repository.update(ana);
+        cy.setLeaseExpired(TODAY.plusDays(5));
+        repository.update(cy);
+        assertEquals(List.of(cy.getId(), ben.getId()), ids(TODAY, TODAY.plusDays(30)));
+        assertEquals(List.of(ana.getId()), ids(TODAY.plusYears(1), TODAY.plusYears(1)));
+
+        // An open-ended lease leaves the index; a deleted tenant too.
+        ben.setLeaseExpired(null);
+        repository.update(ben);
+        assertTrue(repository.delete(cy.getId()));
+        assertEquals(List.of(), ids(TODAY, TODAY.plusDays(30)));
+        assertEquals(List.of(ana.getId()), ids(TODAY, TODAY.plusYears(2)));
+
+        // Added after the load: indexed from its event alone.
+        Tenant dana = repository.insert(leasedUntil("Dana Brown", "4D", TODAY.plusDays(3)));
+        assertEquals(List.of(dana.getId()), ids(TODAY, TODAY.plusDays(30)));
+    }
+
+    @Test
+    void eachExpiryIsAnnouncedOnce() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        LocalDate today = TODAY.plusYears(5);
+        Tenant eve = repository.insert(leasedUntil("Eve Adams", "5E", today.plusDays(LeaseExpirations.NOTICE_DAYS)));
+        LeaseExpirations.load(List.of(DB)).join();
+
+        assertEquals(List.of(eve.getId()), ids(LeaseExpirations.check(today)));
+        assertEquals(List.of(), ids(LeaseExpirations.check(today.plusDays(1))));
+
+        // A renewal is a new expiry and is announced again when it comes near.
+        eve.setLeaseExpired(today.plusDays(60));
+        repository.update(eve);
+        assertEquals(List.of(), ids(LeaseExpirations.check(today.plusDays(1))));
+        assertEquals(List.of(eve.getId()), ids(LeaseExpirations.check(today.plusDays(30))));
+    }
+
+    private static Tenant leasedUntil(String name, String apt, LocalDate leaseExpired) {
+        Tenant tenant = TestData.tenant(name, apt, 1000);
+        tenant.setLeaseExpired(leaseExpired);
+        return tenant;
+    }
+
+    private static List<Integer> ids(LocalDate from, LocalDate to) {
+        return ids(LeaseExpirations.expiringBetween(from, to));
+    }
+
+    private static List<Integer> ids(List<LeaseExpirations.Expiration> expirations) {
+        List<Integer> ids = new ArrayList<>();
+        for (LeaseExpirations.Expiration expiration : expirations) ids.add(expiration.getTenantId());
+        return ids;
+    }
+}
@@ -0,0 +1,44 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Memory storage writes every table of the building schema back to the file, not just tenants and payments. */
+class MemoryStorageTest {
+    private static final String DB = "memory_test";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        System.setProperty("pm.storage", "memory");
+        BuildingRegistry.add(DB);
+    }
+
+    @Test
+    void accrualsAndTombstonesSurviveRestart() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant kept = repository.insert(TestData.tenant("Ana Rivera", "1A", 1000));
+        Tenant deleted = repository.insert(TestData.tenant("Ben Smith", "2B", 1000));
+        long watermark = TenantDelta.currentWatermark(DB);
+        assertTrue(repository.delete(deleted.getId()));
+        YearMonth through = YearMonth.now().minusMonths(1);
+        TestData.execute(DB, "UPDATE tenants SET accrued_through = DATEADD(MONTH, -1, accrued_through)");
+        assertEquals(1, new RentAccrual(through).runBuilding(DB).getTenantsCharged());
+
+        // Closing flushes the memory copy to the file; the next connection loads the building again.
+        ConnectionProvider.closeAll();
+
+        assertEquals(1, (int) TestData.queryNumber(DB, "SELECT COUNT(*) FROM rent_accruals"));
+        assertTrue(TenantDelta.since(DB, watermark).getDeleted().contains(deleted.getId()));
+        assertEquals(0, new RentAccrual(through).runBuilding(DB).getTenantsCharged());
+        assertEquals(1000, TenantRepository.forBuilding(DB).findById(kept.getId()).getBalance(), 0.001);
+    }
+}
@@ -0,0 +1,27 @@
+package org.core;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Every building gets its MBean, whatever characters its name holds. */
+class MetricsTest {
+    @Test
+    void awkwardBuildingNamesAreRegistered() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (String dbName : new String[]{"property_1", "Main St, #2", "a=b", "c:d", "\"quoted\"", "what?*"}) {
+            try (Metrics.Sample sample = Metrics.start(dbName, Metrics.Operation.REFRESH)) {
+                sample.done();
+            }
+            ObjectName name = new ObjectName("org.core:type=Metrics,building=" + Metrics.propertyValue(dbName) + ",operation=refresh");
+            assertTrue(server.isRegistered(name), dbName);
+            assertEquals(dbName, server.getAttribute(name, "Building"));
+        }
+        assertEquals("property_1", Metrics.propertyValue("property_1"));
+    }
+}
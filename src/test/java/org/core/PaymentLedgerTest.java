@@ -0,0 +1,69 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** A payment is a ledger row and a lower balance together, or neither. */
+class PaymentLedgerTest {
+    private static final String DB = "ledger_test";
+    private static final YearMonth MARCH = YearMonth.of(2025, 3);
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+    }
+
+    @Test
+    void postWritesTheLedgerAndTheBalance() throws Exception {
+        int id = TenantRepository.forBuilding(DB).insert(TestData.tenant("Ana Rivera", "1A", 1000)).getId();
+        try (Connection conn = ConnectionProvider.getConnection(DB)) {
+            assertEquals(-400, PaymentLedger.post(conn, id, MARCH, 400), 0.001);
+            assertEquals(-650.5, PaymentLedger.post(conn, id, MARCH, 250.5, "ref-1"), 0.001);
+            assertEquals(650.5, PaymentLedger.totalForPeriod(conn, id, MARCH), 0.001);
+            assertEquals(2, PaymentLedger.history(conn, id).size());
+        }
+    }
+
+    @Test
+    void failedInsertRollsTheDebitBack() throws Exception {
+        int id = TenantRepository.forBuilding(DB).insert(TestData.tenant("Ben Smith", "2B", 1000)).getId();
+        try (Connection conn = ConnectionProvider.getConnection(DB)) {
+            PaymentLedger.post(conn, id, MARCH, 100, "ref-dup");
+
+            // The debit runs first; the duplicate bank reference only fails the INSERT after it.
+            assertThrows(SQLException.class, () -> PaymentLedger.post(conn, id, MARCH, 300, "ref-dup"));
+
+            assertEquals(-100, balance(id), 0.001);
+            assertEquals(1, TestData.queryNumber(DB, "SELECT COUNT(*) FROM payments WHERE tenant_id = " + id));
+            assertThrows(SQLException.class, () -> PaymentLedger.post(conn, -1, MARCH, 300));
+        }
+    }
+
+    @Test
+    void postJoinsTheCallersTransaction() throws Exception {
+        int id = TenantRepository.forBuilding(DB).insert(TestData.tenant("Cy Young", "3C", 1000)).getId();
+        try (Connection conn = ConnectionProvider.getConnection(DB)) {
+            conn.setAutoCommit(false);
+            assertEquals(-300, PaymentLedger.post(conn, id, MARCH, 300), 0.001);
+            conn.rollback();
+            conn.setAutoCommit(true);
+        }
+        assertEquals(0, balance(id), 0.001);
+        assertEquals(0, TestData.queryNumber(DB, "SELECT COUNT(*) FROM payments WHERE tenant_id = " + id));
+    }
+
+    private static double balance(int tenantId) throws Exception {
+        return TestData.queryNumber(DB, "SELECT balance FROM tenants WHERE id = " + tenantId);
+    }
+}
@@ -0,0 +1,97 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/** Reconciling a statement more than once, across restarts: nothing is posted or queued twice. */
+class PaymentReconcilerTest {
+    private static final String DB = "reconcile_test";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+    }
+
+    @Test
+    void statementIsOnlyReconciledOnce() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant ana = repository.insert(TestData.tenant("Ana Rivera", "1A", 1000));
+        Tenant ben = repository.insert(TestData.tenant("Ben Smith", "2B", 1000));
+        Path statement = dataDir.resolve("statement.csv");
+        Files.write(statement, List.of(
+                "date,amount,payer,memo",
+                "2025-03-01,500.00,Ana Rivera,Apt 1A",
+                "2025-03-01,300.00,Ben Smith,",
+                "2025-03-01,500.00,Ana Rivera,Apt 1A",
+                "2025-03-02,250.00,Zed Unknown,"), StandardCharsets.UTF_8);
+
+        PaymentReconciler.Result first = reconcile(statement);
+        assertEquals(3, first.getPosted(), "equal lines are separate payments");
+        assertEquals(1, first.getReview().size());
+        assertEquals(-1000, balance(ana), 0.001);
+        assertEquals(-300, balance(ben), 0.001);
+
+        // Everything the queue and the ledger know lives in the databases, not in this process.
+        ConnectionProvider.closeAll();
+        PaymentReconciler.Result again = reconcile(statement);
+        assertEquals(0, again.getPosted());
+        assertEquals(0, again.getReview().size());
+        assertEquals(4, again.getSkipped());
+        assertEquals(-300, balance(ben), 0.001);
+
+        List<PaymentReconciler.ReviewItem> queue = PaymentReviewQueue.items();
+        assertEquals(1, queue.size());
+        PaymentReconciler.ReviewItem item = queue.get(0);
+        assertEquals("Zed Unknown", item.getPayment().getPayer());
+        PaymentReconciler.Candidate toBen = new PaymentReconciler.Candidate(DB, ben);
+        assertNotNull(PaymentReviewQueue.post(item, toBen));
+        assertEquals(-550, balance(ben), 0.001);
+        assertEquals(0, PaymentReviewQueue.size());
+
+        PaymentReconciler.Result third = reconcile(statement);
+        assertEquals(0, third.getPosted());
+        assertEquals(4, third.getSkipped());
+        assertEquals(-550, balance(ben), 0.001);
+    }
+
+    @Test
+    void onlyAHeaderMayBeSkipped() throws Exception {
+        Path headerless = dataDir.resolve("headerless.csv");
+        Files.write(headerless, List.of(
+                "2025-04-01,five hundred,Ana Rivera,Apt 1A",
+                "2025-04-01,300.00,Nobody Known,"), StandardCharsets.UTF_8);
+        PaymentReconciler.Result result = new PaymentReconciler(List.of(DB), true).reconcile(headerless).join();
+        assertEquals(List.of("line 1: 2025-04-01,five hundred,Ana Rivera,Apt 1A"), result.getUnreadable());
+        assertEquals(1, result.getReview().size());
+
+        Path withHeader = dataDir.resolve("with_header.csv");
+        Files.write(withHeader, List.of(
+                "Date,Amount,Payer,Memo",
+                "2025-04-02,300.00,Nobody Known,"), StandardCharsets.UTF_8);
+        result = new PaymentReconciler(List.of(DB), true).reconcile(withHeader).join();
+        assertEquals(List.of(), result.getUnreadable());
+        assertEquals(1, result.getReview().size());
+    }
+
+    private static PaymentReconciler.Result reconcile(Path statement) {
+        return new PaymentReconciler(List.of(DB), false).reconcile(statement).join();
+    }
+
+    private static double balance(Tenant tenant) throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        repository.clear();
+        return repository.findById(tenant.getId()).getBalance();
+    }
+}
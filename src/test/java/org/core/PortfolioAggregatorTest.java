@@ -0,0 +1,44 @@
+package org.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** The summary queries every building at once, not a few at a time. */
+class PortfolioAggregatorTest {
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @Test
+    void buildingsAreQueriedConcurrently() throws Exception {
+        // Each task waits for all the others, so this only finishes if they all run at the same time.
+        int buildings = 40;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < buildings; i++) names.add("building_" + i);
+        CyclicBarrier together = new CyclicBarrier(buildings);
+        Map<String, Integer> waited = BackgroundExecutor.forEachBuilding(names,
+                dbName -> together.await(10, TimeUnit.SECONDS), PortfolioAggregator.executor()).get(30, TimeUnit.SECONDS);
+        assertEquals(buildings, waited.size());
+    }
+
+    @Test
+    void summaryAddsUpTheBuildings() throws Exception {
+        List<String> names = List.of("summary_a", "summary_b", "summary_c");
+        for (int i = 0; i < names.size(); i++) {
+            BuildingRegistry.add(names.get(i));
+            for (int t = 0; t <= i; t++) {
+                TenantRepository.forBuilding(names.get(i)).insert(TestData.tenant("Tenant " + t, "A" + t, 1000));
+            }
+        }
+        PortfolioAggregator.PortfolioSummary summary = PortfolioAggregator.summarize(names).get(30, TimeUnit.SECONDS);
+        assertEquals(6, summary.getTotal().getTenantCount());
+        assertEquals(6000, summary.getTotal().getRentRoll(), 0.001);
+    }
+}
@@ -0,0 +1,52 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** What an accrual journals and reports is what it wrote to the tenants. */
+class RentAccrualTest {
+    private static final String DB = "accrual_test";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+    }
+
+    @Test
+    void journalAndReportMatchTheCharges() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant ana = repository.insert(TestData.tenant("Ana Rivera", "1A", 1000));
+        Tenant ben = repository.insert(TestData.tenant("Ben Smith", "2B", 812.5));
+        Tenant cy = repository.insert(TestData.tenant("Cy Young", "3C", 0));
+        TestData.execute(DB, "UPDATE tenants SET rent = NULL, balance = NULL WHERE id = " + cy.getId());
+        TestData.execute(DB, "UPDATE tenants SET accrued_through = DATEADD(MONTH, -2, accrued_through)");
+        long journaled = ChangeJournal.get().getLastSeq();
+
+        RentAccrual.BuildingResult result = new RentAccrual(YearMonth.now().minusMonths(1)).runBuilding(DB);
+
+        assertEquals(2, result.getMonths());
+        assertEquals(6, result.getTenantsCharged());
+        assertEquals(2 * (1000 + 812.5), result.getAmount(), 0.001);
+        Map<Integer, Object> lastBalance = new HashMap<>();
+        ChangeJournal.Cursor cursor = ChangeJournal.get().read(journaled + 1);
+        ChangeJournal.Entry entry;
+        while ((entry = cursor.next()) != null) {
+            if (entry.getDbName().equals(DB)) lastBalance.put(entry.getTenantId(), entry.getFields().get("balance"));
+        }
+        repository.clear();
+        for (Tenant tenant : new Tenant[]{ana, ben, cy}) {
+            assertEquals(repository.findById(tenant.getId()).getBalance(), (Double) lastBalance.get(tenant.getId()), 0.001);
+        }
+        assertEquals(2000, (Double) lastBalance.get(ana.getId()), 0.001);
+    }
+}
@@ -0,0 +1,68 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** A dry run reports exactly what applying the same rules does, and writes nothing. */
+class RentAdjustmentTest {
+    private static final String DB = "adjustment_test";
+    private static final String OTHER = "adjustment_other";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+        BuildingRegistry.add(OTHER);
+    }
+
+    @Test
+    void dryRunMatchesApply() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant ana = repository.insert(TestData.tenant("Ana Rivera", "1A", 1000));
+        Tenant ben = repository.insert(TestData.tenant("Ben Smith", "2B", 2000));
+        TenantRepository.forBuilding(OTHER).insert(TestData.tenant("Cy Young", "1A", 500));
+        // The percentage applies on top of the flat raise before it, so Ana goes 1000 -> 1100 -> 1210.
+        List<RentAdjustment.Rule> rules = List.of(
+                RentAdjustment.Rule.flat(100).aptMatching("1*").inBuildings(DB),
+                RentAdjustment.Rule.percent(10).inBuildings(DB));
+        long journaled = ChangeJournal.get().getLastSeq();
+
+        RentAdjustment.Report dryRun = new RentAdjustment(rules, true).run(List.of(DB, OTHER)).join();
+
+        assertTrue(dryRun.isDryRun());
+        assertEquals(3, dryRun.getRowsAffected());
+        assertEquals(410, dryRun.getMonthlyRevenueDelta(), 0.001);
+        assertEquals(3500, TestData.queryNumber(DB, "SELECT SUM(rent) FROM tenants") + TestData.queryNumber(OTHER, "SELECT SUM(rent) FROM tenants"), 0.001);
+        assertEquals(journaled, ChangeJournal.get().getLastSeq());
+        assertEquals(1000, repository.findById(ana.getId()).getRent(), 0.001);
+
+        RentAdjustment.Report applied = new RentAdjustment(rules, false).run(List.of(DB, OTHER)).join();
+
+        assertFalse(applied.isDryRun());
+        assertEquals(dryRun.getRowsAffected(), applied.getRowsAffected());
+        assertEquals(dryRun.getMonthlyRevenueDelta(), applied.getMonthlyRevenueDelta(), 0.001);
+        for (RentAdjustment.BuildingResult result : applied.getBuildings()) {
+            assertEquals(result.getDbName().equals(DB) ? List.of(1, 2) : List.of(0, 0), result.getRowsPerRule());
+        }
+        // The cached tenants are invalidated, so the repository sees the new rents without a clear().
+        assertEquals(1210, repository.findById(ana.getId()).getRent(), 0.001);
+        assertEquals(2200, repository.findById(ben.getId()).getRent(), 0.001);
+        assertEquals(500, TestData.queryNumber(OTHER, "SELECT SUM(rent) FROM tenants"), 0.001);
+        assertEquals(journaled + 2, ChangeJournal.get().getLastSeq());
+    }
+
+    @Test
+    void globTurnsIntoAnEscapedLikePattern() {
+        assertEquals("1%", RentAdjustment.toLikePattern("1*"));
+        assertEquals("A_\\%\\_\\\\", RentAdjustment.toLikePattern("A?%_\\"));
+    }
+}
@@ -0,0 +1,92 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Every aggregate over the column arrays agrees with the same question asked in SQL. */
+class TenantColumnsTest {
+    private static final String DB = "columns_test";
+    /** More than the initial capacity of the arrays, so loading has to grow them. */
+    private static final int TENANTS = 1500;
+    private static final YearMonth FROM = YearMonth.of(2024, 9);
+    private static final int MONTHS = 24;
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    private static TenantColumns columns;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+        // Every tenth lease has no end date; expiries run from 2024 well past the histogram window.
+        TestData.execute(DB, "INSERT INTO tenants (name, apt_number, lease_start, lease_expired, security, rent, balance) "
+                + "SELECT 'Tenant ' || X, 'A' || MOD(X, 37), DATE '2020-01-01', "
+                + "CASE WHEN MOD(X, 10) = 0 THEN NULL ELSE DATEADD(DAY, X * 3, DATE '2024-06-15') END, "
+                + "X * 1.5, 500 + MOD(X * 7, 300), MOD(X * 37, 1000) - 400 + X / 10000.0 FROM SYSTEM_RANGE(1, " + TENANTS + ")");
+        columns = TenantColumns.load(DB);
+    }
+
+    @Test
+    void sumsAndCountsMatchSql() throws Exception {
+        assertEquals(TENANTS, columns.size());
+        assertEquals(37, columns.distinctApartments());
+        assertEquals(sql("SELECT SUM(rent) FROM tenants"), columns.sum(TenantColumns.Column.RENT), 0.001);
+        assertEquals(sql("SELECT SUM(security) FROM tenants"), columns.sum(TenantColumns.Column.SECURITY), 0.001);
+        assertEquals(sql("SELECT COUNT(*) FROM tenants WHERE balance > 0"), columns.count(TenantColumns.balanceAbove(0)));
+        assertEquals(sql("SELECT SUM(GREATEST(balance, 0)) FROM tenants"), columns.arrears(), 0.001);
+        assertEquals(sql("SELECT SUM(rent) FROM tenants WHERE apt_number = 'A5'"),
+                columns.sum(TenantColumns.Column.RENT, columns.apartment("A5")), 0.001);
+        assertEquals(0, columns.count(columns.apartment("no such apartment")));
+        assertEquals(sql("SELECT COUNT(*) FROM tenants WHERE lease_expired < DATE '2025-01-01'"),
+                columns.count(TenantColumns.leaseExpiresBefore(LocalDate.of(2025, 1, 1))));
+        for (int row : columns.filter(columns.apartment("A5"))) {
+            assertEquals("A5", columns.aptNumber(row));
+        }
+    }
+
+    @Test
+    void expiryHistogramsMatchSql() throws Exception {
+        int[] counts = columns.countByLeaseExpiryMonth(FROM, MONTHS);
+        double[] rents = columns.sumByLeaseExpiryMonth(TenantColumns.Column.RENT, FROM, MONTHS);
+        for (int i = 0; i < MONTHS; i++) {
+            String month = "lease_expired >= DATE '" + FROM.plusMonths(i).atDay(1)
+                    + "' AND lease_expired < DATE '" + FROM.plusMonths(i + 1).atDay(1) + "'";
+            assertEquals(sql("SELECT COUNT(*) FROM tenants WHERE " + month), counts[i], FROM.plusMonths(i).toString());
+            assertEquals(sql("SELECT COALESCE(SUM(rent), 0) FROM tenants WHERE " + month), rents[i], 0.001);
+        }
+    }
+
+    @Test
+    void topBalancesComeLargestFirst() throws Exception {
+        List<Map<String, Object>> top = TestData.rows(DB, "SELECT id FROM tenants ORDER BY balance DESC LIMIT 25");
+        int[] rows = columns.topByBalance(25);
+        assertEquals(top.size(), rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(top.get(i).get("ID"), columns.id(rows[i]));
+        }
+        assertEquals(TENANTS, columns.topByBalance(TENANTS + 10).length);
+        assertArrayEquals(new int[0], columns.topByBalance(0));
+    }
+
+    @Test
+    void monthNumberMatchesJavaTime() {
+        for (long day = LocalDate.of(1600, 1, 1).toEpochDay(); day <= LocalDate.of(2400, 12, 31).toEpochDay(); day += 13) {
+            YearMonth month = YearMonth.from(LocalDate.ofEpochDay(day));
+            assertEquals(month.getYear() * 12 + month.getMonthValue() - 1, TenantColumns.monthNumber((int) day), "day " + day);
+        }
+    }
+
+    private static double sql(String query) throws Exception {
+        return TestData.queryNumber(DB, query);
+    }
+}
@@ -0,0 +1,108 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Deltas report deletes through the tombstones, re-added ids as changed, and never skip an uncommitted write. */
+class TenantDeltaTest {
+    private static final String DB = "delta_test";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+    }
+
+    @Test
+    void deletesAndReAddsAcrossWatermarks() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant ana = repository.insert(TestData.tenant("Ana Rivera", "1A", 1000));
+        Tenant ben = repository.insert(TestData.tenant("Ben Smith", "2B", 1000));
+        Tenant cy = repository.insert(TestData.tenant("Cy Young", "3C", 1000));
+        Map<Integer, Tenant> mirror = new HashMap<>();
+        TenantDelta all = TenantDelta.since(DB, TenantDelta.ALL);
+        all.applyTo(mirror);
+        long start = all.getWatermark();
+
+        repository.updateField(ana.getId(), "rent", 1100.0);
+        assertTrue(repository.delete(ben.getId()));
+        TenantDelta first = TenantDelta.since(DB, start);
+        assertEquals(List.of(ana.getId()), ids(first.getChanged()));
+        assertEquals(Set.of(ben.getId()), first.getDeleted());
+        assertTrue(TenantDelta.since(DB, first.getWatermark()).isEmpty());
+
+        // Ben comes back under the same id, and Cy goes; the older tombstone must not hide Ben.
+        TestData.execute(DB, "INSERT INTO tenants (id, name, apt_number, rent) VALUES (" + ben.getId() + ", 'Ben Smith', '2B', 900)");
+        assertTrue(repository.delete(cy.getId()));
+        TenantDelta second = TenantDelta.since(DB, first.getWatermark());
+        assertEquals(List.of(ben.getId()), ids(second.getChanged()));
+        assertEquals(Set.of(cy.getId()), second.getDeleted());
+
+        // Seen from the start, Ben was changed rather than deleted; the delta keeps the latest of each id.
+        TenantDelta overall = TenantDelta.since(DB, start);
+        assertEquals(List.of(ana.getId(), ben.getId()), ids(overall.getChanged()));
+        assertEquals(Set.of(cy.getId()), overall.getDeleted());
+
+        overall.applyTo(mirror);
+        Map<Integer, Tenant> fresh = new HashMap<>();
+        TenantDelta.since(DB, TenantDelta.ALL).applyTo(fresh);
+        assertEquals(fresh.keySet(), mirror.keySet());
+        assertEquals(900, mirror.get(ben.getId()).getRent(), 0.001);
+        assertEquals(1100, mirror.get(ana.getId()).getRent(), 0.001);
+    }
+
+    @Test
+    void rolledBackDeleteLeavesNoTombstone() throws Exception {
+        Tenant dana = TenantRepository.forBuilding(DB).insert(TestData.tenant("Dana Brown", "4D", 1000));
+        long watermark = TenantDelta.currentWatermark(DB);
+        double tombstones = TestData.queryNumber(DB, "SELECT COUNT(*) FROM tenant_tombstones");
+        try (Connection conn = ConnectionProvider.getConnection(DB);
+             Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            assertEquals(1, stmt.executeUpdate("DELETE FROM tenants WHERE id = " + dana.getId()));
+            conn.rollback();
+            conn.setAutoCommit(true);
+        }
+        assertEquals(tombstones, TestData.queryNumber(DB, "SELECT COUNT(*) FROM tenant_tombstones"));
+        assertTrue(TenantDelta.since(DB, watermark).getDeleted().isEmpty());
+    }
+
+    @Test
+    void uncommittedWritesHoldTheWatermark() throws Exception {
+        Tenant eve = TenantRepository.forBuilding(DB).insert(TestData.tenant("Eve Adams", "5E", 1000));
+        long watermark = TenantDelta.currentWatermark(DB);
+        TenantDelta during;
+        try (Connection writer = ConnectionProvider.getConnection(DB);
+             Statement stmt = writer.createStatement()) {
+            writer.setAutoCommit(false);
+            stmt.executeUpdate("DELETE FROM tenants WHERE id = " + eve.getId());
+            during = TenantDelta.since(DB, watermark);
+            writer.commit();
+            writer.setAutoCommit(true);
+        }
+        // The delete's tombstone version was taken but not visible, so the watermark must not pass it.
+        assertTrue(during.isEmpty());
+        assertEquals(watermark, during.getWatermark());
+        assertEquals(Set.of(eve.getId()), TenantDelta.since(DB, during.getWatermark()).getDeleted());
+    }
+
+    private static List<Integer> ids(List<Tenant> tenants) {
+        List<Integer> ids = new ArrayList<>();
+        for (Tenant tenant : tenants) ids.add(tenant.getId());
+        return ids;
+    }
+}
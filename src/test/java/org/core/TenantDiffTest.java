@@ -0,0 +1,64 @@
+package org.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/** Rows replaced in place when nothing moves, one bulk replacement when something does. */
+class TenantDiffTest {
+    @Test
+    void updatesInPlaceWhenTheOrderStays() {
+        List<Tenant> shown = new ArrayList<>(List.of(tenant(1, "Ana", 1000), tenant(2, "Ben", 1000), tenant(3, "Cy", 1000)));
+        Tenant kept = shown.get(0);
+        List<Tenant> fresh = List.of(tenant(1, "Ana", 1000), tenant(3, "Cy", 1200));
+
+        AtomicInteger bulk = new AtomicInteger();
+        TenantDiff.between(shown, fresh).applyTo(shown, rows -> bulk.incrementAndGet());
+
+        assertEquals(0, bulk.get());
+        assertEquals(List.of(1, 3), ids(shown));
+        assertSame(kept, shown.get(0));
+        assertEquals(1200, shown.get(1).getRent(), 0.0);
+    }
+
+    @Test
+    void replacesTheListOnceWhenRowsMove() {
+        List<Tenant> shown = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            shown.add(tenant(id, "Tenant " + id, 1000));
+        }
+        Tenant kept = shown.get(500);
+        List<Tenant> fresh = new ArrayList<>();
+        for (int id = 1000; id >= 1; id--) {
+            fresh.add(id == 7 ? tenant(7, "Renamed", 1000) : tenant(id, "Tenant " + id, 1000));
+        }
+        fresh.add(tenant(1001, "New", 1000));
+
+        AtomicInteger bulk = new AtomicInteger();
+        TenantDiff.between(shown, fresh).applyTo(shown, rows -> {
+            bulk.incrementAndGet();
+            shown.clear();
+            shown.addAll(rows);
+        });
+
+        assertEquals(1, bulk.get());
+        assertEquals(ids(fresh), ids(shown));
+        assertSame(kept, shown.get(fresh.size() - 1 - 1 - 500));
+        assertEquals("Renamed", shown.get(fresh.size() - 1 - 7).getName());
+    }
+
+    private static Tenant tenant(int id, String name, double rent) {
+        return new Tenant(id, name, "1A", null, null, rent, rent, 0);
+    }
+
+    private static List<Integer> ids(List<Tenant> tenants) {
+        List<Integer> ids = new ArrayList<>();
+        for (Tenant tenant : tenants) ids.add(tenant.getId());
+        return ids;
+    }
+}
@@ -0,0 +1,46 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** The SQL filter a pager falls back to finds the same tenants as the search index. */
+class TenantPagerTest {
+    private static final String DB = "pager_test";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        repository.insert(TestData.tenant("Anna Lee", "1A", 1000));
+        repository.insert(TestData.tenant("Joanna Smith", "2B", 1000));
+        repository.insert(TestData.tenant("Bob O'Annex", "3C", 1000));
+        repository.insert(TestData.tenant("Carl Dean", "AN-4", 1000));
+        repository.insert(TestData.tenant("Dana Brown", "5D", 1000));
+    }
+
+    @Test
+    void sqlFilterMatchesTheIndex() throws Exception {
+        TenantSearchIndex index = TenantSearchIndex.forBuilding(DB).ready().join();
+        for (String query : new String[]{"a", "an", "AN", "ann", "nna", "b", "o'", "4"}) {
+            assertEquals(new TreeSet<>(index.search(query)), pagedIds(query), "query '" + query + "'");
+        }
+    }
+
+    private static Set<Integer> pagedIds(String query) throws Exception {
+        TenantPager pager = new TenantPager(DB, TenantPager.SortKey.ID, true, query);
+        Set<Integer> ids = new TreeSet<>();
+        for (Tenant tenant : pager.first(100).getTenants()) {
+            ids.add(tenant.getId());
+        }
+        return ids;
+    }
+}
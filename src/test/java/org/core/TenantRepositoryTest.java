@@ -0,0 +1,83 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** The cache follows writes made outside the repository, whether they are published row by row or in bulk. */
+class TenantRepositoryTest {
+    private static final String BULK = "repository_bulk";
+    private static final String EVENTS = "repository_events";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(BULK);
+        BuildingRegistry.add(EVENTS);
+    }
+
+    @Test
+    void bulkWritesAreCaughtUpWithADelta() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(BULK);
+        Tenant ana = repository.insert(TestData.tenant("Ana Rivera", "B1", 1000));
+        Tenant ben = repository.insert(TestData.tenant("Ben Smith", "B2", 1000));
+        repository.listAll();
+        assertTrue(repository.getStats().isComplete());
+        assertEquals(1000, repository.findById(ana.getId()).getRent(), 0.001);
+
+        // Untracked changes straight in the database, announced only as a whole-building change.
+        TestData.execute(BULK, "UPDATE tenants SET rent = 1500 WHERE id = " + ana.getId());
+        TestData.execute(BULK, "DELETE FROM tenants WHERE id = " + ben.getId());
+        TestData.execute(BULK, "INSERT INTO tenants (name, apt_number, rent) VALUES ('Cy Young', 'B3', 700)");
+        TenantEvents.invalidated(BULK);
+
+        assertEquals(1500, repository.findById(ana.getId()).getRent(), 0.001);
+        List<String> names = new ArrayList<>();
+        for (Tenant tenant : repository.listAll()) names.add(tenant.getName());
+        assertEquals(List.of("Ana Rivera", "Cy Young"), names);
+        assertNull(repository.findById(ben.getId()));
+        assertTrue(repository.getStats().isComplete());
+
+        long misses = repository.getStats().getMisses();
+        assertEquals(2, repository.listAll().size());
+        assertEquals(misses, repository.getStats().getMisses(), "caught up, so served from memory again");
+    }
+
+    @Test
+    void publishedWritesUpdateLookupsByApartment() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(EVENTS);
+        Tenant dana = repository.insert(TestData.tenant("Dana Brown", "P1", 1000));
+        assertEquals(1, repository.findByApartment("P1").size());
+
+        // Another writer's change, published like RentAccrual, BatchJob and the importer publish theirs.
+        TestData.execute(EVENTS, "UPDATE tenants SET apt_number = 'P2' WHERE id = " + dana.getId());
+        try (Connection conn = ConnectionProvider.getConnection(EVENTS)) {
+            TenantEvents.upserted(EVENTS, TenantLoader.findById(conn, dana.getId()));
+        }
+
+        assertEquals(0, repository.findByApartment("P1").size());
+        assertEquals(List.of(dana.getId()), ids(repository.findByApartment("P2")));
+        assertEquals("P2", repository.findById(dana.getId()).getAptNumber());
+
+        TestData.execute(EVENTS, "DELETE FROM tenants WHERE id = " + dana.getId());
+        TenantEvents.deleted(EVENTS, dana.getId());
+        assertNull(repository.findById(dana.getId()));
+        assertEquals(0, repository.findByApartment("P2").size());
+    }
+
+    private static List<Integer> ids(List<Tenant> tenants) {
+        List<Integer> ids = new ArrayList<>();
+        for (Tenant tenant : tenants) ids.add(tenant.getId());
+        return ids;
+    }
+}
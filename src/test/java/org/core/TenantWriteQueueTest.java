@@ -0,0 +1,107 @@
+package org.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Queued edits of one tenant merge into one write, our own earlier saves never count as conflicts,
+ * and someone else's change does reach the caller.
+ * <p>
+ * The drain takes the queue's monitor before it picks the next command, so holding that monitor
+ * while submitting keeps every command waiting and lets the merges happen deterministically.
+ */
+class TenantWriteQueueTest {
+    private static final String DB = "write_queue_test";
+
+    @RegisterExtension
+    static final TestData.DataDir dataDir = new TestData.DataDir();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        BuildingRegistry.add(DB);
+    }
+
+    @Test
+    void consecutiveUpdatesMergeIntoOneWrite() throws Exception {
+        Tenant ana = TenantRepository.forBuilding(DB).insert(TestData.tenant("Ana Rivera", "1A", 1000));
+        TenantWriteQueue queue = TenantWriteQueue.forBuilding(DB);
+        long journaled = ChangeJournal.get().getLastSeq();
+        long merged = queue.getMerged();
+        CompletableFuture<Tenant> first, second;
+        synchronized (queue) {
+            first = queue.update(edited(ana, 1100));
+            second = queue.update(edited(ana, 1200));
+            assertEquals(1, queue.pending());
+        }
+
+        Tenant saved = second.get(10, TimeUnit.SECONDS);
+        assertSame(saved, first.get(10, TimeUnit.SECONDS));
+        assertEquals(1200, saved.getRent(), 0.001);
+        assertEquals(merged + 1, queue.getMerged());
+        assertEquals(journaled + 1, ChangeJournal.get().getLastSeq());
+        assertEquals(1200, TestData.queryNumber(DB, "SELECT rent FROM tenants WHERE id = " + ana.getId()), 0.001);
+    }
+
+    @Test
+    void deleteReplacesAWaitingUpdate() throws Exception {
+        Tenant ben = TenantRepository.forBuilding(DB).insert(TestData.tenant("Ben Smith", "2B", 1000));
+        TenantWriteQueue queue = TenantWriteQueue.forBuilding(DB);
+        CompletableFuture<Tenant> update, delete, late;
+        synchronized (queue) {
+            update = queue.update(edited(ben, 1100));
+            delete = queue.delete(ben.getId());
+            // An update after the delete must stay behind it rather than bring the tenant back.
+            late = queue.update(edited(ben, 1300));
+            assertEquals(2, queue.pending());
+        }
+
+        assertNull(delete.get(10, TimeUnit.SECONDS));
+        assertNull(update.get(10, TimeUnit.SECONDS));
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> late.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(SQLException.class, failed.getCause());
+        assertEquals(0, TestData.queryNumber(DB, "SELECT COUNT(*) FROM tenants WHERE id = " + ben.getId()));
+    }
+
+    @Test
+    void onlyOtherWritersConflict() throws Exception {
+        TenantRepository repository = TenantRepository.forBuilding(DB);
+        Tenant cy = repository.insert(TestData.tenant("Cy Young", "3C", 1000));
+        TenantWriteQueue queue = TenantWriteQueue.forBuilding(DB);
+
+        // Both edits were made from the version read at the start; the second moves onto the first's save.
+        queue.update(edited(cy, 1100)).get(10, TimeUnit.SECONDS);
+        Tenant ours = queue.update(edited(cy, 1200)).get(10, TimeUnit.SECONDS);
+        assertEquals(1200, ours.getRent(), 0.001);
+
+        repository.updateField(cy.getId(), "security", 50.0);
+        ExecutionException failed = assertThrows(ExecutionException.class,
+                () -> queue.update(edited(ours, 1300)).get(10, TimeUnit.SECONDS));
+        TenantConflictException conflict = assertInstanceOf(TenantConflictException.class, failed.getCause());
+        assertEquals(50, conflict.getCurrent().getSecurity(), 0.001);
+        assertEquals(1200, conflict.getCurrent().getRent(), 0.001);
+
+        // Nothing was written and the queue keeps going.
+        assertEquals(1200, TestData.queryNumber(DB, "SELECT rent FROM tenants WHERE id = " + cy.getId()), 0.001);
+        assertEquals(1400, queue.update(edited(conflict.getCurrent(), 1400)).get(10, TimeUnit.SECONDS).getRent(), 0.001);
+    }
+
+    /** A copy of {@code tenant} with a new rent, still at the version it was read at. */
+    private static Tenant edited(Tenant tenant, double rent) {
+        Tenant copy = new Tenant(tenant.getId(), tenant.getName(), tenant.getAptNumber(), tenant.getLeaseStart(),
+                tenant.getLeaseExpired(), tenant.getSecurity(), rent, tenant.getBalance());
+        copy.setVersion(tenant.getVersion());
+        return copy;
+    }
+}
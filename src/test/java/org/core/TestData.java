@@ -0,0 +1,114 @@
+package org.core;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Throwaway data directories for the tests, pointed to by {@code pm.data.dir} so nothing touches
+ * the real property files. Every test class runs in a JVM of its own (see the surefire setup).
+ */
+final class TestData {
+    private TestData() {
+    }
+
+    /**
+     * Gives a test class a fresh data directory before its {@code @BeforeAll} methods run and deletes
+     * it after its {@code @AfterAll} methods. Register it as a {@code static @RegisterExtension} field.
+     */
+    static final class DataDir implements BeforeAllCallback, AfterAllCallback {
+        private Path dir;
+
+        @Override
+        public void beforeAll(ExtensionContext context) throws IOException {
+            dir = newDataDir();
+        }
+
+        @Override
+        public void afterAll(ExtensionContext context) throws IOException {
+            deleteDataDir(dir);
+        }
+
+        Path path() {
+            return dir;
+        }
+
+        Path resolve(String file) {
+            return dir.resolve(file);
+        }
+    }
+
+    static Path newDataDir() throws IOException {
+        Path dir = Files.createTempDirectory("pm-test");
+        System.setProperty("pm.data.dir", dir.toString());
+        return dir;
+    }
+
+    static void deleteDataDir(Path dir) throws IOException {
+        ConnectionProvider.closeAll();
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /** A tenant whose lease runs from two years ago to two years ahead, so it covers every month a test charges. */
+    static Tenant tenant(String name, String apt, double rent) {
+        LocalDate today = LocalDate.now();
+        return new Tenant(0, name, apt, today.minusYears(2), today.plusYears(2), rent, rent, 0);
+    }
+
+    /** Runs one statement straight against a building, past the repository and its cache. */
+    static int execute(String dbName, String sql) throws SQLException {
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement()) {
+            return stmt.executeUpdate(sql);
+        }
+    }
+
+    /** The first column of the first row, for counts and sums. */
+    static double queryNumber(String dbName, String sql) throws SQLException {
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getDouble(1);
+        }
+    }
+
+    /** Every row as column name to value, in column order. */
+    static List<Map<String, Object>> rows(String dbName, String sql) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (Connection conn = ConnectionProvider.getConnection(dbName);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            ResultSetMetaData meta = rs.getMetaData();
+            while (rs.next()) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    row.put(meta.getColumnName(i), rs.getObject(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}